@@ -0,0 +1,98 @@
+/*
+ * Copyright 2016 Ronald Hoffman.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.ScripterRon.NxtCore;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Benchmarks for the Crypto signing and key generation functions
+ *
+ * The benchmarks are run single-threaded (CryptoBenchmark.SingleThread) and with one
+ * thread per available processor (CryptoBenchmark.MultiThread) so we can see the effect
+ * of contention on the shared message digest.
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Thread)
+public abstract class CryptoBenchmark {
+
+    /** Secret phrase used for the benchmarks */
+    private static final String SECRET_PHRASE = "NxtCore benchmark secret phrase";
+
+    /** Message to be signed (the size of a payment transaction) */
+    private byte[] message;
+
+    /**
+     * Create the benchmark data
+     */
+    @Setup
+    public void setup() {
+        message = new byte[176];
+        for (int i=0; i<message.length; i++)
+            message[i] = (byte)i;
+    }
+
+    /**
+     * Sign a message
+     *
+     * @return                      Signature
+     * @throws      KeyException    Unable to sign the message
+     */
+    @Benchmark
+    public byte[] sign() throws KeyException {
+        return Crypto.sign(message, SECRET_PHRASE);
+    }
+
+    /**
+     * Generate the public key for a secret phrase
+     *
+     * @return                      Public key
+     * @throws      KeyException    Public key is not canonical
+     */
+    @Benchmark
+    public byte[] getPublicKey() throws KeyException {
+        return Crypto.getPublicKey(SECRET_PHRASE);
+    }
+
+    /**
+     * Run the benchmarks using a single thread
+     */
+    @Threads(1)
+    public static class SingleThread extends CryptoBenchmark {
+    }
+
+    /**
+     * Run the benchmarks using one thread per processor
+     */
+    @Threads(Threads.MAX)
+    public static class MultiThread extends CryptoBenchmark {
+    }
+}
@@ -0,0 +1,149 @@
+/*
+ * Copyright 2016 Ronald Hoffman.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.ScripterRon.NxtCore;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.Arrays;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Benchmarks for the Curve25519 primitives
+ *
+ * Each thread has its own input and output arrays, so the multi-threaded results
+ * measure the primitives themselves and not contention on shared state.
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Thread)
+public abstract class Curve25519Benchmark {
+
+    /** Secret phrase used for the benchmarks */
+    private static final String SECRET_PHRASE = "NxtCore benchmark secret phrase";
+
+    /** Private key seed */
+    private byte[] seed;
+
+    /** Public key */
+    private byte[] publicKey;
+
+    /** Signature */
+    private byte[] signature;
+
+    /** Signature value */
+    private byte[] v;
+
+    /** Signature hash */
+    private byte[] h;
+
+    /** Output public key */
+    private byte[] P;
+
+    /** Output signing key */
+    private byte[] s;
+
+    /** Output signature public key */
+    private byte[] Y;
+
+    /**
+     * Create the benchmark data
+     *
+     * @throws      KeyException    Unable to sign the message
+     */
+    @Setup
+    public void setup() throws KeyException {
+        byte[] message = new byte[176];
+        for (int i=0; i<message.length; i++)
+            message[i] = (byte)i;
+        seed = Crypto.singleDigest(SECRET_PHRASE);
+        publicKey = Crypto.getPublicKey(SECRET_PHRASE);
+        signature = Crypto.sign(message, SECRET_PHRASE);
+        v = Arrays.copyOfRange(signature, 0, 32);
+        h = Arrays.copyOfRange(signature, 32, 64);
+        P = new byte[32];
+        s = new byte[32];
+        Y = new byte[32];
+    }
+
+    /**
+     * Generate a public key and signing key
+     *
+     * @return                      Public key
+     */
+    @Benchmark
+    public byte[] keygen() {
+        Curve25519.keygen(P, s, seed);
+        return P;
+    }
+
+    /**
+     * Calculate the signature public key
+     *
+     * @return                      Signature public key
+     */
+    @Benchmark
+    public byte[] verify() {
+        Curve25519.verify(Y, v, h, publicKey);
+        return Y;
+    }
+
+    /**
+     * Check if the public key is canonical
+     *
+     * @return                      TRUE if the public key is canonical
+     */
+    @Benchmark
+    public boolean isCanonicalPublicKey() {
+        return Curve25519.isCanonicalPublicKey(publicKey);
+    }
+
+    /**
+     * Check if the signature is canonical
+     *
+     * @return                      TRUE if the signature is canonical
+     */
+    @Benchmark
+    public boolean isCanonicalSignature() {
+        return Curve25519.isCanonicalSignature(signature);
+    }
+
+    /**
+     * Run the benchmarks using a single thread
+     */
+    @Threads(1)
+    public static class SingleThread extends Curve25519Benchmark {
+    }
+
+    /**
+     * Run the benchmarks using one thread per processor
+     */
+    @Threads(Threads.MAX)
+    public static class MultiThread extends Curve25519Benchmark {
+    }
+}
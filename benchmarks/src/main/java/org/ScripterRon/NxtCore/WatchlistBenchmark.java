@@ -0,0 +1,140 @@
+/*
+ * Copyright 2016 Ronald Hoffman.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.ScripterRon.NxtCore;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.HashSet;
+import java.util.Random;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Benchmarks for the Watchlist account lookup
+ *
+ * The watchlist and a HashSet&lt;Long&gt; each hold 2 million random accounts.  The
+ * lookups cycle through arrays of watched accounts (hits) and of accounts which are
+ * not watched (misses), so most of the lookups are not satisfied from the processor
+ * cache.  Deposit matching is mostly misses since most transactions do not pay a
+ * watched account.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Thread)
+public class WatchlistBenchmark {
+
+    /** Number of watched accounts */
+    private static final int ACCOUNT_COUNT = 2000000;
+
+    /** Number of lookup accounts (must be a power of 2) */
+    private static final int LOOKUP_COUNT = 1<<20;
+
+    /** Watchlist */
+    private Watchlist watchlist;
+
+    /** Hash set */
+    private Set<Long> hashSet;
+
+    /** Watched accounts */
+    private long[] hitIds;
+
+    /** Accounts which are not watched */
+    private long[] missIds;
+
+    /** Next lookup */
+    private int index;
+
+    /**
+     * Create the benchmark data
+     */
+    @Setup
+    public void setup() {
+        Random random = new Random(20161019L);
+        long[] accountIds = new long[ACCOUNT_COUNT];
+        watchlist = new Watchlist(ACCOUNT_COUNT);
+        hashSet = new HashSet<>(ACCOUNT_COUNT*2);
+        for (int i=0; i<ACCOUNT_COUNT; i++) {
+            long accountId;
+            do {
+                accountId = random.nextLong();
+            } while (accountId == 0 || !hashSet.add(accountId));
+            accountIds[i] = accountId;
+        }
+        watchlist.addAll(accountIds);
+        hitIds = new long[LOOKUP_COUNT];
+        missIds = new long[LOOKUP_COUNT];
+        for (int i=0; i<LOOKUP_COUNT; i++) {
+            hitIds[i] = accountIds[random.nextInt(ACCOUNT_COUNT)];
+            long accountId;
+            do {
+                accountId = random.nextLong();
+            } while (hashSet.contains(accountId));
+            missIds[i] = accountId;
+        }
+    }
+
+    /**
+     * Look up a watched account in the watchlist
+     *
+     * @return                      TRUE if the account is watched
+     */
+    @Benchmark
+    public boolean watchlistHit() {
+        return watchlist.contains(hitIds[index++ & (LOOKUP_COUNT-1)]);
+    }
+
+    /**
+     * Look up an account which is not watched in the watchlist
+     *
+     * @return                      TRUE if the account is watched
+     */
+    @Benchmark
+    public boolean watchlistMiss() {
+        return watchlist.contains(missIds[index++ & (LOOKUP_COUNT-1)]);
+    }
+
+    /**
+     * Look up a watched account in the hash set
+     *
+     * @return                      TRUE if the account is watched
+     */
+    @Benchmark
+    public boolean hashSetHit() {
+        return hashSet.contains(hitIds[index++ & (LOOKUP_COUNT-1)]);
+    }
+
+    /**
+     * Look up an account which is not watched in the hash set
+     *
+     * @return                      TRUE if the account is watched
+     */
+    @Benchmark
+    public boolean hashSetMiss() {
+        return hashSet.contains(missIds[index++ & (LOOKUP_COUNT-1)]);
+    }
+}
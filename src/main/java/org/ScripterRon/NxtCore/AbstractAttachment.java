@@ -15,6 +15,9 @@
  */
 package org.ScripterRon.NxtCore;
 
+import java.io.UnsupportedEncodingException;
+import java.nio.ByteBuffer;
+
 /**
  * Abstract transaction attachment
  */
@@ -39,4 +42,85 @@ public class AbstractAttachment implements Attachment {
     public byte[] getBytes() {
         return new byte[0];
     }
+
+    /**
+     * Return the UTF-8 encoded length of a string.  An unpaired surrogate is
+     * encoded as '?', the same as String.getBytes().
+     *
+     * @param       string                  String
+     * @return                              Encoded length
+     */
+    protected static int utf8Length(String string) {
+        int length = 0;
+        for (int i=0; i<string.length(); i++) {
+            char c = string.charAt(i);
+            if (c < 0x80) {
+                length++;
+            } else if (c < 0x800) {
+                length += 2;
+            } else if (Character.isHighSurrogate(c) && i+1 < string.length() &&
+                                Character.isLowSurrogate(string.charAt(i+1))) {
+                length += 4;
+                i++;
+            } else if (Character.isSurrogate(c)) {
+                length++;
+            } else {
+                length += 3;
+            }
+        }
+        return length;
+    }
+
+    /**
+     * Write a string to the buffer using UTF-8 encoding.  An unpaired surrogate
+     * is encoded as '?', the same as String.getBytes().
+     *
+     * @param       buffer                  Output buffer
+     * @param       string                  String
+     */
+    protected static void putString(ByteBuffer buffer, String string) {
+        for (int i=0; i<string.length(); i++) {
+            char c = string.charAt(i);
+            if (c < 0x80) {
+                buffer.put((byte)c);
+            } else if (c < 0x800) {
+                buffer.put((byte)(0xc0 | (c>>6)));
+                buffer.put((byte)(0x80 | (c&0x3f)));
+            } else if (Character.isHighSurrogate(c) && i+1 < string.length() &&
+                                Character.isLowSurrogate(string.charAt(i+1))) {
+                int cp = Character.toCodePoint(c, string.charAt(++i));
+                buffer.put((byte)(0xf0 | (cp>>18)));
+                buffer.put((byte)(0x80 | ((cp>>12)&0x3f)));
+                buffer.put((byte)(0x80 | ((cp>>6)&0x3f)));
+                buffer.put((byte)(0x80 | (cp&0x3f)));
+            } else if (Character.isSurrogate(c)) {
+                buffer.put((byte)'?');
+            } else {
+                buffer.put((byte)(0xe0 | (c>>12)));
+                buffer.put((byte)(0x80 | ((c>>6)&0x3f)));
+                buffer.put((byte)(0x80 | (c&0x3f)));
+            }
+        }
+    }
+
+    /**
+     * Read a UTF-8 string from the attachment bytes
+     *
+     * @param       buffer                  Buffer positioned at the string
+     * @param       length                  Encoded string length
+     * @param       maxLength               Maximum number of characters
+     * @return                              Decoded string
+     * @throws      NxtException            Invalid string length
+     */
+    protected static String readString(ByteBuffer buffer, int length, int maxLength) throws NxtException {
+        if (length < 0 || length > 3*maxLength || length > buffer.remaining())
+            throw new NxtException("Attachment string length " + length + " is not valid");
+        byte[] bytes = new byte[length];
+        buffer.get(bytes);
+        try {
+            return new String(bytes, "UTF-8");
+        } catch (UnsupportedEncodingException exc) {
+            throw new RuntimeException(exc.getClass().getName()+": "+exc.getMessage());
+        }
+    }
 }
@@ -77,7 +77,7 @@ public class Account {
     private final int nextLeasingTo;
 
     /** Lessor list */
-    private final List<Long> lessors;
+    private final LongList lessors;
 
     /**
      * Create the account from the JSON response for 'getAccount'
@@ -102,7 +102,7 @@ public class Account {
         this.nextLesseeId = response.getId("nextLessee");
         this.nextLeasingFrom = response.getInt("nextLeasingHeightFrom");
         this.nextLeasingTo = response.getInt("nextLeasingHeightTo");
-        this.lessors = response.getIdList("lessors");
+        this.lessors = response.getIdValues("lessors");
         List<Map<String, Object>> assetList = response.getObjectList("assetBalances");
         if (assetList.isEmpty()) {
             this.assetBalances = Collections.emptyList();
@@ -301,6 +301,15 @@ public class Account {
         return lessors;
     }
 
+    /**
+     * Return the balance lessor identifiers
+     *
+     * @return                      Balance lessors (an empty list is returned if there are no lessors)
+     */
+    public LongList getBalanceLessorIds() {
+        return lessors;
+    }
+
     /**
      * Return the confirmed asset balances
      *
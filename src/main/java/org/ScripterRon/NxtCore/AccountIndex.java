@@ -0,0 +1,523 @@
+/*
+ * Copyright 2016 Ronald Hoffman.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.ScripterRon.NxtCore;
+
+import java.io.BufferedInputStream;
+import java.io.DataInputStream;
+import java.io.EOFException;
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.zip.CRC32;
+
+/**
+ * AccountIndex maps an account to the transactions in a block store where the
+ * account is the sender or the recipient.
+ *
+ * The transaction locations for each account are kept in memory in ascending height
+ * order, so the transactions for a height range are found with a binary search and
+ * are read from the block store without contacting the node server.  The index entries
+ * are appended to the index file as blocks are added and the index is rebuilt from
+ * the index file when it is opened.  Index records which were not completely written
+ * before a failure are discarded when the index is opened.
+ *
+ * The index is updated as blocks are added to or removed from the block store when
+ * it is registered as a ChainSync listener.  update() adds the stored blocks which are
+ * not in the index and removes the indexed blocks which are no longer in the store.  It
+ * is called when the index is opened and should be called if a listener error is logged.
+ *
+ * Index file layout:
+ *   - Magic number (4 bytes)
+ *   - Version (4 bytes)
+ *   - Block records
+ *
+ * Block record layout:
+ *   - Block height (4 bytes)
+ *   - Block identifier (8 bytes)
+ *   - Entry count (4 bytes)
+ *   - Index entries (12 bytes: account identifier and transaction offset in the block bytes)
+ *   - CRC32 of the preceding record bytes (4 bytes)
+ *
+ * All numeric values are little-endian.
+ */
+public class AccountIndex implements ChainSync.Listener {
+
+    /** Index file magic number */
+    private static final int MAGIC = 0x4e584149;
+
+    /** Index file version */
+    private static final int VERSION = 3;
+
+    /** Index file header length */
+    private static final int HEADER_LENGTH = 8;
+
+    /** Block record header length */
+    private static final int RECORD_HEADER_LENGTH = 16;
+
+    /** Index entry length */
+    private static final int ENTRY_LENGTH = 12;
+
+    /** Index file name */
+    private static final String INDEX_NAME = "accounts.idx";
+
+    /** Block store */
+    private final BlockStore store;
+
+    /** Index file */
+    private final RandomAccessFile indexFile;
+
+    /** Index file channel */
+    private final FileChannel indexChannel;
+
+    /** Transaction locations by account (block height in the high-order 32 bits and offset in the low-order 32 bits) */
+    private final LongHashMap<LongList> accountMap = new LongHashMap<>();
+
+    /** Index file position for each indexed block */
+    private final LongList recordPositions = new LongList();
+
+    /** Identifier for each indexed block */
+    private final LongList blockIds = new LongList();
+
+    /** Height of the first indexed block */
+    private int firstHeight;
+
+    /** Index file length */
+    private long fileLength;
+
+    /** Number of index entries */
+    private long entryCount;
+
+    /** Index is closed */
+    private boolean closed;
+
+    /**
+     * Open the account index and add the stored blocks which are not in the index
+     *
+     * @param       directory               Index directory
+     * @param       store                   Block store
+     * @throws      IOException             Unable to open the index
+     * @throws      NxtException            Stored block is not valid
+     */
+    public AccountIndex(File directory, BlockStore store) throws IOException, NxtException {
+        if (!directory.exists() && !directory.mkdirs())
+            throw new IOException("Unable to create directory " + directory.getPath());
+        this.store = store;
+        indexFile = new RandomAccessFile(new File(directory, INDEX_NAME), "rw");
+        indexChannel = indexFile.getChannel();
+        try {
+            if (indexChannel.size() < HEADER_LENGTH) {
+                ByteBuffer header = ByteBuffer.allocate(HEADER_LENGTH);
+                header.order(ByteOrder.LITTLE_ENDIAN);
+                header.putInt(MAGIC).putInt(VERSION);
+                header.flip();
+                indexChannel.write(header, 0);
+                indexChannel.truncate(HEADER_LENGTH);
+                fileLength = HEADER_LENGTH;
+            } else {
+                loadIndex();
+            }
+            update();
+        } catch (IOException | NxtException exc) {
+            indexFile.close();
+            throw exc;
+        }
+    }
+
+    /**
+     * Load the index file
+     *
+     * @throws      IOException             Unable to read the index file
+     */
+    private void loadIndex() throws IOException {
+        long size = indexChannel.size();
+        indexChannel.position(0);
+        DataInputStream in = new DataInputStream(new BufferedInputStream(Channels.newInputStream(indexChannel), 65536));
+        if (Integer.reverseBytes(in.readInt()) != MAGIC || Integer.reverseBytes(in.readInt()) != VERSION)
+            throw new IOException("Account index is not valid");
+        long position = HEADER_LENGTH;
+        CRC32 crc = new CRC32();
+        byte[] bytes = new byte[RECORD_HEADER_LENGTH + 256*ENTRY_LENGTH + 4];
+        try {
+            while (size-position >= RECORD_HEADER_LENGTH + 4) {
+                in.readFully(bytes, 0, RECORD_HEADER_LENGTH);
+                ByteBuffer buffer = ByteBuffer.wrap(bytes).order(ByteOrder.LITTLE_ENDIAN);
+                int height = buffer.getInt(0);
+                int count = buffer.getInt(12);
+                int length = RECORD_HEADER_LENGTH + count*ENTRY_LENGTH + 4;
+                if (count < 0 || length > size-position ||
+                                (!blockIds.isEmpty() && height != firstHeight+blockIds.size()))
+                    break;
+                if (length > bytes.length) {
+                    byte[] newBytes = new byte[length];
+                    System.arraycopy(bytes, 0, newBytes, 0, RECORD_HEADER_LENGTH);
+                    bytes = newBytes;
+                    buffer = ByteBuffer.wrap(bytes).order(ByteOrder.LITTLE_ENDIAN);
+                }
+                in.readFully(bytes, RECORD_HEADER_LENGTH, length-RECORD_HEADER_LENGTH);
+                crc.reset();
+                crc.update(bytes, 0, length-4);
+                if ((int)crc.getValue() != buffer.getInt(length-4))
+                    break;
+                if (blockIds.isEmpty())
+                    firstHeight = height;
+                recordPositions.addLong(position);
+                blockIds.addLong(buffer.getLong(4));
+                for (int i=0; i<count; i++) {
+                    int offset = RECORD_HEADER_LENGTH + i*ENTRY_LENGTH;
+                    addEntry(buffer.getLong(offset), height, buffer.getInt(offset+8));
+                }
+                position += length;
+            }
+        } catch (EOFException exc) {
+            // Handled by truncating the index file below
+        }
+        if (position != size) {
+            Nxt.log.warn(String.format("Discarding incomplete account index record at height %d",
+                                       (blockIds.isEmpty() ? -1 : firstHeight+blockIds.size())));
+            indexChannel.truncate(position);
+        }
+        fileLength = position;
+    }
+
+    /**
+     * Update the index to match the block store
+     *
+     * @return                              Number of blocks added to the index
+     * @throws      IOException             Unable to update the index
+     * @throws      NxtException            Stored block is not valid
+     */
+    public synchronized int update() throws IOException, NxtException {
+        checkOpen();
+        //
+        // Remove indexed blocks which are no longer in the store
+        //
+        int height = getLastHeight();
+        while (height >= 0 && store.getBlockId(height) != blockIds.getLong(height-firstHeight))
+            height = (height > firstHeight ? height-1 : -1);
+        rollbackBlocks(height);
+        //
+        // Add stored blocks which are not in the index
+        //
+        int added = 0;
+        int nextHeight = (blockIds.isEmpty() ? store.getFirstHeight() : getLastHeight()+1);
+        if (nextHeight >= 0) {
+            for (int h=nextHeight; h<=store.getLastHeight(); h++) {
+                addBlock(store.getBlock(h));
+                added++;
+            }
+        }
+        return added;
+    }
+
+    /**
+     * Add a block to the index (ChainSync.Listener interface)
+     *
+     * The block is ignored if it is not the successor of the last indexed block
+     *
+     * @param       block                   Block
+     */
+    @Override
+    public synchronized void blockAdded(Block block) {
+        if (closed || (!blockIds.isEmpty() && block.getHeight() != getLastHeight()+1))
+            return;
+        try {
+            addBlock(block);
+        } catch (IOException exc) {
+            Nxt.log.error(String.format("Unable to add block at height %d to the account index",
+                                        block.getHeight()), exc);
+        }
+    }
+
+    /**
+     * Remove blocks from the index (ChainSync.Listener interface)
+     *
+     * @param       height                  Height of the last block that was kept
+     * @param       removedIds              Identifiers of the removed blocks
+     */
+    @Override
+    public synchronized void chainRolledBack(int height, LongList removedIds) {
+        if (closed)
+            return;
+        try {
+            rollbackBlocks(height);
+        } catch (IOException exc) {
+            Nxt.log.error(String.format("Unable to roll back the account index to height %d", height), exc);
+        }
+    }
+
+    /**
+     * Return the height of the last indexed block
+     *
+     * @return                              Block height or -1 if the index is empty
+     */
+    public synchronized int getLastHeight() {
+        return (blockIds.isEmpty() ? -1 : firstHeight+blockIds.size()-1);
+    }
+
+    /**
+     * Return the number of indexed accounts
+     *
+     * @return                              Number of accounts
+     */
+    public synchronized int getAccountCount() {
+        return accountMap.size();
+    }
+
+    /**
+     * Return the number of index entries
+     *
+     * @return                              Number of entries
+     */
+    public synchronized long getEntryCount() {
+        return entryCount;
+    }
+
+    /**
+     * Return the number of account transactions in a height range
+     *
+     * @param       accountId               Account identifier
+     * @param       fromHeight              First block height
+     * @param       toHeight                Last block height
+     * @return                              Number of transactions
+     */
+    public synchronized int getTransactionCount(long accountId, int fromHeight, int toHeight) {
+        LongList locations = accountMap.get(accountId);
+        if (locations == null || toHeight < fromHeight)
+            return 0;
+        return upperBound(locations, toHeight) - lowerBound(locations, fromHeight);
+    }
+
+    /**
+     * Return the account transactions in a height range where the account is the sender
+     * or the recipient.  The transactions are read from the block store and are returned
+     * in ascending height order.
+     *
+     * @param       accountId               Account identifier
+     * @param       fromHeight              First block height
+     * @param       toHeight                Last block height
+     * @return                              Transaction list
+     * @throws      IOException             Unable to read the block store
+     * @throws      NxtException            Stored block is not valid
+     */
+    public synchronized List<Transaction> getTransactions(long accountId, int fromHeight, int toHeight)
+                                            throws IOException, NxtException {
+        checkOpen();
+        LongList locations = accountMap.get(accountId);
+        if (locations == null || toHeight < fromHeight)
+            return new ArrayList<>(0);
+        int start = lowerBound(locations, fromHeight);
+        int stop = upperBound(locations, toHeight);
+        List<Transaction> txList = new ArrayList<>(stop-start);
+        ByteBuffer blockBytes = null;
+        int blockHeight = -1;
+        for (int i=start; i<stop; i++) {
+            long location = locations.getLong(i);
+            int height = (int)(location>>>32);
+            if (height != blockHeight) {
+                blockBytes = store.getBlockBytes(height);
+                if (blockBytes == null)
+                    throw new NxtException(String.format("Block at height %d is not in the block store", height));
+                blockHeight = height;
+            }
+            txList.add(Block.parseTransaction(blockBytes, (int)location));
+        }
+        return txList;
+    }
+
+    /**
+     * Write the index file to storage
+     *
+     * @throws      IOException             Unable to write to storage
+     */
+    public synchronized void flush() throws IOException {
+        checkOpen();
+        indexChannel.force(true);
+    }
+
+    /**
+     * Close the account index
+     *
+     * @throws      IOException             Unable to close the index
+     */
+    public synchronized void close() throws IOException {
+        if (closed)
+            return;
+        try {
+            flush();
+        } finally {
+            closed = true;
+            accountMap.clear();
+            indexFile.close();
+        }
+    }
+
+    /**
+     * Add a block to the index
+     *
+     * @param       block                   Block
+     * @throws      IOException             Unable to write the index file
+     */
+    private void addBlock(Block block) throws IOException {
+        checkOpen();
+        List<Transaction> txList = block.getTransactions();
+        int[] offsets = block.getTransactionOffsets();
+        ByteBuffer record = ByteBuffer.allocate(RECORD_HEADER_LENGTH + 2*txList.size()*ENTRY_LENGTH + 4);
+        record.order(ByteOrder.LITTLE_ENDIAN);
+        record.putInt(block.getHeight()).putLong(block.getBlockId()).putInt(0);
+        int count = 0;
+        for (int i=0; i<txList.size(); i++) {
+            Transaction tx = txList.get(i);
+            record.putLong(tx.getSenderId()).putInt(offsets[i]);
+            count++;
+            if (tx.getRecipientId() != 0 && tx.getRecipientId() != tx.getSenderId()) {
+                record.putLong(tx.getRecipientId()).putInt(offsets[i]);
+                count++;
+            }
+        }
+        record.putInt(12, count);
+        CRC32 crc = new CRC32();
+        crc.update(record.array(), 0, record.position());
+        record.putInt((int)crc.getValue());
+        record.flip();
+        long position = fileLength;
+        while (record.hasRemaining())
+            position += indexChannel.write(record, position);
+        //
+        // Update the index after the record has been written
+        //
+        if (blockIds.isEmpty())
+            firstHeight = block.getHeight();
+        recordPositions.addLong(fileLength);
+        blockIds.addLong(block.getBlockId());
+        fileLength = position;
+        for (int i=0; i<count; i++) {
+            int offset = RECORD_HEADER_LENGTH + i*ENTRY_LENGTH;
+            addEntry(record.getLong(offset), block.getHeight(), record.getInt(offset+8));
+        }
+    }
+
+    /**
+     * Add an index entry
+     *
+     * @param       accountId               Account identifier
+     * @param       height                  Block height
+     * @param       offset                  Transaction offset in the block bytes
+     */
+    private void addEntry(long accountId, int height, int offset) {
+        LongList locations = accountMap.get(accountId);
+        if (locations == null) {
+            locations = new LongList();
+            accountMap.put(accountId, locations);
+        }
+        locations.addLong(((long)height<<32) | (offset&0xffffffffL));
+        entryCount++;
+    }
+
+    /**
+     * Remove the indexed blocks following a block
+     *
+     * @param       height                  Height of the last block to keep
+     * @throws      IOException             Unable to update the index file
+     */
+    private void rollbackBlocks(int height) throws IOException {
+        checkOpen();
+        int lastHeight = getLastHeight();
+        if (height >= lastHeight)
+            return;
+        int keepCount = Math.max(height-firstHeight+1, 0);
+        long position = recordPositions.getLong(keepCount);
+        //
+        // Read the removed records and remove the entries for each account
+        //
+        ByteBuffer buffer = ByteBuffer.allocate((int)(fileLength-position));
+        buffer.order(ByteOrder.LITTLE_ENDIAN);
+        while (buffer.hasRemaining()) {
+            if (indexChannel.read(buffer, position+buffer.position()) < 0)
+                throw new IOException("Account index is too short");
+        }
+        buffer.flip();
+        while (buffer.hasRemaining()) {
+            buffer.position(buffer.position()+12);
+            int count = buffer.getInt();
+            for (int i=0; i<count; i++) {
+                long accountId = buffer.getLong();
+                buffer.getInt();
+                LongList locations = accountMap.get(accountId);
+                if (locations != null) {
+                    int index = lowerBound(locations, height+1);
+                    entryCount -= locations.size() - index;
+                    if (index == 0)
+                        accountMap.remove(accountId);
+                    else
+                        locations.subList(index, locations.size()).clear();
+                }
+            }
+            buffer.getInt();
+        }
+        indexChannel.truncate(position);
+        fileLength = position;
+        recordPositions.subList(keepCount, recordPositions.size()).clear();
+        blockIds.subList(keepCount, blockIds.size()).clear();
+    }
+
+    /**
+     * Return the index of the first location at or after a height
+     *
+     * @param       locations               Transaction locations
+     * @param       height                  Block height
+     * @return                              List index
+     */
+    private static int lowerBound(LongList locations, int height) {
+        long key = (long)Math.max(height, 0)<<32;
+        int low = 0;
+        int high = locations.size();
+        while (low < high) {
+            int mid = (low+high) >>> 1;
+            if (locations.getLong(mid) < key)
+                low = mid+1;
+            else
+                high = mid;
+        }
+        return low;
+    }
+
+    /**
+     * Return the index of the first location after a height
+     *
+     * @param       locations               Transaction locations
+     * @param       height                  Block height
+     * @return                              List index
+     */
+    private static int upperBound(LongList locations, int height) {
+        return (height == Integer.MAX_VALUE ? locations.size() : lowerBound(locations, height+1));
+    }
+
+    /**
+     * Verify that the index is open
+     *
+     * @throws      IOException             Index is closed
+     */
+    private void checkOpen() throws IOException {
+        if (closed)
+            throw new IOException("Account index is closed");
+    }
+}
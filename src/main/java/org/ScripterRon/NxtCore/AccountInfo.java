@@ -15,16 +15,13 @@
  */
 package org.ScripterRon.NxtCore;
 
-import java.io.UnsupportedEncodingException;
-
 import java.nio.ByteBuffer;
-import java.nio.ByteOrder;
 import java.util.List;
 
 /**
  * Account information attachment for TransactionType.Messaging.ACCOUNT_INFO
  */
-public class AccountInfo extends AbstractAttachment {
+public class AccountInfo extends BinaryAttachment {
 
     /** Attachment version */
     private final int version;
@@ -67,29 +64,41 @@ public class AccountInfo extends AbstractAttachment {
     }
 
     /**
-     * Return the attachment byte stream
+     * Create an Account Info attachment from the transaction bytes
+     *
+     * @param       buffer                  Little-endian buffer positioned at the attachment
+     * @param       txVersion               Transaction version
+     * @throws      NxtException            Invalid attachment
+     */
+    public AccountInfo(ByteBuffer buffer, int txVersion) throws NxtException {
+        this.version = (txVersion>0 ? buffer.get() : 0);
+        this.name = readString(buffer, buffer.get()&0xff, 100);
+        this.description = readString(buffer, buffer.getShort()&0xffff, 1000);
+    }
+
+    /**
+     * Return the size of the attachment byte stream
+     *
+     * @return                              Number of bytes
+     */
+    @Override
+    public int getSize() {
+        return (version>0?1:0)+1+utf8Length(name)+2+utf8Length(description);
+    }
+
+    /**
+     * Write the attachment byte stream to a little-endian buffer
      *
-     * @return                              Byte stream
+     * @param       buffer                  Output buffer
      */
     @Override
-    public byte[] getBytes() {
-        byte[] bytes;
-        try {
-            byte[] nameBytes = name.getBytes("UTF-8");
-            byte[] descBytes = description.getBytes("UTF-8");
-            bytes = new byte[(version>0?1:0)+1+nameBytes.length+2+descBytes.length];
-            ByteBuffer buf = ByteBuffer.wrap(bytes);
-            buf.order(ByteOrder.LITTLE_ENDIAN);
-            if (version > 0)
-                buf.put((byte)version);
-            buf.put((byte)nameBytes.length);
-            buf.put(nameBytes);
-            buf.putShort((short)descBytes.length);
-            buf.put(descBytes);
-        } catch (UnsupportedEncodingException exc) {
-            throw new RuntimeException(exc.getClass().getName()+": "+exc.getMessage());
-        }
-        return bytes;
+    public void writeTo(ByteBuffer buffer) {
+        if (version > 0)
+            buffer.put((byte)version);
+        buffer.put((byte)utf8Length(name));
+        putString(buffer, name);
+        buffer.putShort((short)utf8Length(description));
+        putString(buffer, description);
     }
 
     /**
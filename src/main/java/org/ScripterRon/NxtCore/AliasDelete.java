@@ -0,0 +1,107 @@
+/*
+ * Copyright 2016 Ronald Hoffman.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.ScripterRon.NxtCore;
+
+import java.nio.ByteBuffer;
+
+/**
+ * Attachment for TransactionType.Messaging.ALIAS_DELETE
+ */
+public class AliasDelete extends BinaryAttachment {
+
+    /** Version */
+    private final int version;
+
+    /** Alias name */
+    private final String name;
+
+    /**
+     * Create an Alias Delete attachment
+     *
+     * @param       name                    Alias name (maximum length 100)
+     */
+    public AliasDelete(String name) {
+        if (name == null)
+            throw new IllegalArgumentException("Required parameter not specified");
+        this.version = 1;
+        this.name = name;
+        if (name.length() > 100)
+            throw new IllegalArgumentException("Maximum alias name length is 100");
+    }
+
+    /**
+     * Create an Alias Delete attachment from the JSON response
+     *
+     * @param       response                JSON response
+     */
+    public AliasDelete(PeerResponse response) {
+        this.version = response.getByte("version.AliasDelete");
+        this.name = response.getString("alias");
+    }
+
+    /**
+     * Create an Alias Delete attachment from the transaction bytes
+     *
+     * @param       buffer                  Little-endian buffer positioned at the attachment
+     * @param       txVersion               Transaction version
+     * @throws      NxtException            Invalid attachment
+     */
+    public AliasDelete(ByteBuffer buffer, int txVersion) throws NxtException {
+        this.version = (txVersion>0 ? buffer.get() : 0);
+        this.name = readString(buffer, buffer.get()&0xff, 100);
+    }
+
+    /**
+     * Return the size of the attachment byte stream
+     *
+     * @return                              Number of bytes
+     */
+    @Override
+    public int getSize() {
+        return (version>0?1:0)+1+utf8Length(name);
+    }
+
+    /**
+     * Write the attachment byte stream to a little-endian buffer
+     *
+     * @param       buffer                  Output buffer
+     */
+    @Override
+    public void writeTo(ByteBuffer buffer) {
+        if (version > 0)
+            buffer.put((byte)version);
+        buffer.put((byte)utf8Length(name));
+        putString(buffer, name);
+    }
+
+    /**
+     * Return the attachment version
+     *
+     * @return                              Version
+     */
+    public int getVersion() {
+        return version;
+    }
+
+    /**
+     * Return the alias name
+     *
+     * @return                              Alias name
+     */
+    public String getName() {
+        return name;
+    }
+}
@@ -15,14 +15,12 @@
  */
 package org.ScripterRon.NxtCore;
 
-import java.io.UnsupportedEncodingException;
 import java.nio.ByteBuffer;
-import java.nio.ByteOrder;
 
 /**
  * Attachment for TransactionType.Messaging.ALIAS_SELL
  */
-public class AliasSell extends AbstractAttachment {
+public class AliasSell extends BinaryAttachment {
 
     /** Version */
     private final int version;
@@ -65,27 +63,40 @@ public class AliasSell extends AbstractAttachment {
     }
 
     /**
-     * Return the attachment byte stream
+     * Create an Alias Sell attachment from the transaction bytes
      *
-     * @return                              Byte stream
+     * @param       buffer                  Little-endian buffer positioned at the attachment
+     * @param       txVersion               Transaction version
+     * @throws      NxtException            Invalid attachment
+     */
+    public AliasSell(ByteBuffer buffer, int txVersion) throws NxtException {
+        this.version = (txVersion>0 ? buffer.get() : 0);
+        this.name = readString(buffer, buffer.get()&0xff, 100);
+        this.price = buffer.getLong();
+    }
+
+    /**
+     * Return the size of the attachment byte stream
+     *
+     * @return                              Number of bytes
+     */
+    @Override
+    public int getSize() {
+        return (version>0?1:0)+1+utf8Length(name)+8;
+    }
+
+    /**
+     * Write the attachment byte stream to a little-endian buffer
+     *
+     * @param       buffer                  Output buffer
      */
     @Override
-    public byte[] getBytes() {
-        byte[] bytes;
-        try {
-            byte[] nameBytes = name.getBytes("UTF-8");
-            bytes = new byte[(version>0?1:0)+1+nameBytes.length+8];
-            ByteBuffer buf = ByteBuffer.wrap(bytes);
-            buf.order(ByteOrder.LITTLE_ENDIAN);
-            if (version > 0)
-                buf.put((byte)version);
-            buf.put((byte)nameBytes.length);
-            buf.put(nameBytes);
-            buf.putLong(price);
-        } catch (UnsupportedEncodingException exc) {
-            throw new RuntimeException(exc.getClass().getName()+": "+exc.getMessage());
-        }
-        return bytes;
+    public void writeTo(ByteBuffer buffer) {
+        if (version > 0)
+            buffer.put((byte)version);
+        buffer.put((byte)utf8Length(name));
+        putString(buffer, name);
+        buffer.putLong(price);
     }
 
     /**
@@ -17,12 +17,11 @@ package org.ScripterRon.NxtCore;
 
 import java.io.UnsupportedEncodingException;
 import java.nio.ByteBuffer;
-import java.nio.ByteOrder;
 
 /**
  * Attachment for TransactionType.Messaging.ARBITRARY_MESSAGE
  */
-public class ArbitraryMessage extends AbstractAttachment {
+public class ArbitraryMessage extends BinaryAttachment {
 
     /** Version */
     private final int version;
@@ -93,6 +92,24 @@ public class ArbitraryMessage extends AbstractAttachment {
         }
     }
 
+    /**
+     * Create an Arbitrary Message attachment from the transaction bytes
+     *
+     * @param       buffer                  Little-endian buffer positioned at the attachment
+     * @param       txVersion               Transaction version
+     * @throws      NxtException            Invalid attachment
+     */
+    public ArbitraryMessage(ByteBuffer buffer, int txVersion) throws NxtException {
+        version = (txVersion>0 ? buffer.get() : 0);
+        int length = buffer.getInt();
+        textMessage = (length<0);
+        length &= 0x7fffffff;
+        if (length > 1000 || length > buffer.remaining())
+            throw new NxtException("Message length " + length + " is not valid");
+        message = new byte[length];
+        buffer.get(message);
+    }
+
     /**
      * Return the transaction flags
      *
@@ -104,20 +121,26 @@ public class ArbitraryMessage extends AbstractAttachment {
     }
 
     /**
-     * Return the attachment byte stream
+     * Return the size of the attachment byte stream
+     *
+     * @return                              Number of bytes
+     */
+    @Override
+    public int getSize() {
+        return (version>0?1:0)+4+message.length;
+    }
+
+    /**
+     * Write the attachment byte stream to a little-endian buffer
      *
-     * @return                              Byte stream
+     * @param       buffer                  Output buffer
      */
     @Override
-    public byte[] getBytes() {
-        byte[] bytes = new byte[(version>0?1:0)+4+message.length];
-        ByteBuffer buf = ByteBuffer.wrap(bytes);
-        buf.order(ByteOrder.LITTLE_ENDIAN);
+    public void writeTo(ByteBuffer buffer) {
         if (version > 0)
-            buf.put((byte)version);
-        buf.putInt(message.length | (textMessage ? 0x80000000 : 0));
-        buf.put(message);
-        return bytes;
+            buffer.put((byte)version);
+        buffer.putInt(message.length | (textMessage ? 0x80000000 : 0));
+        buffer.put(message);
     }
 
     /**
@@ -0,0 +1,161 @@
+/*
+ * Copyright 2016 Ronald Hoffman.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.ScripterRon.NxtCore;
+
+import java.nio.ByteBuffer;
+
+/**
+ * Attachment for TransactionType.ColoredCoins.ASSET_ISSUANCE
+ */
+public class AssetIssuance extends BinaryAttachment {
+
+    /** Version */
+    private final int version;
+
+    /** Asset name */
+    private final String name;
+
+    /** Asset description */
+    private final String description;
+
+    /** Asset quantity (QNT) */
+    private final long quantity;
+
+    /** Number of decimal places */
+    private final int decimals;
+
+    /**
+     * Create an Asset Issuance attachment
+     *
+     * @param       name                    Asset name (maximum length 10)
+     * @param       description             Asset description (maximum length 1000)
+     * @param       quantity                Asset quantity (QNT)
+     * @param       decimals                Number of decimal places
+     */
+    public AssetIssuance(String name, String description, long quantity, int decimals) {
+        if (name == null || description == null)
+            throw new IllegalArgumentException("Required parameter not specified");
+        this.version = 1;
+        this.name = name;
+        this.description = description;
+        this.quantity = quantity;
+        this.decimals = decimals;
+        if (name.length() > 10)
+            throw new IllegalArgumentException("Maximum asset name length is 10");
+        if (description.length() > 1000)
+            throw new IllegalArgumentException("Maximum asset description length is 1000");
+    }
+
+    /**
+     * Create an Asset Issuance attachment from the JSON response
+     *
+     * @param       response                JSON response
+     */
+    public AssetIssuance(PeerResponse response) {
+        this.version = response.getByte("version.AssetIssuance");
+        this.name = response.getString("name");
+        this.description = response.getString("description");
+        this.quantity = response.getLong("quantityQNT");
+        this.decimals = response.getByte("decimals");
+    }
+
+    /**
+     * Create an Asset Issuance attachment from the transaction bytes
+     *
+     * @param       buffer                  Little-endian buffer positioned at the attachment
+     * @param       txVersion               Transaction version
+     * @throws      NxtException            Invalid attachment
+     */
+    public AssetIssuance(ByteBuffer buffer, int txVersion) throws NxtException {
+        this.version = (txVersion>0 ? buffer.get() : 0);
+        this.name = readString(buffer, buffer.get()&0xff, 10);
+        this.description = readString(buffer, buffer.getShort()&0xffff, 1000);
+        this.quantity = buffer.getLong();
+        this.decimals = buffer.get();
+    }
+
+    /**
+     * Return the size of the attachment byte stream
+     *
+     * @return                              Number of bytes
+     */
+    @Override
+    public int getSize() {
+        return (version>0?1:0)+1+utf8Length(name)+2+utf8Length(description)+9;
+    }
+
+    /**
+     * Write the attachment byte stream to a little-endian buffer
+     *
+     * @param       buffer                  Output buffer
+     */
+    @Override
+    public void writeTo(ByteBuffer buffer) {
+        if (version > 0)
+            buffer.put((byte)version);
+        buffer.put((byte)utf8Length(name));
+        putString(buffer, name);
+        buffer.putShort((short)utf8Length(description));
+        putString(buffer, description);
+        buffer.putLong(quantity);
+        buffer.put((byte)decimals);
+    }
+
+    /**
+     * Return the attachment version
+     *
+     * @return                              Version
+     */
+    public int getVersion() {
+        return version;
+    }
+
+    /**
+     * Return the asset name
+     *
+     * @return                              Asset name
+     */
+    public String getName() {
+        return name;
+    }
+
+    /**
+     * Return the asset description
+     *
+     * @return                              Asset description
+     */
+    public String getDescription() {
+        return description;
+    }
+
+    /**
+     * Return the asset quantity (QNT)
+     *
+     * @return                              Asset quantity (QNT)
+     */
+    public long getQuantity() {
+        return quantity;
+    }
+
+    /**
+     * Return the number of decimal places
+     *
+     * @return                              Number of decimal places
+     */
+    public int getDecimals() {
+        return decimals;
+    }
+}
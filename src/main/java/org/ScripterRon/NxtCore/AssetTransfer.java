@@ -0,0 +1,139 @@
+/*
+ * Copyright 2016 Ronald Hoffman.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.ScripterRon.NxtCore;
+
+import java.nio.ByteBuffer;
+
+/**
+ * Attachment for TransactionType.ColoredCoins.ASSET_TRANSFER
+ */
+public class AssetTransfer extends BinaryAttachment {
+
+    /** Version */
+    private final int version;
+
+    /** Asset identifier */
+    private final long assetId;
+
+    /** Asset quantity (QNT) */
+    private final long quantity;
+
+    /** Transfer comment (version 0 attachments only) */
+    private final String comment;
+
+    /**
+     * Create an Asset Transfer attachment
+     *
+     * @param       assetId                 Asset identifier
+     * @param       quantity                Asset quantity (QNT)
+     */
+    public AssetTransfer(long assetId, long quantity) {
+        this.version = 1;
+        this.assetId = assetId;
+        this.quantity = quantity;
+        this.comment = null;
+    }
+
+    /**
+     * Create an Asset Transfer attachment from the JSON response
+     *
+     * @param       response                JSON response
+     * @throws      IdentifierException     Invalid object identifier
+     */
+    public AssetTransfer(PeerResponse response) throws IdentifierException {
+        this.version = response.getByte("version.AssetTransfer");
+        this.assetId = response.getId("asset");
+        this.quantity = response.getLong("quantityQNT");
+        this.comment = (version == 0 ? response.getString("comment") : null);
+    }
+
+    /**
+     * Create an Asset Transfer attachment from the transaction bytes
+     *
+     * @param       buffer                  Little-endian buffer positioned at the attachment
+     * @param       txVersion               Transaction version
+     * @throws      NxtException            Invalid attachment
+     */
+    public AssetTransfer(ByteBuffer buffer, int txVersion) throws NxtException {
+        this.version = (txVersion>0 ? buffer.get() : 0);
+        this.assetId = buffer.getLong();
+        this.quantity = buffer.getLong();
+        this.comment = (version == 0 ? readString(buffer, buffer.getShort()&0xffff, 1000) : null);
+    }
+
+    /**
+     * Return the size of the attachment byte stream
+     *
+     * @return                              Number of bytes
+     */
+    @Override
+    public int getSize() {
+        return (version>0?1:0)+16+(comment!=null ? 2+utf8Length(comment) : 0);
+    }
+
+    /**
+     * Write the attachment byte stream to a little-endian buffer
+     *
+     * @param       buffer                  Output buffer
+     */
+    @Override
+    public void writeTo(ByteBuffer buffer) {
+        if (version > 0)
+            buffer.put((byte)version);
+        buffer.putLong(assetId);
+        buffer.putLong(quantity);
+        if (comment != null) {
+            buffer.putShort((short)utf8Length(comment));
+            putString(buffer, comment);
+        }
+    }
+
+    /**
+     * Return the attachment version
+     *
+     * @return                              Version
+     */
+    public int getVersion() {
+        return version;
+    }
+
+    /**
+     * Return the asset identifier
+     *
+     * @return                              Asset identifier
+     */
+    public long getAssetId() {
+        return assetId;
+    }
+
+    /**
+     * Return the asset quantity (QNT)
+     *
+     * @return                              Asset quantity (QNT)
+     */
+    public long getQuantity() {
+        return quantity;
+    }
+
+    /**
+     * Return the transfer comment
+     *
+     * @return                              Transfer comment or null if there is no comment
+     */
+    public String getComment() {
+        return comment;
+    }
+}
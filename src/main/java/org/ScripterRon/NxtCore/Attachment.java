@@ -15,6 +15,8 @@
  */
 package org.ScripterRon.NxtCore;
 
+import java.nio.ByteBuffer;
+
 /**
  * Transaction attachment
  */
@@ -33,4 +35,22 @@ public interface Attachment {
      * @return                              Byte stream
      */
     public byte[] getBytes();
+
+    /**
+     * Return the size of the attachment byte stream
+     *
+     * @return                              Number of bytes
+     */
+    public default int getSize() {
+        return getBytes().length;
+    }
+
+    /**
+     * Write the attachment byte stream to a little-endian buffer
+     *
+     * @param       buffer                  Output buffer
+     */
+    public default void writeTo(ByteBuffer buffer) {
+        buffer.put(getBytes());
+    }
 }
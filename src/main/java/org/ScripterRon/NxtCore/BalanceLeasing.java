@@ -16,12 +16,11 @@
 package org.ScripterRon.NxtCore;
 
 import java.nio.ByteBuffer;
-import java.nio.ByteOrder;
 
 /**
  * Balance Leasing attachment for TransactionType.AccountControl.EFFECTIVE_BALANCE_LEASING
  */
-public class BalanceLeasing extends AbstractAttachment {
+public class BalanceLeasing extends BinaryAttachment {
 
     /** Attachment version */
     private final int version;
@@ -52,19 +51,37 @@ public class BalanceLeasing extends AbstractAttachment {
     }
 
     /**
-     * Return the attachment byte stream
+     * Create a Balance Leasing attachment from the transaction bytes
      *
-     * @return                              Byte stream
+     * @param       buffer                  Little-endian buffer positioned at the attachment
+     * @param       txVersion               Transaction version
+     * @throws      NxtException            Invalid attachment
+     */
+    public BalanceLeasing(ByteBuffer buffer, int txVersion) throws NxtException {
+        this.version = (txVersion>0 ? buffer.get() : 0);
+        this.period = buffer.getShort()&0xffff;
+    }
+
+    /**
+     * Return the size of the attachment byte stream
+     *
+     * @return                              Number of bytes
+     */
+    @Override
+    public int getSize() {
+        return (version>0?1:0)+2;
+    }
+
+    /**
+     * Write the attachment byte stream to a little-endian buffer
+     *
+     * @param       buffer                  Output buffer
      */
     @Override
-    public byte[] getBytes() {
-        byte[] bytes = new byte[(version>0?1:0)+2];
-        ByteBuffer buf = ByteBuffer.wrap(bytes);
-        buf.order(ByteOrder.LITTLE_ENDIAN);
+    public void writeTo(ByteBuffer buffer) {
         if (version > 0)
-            buf.put((byte)version);
-        buf.putShort((short)period);
-        return bytes;
+            buffer.put((byte)version);
+        buffer.putShort((short)period);
     }
 
     /**
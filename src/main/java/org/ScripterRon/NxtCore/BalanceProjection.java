@@ -0,0 +1,351 @@
+/*
+ * Copyright 2016 Ronald Hoffman.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.ScripterRon.NxtCore;
+
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+
+/**
+ * BalanceProjection maintains account balances in memory by applying the
+ * changes from account ledger entries.
+ *
+ * A balance is identified by the account, the ledger holding and the holding identifier
+ * (the asset or currency identifier, 0 for NXT).  The balances for an account are kept in
+ * a primitive long array which is located using a primitive long hash map, so there is
+ * no object for each balance.  The first entry for a balance sets the balance to the
+ * entry balance and the following entries add the entry change.  The entry balance
+ * is then compared with the projected balance and the balance is corrected if they differ.
+ *
+ * The applied changes are kept for the maximum rollback depth, so the balances can be
+ * returned to an earlier height by subtracting the changes.  The projection is normally
+ * registered as a listener for a LedgerMirror for all accounts, which provides the new
+ * ledger entries as they are polled and reports the rolled back heights.
+ *
+ * reconcile() compares the projected NXT balances for a random sample of accounts with
+ * the confirmed balances returned by the node server and corrects the balances that
+ * have drifted.  The comparison is only valid when the projection has applied the
+ * entries for all of the blocks up to the current block chain height.  The last entry
+ * height does not tell us this since most blocks do not change the monitored balances,
+ * so the projection keeps the block chain height reported by the LedgerMirror poll.
+ */
+public class BalanceProjection implements LedgerMirror.Listener {
+
+    /** Default maximum rollback depth */
+    public static final int DEFAULT_MAX_ROLLBACK = 720;
+
+    /** Balance values for each holding (holding identifier, holding code, balance) */
+    private static final int SLOT_SIZE = 3;
+
+    /** Maximum rollback depth */
+    private final int maxRollback;
+
+    /** Balances by account */
+    private final LongHashMap<long[]> accountMap = new LongHashMap<>();
+
+    /** Account identifiers (used for sampling) */
+    private final LongList accountIds = new LongList();
+
+    /** Random number generator for sampling */
+    private final Random random = new Random();
+
+    /** Journal entry heights */
+    private int[] journalHeights = new int[1024];
+
+    /** Journal entry accounts */
+    private long[] journalAccounts = new long[1024];
+
+    /** Journal entry holding identifiers */
+    private long[] journalHoldings = new long[1024];
+
+    /** Journal entry holding codes */
+    private int[] journalCodes = new int[1024];
+
+    /** Journal entry changes */
+    private long[] journalChanges = new long[1024];
+
+    /** Index of the first journal entry */
+    private int journalStart;
+
+    /** Index following the last journal entry */
+    private int journalEnd;
+
+    /** Height of the last applied entry */
+    private int height = -1;
+
+    /** Block chain height when the last LedgerMirror poll started */
+    private int pollHeight = -1;
+
+    /** Number of balance corrections */
+    private long correctionCount;
+
+    /**
+     * Create a balance projection using the default rollback depth
+     */
+    public BalanceProjection() {
+        this(DEFAULT_MAX_ROLLBACK);
+    }
+
+    /**
+     * Create a balance projection
+     *
+     * @param       maxRollback             Maximum rollback depth
+     */
+    public BalanceProjection(int maxRollback) {
+        this.maxRollback = maxRollback;
+    }
+
+    /**
+     * Return the height of the last applied ledger entry
+     *
+     * @return                              Block height or -1 if no entries have been applied
+     */
+    public synchronized int getHeight() {
+        return height;
+    }
+
+    /**
+     * Return the number of accounts
+     *
+     * @return                              Number of accounts
+     */
+    public synchronized int getAccountCount() {
+        return accountMap.size();
+    }
+
+    /**
+     * Return the number of balance corrections made because a projected balance
+     * did not match the ledger or the node server
+     *
+     * @return                              Number of corrections
+     */
+    public synchronized long getCorrectionCount() {
+        return correctionCount;
+    }
+
+    /**
+     * Return a projected balance
+     *
+     * @param       accountId               Account identifier
+     * @param       holding                 Ledger holding
+     * @param       holdingId               Asset or currency identifier (ignored for NXT holdings)
+     * @return                              Balance or 0 if there are no entries for the balance
+     */
+    public synchronized long getBalance(long accountId, LedgerHolding holding, long holdingId) {
+        long[] balances = accountMap.get(accountId);
+        if (balances == null)
+            return 0;
+        int slot = findSlot(balances, getHoldingId(holding, holdingId), holding.getCode());
+        return (slot >= 0 ? balances[slot+2] : 0);
+    }
+
+    /**
+     * Apply ledger entries (LedgerMirror.Listener interface)
+     *
+     * @param       entries                 Ledger entries in ascending ledger identifier order
+     * @param       chainHeight             Block chain height when the poll started or -1 if
+     *                                      the poll has not completed
+     */
+    @Override
+    public synchronized void entriesAdded(List<LedgerEntry> entries, int chainHeight) {
+        apply(entries);
+        pollHeight = chainHeight;
+    }
+
+    /**
+     * Reverse the changes for rolled back blocks (LedgerMirror.Listener interface)
+     *
+     * @param       height                  Height of the last block that was kept
+     */
+    @Override
+    public synchronized void entriesRemoved(int height) {
+        rollback(height);
+        pollHeight = Math.min(pollHeight, height);
+    }
+
+    /**
+     * Apply ledger entries
+     *
+     * @param       entries                 Ledger entries in ascending ledger identifier order
+     */
+    public synchronized void apply(List<LedgerEntry> entries) {
+        for (LedgerEntry entry : entries) {
+            LedgerHolding holding = entry.getLedgerHolding();
+            if (holding == null || holding == LedgerHolding.UNKNOWN)
+                continue;
+            long accountId = entry.getAccountId();
+            long holdingId = getHoldingId(holding, entry.getLedgerHoldingId());
+            int code = holding.getCode();
+            long[] balances = accountMap.get(accountId);
+            if (balances == null) {
+                balances = new long[0];
+                accountIds.addLong(accountId);
+            }
+            int slot = findSlot(balances, holdingId, code);
+            if (slot < 0) {
+                slot = balances.length;
+                balances = Arrays.copyOf(balances, slot+SLOT_SIZE);
+                balances[slot] = holdingId;
+                balances[slot+1] = code;
+                balances[slot+2] = entry.getBalance();
+                accountMap.put(accountId, balances);
+            } else {
+                balances[slot+2] += entry.getChange();
+                if (balances[slot+2] != entry.getBalance()) {
+                    Nxt.log.debug(String.format("Projected %s balance %d for %s corrected to %d at height %d",
+                            holding, balances[slot+2], Utils.getAccountRsId(accountId),
+                            entry.getBalance(), entry.getHeight()));
+                    balances[slot+2] = entry.getBalance();
+                    correctionCount++;
+                }
+            }
+            addJournalEntry(entry.getHeight(), accountId, holdingId, code, entry.getChange());
+            height = Math.max(height, entry.getHeight());
+        }
+        //
+        // Discard journal entries which can no longer be rolled back
+        //
+        while (journalStart < journalEnd && journalHeights[journalStart] <= height-maxRollback)
+            journalStart++;
+    }
+
+    /**
+     * Reverse the changes for blocks following a block
+     *
+     * @param       rollbackHeight          Height of the last block to keep
+     */
+    public synchronized void rollback(int rollbackHeight) {
+        if (rollbackHeight >= height)
+            return;
+        while (journalEnd > journalStart && journalHeights[journalEnd-1] > rollbackHeight) {
+            journalEnd--;
+            long[] balances = accountMap.get(journalAccounts[journalEnd]);
+            int slot = findSlot(balances, journalHoldings[journalEnd], journalCodes[journalEnd]);
+            balances[slot+2] -= journalChanges[journalEnd];
+        }
+        if (journalStart > 0 && journalHeights[journalStart-1] > rollbackHeight)
+            Nxt.log.warn(String.format("Rollback to height %d exceeds the projection rollback depth", rollbackHeight));
+        height = rollbackHeight;
+    }
+
+    /**
+     * Compare the projected NXT balances for a random sample of accounts with the
+     * confirmed balances returned by the node server and correct the balances which
+     * do not match.  The reconciliation is skipped unless the last LedgerMirror poll
+     * started at the current block chain height and it stops if the block chain height
+     * changes.
+     *
+     * @param       sampleSize              Number of accounts to check
+     * @return                              Number of balances corrected
+     * @throws      NxtException            Unable to issue Nxt API request
+     */
+    public int reconcile(int sampleSize) throws NxtException {
+        int chainHeight = Nxt.getChainState().getBlockCount() - 1;
+        long[] sample;
+        synchronized(this) {
+            if (pollHeight != chainHeight || accountIds.isEmpty())
+                return 0;
+            sample = new long[Math.min(sampleSize, accountIds.size())];
+            for (int i=0; i<sample.length; i++)
+                sample[i] = accountIds.getLong(random.nextInt(accountIds.size()));
+        }
+        int corrected = 0;
+        for (long accountId : sample) {
+            AccountBalance accountBalance = Nxt.getBalance(accountId);
+            if (Nxt.getChainState().getBlockCount()-1 != chainHeight)
+                break;
+            synchronized(this) {
+                long[] balances = accountMap.get(accountId);
+                int slot = (balances != null ? findSlot(balances, 0, LedgerHolding.NXT_BALANCE.getCode()) : -1);
+                if (slot < 0 || pollHeight != chainHeight)
+                    continue;
+                if (balances[slot+2] != accountBalance.getConfirmedBalance()) {
+                    Nxt.log.warn(String.format("Projected balance %d for %s does not match server balance %d",
+                            balances[slot+2], Utils.getAccountRsId(accountId), accountBalance.getConfirmedBalance()));
+                    balances[slot+2] = accountBalance.getConfirmedBalance();
+                    correctionCount++;
+                    corrected++;
+                }
+            }
+        }
+        return corrected;
+    }
+
+    /**
+     * Add a journal entry
+     *
+     * @param       entryHeight             Block height
+     * @param       accountId               Account identifier
+     * @param       holdingId               Holding identifier
+     * @param       code                    Holding code
+     * @param       change                  Balance change
+     */
+    private void addJournalEntry(int entryHeight, long accountId, long holdingId, int code, long change) {
+        if (journalEnd == journalHeights.length) {
+            if (journalStart > journalHeights.length/2) {
+                int count = journalEnd - journalStart;
+                System.arraycopy(journalHeights, journalStart, journalHeights, 0, count);
+                System.arraycopy(journalAccounts, journalStart, journalAccounts, 0, count);
+                System.arraycopy(journalHoldings, journalStart, journalHoldings, 0, count);
+                System.arraycopy(journalCodes, journalStart, journalCodes, 0, count);
+                System.arraycopy(journalChanges, journalStart, journalChanges, 0, count);
+                journalStart = 0;
+                journalEnd = count;
+            } else {
+                int capacity = journalHeights.length*2;
+                journalHeights = Arrays.copyOf(journalHeights, capacity);
+                journalAccounts = Arrays.copyOf(journalAccounts, capacity);
+                journalHoldings = Arrays.copyOf(journalHoldings, capacity);
+                journalCodes = Arrays.copyOf(journalCodes, capacity);
+                journalChanges = Arrays.copyOf(journalChanges, capacity);
+            }
+        }
+        journalHeights[journalEnd] = entryHeight;
+        journalAccounts[journalEnd] = accountId;
+        journalHoldings[journalEnd] = holdingId;
+        journalCodes[journalEnd] = code;
+        journalChanges[journalEnd] = change;
+        journalEnd++;
+    }
+
+    /**
+     * Return the holding identifier used for a balance
+     *
+     * @param       holding                 Ledger holding
+     * @param       holdingId               Ledger holding identifier
+     * @return                              Holding identifier (0 for NXT)
+     */
+    private static long getHoldingId(LedgerHolding holding, long holdingId) {
+        return (holding == LedgerHolding.NXT_BALANCE || holding == LedgerHolding.UNCONFIRMED_NXT_BALANCE ?
+                0 : holdingId);
+    }
+
+    /**
+     * Find a balance in the account balances
+     *
+     * @param       balances                Account balances
+     * @param       holdingId               Holding identifier
+     * @param       code                    Holding code
+     * @return                              Balance slot or -1 if the balance is not found
+     */
+    private static int findSlot(long[] balances, long holdingId, int code) {
+        for (int slot=0; slot<balances.length; slot+=SLOT_SIZE) {
+            if (balances[slot] == holdingId && balances[slot+1] == code)
+                return slot;
+        }
+        return -1;
+    }
+}
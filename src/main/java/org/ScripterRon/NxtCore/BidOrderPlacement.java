@@ -0,0 +1,137 @@
+/*
+ * Copyright 2016 Ronald Hoffman.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.ScripterRon.NxtCore;
+
+import java.nio.ByteBuffer;
+
+/**
+ * Attachment for TransactionType.ColoredCoins.BID_ORDER_PLACEMENT
+ */
+public class BidOrderPlacement extends BinaryAttachment {
+
+    /** Version */
+    private final int version;
+
+    /** Asset identifier */
+    private final long assetId;
+
+    /** Order quantity (QNT) */
+    private final long quantity;
+
+    /** Order price (NQT) */
+    private final long price;
+
+    /**
+     * Create a Bid Order Placement attachment
+     *
+     * @param       assetId                 Asset identifier
+     * @param       quantity                Order quantity (QNT)
+     * @param       price                   Order price (NQT)
+     */
+    public BidOrderPlacement(long assetId, long quantity, long price) {
+        this.version = 1;
+        this.assetId = assetId;
+        this.quantity = quantity;
+        this.price = price;
+    }
+
+    /**
+     * Create a Bid Order Placement attachment from the JSON response
+     *
+     * @param       response                JSON response
+     * @throws      IdentifierException     Invalid object identifier
+     */
+    public BidOrderPlacement(PeerResponse response) throws IdentifierException {
+        this.version = response.getByte("version.BidOrderPlacement");
+        this.assetId = response.getId("asset");
+        this.quantity = response.getLong("quantityQNT");
+        this.price = response.getLong("priceNQT");
+    }
+
+    /**
+     * Create a Bid Order Placement attachment from the transaction bytes
+     *
+     * @param       buffer                  Little-endian buffer positioned at the attachment
+     * @param       txVersion               Transaction version
+     * @throws      NxtException            Invalid attachment
+     */
+    public BidOrderPlacement(ByteBuffer buffer, int txVersion) throws NxtException {
+        this.version = (txVersion>0 ? buffer.get() : 0);
+        this.assetId = buffer.getLong();
+        this.quantity = buffer.getLong();
+        this.price = buffer.getLong();
+    }
+
+    /**
+     * Return the size of the attachment byte stream
+     *
+     * @return                              Number of bytes
+     */
+    @Override
+    public int getSize() {
+        return (version>0?1:0)+24;
+    }
+
+    /**
+     * Write the attachment byte stream to a little-endian buffer
+     *
+     * @param       buffer                  Output buffer
+     */
+    @Override
+    public void writeTo(ByteBuffer buffer) {
+        if (version > 0)
+            buffer.put((byte)version);
+        buffer.putLong(assetId);
+        buffer.putLong(quantity);
+        buffer.putLong(price);
+    }
+
+    /**
+     * Return the attachment version
+     *
+     * @return                              Version
+     */
+    public int getVersion() {
+        return version;
+    }
+
+    /**
+     * Return the asset identifier
+     *
+     * @return                              Asset identifier
+     */
+    public long getAssetId() {
+        return assetId;
+    }
+
+    /**
+     * Return the order quantity (QNT)
+     *
+     * @return                              Order quantity (QNT)
+     */
+    public long getQuantity() {
+        return quantity;
+    }
+
+    /**
+     * Return the order price (NQT)
+     *
+     * @return                              Order price (NQT)
+     */
+    public long getPrice() {
+        return price;
+    }
+}
@@ -0,0 +1,57 @@
+/*
+ * Copyright 2014 Ronald Hoffman.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.ScripterRon.NxtCore;
+
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+
+/**
+ * Attachment which writes its byte stream directly to a buffer.  The library
+ * attachments extend this class and implement getSize() and writeTo().  getBytes()
+ * is built on writeTo().
+ */
+abstract class BinaryAttachment extends AbstractAttachment {
+
+    /**
+     * Return the attachment byte stream
+     *
+     * @return                              Byte stream
+     */
+    @Override
+    public byte[] getBytes() {
+        byte[] bytes = new byte[getSize()];
+        ByteBuffer buf = ByteBuffer.wrap(bytes);
+        buf.order(ByteOrder.LITTLE_ENDIAN);
+        writeTo(buf);
+        return bytes;
+    }
+
+    /**
+     * Return the size of the attachment byte stream
+     *
+     * @return                              Number of bytes
+     */
+    @Override
+    public abstract int getSize();
+
+    /**
+     * Write the attachment byte stream to a little-endian buffer
+     *
+     * @param       buffer                  Output buffer
+     */
+    @Override
+    public abstract void writeTo(ByteBuffer buffer);
+}
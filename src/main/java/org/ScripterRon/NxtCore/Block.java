@@ -15,6 +15,10 @@
  */
 package org.ScripterRon.NxtCore;
 
+import java.nio.BufferOverflowException;
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
 import java.util.ArrayList;
 import java.util.Collections;
 import java.util.List;
@@ -25,6 +29,12 @@ import java.util.Map;
  */
 public class Block {
 
+    /** Length of the transaction hash and status following the transaction bytes */
+    private static final int TX_TRAILER_LENGTH = 33;
+
+    /** Transaction status: the transaction bytes include all of the appendages */
+    private static final byte TX_COMPLETE = 1;
+
     /** Block version */
     private final int version;
 
@@ -34,9 +44,6 @@ public class Block {
     /** Generator identifier */
     private final long generatorId;
 
-    /** Generator Reed-Solomon identifier */
-    private final String generatorRsId;
-
     /** Generator public key */
     private final byte[] generatorPublicKey;
 
@@ -77,7 +84,7 @@ public class Block {
     private final int txCount;
 
     /** Block transactions identifiers */
-    private final List<Long> txIdList;
+    private final LongList txIdList;
 
     /** Block transactions */
     private final List<Transaction> txList;
@@ -102,7 +109,6 @@ public class Block {
         totalFee = response.getLongString("totalFeeNQT");
         timestamp = response.getInt("timestamp");
         generatorId = response.getId("generator");
-        generatorRsId = response.getString("generatorRS");
         generatorPublicKey = response.getHexString("generatorPublicKey");
         generationSignature = response.getHexString("generationSignature");
         blockSignature = response.getHexString("blockSignature");
@@ -118,20 +124,316 @@ public class Block {
         //
         Object param = response.get("transactions");
         if (param == null || !(param instanceof List) || ((List)param).isEmpty()) {
-            txIdList = Collections.emptyList();
+            txIdList = new LongList();
             txList = Collections.emptyList();
         } else if (((List)param).get(0) instanceof Map) {
             List<Map<String, Object>> txResponses = response.getObjectList("transactions");
-            txIdList = new ArrayList<>(txResponses.size());
+            txIdList = new LongList(txResponses.size());
             txList = new ArrayList<>(txResponses.size());
             for (Map<String, Object> txResponse : txResponses) {
                 Transaction tx = new Transaction(new PeerResponse(txResponse));
                 txList.add(tx);
-                txIdList.add(tx.getTransactionId());
+                txIdList.addLong(tx.getTransactionId());
             }
         } else {
-            txIdList = response.getIdList("transactions");
+            txIdList = response.getIdValues("transactions");
+            txList = Collections.emptyList();
+        }
+    }
+
+    /**
+     * Create the block from a block batch entry
+     *
+     * @param       batch                   Block batch
+     * @param       index                   Batch index
+     * @param       txList                  Block transactions
+     */
+    Block(BlockBatch batch, int index, List<Transaction> txList) {
+        version = batch.getVersion(index);
+        blockId = batch.getBlockId(index);
+        previousBlockId = batch.getPreviousBlockId(index);
+        nextBlockId = batch.getNextBlockId(index);
+        totalAmount = batch.getTotalAmount(index);
+        totalFee = batch.getTotalFee(index);
+        timestamp = (int)(batch.getTimestamp(index) - Nxt.GENESIS_TIMESTAMP);
+        generatorId = batch.getGeneratorId(index);
+        generatorPublicKey = batch.getGeneratorPublicKey(index);
+        generationSignature = batch.getGenerationSignature(index);
+        blockSignature = batch.getBlockSignature(index);
+        payloadLength = batch.getPayloadLength(index);
+        payloadHash = batch.getPayloadHash(index);
+        height = batch.getHeight(index);
+        baseTarget = batch.getBaseTarget(index);
+        txCount = batch.getTransactionCount(index);
+        txIdList = batch.getTransactionIds(index);
+        this.txList = txList;
+    }
+
+    /**
+     * Create the block from the block bytes
+     *
+     * @param       buffer                  Little-endian buffer positioned at the block bytes
+     * @throws      BufferUnderflowException    Block bytes are too short
+     * @throws      NxtException            Block transaction is not valid
+     */
+    private Block(ByteBuffer buffer) throws BufferUnderflowException, NxtException {
+        version = buffer.getInt();
+        blockId = buffer.getLong();
+        previousBlockId = buffer.getLong();
+        nextBlockId = 0;
+        generatorId = buffer.getLong();
+        totalAmount = buffer.getLong();
+        totalFee = buffer.getLong();
+        baseTarget = buffer.getLong();
+        timestamp = buffer.getInt();
+        height = buffer.getInt();
+        payloadLength = buffer.getInt();
+        txCount = buffer.getInt();
+        generatorPublicKey = new byte[32];
+        buffer.get(generatorPublicKey);
+        payloadHash = new byte[32];
+        buffer.get(payloadHash);
+        generationSignature = new byte[32];
+        buffer.get(generationSignature);
+        blockSignature = new byte[64];
+        buffer.get(blockSignature);
+        int idCount = buffer.getInt();
+        txIdList = new LongList(idCount);
+        for (int i=0; i<idCount; i++)
+            txIdList.addLong(buffer.getLong());
+        int count = buffer.getInt();
+        if (count == 0) {
             txList = Collections.emptyList();
+        } else {
+            txList = new ArrayList<>(count);
+            for (int i=0; i<count; i++) {
+                int txIndex = buffer.getInt();
+                int length = buffer.getInt();
+                if (length < 0 || length > buffer.remaining()-TX_TRAILER_LENGTH)
+                    throw new BufferUnderflowException();
+                ByteBuffer txBuffer = buffer.slice();
+                txBuffer.limit(length);
+                buffer.position(buffer.position()+length);
+                byte[] txHash = new byte[32];
+                buffer.get(txHash);
+                boolean complete = ((buffer.get()&TX_COMPLETE) != 0);
+                txList.add(new Transaction(txBuffer, getStoredHash(txHash), complete,
+                                           blockId, timestamp, height, txIndex, -1));
+            }
+        }
+    }
+
+    /**
+     * Create a block from the block bytes returned by getBytes() or written by writeTo().
+     * The buffer is positioned after the block bytes upon return.
+     *
+     * The next block identifier and the transaction confirmations are not part of the
+     * block bytes since they change as the block chain grows.  The next block identifier
+     * is 0 and the confirmation count is -1 for a parsed block.
+     *
+     * @param       buffer                  Block bytes
+     * @return                              Block
+     * @throws      NxtException            Block bytes are not valid
+     */
+    public static Block parse(ByteBuffer buffer) throws NxtException {
+        ByteOrder byteOrder = buffer.order();
+        buffer.order(ByteOrder.LITTLE_ENDIAN);
+        try {
+            return new Block(buffer);
+        } catch (BufferUnderflowException exc) {
+            throw new NxtException("Block bytes are too short");
+        } finally {
+            buffer.order(byteOrder);
+        }
+    }
+
+    /**
+     * Create a transaction from the block bytes returned by getBytes() or written by writeTo()
+     *
+     * @param       buffer                  Block bytes
+     * @param       offset                  Transaction offset returned by getTransactionOffsets()
+     * @return                              Transaction
+     * @throws      NxtException            Block bytes are not valid
+     */
+    static Transaction parseTransaction(ByteBuffer buffer, int offset) throws NxtException {
+        ByteBuffer buf = buffer.duplicate().order(ByteOrder.LITTLE_ENDIAN);
+        try {
+            long blockId = buf.getLong(4);
+            int timestamp = buf.getInt(4 + 6*8);
+            int height = buf.getInt(4 + 6*8 + 4);
+            int txIndex = buf.getInt(offset);
+            int length = buf.getInt(offset+4);
+            if (length < 0 || length > buf.limit()-offset-8-TX_TRAILER_LENGTH)
+                throw new NxtException("Block bytes are too short");
+            byte[] txHash = new byte[32];
+            buf.position(offset+8+length);
+            buf.get(txHash);
+            boolean complete = ((buf.get()&TX_COMPLETE) != 0);
+            buf.limit(offset+8+length);
+            buf.position(offset+8);
+            return new Transaction(buf, getStoredHash(txHash), complete,
+                                   blockId, timestamp, height, txIndex, -1);
+        } catch (IndexOutOfBoundsException exc) {
+            throw new NxtException("Block bytes are too short");
+        }
+    }
+
+    /**
+     * Return the stored transaction hash
+     *
+     * @param       txHash                  Transaction hash from the block bytes
+     * @return                              Transaction hash or null if the hash was not stored
+     */
+    private static byte[] getStoredHash(byte[] txHash) {
+        for (byte b : txHash) {
+            if (b != 0)
+                return txHash;
+        }
+        return null;
+    }
+
+    /**
+     * Return the block bytes
+     *
+     * The block bytes contain the block fields, the transaction identifiers and
+     * the transactions.  They are not the same as the NRS block bytes.  The
+     * transaction hash and a status byte follow the bytes for each transaction since
+     * the transaction bytes for a block created from a JSON response do not include
+     * the transaction appendages (see Transaction.hasCompleteBytes()).  The stored
+     * hash keeps the transaction identifier when the bytes are not complete.
+     *
+     * @return                      Block bytes
+     */
+    public byte[] getBytes() {
+        byte[] bytes = new byte[getSize()];
+        writeTo(ByteBuffer.wrap(bytes));
+        return bytes;
+    }
+
+    /**
+     * Return the size of the block bytes
+     *
+     * @return                      Number of bytes
+     */
+    public int getSize() {
+        int length = 4 + 6*8 + 4*4 + 160 + 4 + txIdList.size()*8 + 4;
+        for (Transaction tx : txList)
+            length += 8 + tx.getSize() + TX_TRAILER_LENGTH;
+        return length;
+    }
+
+    /**
+     * Return the offset of each transaction in the block bytes
+     *
+     * @return                      Transaction offsets in the same order as getTransactions()
+     */
+    int[] getTransactionOffsets() {
+        int[] offsets = new int[txList.size()];
+        int offset = 4 + 6*8 + 4*4 + 160 + 4 + txIdList.size()*8 + 4;
+        for (int i=0; i<offsets.length; i++) {
+            offsets[i] = offset;
+            offset += 8 + txList.get(i).getSize() + TX_TRAILER_LENGTH;
+        }
+        return offsets;
+    }
+
+    /**
+     * Return the offset of each transaction in the block bytes returned by getBytes()
+     * or written by writeTo()
+     *
+     * @param       buffer                  Block bytes
+     * @return                              Transaction offsets
+     * @throws      NxtException            Block bytes are not valid
+     */
+    static int[] getTransactionOffsets(ByteBuffer buffer) throws NxtException {
+        ByteBuffer buf = buffer.duplicate().order(ByteOrder.LITTLE_ENDIAN);
+        try {
+            int offset = 4 + 6*8 + 4*4 + 160;
+            offset += 4 + buf.getInt(offset)*8;
+            int count = buf.getInt(offset);
+            if (count < 0 || count > buf.limit()/8)
+                throw new NxtException("Block transaction count is not valid");
+            int[] offsets = new int[count];
+            offset += 4;
+            for (int i=0; i<offsets.length; i++) {
+                offsets[i] = offset;
+                offset += 8 + buf.getInt(offset+4) + TX_TRAILER_LENGTH;
+            }
+            if (offset > buf.limit())
+                throw new NxtException("Block bytes are too short");
+            return offsets;
+        } catch (IndexOutOfBoundsException exc) {
+            throw new NxtException("Block bytes are too short");
+        }
+    }
+
+    /**
+     * Return the block timestamp from the block bytes returned by getBytes() or
+     * written by writeTo()
+     *
+     * @param       buffer                  Block bytes
+     * @return                              Block timestamp in seconds since the genesis block
+     */
+    static int getTimestamp(ByteBuffer buffer) {
+        return buffer.duplicate().order(ByteOrder.LITTLE_ENDIAN).getInt(4 + 6*8);
+    }
+
+    /**
+     * Write the block bytes to a buffer starting at the current buffer position.  The
+     * bytes are written in little-endian order and the buffer byte order is restored
+     * before returning.
+     *
+     * @param       buffer                  Output buffer
+     * @throws      BufferOverflowException Insufficient space in the buffer
+     */
+    public void writeTo(ByteBuffer buffer) throws BufferOverflowException {
+        ByteOrder byteOrder = buffer.order();
+        buffer.order(ByteOrder.LITTLE_ENDIAN);
+        try {
+            buffer.putInt(version);
+            buffer.putLong(blockId);
+            buffer.putLong(previousBlockId);
+            buffer.putLong(generatorId);
+            buffer.putLong(totalAmount);
+            buffer.putLong(totalFee);
+            buffer.putLong(baseTarget);
+            buffer.putInt(timestamp);
+            buffer.putInt(height);
+            buffer.putInt(payloadLength);
+            buffer.putInt(txCount);
+            putBytes(buffer, getGeneratorPublicKey(), 32);
+            putBytes(buffer, getPayloadHash(), 32);
+            putBytes(buffer, getGenerationSignature(), 32);
+            putBytes(buffer, getBlockSignature(), 64);
+            buffer.putInt(txIdList.size());
+            for (int i=0; i<txIdList.size(); i++)
+                buffer.putLong(txIdList.getLong(i));
+            buffer.putInt(txList.size());
+            for (Transaction tx : txList) {
+                buffer.putInt(tx.getTransactionIndex());
+                buffer.putInt(tx.getSize());
+                tx.writeTo(buffer, false);
+                putBytes(buffer, tx.getTransactionHash(), 32);
+                buffer.put(tx.hasCompleteBytes() ? TX_COMPLETE : 0);
+            }
+        } finally {
+            buffer.order(byteOrder);
+        }
+    }
+
+    /**
+     * Write a fixed-length byte field
+     *
+     * @param       buffer                  Output buffer
+     * @param       bytes                   Field bytes or null
+     * @param       length                  Field length
+     */
+    private static void putBytes(ByteBuffer buffer, byte[] bytes, int length) {
+        if (bytes != null && bytes.length == length) {
+            buffer.put(bytes);
+        } else {
+            for (int i=0; i<length; i++)
+                buffer.put((byte)0);
         }
     }
 
@@ -235,6 +537,16 @@ public class Block {
         return txIdList;
     }
 
+    /**
+     * Return the transaction identifiers.  The list will be empty if there
+     * are no transactions in the block.
+     *
+     * @return                      Transaction identifiers
+     */
+    public LongList getTransactionIds() {
+        return txIdList;
+    }
+
     /**
      * Return the block transactions.  The list will be empty of there are no
      * transactions in the block or if the 'getBlock' request did not include
@@ -279,7 +591,7 @@ public class Block {
      * @return                      Block generator identifier
      */
     public String getGeneratorRsId() {
-        return generatorRsId;
+        return Utils.getAccountRsId(generatorId);
     }
 
     /**
@@ -0,0 +1,605 @@
+/*
+ * Copyright 2016 Ronald Hoffman.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.ScripterRon.NxtCore;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * BlockBatch stores a set of blocks in columnar form.
+ *
+ * Each block field is kept in a primitive array indexed by the batch position.  The
+ * generator public key, payload hash, generation signature and block signature are
+ * packed into a byte arena, the transaction identifiers are kept in a single LongList
+ * and the block transactions are kept in a TransactionBatch.  A Block object is
+ * created on demand by getBlock().
+ *
+ * The batch is not synchronized.
+ */
+public class BlockBatch {
+
+    /** Number of arena bytes for each block */
+    private static final int BLOCK_BYTES = 160;
+
+    /** Offset of the generator public key */
+    private static final int GENERATOR_KEY_OFFSET = 0;
+
+    /** Offset of the payload hash */
+    private static final int PAYLOAD_HASH_OFFSET = 32;
+
+    /** Offset of the generation signature */
+    private static final int GENERATION_SIGNATURE_OFFSET = 64;
+
+    /** Offset of the block signature */
+    private static final int BLOCK_SIGNATURE_OFFSET = 96;
+
+    /** Number of blocks */
+    private int count;
+
+    /** Block identifiers */
+    private long[] blockIds;
+
+    /** Previous block identifiers */
+    private long[] previousBlockIds;
+
+    /** Next block identifiers */
+    private long[] nextBlockIds;
+
+    /** Generator identifiers */
+    private long[] generatorIds;
+
+    /** Total amounts */
+    private long[] totalAmounts;
+
+    /** Total fees */
+    private long[] totalFees;
+
+    /** Base targets */
+    private long[] baseTargets;
+
+    /** Block versions */
+    private int[] versions;
+
+    /** Block timestamps (seconds since the genesis block) */
+    private int[] timestamps;
+
+    /** Block heights */
+    private int[] heights;
+
+    /** Payload lengths */
+    private int[] payloadLengths;
+
+    /** Transaction counts */
+    private int[] txCounts;
+
+    /** Start of the block transaction identifiers in the identifier list */
+    private int[] txIdStart;
+
+    /** Start of the block transactions in the transaction batch */
+    private int[] txStart;
+
+    /** Byte arena for the keys, hashes and signatures */
+    private byte[] arena;
+
+    /** Block transaction identifiers */
+    private final LongList txIdList = new LongList();
+
+    /** Block transactions */
+    private final TransactionBatch transactions = new TransactionBatch();
+
+    /**
+     * Create an empty block batch
+     */
+    public BlockBatch() {
+        this(64);
+    }
+
+    /**
+     * Create an empty block batch
+     *
+     * @param       capacity                Initial number of blocks
+     */
+    public BlockBatch(int capacity) {
+        if (capacity < 1)
+            throw new IllegalArgumentException("The capacity must be greater than 0");
+        blockIds = new long[capacity];
+        previousBlockIds = new long[capacity];
+        nextBlockIds = new long[capacity];
+        generatorIds = new long[capacity];
+        totalAmounts = new long[capacity];
+        totalFees = new long[capacity];
+        baseTargets = new long[capacity];
+        versions = new int[capacity];
+        timestamps = new int[capacity];
+        heights = new int[capacity];
+        payloadLengths = new int[capacity];
+        txCounts = new int[capacity];
+        txIdStart = new int[capacity+1];
+        txStart = new int[capacity+1];
+        arena = new byte[capacity*BLOCK_BYTES];
+    }
+
+    /**
+     * Add a block from the JSON response for 'getBlock' or 'getBlocks'
+     *
+     * The block fields are stored directly in the batch without creating a Block
+     * object.  The block transactions are added to the transaction batch if the
+     * response includes the transactions.
+     *
+     * @param       response                Block JSON response
+     * @return                              Batch index
+     * @throws      IdentifierException     Invalid object identifier
+     * @throws      NumberFormatException   Invalid numeric string
+     * @throws      NxtException            Invalid block format
+     */
+    public int add(PeerResponse response) throws IdentifierException, NumberFormatException, NxtException {
+        ensureCapacity(count+1);
+        int index = count;
+        //
+        // Store the block fields.  The block is not part of the batch until the
+        // batch size is incremented.
+        //
+        int offset = index*BLOCK_BYTES;
+        Arrays.fill(arena, offset, offset+BLOCK_BYTES, (byte)0);
+        putHexString(response, "generatorPublicKey", offset+GENERATOR_KEY_OFFSET, 32);
+        putHexString(response, "payloadHash", offset+PAYLOAD_HASH_OFFSET, 32);
+        putHexString(response, "generationSignature", offset+GENERATION_SIGNATURE_OFFSET, 32);
+        putHexString(response, "blockSignature", offset+BLOCK_SIGNATURE_OFFSET, 64);
+        blockIds[index] = response.getId("block");
+        previousBlockIds[index] = response.getId("previousBlock");
+        nextBlockIds[index] = response.getId("nextBlock");
+        generatorIds[index] = response.getId("generator");
+        totalAmounts[index] = response.getLongString("totalAmountNQT");
+        totalFees[index] = response.getLongString("totalFeeNQT");
+        baseTargets[index] = response.getLongString("baseTarget");
+        versions[index] = response.getInt("version");
+        timestamps[index] = response.getInt("timestamp");
+        heights[index] = response.getInt("height");
+        payloadLengths[index] = response.getInt("payloadLength");
+        txCounts[index] = response.getInt("numberOfTransactions");
+        //
+        // Add the block transactions.  The transactions are removed if there is an
+        // error so that a partial block is not left in the batch.
+        //
+        int idCount = txIdList.size();
+        int txCount = transactions.size();
+        Object param = response.get("transactions");
+        try {
+            if (param != null && (param instanceof List) && !((List)param).isEmpty()) {
+                if (((List)param).get(0) instanceof Map) {
+                    for (Map<String, Object> txResponse : response.getObjectList("transactions")) {
+                        int txIndex = transactions.add(new PeerResponse(txResponse));
+                        txIdList.addLong(transactions.getTransactionId(txIndex));
+                    }
+                } else {
+                    LongList idList = response.getIdValues("transactions");
+                    for (int i=0; i<idList.size(); i++)
+                        txIdList.addLong(idList.getLong(i));
+                }
+            }
+        } catch (IdentifierException | NumberFormatException | NxtException exc) {
+            txIdList.subList(idCount, txIdList.size()).clear();
+            transactions.truncate(txCount);
+            throw exc;
+        }
+        txIdStart[index] = idCount;
+        txIdStart[index+1] = txIdList.size();
+        txStart[index] = txCount;
+        txStart[index+1] = transactions.size();
+        count++;
+        return index;
+    }
+
+    /**
+     * Decode a hex string into the byte arena
+     *
+     * @param       response                Block JSON response
+     * @param       key                     JSON key
+     * @param       offset                  Arena offset
+     * @param       length                  Number of bytes
+     * @throws      NxtException            Hex string length is not valid
+     * @throws      NumberFormatException   Invalid hex string
+     */
+    private void putHexString(PeerResponse response, String key, int offset, int length)
+                                            throws NxtException, NumberFormatException {
+        String hex = response.getHexStringValue(key);
+        if (hex == null)
+            return;
+        if (hex.length() != length*2)
+            throw new NxtException(String.format("Block '%s' is not valid", key));
+        Utils.parseHexString(hex, arena, offset);
+    }
+
+    /**
+     * Make sure there is room for the requested number of blocks
+     *
+     * @param       blockCount              Number of blocks
+     */
+    private void ensureCapacity(int blockCount) {
+        if (blockCount <= blockIds.length)
+            return;
+        int capacity = Math.max(blockIds.length*2, blockCount);
+        blockIds = Arrays.copyOf(blockIds, capacity);
+        previousBlockIds = Arrays.copyOf(previousBlockIds, capacity);
+        nextBlockIds = Arrays.copyOf(nextBlockIds, capacity);
+        generatorIds = Arrays.copyOf(generatorIds, capacity);
+        totalAmounts = Arrays.copyOf(totalAmounts, capacity);
+        totalFees = Arrays.copyOf(totalFees, capacity);
+        baseTargets = Arrays.copyOf(baseTargets, capacity);
+        versions = Arrays.copyOf(versions, capacity);
+        timestamps = Arrays.copyOf(timestamps, capacity);
+        heights = Arrays.copyOf(heights, capacity);
+        payloadLengths = Arrays.copyOf(payloadLengths, capacity);
+        txCounts = Arrays.copyOf(txCounts, capacity);
+        txIdStart = Arrays.copyOf(txIdStart, capacity+1);
+        txStart = Arrays.copyOf(txStart, capacity+1);
+        arena = Arrays.copyOf(arena, capacity*BLOCK_BYTES);
+    }
+
+    /**
+     * Release unused capacity
+     */
+    public void trimToSize() {
+        if (count > 0 && count < blockIds.length) {
+            blockIds = Arrays.copyOf(blockIds, count);
+            previousBlockIds = Arrays.copyOf(previousBlockIds, count);
+            nextBlockIds = Arrays.copyOf(nextBlockIds, count);
+            generatorIds = Arrays.copyOf(generatorIds, count);
+            totalAmounts = Arrays.copyOf(totalAmounts, count);
+            totalFees = Arrays.copyOf(totalFees, count);
+            baseTargets = Arrays.copyOf(baseTargets, count);
+            versions = Arrays.copyOf(versions, count);
+            timestamps = Arrays.copyOf(timestamps, count);
+            heights = Arrays.copyOf(heights, count);
+            payloadLengths = Arrays.copyOf(payloadLengths, count);
+            txCounts = Arrays.copyOf(txCounts, count);
+            txIdStart = Arrays.copyOf(txIdStart, count+1);
+            txStart = Arrays.copyOf(txStart, count+1);
+            arena = Arrays.copyOf(arena, count*BLOCK_BYTES);
+        }
+        txIdList.trimToSize();
+        transactions.trimToSize();
+    }
+
+    /**
+     * Return the number of blocks in the batch
+     *
+     * @return                              Number of blocks
+     */
+    public int size() {
+        return count;
+    }
+
+    /**
+     * Return a Block object for a batch entry
+     *
+     * @param       index                   Batch index
+     * @return                              Block
+     * @throws      NxtException            Block transaction is not valid
+     */
+    public Block getBlock(int index) throws NxtException {
+        checkIndex(index);
+        int start = txStart[index];
+        int end = txStart[index+1];
+        List<Transaction> txList = new ArrayList<>(end-start);
+        for (int i=start; i<end; i++)
+            txList.add(transactions.getTransaction(i));
+        return new Block(this, index, txList);
+    }
+
+    /**
+     * Return the transaction batch containing the block transactions.  The batch is
+     * empty if the blocks were added without transactions.
+     *
+     * @return                              Transaction batch
+     */
+    public TransactionBatch getTransactions() {
+        return transactions;
+    }
+
+    /**
+     * Return the index of the first block transaction in the transaction batch
+     *
+     * @param       index                   Batch index
+     * @return                              Transaction batch index
+     */
+    public int getFirstTransaction(int index) {
+        checkIndex(index);
+        return txStart[index];
+    }
+
+    /**
+     * Return the number of block transactions in the transaction batch
+     *
+     * @param       index                   Batch index
+     * @return                              Number of transactions
+     */
+    public int getTransactionBatchCount(int index) {
+        checkIndex(index);
+        return txStart[index+1] - txStart[index];
+    }
+
+    /**
+     * Return the block transaction identifiers
+     *
+     * @param       index                   Batch index
+     * @return                              Transaction identifiers
+     */
+    public LongList getTransactionIds(int index) {
+        checkIndex(index);
+        int start = txIdStart[index];
+        int end = txIdStart[index+1];
+        LongList idList = new LongList(end-start);
+        for (int i=start; i<end; i++)
+            idList.addLong(txIdList.getLong(i));
+        return idList;
+    }
+
+    /**
+     * Return the block identifier
+     *
+     * @param       index                   Batch index
+     * @return                              Block identifier
+     */
+    public long getBlockId(int index) {
+        checkIndex(index);
+        return blockIds[index];
+    }
+
+    /**
+     * Return the previous block identifier
+     *
+     * @param       index                   Batch index
+     * @return                              Previous block identifier
+     */
+    public long getPreviousBlockId(int index) {
+        checkIndex(index);
+        return previousBlockIds[index];
+    }
+
+    /**
+     * Return the next block identifier
+     *
+     * @param       index                   Batch index
+     * @return                              Next block identifier
+     */
+    public long getNextBlockId(int index) {
+        checkIndex(index);
+        return nextBlockIds[index];
+    }
+
+    /**
+     * Return the block generator identifier
+     *
+     * @param       index                   Batch index
+     * @return                              Generator identifier
+     */
+    public long getGeneratorId(int index) {
+        checkIndex(index);
+        return generatorIds[index];
+    }
+
+    /**
+     * Return the total amount
+     *
+     * @param       index                   Batch index
+     * @return                              Total amount
+     */
+    public long getTotalAmount(int index) {
+        checkIndex(index);
+        return totalAmounts[index];
+    }
+
+    /**
+     * Return the total fee
+     *
+     * @param       index                   Batch index
+     * @return                              Total fee
+     */
+    public long getTotalFee(int index) {
+        checkIndex(index);
+        return totalFees[index];
+    }
+
+    /**
+     * Return the base target
+     *
+     * @param       index                   Batch index
+     * @return                              Base target
+     */
+    public long getBaseTarget(int index) {
+        checkIndex(index);
+        return baseTargets[index];
+    }
+
+    /**
+     * Return the block version
+     *
+     * @param       index                   Batch index
+     * @return                              Block version
+     */
+    public int getVersion(int index) {
+        checkIndex(index);
+        return versions[index];
+    }
+
+    /**
+     * Return the block timestamp in seconds since the epoch (January 1, 1970)
+     *
+     * @param       index                   Batch index
+     * @return                              Block timestamp
+     */
+    public long getTimestamp(int index) {
+        checkIndex(index);
+        return timestamps[index] + Nxt.GENESIS_TIMESTAMP;
+    }
+
+    /**
+     * Return the block height
+     *
+     * @param       index                   Batch index
+     * @return                              Block height
+     */
+    public int getHeight(int index) {
+        checkIndex(index);
+        return heights[index];
+    }
+
+    /**
+     * Return the payload length
+     *
+     * @param       index                   Batch index
+     * @return                              Payload length
+     */
+    public int getPayloadLength(int index) {
+        checkIndex(index);
+        return payloadLengths[index];
+    }
+
+    /**
+     * Return the number of transactions in the block
+     *
+     * @param       index                   Batch index
+     * @return                              Number of transactions
+     */
+    public int getTransactionCount(int index) {
+        checkIndex(index);
+        return txCounts[index];
+    }
+
+    /**
+     * Return the generator public key
+     *
+     * @param       index                   Batch index
+     * @return                              Generator public key
+     */
+    public byte[] getGeneratorPublicKey(int index) {
+        return getArenaBytes(index, GENERATOR_KEY_OFFSET, 32);
+    }
+
+    /**
+     * Return the payload hash
+     *
+     * @param       index                   Batch index
+     * @return                              Payload hash
+     */
+    public byte[] getPayloadHash(int index) {
+        return getArenaBytes(index, PAYLOAD_HASH_OFFSET, 32);
+    }
+
+    /**
+     * Return the generation signature
+     *
+     * @param       index                   Batch index
+     * @return                              Generation signature
+     */
+    public byte[] getGenerationSignature(int index) {
+        return getArenaBytes(index, GENERATION_SIGNATURE_OFFSET, 32);
+    }
+
+    /**
+     * Return the block signature
+     *
+     * @param       index                   Batch index
+     * @return                              Block signature
+     */
+    public byte[] getBlockSignature(int index) {
+        return getArenaBytes(index, BLOCK_SIGNATURE_OFFSET, 64);
+    }
+
+    /**
+     * Copy bytes from the byte arena
+     *
+     * @param       index                   Batch index
+     * @param       offset                  Offset within the block bytes
+     * @param       length                  Number of bytes
+     * @return                              Byte array
+     */
+    private byte[] getArenaBytes(int index, int offset, int length) {
+        checkIndex(index);
+        int start = index*BLOCK_BYTES + offset;
+        return Arrays.copyOfRange(arena, start, start+length);
+    }
+
+    /**
+     * Return the batch index for a block height
+     *
+     * @param       height                  Block height
+     * @return                              Batch index or -1 if the block is not in the batch
+     */
+    public int indexOfHeight(int height) {
+        for (int i=0; i<count; i++) {
+            if (heights[i] == height)
+                return i;
+        }
+        return -1;
+    }
+
+    /**
+     * Return the total fee for the batch
+     *
+     * @return                              Total fee
+     */
+    public long getTotalFee() {
+        long total = 0;
+        for (int i=0; i<count; i++)
+            total += totalFees[i];
+        return total;
+    }
+
+    /**
+     * Return the number of blocks generated by an account
+     *
+     * @param       generatorId             Generator account identifier
+     * @return                              Number of blocks
+     */
+    public int countGenerated(long generatorId) {
+        int matches = 0;
+        for (int i=0; i<count; i++) {
+            if (generatorIds[i] == generatorId)
+                matches++;
+        }
+        return matches;
+    }
+
+    /**
+     * Return the fees earned by a block generator
+     *
+     * @param       generatorId             Generator account identifier
+     * @return                              Total fee for the generated blocks
+     */
+    public long getGeneratedFees(long generatorId) {
+        long total = 0;
+        for (int i=0; i<count; i++) {
+            if (generatorIds[i] == generatorId)
+                total += totalFees[i];
+        }
+        return total;
+    }
+
+    /**
+     * Verify a batch index
+     *
+     * @param       index                   Batch index
+     * @throws      IndexOutOfBoundsException   Index is not valid
+     */
+    private void checkIndex(int index) {
+        if (index < 0 || index >= count)
+            throw new IndexOutOfBoundsException("Index "+index+", Size "+count);
+    }
+}
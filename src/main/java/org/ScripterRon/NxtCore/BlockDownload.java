@@ -0,0 +1,420 @@
+/*
+ * Copyright 2016 Ronald Hoffman.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.ScripterRon.NxtCore;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.TreeMap;
+import java.util.concurrent.CompletionService;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorCompletionService;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+/**
+ * BlockDownload fetches a range of blocks using concurrent requests.
+ *
+ * The height range is split into windows and each window is requested from one of
+ * the configured node servers.  The default node server specified by Nxt.init() is used
+ * if no node servers have been added.  The number of concurrent requests is limited and
+ * the completed windows are passed to the consumer in ascending height order.  A failed
+ * request is issued again using the next node server.
+ *
+ * The window size is adjusted after each request so that a request takes about
+ * two seconds and returns no more than 2MB of block data.  The download rate is logged
+ * every 10 seconds and is available from getBlocksPerSecond().
+ *
+ * The node servers may be on different forks near the top of the block chain, so
+ * the download should be limited to blocks which can no longer be rolled back.
+ */
+public class BlockDownload {
+
+    /** Default maximum number of concurrent requests */
+    public static final int DEFAULT_MAX_REQUESTS = 4;
+
+    /** Default maximum number of blocks in a request */
+    public static final int DEFAULT_MAX_PAGE_SIZE = 100;
+
+    /** Minimum number of blocks in a request */
+    private static final int MIN_PAGE_SIZE = 10;
+
+    /** Target request time (milliseconds) */
+    private static final double TARGET_LATENCY = 2000;
+
+    /** Target block data size for a request */
+    private static final double TARGET_RESPONSE_SIZE = 2*1024*1024;
+
+    /** Number of attempts for each node server before a window download fails */
+    private static final int MAX_ATTEMPTS = 3;
+
+    /** Download rate report interval (nanoseconds) */
+    private static final long REPORT_INTERVAL = 10000000000L;
+
+    /** Node servers */
+    private final List<Node> nodes = new ArrayList<>();
+
+    /** Maximum number of concurrent requests */
+    private final int maxRequests;
+
+    /** Maximum number of blocks in a request */
+    private final int maxPageSize;
+
+    /** Current number of blocks in a request */
+    private volatile int pageSize;
+
+    /** Download rate */
+    private volatile double blocksPerSecond;
+
+    /**
+     * Create a block download using the default limits
+     */
+    public BlockDownload() {
+        this(DEFAULT_MAX_REQUESTS, DEFAULT_MAX_PAGE_SIZE);
+    }
+
+    /**
+     * Create a block download
+     *
+     * The node server limits the number of blocks returned for a request unless the
+     * administrator password is supplied.  The default limit is 100 blocks.
+     *
+     * @param       maxRequests             Maximum number of concurrent requests
+     * @param       maxPageSize             Maximum number of blocks in a request
+     */
+    public BlockDownload(int maxRequests, int maxPageSize) {
+        if (maxRequests < 1 || maxPageSize < MIN_PAGE_SIZE)
+            throw new IllegalArgumentException(String.format(
+                    "Request limit must be at least 1 and page size must be at least %d", MIN_PAGE_SIZE));
+        this.maxRequests = maxRequests;
+        this.maxPageSize = maxPageSize;
+        this.pageSize = maxPageSize;
+    }
+
+    /**
+     * Add a node server.  The node server uses the security settings and timeouts
+     * specified by Nxt.init().
+     *
+     * @param       hostName                Host name or IP address of the node server
+     * @param       apiPort                 Port for the node server
+     */
+    public synchronized void addNode(String hostName, int apiPort) {
+        nodes.add(new Node(hostName, apiPort));
+    }
+
+    /**
+     * Return the download rate for the current or most recent download
+     *
+     * @return                              Blocks per second
+     */
+    public double getBlocksPerSecond() {
+        return blocksPerSecond;
+    }
+
+    /**
+     * Return the current number of blocks in a request
+     *
+     * @return                              Page size
+     */
+    public int getPageSize() {
+        return pageSize;
+    }
+
+    /**
+     * Download a range of blocks
+     *
+     * The consumer is called with each window of blocks in ascending height order.  The
+     * download stops when the consumer does not accept a window.
+     *
+     * @param       fromHeight              First block height
+     * @param       toHeight                Last block height
+     * @param       adminPW                 Administrator password
+     * @param       consumer                Block consumer
+     * @return                              Number of blocks accepted by the consumer
+     * @throws      IOException             Consumer is unable to process the blocks
+     * @throws      NxtException            Unable to download the blocks
+     */
+    public int download(int fromHeight, int toHeight, String adminPW, Consumer consumer)
+                                            throws IOException, NxtException {
+        if (toHeight < fromHeight)
+            return 0;
+        List<Node> nodeList;
+        synchronized(this) {
+            nodeList = (nodes.isEmpty() ? Collections.singletonList(new Node(null, 0)) : new ArrayList<>(nodes));
+        }
+        ExecutorService executor = Executors.newFixedThreadPool(maxRequests, runnable -> {
+            Thread thread = new Thread(runnable, "NxtCore block download");
+            thread.setDaemon(true);
+            return thread;
+        });
+        CompletionService<Window> completionService = new ExecutorCompletionService<>(executor);
+        TreeMap<Integer, Window> completed = new TreeMap<>();
+        int nextHeight = fromHeight;
+        int deliverHeight = fromHeight;
+        int nextNode = 0;
+        int active = 0;
+        int accepted = 0;
+        long lastBlockId = 0;
+        long startTime = System.nanoTime();
+        long reportTime = startTime;
+        blocksPerSecond = 0;
+        try {
+            while (deliverHeight <= toHeight) {
+                //
+                // Issue requests up to the concurrency limit.  The number of completed windows
+                // waiting for an earlier window is limited to bound memory usage.
+                //
+                while (active < maxRequests && nextHeight <= toHeight && completed.size() < 2*maxRequests) {
+                    Window window = new Window(nextHeight, Math.min(nextHeight+pageSize-1, toHeight), nextNode);
+                    nextNode = (nextNode+1) % nodeList.size();
+                    completionService.submit(() -> fetch(window, nodeList.get(window.nodeIndex), adminPW));
+                    nextHeight = window.toHeight + 1;
+                    active++;
+                }
+                //
+                // Process the next completed request and issue a failed request again
+                // using the next node server
+                //
+                Window window = completionService.take().get();
+                active--;
+                if (window.error != null) {
+                    if (++window.attempts >= MAX_ATTEMPTS*nodeList.size())
+                        throw window.error;
+                    window.nodeIndex = (window.nodeIndex+1) % nodeList.size();
+                    Nxt.log.warn(String.format("Retrying blocks %d-%d using %s: %s", window.fromHeight,
+                            window.toHeight, nodeList.get(window.nodeIndex), window.error.getMessage()));
+                    completionService.submit(() -> fetch(window, nodeList.get(window.nodeIndex), adminPW));
+                    active++;
+                    continue;
+                }
+                completed.put(window.fromHeight, window);
+                //
+                // Pass the completed windows to the consumer in height order
+                //
+                while (!completed.isEmpty() && completed.firstKey() == deliverHeight) {
+                    List<Block> blocks = completed.pollFirstEntry().getValue().blocks;
+                    if (deliverHeight > fromHeight && blocks.get(0).getPreviousBlockId() != lastBlockId)
+                        throw new NxtException(String.format("Block at height %d does not connect to the previous block",
+                                                             deliverHeight));
+                    if (!consumer.blocksReceived(blocks))
+                        return accepted;
+                    accepted += blocks.size();
+                    lastBlockId = blocks.get(blocks.size()-1).getBlockId();
+                    deliverHeight += blocks.size();
+                    long now = System.nanoTime();
+                    blocksPerSecond = accepted*1.0e9/Math.max(now-startTime, 1);
+                    if (now-reportTime >= REPORT_INTERVAL) {
+                        Nxt.log.info(String.format("Downloaded %d of %d blocks: %.1f blocks/sec, page size %d",
+                                accepted, toHeight-fromHeight+1, blocksPerSecond, pageSize));
+                        reportTime = now;
+                    }
+                }
+            }
+        } catch (InterruptedException exc) {
+            throw new NxtException("Block download interrupted", exc);
+        } catch (ExecutionException exc) {
+            throw new NxtException("Block download task failed", exc.getCause());
+        } finally {
+            executor.shutdownNow();
+        }
+        Nxt.log.info(String.format("Downloaded %d blocks in %.1f seconds: %.1f blocks/sec",
+                accepted, (System.nanoTime()-startTime)/1.0e9, blocksPerSecond));
+        return accepted;
+    }
+
+    /**
+     * Fetch the blocks for a window
+     *
+     * The window blocks are requested by index relative to the top of the node block
+     * chain, so the node chain height is obtained again if the node block chain has
+     * changed since it was last obtained.
+     *
+     * @param       window                  Download window
+     * @param       node                    Node server
+     * @param       adminPW                 Administrator password
+     * @return                              Download window containing the blocks or the error
+     */
+    private Window fetch(Window window, Node node, String adminPW) {
+        window.error = null;
+        try {
+            int count = window.toHeight - window.fromHeight + 1;
+            int height = node.getChainHeight(false);
+            for (int i=0; i<2; i++) {
+                if (height < window.toHeight)
+                    height = node.getChainHeight(true);
+                if (height < window.toHeight)
+                    throw new NxtException(String.format("%s does not have block %d", node, window.toHeight));
+                long startTime = System.nanoTime();
+                List<Block> blocks = node.getBlocks(height-window.toHeight, height-window.fromHeight, adminPW);
+                long elapsed = System.nanoTime() - startTime;
+                Collections.sort(blocks, (b1, b2) -> b1.getHeight() - b2.getHeight());
+                if (blocks.size() == count && blocks.get(0).getHeight() == window.fromHeight &&
+                                              blocks.get(count-1).getHeight() == window.toHeight) {
+                    long size = blocks.get(0).getSize();
+                    for (int j=1; j<count; j++) {
+                        Block block = blocks.get(j);
+                        if (block.getPreviousBlockId() != blocks.get(j-1).getBlockId())
+                            throw new NxtException(String.format("Block at height %d from %s does not connect to the previous block",
+                                                                 block.getHeight(), node));
+                        size += block.getSize();
+                    }
+                    adjustPageSize(count, elapsed, size);
+                    window.blocks = blocks;
+                    return window;
+                }
+                height = node.getChainHeight(true);
+            }
+            throw new NxtException(String.format("Block chain for %s changed during the request", node));
+        } catch (NxtException exc) {
+            window.error = exc;
+        }
+        return window;
+    }
+
+    /**
+     * Adjust the page size using the response time and size for the last request
+     *
+     * @param       count                   Number of blocks
+     * @param       elapsed                 Response time (nanoseconds)
+     * @param       size                    Block data size
+     */
+    private synchronized void adjustPageSize(int count, long elapsed, long size) {
+        double latencyLimit = TARGET_LATENCY/(Math.max(elapsed, 1)/1.0e6/count);
+        double sizeLimit = TARGET_RESPONSE_SIZE/(Math.max(size, 1)/(double)count);
+        double target = Math.min(latencyLimit, sizeLimit);
+        pageSize = (int)Math.max(Math.min((pageSize+target)/2, maxPageSize), MIN_PAGE_SIZE);
+    }
+
+    /**
+     * The block consumer is called with the downloaded blocks
+     */
+    public interface Consumer {
+
+        /**
+         * Process the next window of blocks
+         *
+         * @param       blocks                  Blocks in ascending height order
+         * @return                              TRUE to continue the download or FALSE to stop the download
+         * @throws      IOException             Unable to process the blocks
+         * @throws      NxtException            Unable to process the blocks
+         */
+        boolean blocksReceived(List<Block> blocks) throws IOException, NxtException;
+    }
+
+    /**
+     * Download window
+     */
+    private static class Window {
+
+        /** First block height */
+        private final int fromHeight;
+
+        /** Last block height */
+        private final int toHeight;
+
+        /** Node server index */
+        private int nodeIndex;
+
+        /** Number of failed attempts */
+        private int attempts;
+
+        /** Downloaded blocks */
+        private List<Block> blocks;
+
+        /** Download error */
+        private NxtException error;
+
+        /**
+         * Create a download window
+         *
+         * @param       fromHeight              First block height
+         * @param       toHeight                Last block height
+         * @param       nodeIndex               Node server index
+         */
+        private Window(int fromHeight, int toHeight, int nodeIndex) {
+            this.fromHeight = fromHeight;
+            this.toHeight = toHeight;
+            this.nodeIndex = nodeIndex;
+        }
+    }
+
+    /**
+     * Node server
+     */
+    private static class Node {
+
+        /** Host name or null for the default node server */
+        private final String hostName;
+
+        /** API port */
+        private final int apiPort;
+
+        /** Block chain height or -1 if not known */
+        private int chainHeight = -1;
+
+        /**
+         * Create a node server
+         *
+         * @param       hostName                Host name or null for the default node server
+         * @param       apiPort                 API port
+         */
+        private Node(String hostName, int apiPort) {
+            this.hostName = hostName;
+            this.apiPort = apiPort;
+        }
+
+        /**
+         * Return the node block chain height
+         *
+         * @param       refresh                 TRUE to get the current height from the node server
+         * @return                              Block chain height
+         * @throws      NxtException            Unable to issue Nxt API request
+         */
+        private synchronized int getChainHeight(boolean refresh) throws NxtException {
+            if (refresh || chainHeight < 0) {
+                ChainState chainState = (hostName != null ? Nxt.getChainState(hostName, apiPort) :
+                                                            Nxt.getChainState());
+                chainHeight = chainState.getBlockCount() - 1;
+            }
+            return chainHeight;
+        }
+
+        /**
+         * Get a list of blocks from the node server
+         *
+         * @param       firstIndex              Start index (chain head is index 0)
+         * @param       lastIndex               Stop index
+         * @param       adminPW                 Administrator password
+         * @return                              Block list
+         * @throws      NxtException            Unable to issue Nxt API request
+         */
+        private List<Block> getBlocks(int firstIndex, int lastIndex, String adminPW) throws NxtException {
+            return (hostName != null ? Nxt.getBlocks(hostName, apiPort, firstIndex, lastIndex, true, adminPW) :
+                                       Nxt.getBlocks(firstIndex, lastIndex, true, adminPW));
+        }
+
+        /**
+         * Return the node server description
+         *
+         * @return                              Description
+         */
+        @Override
+        public String toString() {
+            return (hostName != null ? String.format("node %s:%d", hostName, apiPort) : "default node");
+        }
+    }
+}
@@ -0,0 +1,507 @@
+/*
+ * Copyright 2016 Ronald Hoffman.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.ScripterRon.NxtCore;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.BufferOverflowException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.zip.CRC32;
+
+/**
+ * BlockStore is a local append-only store for blocks and their transactions.
+ *
+ * The block bytes (see Block.writeTo()) are appended to fixed-size segment files which
+ * are memory-mapped, so a stored block is read without copying the data.  The index
+ * file contains the segment position of each block by height and is read when the
+ * store is opened, so restarting the application does not require the segments to be
+ * scanned.  Each block record includes a checksum and records which were not completely
+ * written before a failure are discarded when the store is opened.
+ *
+ * The store contains a contiguous range of blocks starting with the first block added
+ * to the store.  sync() adds new blocks from the node server and rolls back stored blocks
+ * that are no longer part of the server block chain.
+ *
+ * Segment file layout:
+ *   - Block records
+ *
+ * Block record layout:
+ *   - Record length (4 bytes, the length of the block bytes)
+ *   - Block bytes
+ *   - CRC32 of the block bytes (4 bytes)
+ *
+ * Index file layout:
+ *   - Magic number (4 bytes)
+ *   - Version (4 bytes)
+ *   - Height of the first block (4 bytes)
+ *   - Segment size (4 bytes)
+ *   - Record position for each block (8 bytes: segment number in the high-order
+ *     32 bits and segment offset in the low-order 32 bits)
+ *
+ * All numeric values are little-endian.
+ */
+public class BlockStore {
+
+    /** Default segment size */
+    public static final int DEFAULT_SEGMENT_SIZE = 64*1024*1024;
+
+    /** Index file magic number */
+    private static final int MAGIC = 0x4e584253;
+
+    /** Index file version */
+    private static final int VERSION = 3;
+
+    /** Index file header length */
+    private static final int HEADER_LENGTH = 16;
+
+    /** Offset of the block identifier in the block bytes */
+    private static final int BLOCK_ID_OFFSET = 4;
+
+    /** Index file name */
+    private static final String INDEX_NAME = "blocks.idx";
+
+    /** Store directory */
+    private final File directory;
+
+    /** Segment size */
+    private final int segmentSize;
+
+    /** Index file */
+    private final RandomAccessFile indexFile;
+
+    /** Index file channel */
+    private final FileChannel indexChannel;
+
+    /** Mapped segments */
+    private final List<MappedByteBuffer> segments = new ArrayList<>();
+
+    /** Record positions by height */
+    private long[] positions = new long[1024];
+
+    /** Number of stored blocks */
+    private int blockCount;
+
+    /** Height of the first stored block */
+    private int firstHeight;
+
+    /** Identifier of the last stored block */
+    private long lastBlockId;
+
+    /** Current segment */
+    private int writeSegment;
+
+    /** Current segment offset */
+    private int writeOffset;
+
+    /** Store is closed */
+    private boolean closed;
+
+    /**
+     * Open the block store
+     *
+     * @param       directory               Store directory
+     * @throws      IOException             Unable to open the store
+     */
+    public BlockStore(File directory) throws IOException {
+        this(directory, DEFAULT_SEGMENT_SIZE);
+    }
+
+    /**
+     * Open the block store.  The segment size is ignored for an existing store.
+     *
+     * @param       directory               Store directory
+     * @param       segmentSize             Segment size for a new store
+     * @throws      IOException             Unable to open the store
+     */
+    public BlockStore(File directory, int segmentSize) throws IOException {
+        if (segmentSize < 64*1024)
+            throw new IllegalArgumentException("The minimum segment size is 65536");
+        if (!directory.exists() && !directory.mkdirs())
+            throw new IOException("Unable to create directory " + directory.getPath());
+        this.directory = directory;
+        indexFile = new RandomAccessFile(new File(directory, INDEX_NAME), "rw");
+        indexChannel = indexFile.getChannel();
+        try {
+            ByteBuffer header = ByteBuffer.allocate(HEADER_LENGTH);
+            header.order(ByteOrder.LITTLE_ENDIAN);
+            if (indexChannel.size() < HEADER_LENGTH) {
+                header.putInt(MAGIC).putInt(VERSION).putInt(0).putInt(segmentSize);
+                header.flip();
+                indexChannel.write(header, 0);
+                indexChannel.truncate(HEADER_LENGTH);
+                indexChannel.force(true);
+                this.segmentSize = segmentSize;
+            } else {
+                readFully(header, 0);
+                header.flip();
+                if (header.getInt() != MAGIC || header.getInt() != VERSION)
+                    throw new IOException("Block store index is not valid");
+                firstHeight = header.getInt();
+                this.segmentSize = header.getInt();
+                loadIndex();
+            }
+        } catch (IOException exc) {
+            indexFile.close();
+            throw exc;
+        }
+    }
+
+    /**
+     * Load the index and verify the last stored block
+     *
+     * @throws      IOException             Unable to read the index
+     */
+    private void loadIndex() throws IOException {
+        int count = (int)((indexChannel.size() - HEADER_LENGTH) / 8);
+        ByteBuffer buffer = indexChannel.map(FileChannel.MapMode.READ_ONLY, HEADER_LENGTH, count*8L);
+        buffer.order(ByteOrder.LITTLE_ENDIAN);
+        positions = new long[Math.max(count+1024, 1024)];
+        for (int i=0; i<count; i++)
+            positions[i] = buffer.getLong();
+        //
+        // Discard index entries for incomplete records
+        //
+        while (count > 0) {
+            ByteBuffer record = getRecord(positions[count-1]);
+            if (record != null) {
+                lastBlockId = record.getLong(BLOCK_ID_OFFSET);
+                writeSegment = (int)(positions[count-1]>>>32);
+                writeOffset = (int)positions[count-1] + 8 + record.remaining();
+                break;
+            }
+            Nxt.log.warn(String.format("Discarding incomplete block record at height %d", firstHeight+count-1));
+            count--;
+        }
+        blockCount = count;
+        indexChannel.truncate(HEADER_LENGTH + count*8L);
+    }
+
+    /**
+     * Return the mapped segment, creating the segment file if necessary
+     *
+     * @param       segment                 Segment number
+     * @return                              Mapped segment
+     * @throws      IOException             Unable to map the segment
+     */
+    private MappedByteBuffer getSegment(int segment) throws IOException {
+        while (segments.size() <= segment) {
+            File file = new File(directory, String.format("blocks-%05d.dat", segments.size()));
+            try (RandomAccessFile segmentFile = new RandomAccessFile(file, "rw")) {
+                if (segmentFile.length() < segmentSize)
+                    segmentFile.setLength(segmentSize);
+                MappedByteBuffer buffer = segmentFile.getChannel().map(FileChannel.MapMode.READ_WRITE, 0,
+                                                                       segmentSize);
+                buffer.order(ByteOrder.LITTLE_ENDIAN);
+                segments.add(buffer);
+            }
+        }
+        return segments.get(segment);
+    }
+
+    /**
+     * Return a block record.  The returned buffer is a slice of the mapped segment
+     * containing the block bytes.
+     *
+     * @param       position                Record position
+     * @return                              Block bytes or null if the record is not valid
+     * @throws      IOException             Unable to map the segment
+     */
+    private ByteBuffer getRecord(long position) throws IOException {
+        int segment = (int)(position>>>32);
+        int offset = (int)position;
+        File file = new File(directory, String.format("blocks-%05d.dat", segment));
+        if (!file.exists() || offset < 0 || offset > segmentSize-8)
+            return null;
+        ByteBuffer buffer = getSegment(segment).duplicate();
+        buffer.order(ByteOrder.LITTLE_ENDIAN);
+        int length = buffer.getInt(offset);
+        if (length <= 0 || length > segmentSize-offset-8)
+            return null;
+        int checksum = buffer.getInt(offset+4+length);
+        buffer.position(offset+4);
+        buffer.limit(offset+4+length);
+        ByteBuffer record = buffer.slice();
+        CRC32 crc = new CRC32();
+        crc.update(record.duplicate());
+        if ((int)crc.getValue() != checksum)
+            return null;
+        return record.asReadOnlyBuffer().order(ByteOrder.LITTLE_ENDIAN);
+    }
+
+    /**
+     * Read bytes from the index file
+     *
+     * @param       buffer                  Input buffer
+     * @param       position                File position
+     * @throws      IOException             Unable to read the index file
+     */
+    private void readFully(ByteBuffer buffer, long position) throws IOException {
+        while (buffer.hasRemaining()) {
+            int count = indexChannel.read(buffer, position);
+            if (count < 0)
+                throw new IOException("Block store index is too short");
+            position += count;
+        }
+    }
+
+    /**
+     * Return the number of stored blocks
+     *
+     * @return                              Number of blocks
+     */
+    public synchronized int getBlockCount() {
+        return blockCount;
+    }
+
+    /**
+     * Return the height of the first stored block
+     *
+     * @return                              Block height or -1 if the store is empty
+     */
+    public synchronized int getFirstHeight() {
+        return (blockCount > 0 ? firstHeight : -1);
+    }
+
+    /**
+     * Return the height of the last stored block
+     *
+     * @return                              Block height or -1 if the store is empty
+     */
+    public synchronized int getLastHeight() {
+        return (blockCount > 0 ? firstHeight+blockCount-1 : -1);
+    }
+
+    /**
+     * Return the identifier of the last stored block
+     *
+     * @return                              Block identifier or 0 if the store is empty
+     */
+    public synchronized long getLastBlockId() {
+        return (blockCount > 0 ? lastBlockId : 0);
+    }
+
+    /**
+     * Return the identifier of a stored block
+     *
+     * @param       height                  Block height
+     * @return                              Block identifier or 0 if the block is not stored
+     * @throws      IOException             Unable to read the block
+     */
+    public synchronized long getBlockId(int height) throws IOException {
+        ByteBuffer buffer = getBlockBytes(height);
+        return (buffer != null ? buffer.getLong(BLOCK_ID_OFFSET) : 0);
+    }
+
+    /**
+     * Return the bytes for a stored block.  The returned read-only buffer is a
+     * slice of the mapped segment and the block bytes are not copied.  Use
+     * Block.parse() to create a Block from the block bytes.
+     *
+     * @param       height                  Block height
+     * @return                              Block bytes or null if the block is not stored
+     * @throws      IOException             Unable to read the block
+     */
+    public synchronized ByteBuffer getBlockBytes(int height) throws IOException {
+        checkOpen();
+        int index = height - firstHeight;
+        if (index < 0 || index >= blockCount)
+            return null;
+        long position = positions[index];
+        ByteBuffer buffer = getSegment((int)(position>>>32)).duplicate();
+        int offset = (int)position;
+        buffer.position(offset+4);
+        buffer.limit(offset+4+buffer.order(ByteOrder.LITTLE_ENDIAN).getInt(offset));
+        return buffer.slice().asReadOnlyBuffer().order(ByteOrder.LITTLE_ENDIAN);
+    }
+
+    /**
+     * Return a stored block
+     *
+     * @param       height                  Block height
+     * @return                              Block or null if the block is not stored
+     * @throws      IOException             Unable to read the block
+     * @throws      NxtException            Stored block is not valid
+     */
+    public Block getBlock(int height) throws IOException, NxtException {
+        ByteBuffer buffer = getBlockBytes(height);
+        return (buffer != null ? Block.parse(buffer) : null);
+    }
+
+    /**
+     * Add a block to the store.  The block must be the successor of the last stored
+     * block unless the store is empty.  The transaction hash is stored with the
+     * transaction bytes, so a transaction whose bytes do not include all of the
+     * appendages keeps its identifier (see Transaction.hasCompleteBytes()).
+     *
+     * @param       block                   Block
+     * @throws      IOException             Unable to write the block
+     * @throws      NxtException            Block is not the successor of the last stored block
+     *                                      or a transaction without complete bytes has no hash
+     */
+    public synchronized void append(Block block) throws IOException, NxtException {
+        checkOpen();
+        for (Transaction tx : block.getTransactions()) {
+            if (tx.getTransactionHash() == null && !tx.hasCompleteBytes())
+                throw new NxtException(String.format("Transaction %s in block at height %d cannot be stored",
+                                                     tx.getTransactionIdString(), block.getHeight()));
+        }
+        if (blockCount > 0) {
+            if (block.getHeight() != firstHeight+blockCount || block.getPreviousBlockId() != lastBlockId)
+                throw new NxtException(String.format("Block at height %d does not connect to the stored chain",
+                                                     block.getHeight()));
+        } else {
+            firstHeight = block.getHeight();
+            ByteBuffer header = ByteBuffer.allocate(4);
+            header.order(ByteOrder.LITTLE_ENDIAN);
+            header.putInt(firstHeight).flip();
+            indexChannel.write(header, 8);
+            writeSegment = 0;
+            writeOffset = 0;
+        }
+        int length = block.getSize();
+        if (length+8 > segmentSize)
+            throw new NxtException(String.format("Block at height %d is larger than the segment size",
+                                                 block.getHeight()));
+        if (writeOffset+length+8 > segmentSize) {
+            writeSegment++;
+            writeOffset = 0;
+        }
+        //
+        // Write the block record to the mapped segment
+        //
+        ByteBuffer buffer = getSegment(writeSegment).duplicate();
+        buffer.order(ByteOrder.LITTLE_ENDIAN);
+        buffer.position(writeOffset+4);
+        try {
+            block.writeTo(buffer);
+        } catch (BufferOverflowException exc) {
+            throw new NxtException("Block size is not correct", exc);
+        }
+        if (buffer.position() != writeOffset+4+length)
+            throw new NxtException("Block size is not correct");
+        ByteBuffer data = buffer.duplicate();
+        data.position(writeOffset+4);
+        data.limit(writeOffset+4+length);
+        CRC32 crc = new CRC32();
+        crc.update(data);
+        buffer.putInt((int)crc.getValue());
+        buffer.putInt(writeOffset, length);
+        //
+        // Add the index entry
+        //
+        long position = ((long)writeSegment<<32) | writeOffset;
+        ByteBuffer entry = ByteBuffer.allocate(8);
+        entry.order(ByteOrder.LITTLE_ENDIAN);
+        entry.putLong(position).flip();
+        indexChannel.write(entry, HEADER_LENGTH + blockCount*8L);
+        if (blockCount == positions.length)
+            positions = Arrays.copyOf(positions, blockCount*2);
+        positions[blockCount++] = position;
+        lastBlockId = block.getBlockId();
+        writeOffset += length+8;
+    }
+
+    /**
+     * Remove blocks following the specified height
+     *
+     * @param       height                  Height of the last block to keep
+     * @throws      IOException             Unable to update the store
+     */
+    public synchronized void rollback(int height) throws IOException {
+        checkOpen();
+        int count = Math.max(height - firstHeight + 1, 0);
+        if (count >= blockCount)
+            return;
+        indexChannel.truncate(HEADER_LENGTH + count*8L);
+        blockCount = count;
+        if (count > 0) {
+            long position = positions[count-1];
+            ByteBuffer record = getBlockBytes(firstHeight+count-1);
+            lastBlockId = record.getLong(BLOCK_ID_OFFSET);
+            writeSegment = (int)(position>>>32);
+            writeOffset = (int)position + 8 + record.remaining();
+        } else {
+            lastBlockId = 0;
+            writeSegment = 0;
+            writeOffset = 0;
+        }
+    }
+
+    /**
+     * Add new blocks from the node server
+     *
+     * Blocks are requested starting with the block following the last stored block
+     * (or with the genesis block if the store is empty) until the store contains the
+     * current server block chain.  Stored blocks which are not in the server block
+     * chain are removed.  The store is flushed before returning.  Use ChainSync
+     * directly in order to be notified when blocks are added or removed.
+     *
+     * @param       adminPW                 Administrator password
+     * @return                              Number of blocks added
+     * @throws      IOException             Unable to update the store
+     * @throws      NxtException            Unable to issue Nxt API request or the fork
+     *                                      exceeds the maximum rollback
+     */
+    public int sync(String adminPW) throws IOException, NxtException {
+        return new ChainSync(this).sync(adminPW);
+    }
+
+    /**
+     * Write the mapped segments and the index to storage
+     *
+     * @throws      IOException             Unable to write to storage
+     */
+    public synchronized void flush() throws IOException {
+        checkOpen();
+        for (MappedByteBuffer segment : segments)
+            segment.force();
+        indexChannel.force(true);
+    }
+
+    /**
+     * Close the block store
+     *
+     * @throws      IOException             Unable to close the store
+     */
+    public synchronized void close() throws IOException {
+        if (closed)
+            return;
+        try {
+            flush();
+        } finally {
+            closed = true;
+            segments.clear();
+            indexFile.close();
+        }
+    }
+
+    /**
+     * Verify that the store is open
+     *
+     * @throws      IOException             Store is closed
+     */
+    private void checkOpen() throws IOException {
+        if (closed)
+            throw new IOException("Block store is closed");
+    }
+}
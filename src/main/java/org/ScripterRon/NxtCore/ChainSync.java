@@ -0,0 +1,277 @@
+/*
+ * Copyright 2016 Ronald Hoffman.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.ScripterRon.NxtCore;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+/**
+ * ChainSync keeps a block store synchronized with the node server block chain.
+ *
+ * Every fetched block must link to the previous block through its previous block
+ * identifier.  A block chain reorganization is detected when the server chain no
+ * longer links to the stored chain tip or when the server chain tip is not the stored
+ * chain tip.  The fork point is then located by comparing the stored block identifiers
+ * with a window of server blocks and the stored blocks following the fork point are
+ * rolled back.  The server blocks in the window following the fork point are stored
+ * without being downloaded again.  The rollback is limited to the maximum rollback
+ * reported by the server.
+ *
+ * Listeners are notified after each stored block and after each rollback so that
+ * application caches can discard just the orphaned blocks.  The listeners are called
+ * on the thread running sync().
+ */
+public class ChainSync {
+
+    /** Number of blocks requested at a time */
+    private static final int WINDOW_SIZE = 100;
+
+    /** Maximum rollback used when the server does not report one */
+    private static final int DEFAULT_MAX_ROLLBACK = 800;
+
+    /** Block store */
+    private final BlockStore store;
+
+    /** Sync listeners */
+    private final List<Listener> listeners = new CopyOnWriteArrayList<>();
+
+    /** Block download used when the store is far behind the server */
+    private volatile BlockDownload blockDownload;
+
+    /**
+     * Create the chain synchronizer
+     *
+     * @param       store                   Block store
+     */
+    public ChainSync(BlockStore store) {
+        this.store = store;
+    }
+
+    /**
+     * Add a sync listener
+     *
+     * @param       listener                Sync listener
+     */
+    public void addListener(Listener listener) {
+        listeners.add(listener);
+    }
+
+    /**
+     * Remove a sync listener
+     *
+     * @param       listener                Sync listener
+     */
+    public void removeListener(Listener listener) {
+        listeners.remove(listener);
+    }
+
+    /**
+     * Set the block download used for the initial synchronization.  The block download
+     * fetches the blocks which can no longer be rolled back when the store is more than
+     * 100 blocks behind those blocks.  The remaining blocks are fetched from the default
+     * node server.
+     *
+     * @param       blockDownload           Block download or null to fetch all blocks
+     *                                      from the default node server
+     */
+    public void setBlockDownload(BlockDownload blockDownload) {
+        this.blockDownload = blockDownload;
+    }
+
+    /**
+     * Synchronize the block store with the server block chain
+     *
+     * Blocks are requested starting with the block following the stored chain tip
+     * (or with the genesis block if the store is empty) until the store contains the
+     * current server block chain.  The store is flushed before returning.
+     *
+     * @param       adminPW                 Administrator password
+     * @return                              Number of blocks added
+     * @throws      IOException             Unable to update the block store
+     * @throws      NxtException            Unable to issue Nxt API request or the fork
+     *                                      exceeds the maximum rollback
+     */
+    public synchronized int sync(String adminPW) throws IOException, NxtException {
+        int added = 0;
+        try {
+            while (true) {
+                ChainState chainState = Nxt.getChainState();
+                int serverHeight = chainState.getBlockCount() - 1;
+                int maxRollback = (chainState.getMaxRollback() > 0 ? chainState.getMaxRollback() :
+                                                                     DEFAULT_MAX_ROLLBACK);
+                int localHeight = store.getLastHeight();
+                if (localHeight >= 0 && chainState.getLastBlockId() == store.getLastBlockId())
+                    break;
+                BlockDownload download = blockDownload;
+                if (download != null && serverHeight-maxRollback-localHeight > WINDOW_SIZE) {
+                    int count = download.download(localHeight+1, serverHeight-maxRollback, adminPW,
+                            (blocks) -> storeBlocks(blocks) == blocks.size());
+                    added += count;
+                    if (count > 0)
+                        continue;           // Otherwise the stored chain tip is on a fork
+                }
+                if (serverHeight <= localHeight) {
+                    added += resolveFork(serverHeight, maxRollback, adminPW);
+                    continue;
+                }
+                int toHeight = Math.min(localHeight + WINDOW_SIZE, serverHeight);
+                List<Block> blocks = getBlocks(localHeight+1, toHeight, serverHeight, adminPW);
+                if (blocks == null)
+                    continue;               // The server chain changed while we were processing
+                if (localHeight >= 0 && blocks.get(0).getPreviousBlockId() != store.getLastBlockId()) {
+                    added += resolveFork(localHeight, maxRollback, adminPW);
+                    continue;
+                }
+                added += storeBlocks(blocks);
+            }
+        } finally {
+            store.flush();
+        }
+        return added;
+    }
+
+    /**
+     * Locate the fork point, roll back the orphaned blocks and store the server blocks
+     * following the fork point
+     *
+     * @param       startHeight             Height where the fork search starts
+     * @param       maxRollback             Maximum number of blocks to roll back
+     * @param       adminPW                 Administrator password
+     * @return                              Number of blocks added
+     * @throws      IOException             Unable to update the block store
+     * @throws      NxtException            Unable to issue Nxt API request or the fork
+     *                                      exceeds the maximum rollback
+     */
+    private int resolveFork(int startHeight, int maxRollback, String adminPW)
+                                            throws IOException, NxtException {
+        int localHeight = store.getLastHeight();
+        int minHeight = Math.max(localHeight - maxRollback, store.getFirstHeight());
+        int serverHeight = Nxt.getChainState().getBlockCount() - 1;
+        int toHeight = Math.min(startHeight, serverHeight);
+        while (toHeight >= minHeight) {
+            int fromHeight = Math.max(toHeight - WINDOW_SIZE + 1, minHeight);
+            List<Block> blocks = getBlocks(fromHeight, toHeight, serverHeight, adminPW);
+            if (blocks == null)
+                return 0;                   // The server chain changed while we were processing
+            //
+            // Find the highest block that is in both chains
+            //
+            for (int i=blocks.size()-1; i>=0; i--) {
+                Block block = blocks.get(i);
+                if (block.getBlockId() == store.getBlockId(block.getHeight())) {
+                    rollback(block.getHeight());
+                    return storeBlocks(blocks.subList(i+1, blocks.size()));
+                }
+            }
+            toHeight = fromHeight - 1;
+        }
+        throw new NxtException(String.format("Block chain fork below height %d exceeds the maximum rollback of %d blocks",
+                                             minHeight, maxRollback));
+    }
+
+    /**
+     * Roll back the block store and notify the listeners
+     *
+     * @param       height                  Height of the last block to keep
+     * @throws      IOException             Unable to update the block store
+     */
+    private void rollback(int height) throws IOException {
+        int localHeight = store.getLastHeight();
+        if (height >= localHeight)
+            return;
+        LongList orphanedIds = new LongList(localHeight-height);
+        for (int i=height+1; i<=localHeight; i++)
+            orphanedIds.addLong(store.getBlockId(i));
+        store.rollback(height);
+        Nxt.log.info(String.format("Block chain reorganization: %d blocks rolled back to height %d",
+                                   orphanedIds.size(), height));
+        for (Listener listener : listeners)
+            listener.chainRolledBack(height, orphanedIds);
+    }
+
+    /**
+     * Store blocks which follow the stored chain tip
+     *
+     * @param       blocks                  Blocks in ascending height order
+     * @return                              Number of blocks stored
+     * @throws      IOException             Unable to update the block store
+     * @throws      NxtException            Block does not connect to the stored chain
+     */
+    private int storeBlocks(List<Block> blocks) throws IOException, NxtException {
+        int count = 0;
+        for (Block block : blocks) {
+            if (store.getBlockCount() > 0 && block.getPreviousBlockId() != store.getLastBlockId())
+                break;
+            store.append(block);
+            count++;
+            for (Listener listener : listeners)
+                listener.blockAdded(block);
+        }
+        return count;
+    }
+
+    /**
+     * Get a range of server blocks
+     *
+     * @param       fromHeight              First block height
+     * @param       toHeight                Last block height
+     * @param       serverHeight            Server chain height
+     * @param       adminPW                 Administrator password
+     * @return                              Linked blocks in ascending height order or null if
+     *                                      the server chain changed
+     * @throws      NxtException            Unable to issue Nxt API request
+     */
+    private List<Block> getBlocks(int fromHeight, int toHeight, int serverHeight, String adminPW)
+                                            throws NxtException {
+        List<Block> blocks = new ArrayList<>(Nxt.getBlocks(serverHeight-toHeight, serverHeight-fromHeight,
+                                                           true, adminPW));
+        Collections.sort(blocks, (b1, b2) -> b1.getHeight() - b2.getHeight());
+        if (blocks.size() != toHeight-fromHeight+1 || blocks.get(0).getHeight() != fromHeight)
+            return null;
+        for (int i=1; i<blocks.size(); i++) {
+            Block block = blocks.get(i);
+            if (block.getHeight() != fromHeight+i ||
+                                    block.getPreviousBlockId() != blocks.get(i-1).getBlockId())
+                return null;
+        }
+        return blocks;
+    }
+
+    /**
+     * The sync listener is called when the block store changes
+     */
+    public interface Listener {
+
+        /**
+         * A block has been added to the block store
+         *
+         * @param       block                   Block
+         */
+        void blockAdded(Block block);
+
+        /**
+         * Blocks have been removed from the block store because they are no longer
+         * part of the server block chain
+         *
+         * @param       height                  Height of the last block that was kept
+         * @param       blockIds                Identifiers of the removed blocks in ascending height order
+         */
+        void chainRolledBack(int height, LongList blockIds);
+    }
+}
@@ -0,0 +1,374 @@
+/*
+ * Copyright 2016 Ronald Hoffman.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.ScripterRon.NxtCore;
+
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.CompletableFuture;
+
+/**
+ * ConfirmationTracker tracks transaction confirmations using block events.
+ *
+ * Each new block is fetched once and its transaction identifiers are matched against
+ * the tracked transactions, so the number of server requests does not depend on the
+ * number of tracked transactions.  The future returned by track() is completed with
+ * the inclusion height once the transaction has the requested number of confirmations.
+ *
+ * New blocks are reported by the application calling blockPushed() or processEvents().
+ * A block chain reorganization is detected when the previous block of a new block
+ * does not match the tracked chain.  The tracker then walks back to the fork point
+ * and transactions included in the orphaned blocks become unconfirmed again.  A
+ * future is not reset once it has been completed, so the confirmation depth should
+ * be large enough to make a later rollback unlikely.
+ *
+ * A transaction should be tracked before it is broadcast since blocks processed
+ * before the transaction is tracked are not examined again.
+ */
+public class ConfirmationTracker {
+
+    /** Default maximum rollback depth */
+    public static final int DEFAULT_MAX_ROLLBACK = 720;
+
+    /** Block pushed event */
+    private static final String BLOCK_PUSHED = "Block.BLOCK_PUSHED";
+
+    /** Block popped event */
+    private static final String BLOCK_POPPED = "Block.BLOCK_POPPED";
+
+    /** Maximum rollback depth */
+    private final int maxRollback;
+
+    /** Block processing lock */
+    private final Object blockLock = new Object();
+
+    /** Tracked transactions */
+    private final LongHashMap<Entry> trackedMap = new LongHashMap<>();
+
+    /** Included transactions by inclusion height */
+    private final TreeMap<Integer, List<Entry>> includedMap = new TreeMap<>();
+
+    /** Included transactions by completion height */
+    private final TreeMap<Integer, List<Entry>> completionMap = new TreeMap<>();
+
+    /** Recent blocks by height */
+    private final TreeMap<Integer, Long> blockMap = new TreeMap<>();
+
+    /** Recent block heights by block identifier */
+    private final LongHashMap<Integer> heightMap = new LongHashMap<>();
+
+    /** Current block chain height */
+    private int chainHeight = -1;
+
+    /**
+     * Create a confirmation tracker
+     */
+    public ConfirmationTracker() {
+        this(DEFAULT_MAX_ROLLBACK);
+    }
+
+    /**
+     * Create a confirmation tracker
+     *
+     * @param       maxRollback             Maximum number of blocks that can be rolled back
+     */
+    public ConfirmationTracker(int maxRollback) {
+        if (maxRollback < 1)
+            throw new IllegalArgumentException("The maximum rollback must be greater than 0");
+        this.maxRollback = maxRollback;
+    }
+
+    /**
+     * Track a transaction
+     *
+     * The returned future is completed with the height of the block containing the
+     * transaction once the transaction has the requested number of confirmations.
+     * The existing future is returned if the transaction is already being tracked.
+     *
+     * @param       txId                    Transaction identifier
+     * @param       confirmations           Number of confirmations (0 completes on inclusion)
+     * @return                              Confirmation future
+     */
+    public CompletableFuture<Integer> track(long txId, int confirmations) {
+        if (confirmations < 0)
+            throw new IllegalArgumentException("The number of confirmations must not be negative");
+        synchronized(this) {
+            Entry entry = trackedMap.get(txId);
+            if (entry == null) {
+                entry = new Entry(txId, confirmations);
+                trackedMap.put(txId, entry);
+            }
+            return entry.future;
+        }
+    }
+
+    /**
+     * Stop tracking a transaction.  The transaction future is cancelled.
+     *
+     * @param       txId                    Transaction identifier
+     * @return                              TRUE if the transaction was being tracked
+     */
+    public boolean cancel(long txId) {
+        Entry entry;
+        synchronized(this) {
+            entry = trackedMap.remove(txId);
+            if (entry == null)
+                return false;
+            if (entry.height >= 0) {
+                removeEntry(includedMap, entry.height, entry);
+                removeEntry(completionMap, entry.height+entry.confirmations, entry);
+            }
+        }
+        entry.future.cancel(false);
+        return true;
+    }
+
+    /**
+     * Return the number of tracked transactions
+     *
+     * @return                              Number of tracked transactions
+     */
+    public synchronized int getCount() {
+        return trackedMap.size();
+    }
+
+    /**
+     * Return the current block chain height
+     *
+     * @return                              Block chain height or -1 if no blocks have been processed
+     */
+    public synchronized int getHeight() {
+        return chainHeight;
+    }
+
+    /**
+     * Process server events
+     *
+     * Pushed blocks are fetched from the server and popped blocks are removed from
+     * the tracked chain
+     *
+     * @param       events                  Event list returned by Nxt.eventWait()
+     * @throws      NxtException            Unable to fetch a block
+     */
+    public void processEvents(List<Event> events) throws NxtException {
+        for (Event event : events) {
+            String name = event.getName();
+            if (!name.equals(BLOCK_PUSHED) && !name.equals(BLOCK_POPPED))
+                continue;
+            for (String id : event.getIds()) {
+                long blockId;
+                try {
+                    blockId = Utils.stringToId(id);
+                } catch (IdentifierException exc) {
+                    Nxt.log.error("Invalid block identifier in server event: " + id);
+                    continue;
+                }
+                if (name.equals(BLOCK_PUSHED))
+                    blockPushed(blockId);
+                else
+                    blockPopped(blockId);
+            }
+        }
+    }
+
+    /**
+     * Process a new block
+     *
+     * The block is fetched from the server along with any missing blocks between the
+     * tracked chain and the new block
+     *
+     * @param       blockId                 Block identifier
+     * @throws      NxtException            Unable to fetch a block
+     */
+    public void blockPushed(long blockId) throws NxtException {
+        List<CompletableFuture<Integer>> futures;
+        List<Integer> heights;
+        synchronized(blockLock) {
+            synchronized(this) {
+                if (heightMap.containsKey(blockId))
+                    return;
+            }
+            //
+            // Fetch the new block and walk back until we connect with the tracked chain
+            //
+            List<Block> chain = new ArrayList<>();
+            Block block = Nxt.getBlock(blockId, false);
+            chain.add(block);
+            while (chain.size() <= maxRollback) {
+                int prevHeight = block.getHeight() - 1;
+                Long prevId;
+                int firstHeight;
+                synchronized(this) {
+                    if (blockMap.isEmpty())
+                        break;
+                    prevId = blockMap.get(prevHeight);
+                    firstHeight = blockMap.firstKey();
+                }
+                if (prevHeight < firstHeight || (prevId != null && prevId == block.getPreviousBlockId()))
+                    break;
+                block = Nxt.getBlock(block.getPreviousBlockId(), false);
+                chain.add(block);
+            }
+            //
+            // Roll back orphaned blocks and apply the new blocks
+            //
+            futures = new ArrayList<>();
+            heights = new ArrayList<>();
+            synchronized(this) {
+                rollback(block.getHeight());
+                for (int i=chain.size()-1; i>=0; i--) {
+                    block = chain.get(i);
+                    int height = block.getHeight();
+                    blockMap.put(height, block.getBlockId());
+                    heightMap.put(block.getBlockId(), height);
+                    LongList txIds = block.getTransactionIds();
+                    for (int j=0; j<txIds.size(); j++) {
+                        Entry entry = trackedMap.get(txIds.getLong(j));
+                        if (entry != null && entry.height < 0) {
+                            entry.height = height;
+                            addEntry(includedMap, height, entry);
+                            addEntry(completionMap, height+entry.confirmations, entry);
+                        }
+                    }
+                }
+                chainHeight = block.getHeight();
+                while (blockMap.size() > maxRollback)
+                    heightMap.remove(blockMap.pollFirstEntry().getValue());
+                //
+                // Remove transactions with the requested number of confirmations
+                //
+                Iterator<Map.Entry<Integer, List<Entry>>> it =
+                                            completionMap.headMap(chainHeight, true).entrySet().iterator();
+                while (it.hasNext()) {
+                    for (Entry entry : it.next().getValue()) {
+                        trackedMap.remove(entry.txId);
+                        removeEntry(includedMap, entry.height, entry);
+                        futures.add(entry.future);
+                        heights.add(entry.height);
+                    }
+                    it.remove();
+                }
+            }
+        }
+        //
+        // Complete the futures outside the lock since they can run dependent actions
+        //
+        for (int i=0; i<futures.size(); i++)
+            futures.get(i).complete(heights.get(i));
+    }
+
+    /**
+     * Process a popped block
+     *
+     * The block and all blocks following it are removed from the tracked chain
+     *
+     * @param       blockId                 Block identifier
+     */
+    public void blockPopped(long blockId) {
+        synchronized(blockLock) {
+            synchronized(this) {
+                Integer height = heightMap.get(blockId);
+                if (height != null) {
+                    rollback(height);
+                    chainHeight = height - 1;
+                }
+            }
+        }
+    }
+
+    /**
+     * Remove blocks at or above the specified height from the tracked chain.  The
+     * transactions included in these blocks are no longer included.
+     *
+     * @param       height                  Rollback height
+     */
+    private void rollback(int height) {
+        Map<Integer, Long> orphanedBlocks = blockMap.tailMap(height, true);
+        orphanedBlocks.values().forEach((blockId) -> heightMap.remove(blockId));
+        orphanedBlocks.clear();
+        Map<Integer, List<Entry>> orphanedEntries = includedMap.tailMap(height, true);
+        orphanedEntries.values().forEach((list) -> list.forEach((entry) -> {
+            removeEntry(completionMap, entry.height+entry.confirmations, entry);
+            entry.height = -1;
+        }));
+        if (!orphanedEntries.isEmpty())
+            Nxt.log.info(String.format("Block chain rollback to height %d", height));
+        orphanedEntries.clear();
+    }
+
+    /**
+     * Add an entry to a height map
+     *
+     * @param       map                     Height map
+     * @param       height                  Height
+     * @param       entry                   Tracked transaction
+     */
+    private static void addEntry(TreeMap<Integer, List<Entry>> map, int height, Entry entry) {
+        List<Entry> list = map.get(height);
+        if (list == null) {
+            list = new ArrayList<>();
+            map.put(height, list);
+        }
+        list.add(entry);
+    }
+
+    /**
+     * Remove an entry from a height map
+     *
+     * @param       map                     Height map
+     * @param       height                  Height
+     * @param       entry                   Tracked transaction
+     */
+    private static void removeEntry(TreeMap<Integer, List<Entry>> map, int height, Entry entry) {
+        List<Entry> list = map.get(height);
+        if (list != null) {
+            list.remove(entry);
+            if (list.isEmpty())
+                map.remove(height);
+        }
+    }
+
+    /**
+     * Tracked transaction
+     */
+    private static class Entry {
+
+        /** Transaction identifier */
+        private final long txId;
+
+        /** Number of confirmations */
+        private final int confirmations;
+
+        /** Confirmation future */
+        private final CompletableFuture<Integer> future = new CompletableFuture<>();
+
+        /** Inclusion height (-1 if the transaction has not been included in a block) */
+        private int height = -1;
+
+        /**
+         * Create a tracked transaction
+         *
+         * @param       txId                Transaction identifier
+         * @param       confirmations       Number of confirmations
+         */
+        private Entry(long txId, int confirmations) {
+            this.txId = txId;
+            this.confirmations = confirmations;
+        }
+    }
+}
@@ -20,6 +20,7 @@ import java.io.UnsupportedEncodingException;
 import java.security.MessageDigest;
 import java.security.NoSuchAlgorithmException;
 import java.security.SecureRandom;
+import java.util.Arrays;
 
 /**
  * Cryptographic functions using Curve25519
@@ -34,15 +35,14 @@ public class Crypto {
     /** Strong random number generator */
     private static final SecureRandom secureRandom = new SecureRandom();
 
-    /** Instance of a SHA-256 digest which we will use as needed */
-    private static final MessageDigest digest;
-    static {
+    /** SHA-256 digest for each thread so that hashing and signing do not serialize */
+    private static final ThreadLocal<MessageDigest> threadDigest = ThreadLocal.withInitial(() -> {
         try {
-            digest = MessageDigest.getInstance("SHA-256");
+            return MessageDigest.getInstance("SHA-256");
         } catch (NoSuchAlgorithmException e) {
             throw new RuntimeException(e);      // Never happen.
         }
-    }
+    });
 
     /**
      * Calculate the SHA-256 hash of a string
@@ -67,12 +67,9 @@ public class Crypto {
      * @return                      The hash digest
      */
     public static byte[] singleDigest(byte[] input) {
-        byte[] bytes;
-        synchronized (digest) {
-            digest.reset();
-            bytes = digest.digest(input);
-        }
-        return bytes;
+        MessageDigest digest = threadDigest.get();
+        digest.reset();
+        return digest.digest(input);
     }
 
     /**
@@ -83,13 +80,10 @@ public class Crypto {
      * @return                      The hash digest
      */
     public static byte[] singleDigest(byte[] input1, byte[] input2) {
-        byte[] bytes;
-        synchronized (digest) {
-            digest.reset();
-            digest.update(input1);
-            bytes = digest.digest(input2);
-        }
-        return bytes;
+        MessageDigest digest = threadDigest.get();
+        digest.reset();
+        digest.update(input1);
+        return digest.digest(input2);
     }
 
     /**
@@ -107,6 +101,45 @@ public class Crypto {
         return publicKey;
     }
 
+    /**
+     * Verify a message signature
+     *
+     * @param       signature           Message signature
+     * @param       message             Signed message
+     * @param       publicKey           Public key of the signer
+     * @return                          TRUE if the signature is valid
+     */
+    public static boolean verify(byte[] signature, byte[] message, byte[] publicKey) {
+        if (signature.length != 64 || !Curve25519.isCanonicalSignature(signature))
+            return false;
+        if (publicKey.length != 32 || !Curve25519.isCanonicalPublicKey(publicKey))
+            return false;
+        byte[] Y = new byte[32];
+        byte[] v = Arrays.copyOfRange(signature, 0, 32);
+        byte[] h = Arrays.copyOfRange(signature, 32, 64);
+        Curve25519.verify(Y, v, h, publicKey);
+        MessageDigest digest = threadDigest.get();
+        digest.reset();
+        byte[] m = digest.digest(message);
+        digest.update(m);
+        byte[] h2 = digest.digest(Y);
+        return Arrays.equals(h, h2);
+    }
+
+    /**
+     * Return the private key for the supplied secret phrase.  The private key can be used
+     * to sign multiple messages without deriving the key again for each message.
+     *
+     * @param       secretPhrase        Account secret phrase
+     * @return                          Private key
+     */
+    public static byte[] getPrivateKey(String secretPhrase) {
+        byte[] P = new byte[32];
+        byte[] s = new byte[32];
+        Curve25519.keygen(P, s, singleDigest(secretPhrase));
+        return s;
+    }
+
     /**
      * Sign a message
      *
@@ -116,38 +149,39 @@ public class Crypto {
      * @throws      KeyException        Unable to sign message
      */
     public static byte[] sign(byte[] message, String secretPhrase) throws KeyException {
-        byte[] signature = new byte[64];
-        try {
-            synchronized(digest) {
-                digest.reset();
-                byte[] P = new byte[32];
-                byte[] s = new byte[32];
-                Curve25519.keygen(P, s, digest.digest(secretPhrase.getBytes("UTF-8")));
-
-                byte[] m = digest.digest(message);
+        return sign(message, getPrivateKey(secretPhrase));
+    }
 
-                digest.update(m);
-                byte[] x = digest.digest(s);
+    /**
+     * Sign a message
+     *
+     * @param       message             The message to be signed
+     * @param       privateKey          Private key returned by getPrivateKey()
+     * @return                          The signed message
+     * @throws      KeyException        Unable to sign message
+     */
+    public static byte[] sign(byte[] message, byte[] privateKey) throws KeyException {
+        byte[] signature = new byte[64];
+        MessageDigest digest = threadDigest.get();
+        digest.reset();
+        byte[] m = digest.digest(message);
 
-                byte[] Y = new byte[32];
-                Curve25519.keygen(Y, null, x);
+        digest.update(m);
+        byte[] x = digest.digest(privateKey);
 
-                digest.update(m);
-                byte[] h = digest.digest(Y);
+        byte[] Y = new byte[32];
+        Curve25519.keygen(Y, null, x);
 
-                byte[] v = new byte[32];
-                Curve25519.sign(v, h, x, s);
+        digest.update(m);
+        byte[] h = digest.digest(Y);
 
-                System.arraycopy(v, 0, signature, 0, 32);
-                System.arraycopy(h, 0, signature, 32, 32);
+        byte[] v = new byte[32];
+        Curve25519.sign(v, h, x, privateKey);
 
-                if (!Curve25519.isCanonicalSignature(signature)) {
-                    throw new KeyException("Signature is not canonical");
-                }
-            }
-        } catch (RuntimeException|UnsupportedEncodingException e) {
-            // Never happen
-        }
+        System.arraycopy(v, 0, signature, 0, 32);
+        System.arraycopy(h, 0, signature, 32, 32);
+        if (!Curve25519.isCanonicalSignature(signature))
+            throw new KeyException("Signature is not canonical");
         return signature;
     }
 }
@@ -0,0 +1,103 @@
+/*
+ * Copyright 2016 Ronald Hoffman.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.ScripterRon.NxtCore;
+
+import java.nio.ByteBuffer;
+
+/**
+ * Attachment for TransactionType.MonetarySystem.CURRENCY_DELETION
+ */
+public class CurrencyDeletion extends BinaryAttachment {
+
+    /** Version */
+    private final int version;
+
+    /** Currency identifier */
+    private final long currencyId;
+
+    /**
+     * Create a Currency Deletion attachment
+     *
+     * @param       currencyId              Currency identifier
+     */
+    public CurrencyDeletion(long currencyId) {
+        this.version = 1;
+        this.currencyId = currencyId;
+    }
+
+    /**
+     * Create a Currency Deletion attachment from the JSON response
+     *
+     * @param       response                JSON response
+     * @throws      IdentifierException     Invalid object identifier
+     */
+    public CurrencyDeletion(PeerResponse response) throws IdentifierException {
+        this.version = response.getByte("version.CurrencyDeletion");
+        this.currencyId = response.getId("currency");
+    }
+
+    /**
+     * Create a Currency Deletion attachment from the transaction bytes
+     *
+     * @param       buffer                  Little-endian buffer positioned at the attachment
+     * @param       txVersion               Transaction version
+     * @throws      NxtException            Invalid attachment
+     */
+    public CurrencyDeletion(ByteBuffer buffer, int txVersion) throws NxtException {
+        this.version = (txVersion>0 ? buffer.get() : 0);
+        this.currencyId = buffer.getLong();
+    }
+
+    /**
+     * Return the size of the attachment byte stream
+     *
+     * @return                              Number of bytes
+     */
+    @Override
+    public int getSize() {
+        return (version>0?1:0)+8;
+    }
+
+    /**
+     * Write the attachment byte stream to a little-endian buffer
+     *
+     * @param       buffer                  Output buffer
+     */
+    @Override
+    public void writeTo(ByteBuffer buffer) {
+        if (version > 0)
+            buffer.put((byte)version);
+        buffer.putLong(currencyId);
+    }
+
+    /**
+     * Return the attachment version
+     *
+     * @return                              Version
+     */
+    public int getVersion() {
+        return version;
+    }
+
+    /**
+     * Return the currency identifier
+     *
+     * @return                              Currency identifier
+     */
+    public long getCurrencyId() {
+        return currencyId;
+    }
+}
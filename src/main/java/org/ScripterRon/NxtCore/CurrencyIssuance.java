@@ -0,0 +1,334 @@
+/*
+ * Copyright 2016 Ronald Hoffman.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.ScripterRon.NxtCore;
+
+import java.nio.ByteBuffer;
+
+/**
+ * Attachment for TransactionType.MonetarySystem.CURRENCY_ISSUANCE
+ */
+public class CurrencyIssuance extends BinaryAttachment {
+
+    /** Version */
+    private final int version;
+
+    /** Currency name */
+    private final String name;
+
+    /** Currency code */
+    private final String code;
+
+    /** Currency description */
+    private final String description;
+
+    /** Currency type */
+    private final int type;
+
+    /** Initial supply */
+    private final long initialSupply;
+
+    /** Reserve supply */
+    private final long reserveSupply;
+
+    /** Maximum supply */
+    private final long maxSupply;
+
+    /** Issuance height */
+    private final int issuanceHeight;
+
+    /** Minimum reserve per unit (NQT) */
+    private final long minReservePerUnit;
+
+    /** Minimum minting difficulty */
+    private final int minDifficulty;
+
+    /** Maximum minting difficulty */
+    private final int maxDifficulty;
+
+    /** Currency ruleset */
+    private final int ruleset;
+
+    /** Minting algorithm */
+    private final int algorithm;
+
+    /** Number of decimal places */
+    private final int decimals;
+
+    /**
+     * Create a Currency Issuance attachment
+     *
+     * @param       name                    Currency name (maximum length 10)
+     * @param       code                    Currency code (maximum length 5)
+     * @param       description             Currency description (maximum length 1000)
+     * @param       type                    Currency type
+     * @param       initialSupply           Initial supply
+     * @param       reserveSupply           Reserve supply
+     * @param       maxSupply               Maximum supply
+     * @param       issuanceHeight          Issuance height
+     * @param       minReservePerUnit       Minimum reserve per unit (NQT)
+     * @param       minDifficulty           Minimum minting difficulty
+     * @param       maxDifficulty           Maximum minting difficulty
+     * @param       ruleset                 Currency ruleset
+     * @param       algorithm               Minting algorithm
+     * @param       decimals                Number of decimal places
+     */
+    public CurrencyIssuance(String name, String code, String description, int type, long initialSupply, long reserveSupply, long maxSupply, int issuanceHeight, long minReservePerUnit, int minDifficulty, int maxDifficulty, int ruleset, int algorithm, int decimals) {
+        if (name == null || code == null || description == null)
+            throw new IllegalArgumentException("Required parameter not specified");
+        this.version = 1;
+        this.name = name;
+        this.code = code;
+        this.description = description;
+        this.type = type;
+        this.initialSupply = initialSupply;
+        this.reserveSupply = reserveSupply;
+        this.maxSupply = maxSupply;
+        this.issuanceHeight = issuanceHeight;
+        this.minReservePerUnit = minReservePerUnit;
+        this.minDifficulty = minDifficulty;
+        this.maxDifficulty = maxDifficulty;
+        this.ruleset = ruleset;
+        this.algorithm = algorithm;
+        this.decimals = decimals;
+        if (name.length() > 10)
+            throw new IllegalArgumentException("Maximum currency name length is 10");
+        if (code.length() > 5)
+            throw new IllegalArgumentException("Maximum currency code length is 5");
+        if (description.length() > 1000)
+            throw new IllegalArgumentException("Maximum currency description length is 1000");
+    }
+
+    /**
+     * Create a Currency Issuance attachment from the JSON response
+     *
+     * @param       response                JSON response
+     */
+    public CurrencyIssuance(PeerResponse response) {
+        this.version = response.getByte("version.CurrencyIssuance");
+        this.name = response.getString("name");
+        this.code = response.getString("code");
+        this.description = response.getString("description");
+        this.type = response.getInt("type");
+        this.initialSupply = response.getLong("initialSupply");
+        this.reserveSupply = response.getLong("reserveSupply");
+        this.maxSupply = response.getLong("maxSupply");
+        this.issuanceHeight = response.getInt("issuanceHeight");
+        this.minReservePerUnit = response.getLong("minReservePerUnitNQT");
+        this.minDifficulty = response.getByte("minDifficulty");
+        this.maxDifficulty = response.getByte("maxDifficulty");
+        this.ruleset = response.getByte("ruleset");
+        this.algorithm = response.getByte("algorithm");
+        this.decimals = response.getByte("decimals");
+    }
+
+    /**
+     * Create a Currency Issuance attachment from the transaction bytes
+     *
+     * @param       buffer                  Little-endian buffer positioned at the attachment
+     * @param       txVersion               Transaction version
+     * @throws      NxtException            Invalid attachment
+     */
+    public CurrencyIssuance(ByteBuffer buffer, int txVersion) throws NxtException {
+        this.version = (txVersion>0 ? buffer.get() : 0);
+        this.name = readString(buffer, buffer.get()&0xff, 10);
+        this.code = readString(buffer, buffer.get()&0xff, 5);
+        this.description = readString(buffer, buffer.getShort()&0xffff, 1000);
+        this.type = buffer.get();
+        this.initialSupply = buffer.getLong();
+        this.reserveSupply = buffer.getLong();
+        this.maxSupply = buffer.getLong();
+        this.issuanceHeight = buffer.getInt();
+        this.minReservePerUnit = buffer.getLong();
+        this.minDifficulty = buffer.get();
+        this.maxDifficulty = buffer.get();
+        this.ruleset = buffer.get();
+        this.algorithm = buffer.get();
+        this.decimals = buffer.get();
+    }
+
+    /**
+     * Return the size of the attachment byte stream
+     *
+     * @return                              Number of bytes
+     */
+    @Override
+    public int getSize() {
+        return (version>0?1:0)+1+utf8Length(name)+1+utf8Length(code)+2+utf8Length(description)+42;
+    }
+
+    /**
+     * Write the attachment byte stream to a little-endian buffer
+     *
+     * @param       buffer                  Output buffer
+     */
+    @Override
+    public void writeTo(ByteBuffer buffer) {
+        if (version > 0)
+            buffer.put((byte)version);
+        buffer.put((byte)utf8Length(name));
+        putString(buffer, name);
+        buffer.put((byte)utf8Length(code));
+        putString(buffer, code);
+        buffer.putShort((short)utf8Length(description));
+        putString(buffer, description);
+        buffer.put((byte)type);
+        buffer.putLong(initialSupply);
+        buffer.putLong(reserveSupply);
+        buffer.putLong(maxSupply);
+        buffer.putInt(issuanceHeight);
+        buffer.putLong(minReservePerUnit);
+        buffer.put((byte)minDifficulty);
+        buffer.put((byte)maxDifficulty);
+        buffer.put((byte)ruleset);
+        buffer.put((byte)algorithm);
+        buffer.put((byte)decimals);
+    }
+
+    /**
+     * Return the attachment version
+     *
+     * @return                              Version
+     */
+    public int getVersion() {
+        return version;
+    }
+
+    /**
+     * Return the currency name
+     *
+     * @return                              Currency name
+     */
+    public String getName() {
+        return name;
+    }
+
+    /**
+     * Return the currency code
+     *
+     * @return                              Currency code
+     */
+    public String getCode() {
+        return code;
+    }
+
+    /**
+     * Return the currency description
+     *
+     * @return                              Currency description
+     */
+    public String getDescription() {
+        return description;
+    }
+
+    /**
+     * Return the currency type
+     *
+     * @return                              Currency type
+     */
+    public int getType() {
+        return type;
+    }
+
+    /**
+     * Return the initial supply
+     *
+     * @return                              Initial supply
+     */
+    public long getInitialSupply() {
+        return initialSupply;
+    }
+
+    /**
+     * Return the reserve supply
+     *
+     * @return                              Reserve supply
+     */
+    public long getReserveSupply() {
+        return reserveSupply;
+    }
+
+    /**
+     * Return the maximum supply
+     *
+     * @return                              Maximum supply
+     */
+    public long getMaxSupply() {
+        return maxSupply;
+    }
+
+    /**
+     * Return the issuance height
+     *
+     * @return                              Issuance height
+     */
+    public int getIssuanceHeight() {
+        return issuanceHeight;
+    }
+
+    /**
+     * Return the minimum reserve per unit (NQT)
+     *
+     * @return                              Minimum reserve per unit (NQT)
+     */
+    public long getMinReservePerUnit() {
+        return minReservePerUnit;
+    }
+
+    /**
+     * Return the minimum minting difficulty
+     *
+     * @return                              Minimum minting difficulty
+     */
+    public int getMinDifficulty() {
+        return minDifficulty;
+    }
+
+    /**
+     * Return the maximum minting difficulty
+     *
+     * @return                              Maximum minting difficulty
+     */
+    public int getMaxDifficulty() {
+        return maxDifficulty;
+    }
+
+    /**
+     * Return the currency ruleset
+     *
+     * @return                              Currency ruleset
+     */
+    public int getRuleset() {
+        return ruleset;
+    }
+
+    /**
+     * Return the minting algorithm
+     *
+     * @return                              Minting algorithm
+     */
+    public int getAlgorithm() {
+        return algorithm;
+    }
+
+    /**
+     * Return the number of decimal places
+     *
+     * @return                              Number of decimal places
+     */
+    public int getDecimals() {
+        return decimals;
+    }
+}
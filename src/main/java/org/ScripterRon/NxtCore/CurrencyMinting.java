@@ -16,12 +16,11 @@
 package org.ScripterRon.NxtCore;
 
 import java.nio.ByteBuffer;
-import java.nio.ByteOrder;
 
 /**
  * Attachment for TransactionType.MonetarySystem.CURRENCY_MINTING
  */
-public class CurrencyMinting extends AbstractAttachment {
+public class CurrencyMinting extends BinaryAttachment {
     
     /** Version */
     private final int version;
@@ -69,24 +68,45 @@ public class CurrencyMinting extends AbstractAttachment {
     }
 
     /**
-     * Return the attachment byte stream
+     * Create a Currency Minting attachment from the transaction bytes
      *
-     * @return                              Byte stream
+     * @param       buffer                  Little-endian buffer positioned at the attachment
+     * @param       txVersion               Transaction version
+     * @throws      NxtException            Invalid attachment
+     */
+    public CurrencyMinting(ByteBuffer buffer, int txVersion) throws NxtException {
+        this.version = (txVersion>0 ? buffer.get() : 0);
+        this.nonce = buffer.getLong();
+        this.currencyId = buffer.getLong();
+        this.units = buffer.getLong();
+        this.counter = buffer.getLong();
+    }
+
+    /**
+     * Return the size of the attachment byte stream
+     *
+     * @return                              Number of bytes
      */
     @Override
-    public byte[] getBytes() {
-        byte[] bytes = new byte[(version>0?1:0)+8+8+8+8];
-        ByteBuffer buf = ByteBuffer.wrap(bytes);
-        buf.order(ByteOrder.LITTLE_ENDIAN);
+    public int getSize() {
+        return (version>0?1:0)+8+8+8+8;
+    }
+
+    /**
+     * Write the attachment byte stream to a little-endian buffer
+     *
+     * @param       buffer                  Output buffer
+     */
+    @Override
+    public void writeTo(ByteBuffer buffer) {
         if (version > 0)
-            buf.put((byte)version);
-        buf.putLong(nonce);
-        buf.putLong(currencyId);
-        buf.putLong(units);
-        buf.putLong(counter);
-        return bytes;
+            buffer.put((byte)version);
+        buffer.putLong(nonce);
+        buffer.putLong(currencyId);
+        buffer.putLong(units);
+        buffer.putLong(counter);
     }
-    
+
     /**
      * Return the attachment version
      * 
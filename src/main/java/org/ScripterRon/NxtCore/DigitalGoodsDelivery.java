@@ -0,0 +1,187 @@
+/*
+ * Copyright 2016 Ronald Hoffman.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.ScripterRon.NxtCore;
+
+import java.nio.ByteBuffer;
+
+/**
+ * Attachment for TransactionType.DigitalGoods.DELIVERY
+ */
+public class DigitalGoodsDelivery extends BinaryAttachment {
+
+    /** Version */
+    private final int version;
+
+    /** Purchase identifier */
+    private final long purchaseId;
+
+    /** Encrypted goods */
+    private final byte[] goodsData;
+
+    /** Encryption nonce */
+    private final byte[] goodsNonce;
+
+    /** Goods are text */
+    private final boolean goodsIsText;
+
+    /** Discount (NQT) */
+    private final long discount;
+
+    /**
+     * Create a Digital Goods Delivery attachment
+     *
+     * @param       purchaseId              Purchase identifier
+     * @param       goodsData               Encrypted goods (maximum length 10240)
+     * @param       goodsNonce              Encryption nonce (32 bytes)
+     * @param       goodsIsText             TRUE if the goods are text
+     * @param       discount                Discount (NQT)
+     */
+    public DigitalGoodsDelivery(long purchaseId, byte[] goodsData, byte[] goodsNonce,
+                                    boolean goodsIsText, long discount) {
+        if (goodsData == null || goodsNonce == null)
+            throw new IllegalArgumentException("Required parameter not specified");
+        if (goodsData.length > 10240)
+            throw new IllegalArgumentException("Maximum encrypted goods length is 10240");
+        if (goodsNonce.length != 32)
+            throw new IllegalArgumentException("Encryption nonce must be 32 bytes");
+        this.version = 1;
+        this.purchaseId = purchaseId;
+        this.goodsData = goodsData.clone();
+        this.goodsNonce = goodsNonce.clone();
+        this.goodsIsText = goodsIsText;
+        this.discount = discount;
+    }
+
+    /**
+     * Create a Digital Goods Delivery attachment from the JSON response
+     *
+     * @param       response                JSON response
+     * @throws      IdentifierException     Invalid object identifier
+     * @throws      NumberFormatException   Invalid hex string
+     */
+    public DigitalGoodsDelivery(PeerResponse response) throws IdentifierException, NumberFormatException {
+        this.version = response.getByte("version.DigitalGoodsDelivery");
+        this.purchaseId = response.getId("purchase");
+        byte[] data = response.getHexString("goodsData");
+        this.goodsData = (data != null ? data : new byte[0]);
+        byte[] nonce = response.getHexString("goodsNonce");
+        this.goodsNonce = (nonce != null ? nonce : new byte[32]);
+        this.goodsIsText = response.getBoolean("goodsIsText");
+        this.discount = response.getLong("discountNQT");
+    }
+
+    /**
+     * Create a Digital Goods Delivery attachment from the transaction bytes
+     *
+     * @param       buffer                  Little-endian buffer positioned at the attachment
+     * @param       txVersion               Transaction version
+     * @throws      NxtException            Invalid attachment
+     */
+    public DigitalGoodsDelivery(ByteBuffer buffer, int txVersion) throws NxtException {
+        this.version = (txVersion>0 ? buffer.get() : 0);
+        this.purchaseId = buffer.getLong();
+        int length = buffer.getInt();
+        this.goodsIsText = (length < 0);
+        length &= Integer.MAX_VALUE;
+        if (length > 10240 || length > buffer.remaining())
+            throw new NxtException("Encrypted goods length " + length + " is not valid");
+        this.goodsData = new byte[length];
+        buffer.get(goodsData);
+        this.goodsNonce = new byte[32];
+        buffer.get(goodsNonce);
+        this.discount = buffer.getLong();
+    }
+
+    /**
+     * Return the size of the attachment byte stream
+     *
+     * @return                              Number of bytes
+     */
+    @Override
+    public int getSize() {
+        return (version>0?1:0)+8+4+goodsData.length+32+8;
+    }
+
+    /**
+     * Write the attachment byte stream to a little-endian buffer
+     *
+     * @param       buffer                  Output buffer
+     */
+    @Override
+    public void writeTo(ByteBuffer buffer) {
+        if (version > 0)
+            buffer.put((byte)version);
+        buffer.putLong(purchaseId);
+        buffer.putInt(goodsIsText ? goodsData.length|Integer.MIN_VALUE : goodsData.length);
+        buffer.put(goodsData);
+        buffer.put(goodsNonce);
+        buffer.putLong(discount);
+    }
+
+    /**
+     * Return the attachment version
+     *
+     * @return                              Version
+     */
+    public int getVersion() {
+        return version;
+    }
+
+    /**
+     * Return the purchase identifier
+     *
+     * @return                              Purchase identifier
+     */
+    public long getPurchaseId() {
+        return purchaseId;
+    }
+
+    /**
+     * Return the encrypted goods
+     *
+     * @return                              Encrypted goods
+     */
+    public byte[] getGoodsData() {
+        return goodsData;
+    }
+
+    /**
+     * Return the encryption nonce
+     *
+     * @return                              Encryption nonce
+     */
+    public byte[] getGoodsNonce() {
+        return goodsNonce;
+    }
+
+    /**
+     * Check if the goods are text
+     *
+     * @return                              TRUE if the goods are text
+     */
+    public boolean isGoodsText() {
+        return goodsIsText;
+    }
+
+    /**
+     * Return the discount
+     *
+     * @return                              Discount (NQT)
+     */
+    public long getDiscount() {
+        return discount;
+    }
+}
@@ -0,0 +1,181 @@
+/*
+ * Copyright 2016 Ronald Hoffman.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.ScripterRon.NxtCore;
+
+import java.nio.ByteBuffer;
+
+/**
+ * Attachment for TransactionType.DigitalGoods.LISTING
+ */
+public class DigitalGoodsListing extends BinaryAttachment {
+
+    /** Version */
+    private final int version;
+
+    /** Goods name */
+    private final String name;
+
+    /** Goods description */
+    private final String description;
+
+    /** Goods tags */
+    private final String tags;
+
+    /** Goods quantity */
+    private final int quantity;
+
+    /** Goods price (NQT) */
+    private final long price;
+
+    /**
+     * Create a Digital Goods Listing attachment
+     *
+     * @param       name                    Goods name (maximum length 100)
+     * @param       description             Goods description (maximum length 1000)
+     * @param       tags                    Goods tags (maximum length 100)
+     * @param       quantity                Goods quantity
+     * @param       price                   Goods price (NQT)
+     */
+    public DigitalGoodsListing(String name, String description, String tags, int quantity, long price) {
+        if (name == null || description == null || tags == null)
+            throw new IllegalArgumentException("Required parameter not specified");
+        this.version = 1;
+        this.name = name;
+        this.description = description;
+        this.tags = tags;
+        this.quantity = quantity;
+        this.price = price;
+        if (name.length() > 100)
+            throw new IllegalArgumentException("Maximum goods name length is 100");
+        if (description.length() > 1000)
+            throw new IllegalArgumentException("Maximum goods description length is 1000");
+        if (tags.length() > 100)
+            throw new IllegalArgumentException("Maximum goods tags length is 100");
+    }
+
+    /**
+     * Create a Digital Goods Listing attachment from the JSON response
+     *
+     * @param       response                JSON response
+     */
+    public DigitalGoodsListing(PeerResponse response) {
+        this.version = response.getByte("version.DigitalGoodsListing");
+        this.name = response.getString("name");
+        this.description = response.getString("description");
+        this.tags = response.getString("tags");
+        this.quantity = response.getInt("quantity");
+        this.price = response.getLong("priceNQT");
+    }
+
+    /**
+     * Create a Digital Goods Listing attachment from the transaction bytes
+     *
+     * @param       buffer                  Little-endian buffer positioned at the attachment
+     * @param       txVersion               Transaction version
+     * @throws      NxtException            Invalid attachment
+     */
+    public DigitalGoodsListing(ByteBuffer buffer, int txVersion) throws NxtException {
+        this.version = (txVersion>0 ? buffer.get() : 0);
+        this.name = readString(buffer, buffer.getShort()&0xffff, 100);
+        this.description = readString(buffer, buffer.getShort()&0xffff, 1000);
+        this.tags = readString(buffer, buffer.getShort()&0xffff, 100);
+        this.quantity = buffer.getInt();
+        this.price = buffer.getLong();
+    }
+
+    /**
+     * Return the size of the attachment byte stream
+     *
+     * @return                              Number of bytes
+     */
+    @Override
+    public int getSize() {
+        return (version>0?1:0)+2+utf8Length(name)+2+utf8Length(description)+2+utf8Length(tags)+12;
+    }
+
+    /**
+     * Write the attachment byte stream to a little-endian buffer
+     *
+     * @param       buffer                  Output buffer
+     */
+    @Override
+    public void writeTo(ByteBuffer buffer) {
+        if (version > 0)
+            buffer.put((byte)version);
+        buffer.putShort((short)utf8Length(name));
+        putString(buffer, name);
+        buffer.putShort((short)utf8Length(description));
+        putString(buffer, description);
+        buffer.putShort((short)utf8Length(tags));
+        putString(buffer, tags);
+        buffer.putInt(quantity);
+        buffer.putLong(price);
+    }
+
+    /**
+     * Return the attachment version
+     *
+     * @return                              Version
+     */
+    public int getVersion() {
+        return version;
+    }
+
+    /**
+     * Return the goods name
+     *
+     * @return                              Goods name
+     */
+    public String getName() {
+        return name;
+    }
+
+    /**
+     * Return the goods description
+     *
+     * @return                              Goods description
+     */
+    public String getDescription() {
+        return description;
+    }
+
+    /**
+     * Return the goods tags
+     *
+     * @return                              Goods tags
+     */
+    public String getTags() {
+        return tags;
+    }
+
+    /**
+     * Return the goods quantity
+     *
+     * @return                              Goods quantity
+     */
+    public int getQuantity() {
+        return quantity;
+    }
+
+    /**
+     * Return the goods price (NQT)
+     *
+     * @return                              Goods price (NQT)
+     */
+    public long getPrice() {
+        return price;
+    }
+}
@@ -0,0 +1,154 @@
+/*
+ * Copyright 2016 Ronald Hoffman.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.ScripterRon.NxtCore;
+
+import java.nio.ByteBuffer;
+
+/**
+ * Attachment for TransactionType.DigitalGoods.PURCHASE
+ */
+public class DigitalGoodsPurchase extends BinaryAttachment {
+
+    /** Version */
+    private final int version;
+
+    /** Goods identifier */
+    private final long goodsId;
+
+    /** Purchase quantity */
+    private final int quantity;
+
+    /** Goods price (NQT) */
+    private final long price;
+
+    /** Delivery deadline (seconds since the genesis block) */
+    private final int deliveryDeadline;
+
+    /**
+     * Create a Digital Goods Purchase attachment
+     *
+     * @param       goodsId                 Goods identifier
+     * @param       quantity                Purchase quantity
+     * @param       price                   Goods price (NQT)
+     * @param       deliveryDeadline        Delivery deadline (seconds since the genesis block)
+     */
+    public DigitalGoodsPurchase(long goodsId, int quantity, long price, int deliveryDeadline) {
+        this.version = 1;
+        this.goodsId = goodsId;
+        this.quantity = quantity;
+        this.price = price;
+        this.deliveryDeadline = deliveryDeadline;
+    }
+
+    /**
+     * Create a Digital Goods Purchase attachment from the JSON response
+     *
+     * @param       response                JSON response
+     * @throws      IdentifierException     Invalid object identifier
+     */
+    public DigitalGoodsPurchase(PeerResponse response) throws IdentifierException {
+        this.version = response.getByte("version.DigitalGoodsPurchase");
+        this.goodsId = response.getId("goods");
+        this.quantity = response.getInt("quantity");
+        this.price = response.getLong("priceNQT");
+        this.deliveryDeadline = response.getInt("deliveryDeadlineTimestamp");
+    }
+
+    /**
+     * Create a Digital Goods Purchase attachment from the transaction bytes
+     *
+     * @param       buffer                  Little-endian buffer positioned at the attachment
+     * @param       txVersion               Transaction version
+     * @throws      NxtException            Invalid attachment
+     */
+    public DigitalGoodsPurchase(ByteBuffer buffer, int txVersion) throws NxtException {
+        this.version = (txVersion>0 ? buffer.get() : 0);
+        this.goodsId = buffer.getLong();
+        this.quantity = buffer.getInt();
+        this.price = buffer.getLong();
+        this.deliveryDeadline = buffer.getInt();
+    }
+
+    /**
+     * Return the size of the attachment byte stream
+     *
+     * @return                              Number of bytes
+     */
+    @Override
+    public int getSize() {
+        return (version>0?1:0)+24;
+    }
+
+    /**
+     * Write the attachment byte stream to a little-endian buffer
+     *
+     * @param       buffer                  Output buffer
+     */
+    @Override
+    public void writeTo(ByteBuffer buffer) {
+        if (version > 0)
+            buffer.put((byte)version);
+        buffer.putLong(goodsId);
+        buffer.putInt(quantity);
+        buffer.putLong(price);
+        buffer.putInt(deliveryDeadline);
+    }
+
+    /**
+     * Return the attachment version
+     *
+     * @return                              Version
+     */
+    public int getVersion() {
+        return version;
+    }
+
+    /**
+     * Return the goods identifier
+     *
+     * @return                              Goods identifier
+     */
+    public long getGoodsId() {
+        return goodsId;
+    }
+
+    /**
+     * Return the purchase quantity
+     *
+     * @return                              Purchase quantity
+     */
+    public int getQuantity() {
+        return quantity;
+    }
+
+    /**
+     * Return the goods price (NQT)
+     *
+     * @return                              Goods price (NQT)
+     */
+    public long getPrice() {
+        return price;
+    }
+
+    /**
+     * Return the delivery deadline (seconds since the genesis block)
+     *
+     * @return                              Delivery deadline (seconds since the genesis block)
+     */
+    public int getDeliveryDeadline() {
+        return deliveryDeadline;
+    }
+}
@@ -0,0 +1,120 @@
+/*
+ * Copyright 2016 Ronald Hoffman.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.ScripterRon.NxtCore;
+
+import java.nio.ByteBuffer;
+
+/**
+ * Attachment for TransactionType.DigitalGoods.REFUND
+ */
+public class DigitalGoodsRefund extends BinaryAttachment {
+
+    /** Version */
+    private final int version;
+
+    /** Purchase identifier */
+    private final long purchaseId;
+
+    /** Refund amount (NQT) */
+    private final long refund;
+
+    /**
+     * Create a Digital Goods Refund attachment
+     *
+     * @param       purchaseId              Purchase identifier
+     * @param       refund                  Refund amount (NQT)
+     */
+    public DigitalGoodsRefund(long purchaseId, long refund) {
+        this.version = 1;
+        this.purchaseId = purchaseId;
+        this.refund = refund;
+    }
+
+    /**
+     * Create a Digital Goods Refund attachment from the JSON response
+     *
+     * @param       response                JSON response
+     * @throws      IdentifierException     Invalid object identifier
+     */
+    public DigitalGoodsRefund(PeerResponse response) throws IdentifierException {
+        this.version = response.getByte("version.DigitalGoodsRefund");
+        this.purchaseId = response.getId("purchase");
+        this.refund = response.getLong("refundNQT");
+    }
+
+    /**
+     * Create a Digital Goods Refund attachment from the transaction bytes
+     *
+     * @param       buffer                  Little-endian buffer positioned at the attachment
+     * @param       txVersion               Transaction version
+     * @throws      NxtException            Invalid attachment
+     */
+    public DigitalGoodsRefund(ByteBuffer buffer, int txVersion) throws NxtException {
+        this.version = (txVersion>0 ? buffer.get() : 0);
+        this.purchaseId = buffer.getLong();
+        this.refund = buffer.getLong();
+    }
+
+    /**
+     * Return the size of the attachment byte stream
+     *
+     * @return                              Number of bytes
+     */
+    @Override
+    public int getSize() {
+        return (version>0?1:0)+16;
+    }
+
+    /**
+     * Write the attachment byte stream to a little-endian buffer
+     *
+     * @param       buffer                  Output buffer
+     */
+    @Override
+    public void writeTo(ByteBuffer buffer) {
+        if (version > 0)
+            buffer.put((byte)version);
+        buffer.putLong(purchaseId);
+        buffer.putLong(refund);
+    }
+
+    /**
+     * Return the attachment version
+     *
+     * @return                              Version
+     */
+    public int getVersion() {
+        return version;
+    }
+
+    /**
+     * Return the purchase identifier
+     *
+     * @return                              Purchase identifier
+     */
+    public long getPurchaseId() {
+        return purchaseId;
+    }
+
+    /**
+     * Return the refund amount (NQT)
+     *
+     * @return                              Refund amount (NQT)
+     */
+    public long getRefund() {
+        return refund;
+    }
+}
@@ -0,0 +1,137 @@
+/*
+ * Copyright 2016 Ronald Hoffman.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.ScripterRon.NxtCore;
+
+import java.nio.ByteBuffer;
+
+/**
+ * Attachment for TransactionType.ColoredCoins.DIVIDEND_PAYMENT
+ */
+public class DividendPayment extends BinaryAttachment {
+
+    /** Version */
+    private final int version;
+
+    /** Asset identifier */
+    private final long assetId;
+
+    /** Asset holder height */
+    private final int height;
+
+    /** Dividend amount per asset unit (NQT) */
+    private final long amountPerUnit;
+
+    /**
+     * Create a Dividend Payment attachment
+     *
+     * @param       assetId                 Asset identifier
+     * @param       height                  Asset holder height
+     * @param       amountPerUnit           Dividend amount per asset unit (NQT)
+     */
+    public DividendPayment(long assetId, int height, long amountPerUnit) {
+        this.version = 1;
+        this.assetId = assetId;
+        this.height = height;
+        this.amountPerUnit = amountPerUnit;
+    }
+
+    /**
+     * Create a Dividend Payment attachment from the JSON response
+     *
+     * @param       response                JSON response
+     * @throws      IdentifierException     Invalid object identifier
+     */
+    public DividendPayment(PeerResponse response) throws IdentifierException {
+        this.version = response.getByte("version.DividendPayment");
+        this.assetId = response.getId("asset");
+        this.height = response.getInt("height");
+        this.amountPerUnit = response.getLong("amountNQTPerQNT");
+    }
+
+    /**
+     * Create a Dividend Payment attachment from the transaction bytes
+     *
+     * @param       buffer                  Little-endian buffer positioned at the attachment
+     * @param       txVersion               Transaction version
+     * @throws      NxtException            Invalid attachment
+     */
+    public DividendPayment(ByteBuffer buffer, int txVersion) throws NxtException {
+        this.version = (txVersion>0 ? buffer.get() : 0);
+        this.assetId = buffer.getLong();
+        this.height = buffer.getInt();
+        this.amountPerUnit = buffer.getLong();
+    }
+
+    /**
+     * Return the size of the attachment byte stream
+     *
+     * @return                              Number of bytes
+     */
+    @Override
+    public int getSize() {
+        return (version>0?1:0)+20;
+    }
+
+    /**
+     * Write the attachment byte stream to a little-endian buffer
+     *
+     * @param       buffer                  Output buffer
+     */
+    @Override
+    public void writeTo(ByteBuffer buffer) {
+        if (version > 0)
+            buffer.put((byte)version);
+        buffer.putLong(assetId);
+        buffer.putInt(height);
+        buffer.putLong(amountPerUnit);
+    }
+
+    /**
+     * Return the attachment version
+     *
+     * @return                              Version
+     */
+    public int getVersion() {
+        return version;
+    }
+
+    /**
+     * Return the asset identifier
+     *
+     * @return                              Asset identifier
+     */
+    public long getAssetId() {
+        return assetId;
+    }
+
+    /**
+     * Return the asset holder height
+     *
+     * @return                              Asset holder height
+     */
+    public int getHeight() {
+        return height;
+    }
+
+    /**
+     * Return the dividend amount per asset unit (NQT)
+     *
+     * @return                              Dividend amount per asset unit (NQT)
+     */
+    public long getAmountPerUnit() {
+        return amountPerUnit;
+    }
+}
@@ -0,0 +1,177 @@
+/*
+ * Copyright 2016 Ronald Hoffman.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.ScripterRon.NxtCore;
+
+import java.util.List;
+
+/**
+ * EcBlockCache provides the Economic Clustering block for new transactions.
+ *
+ * The EC block only changes as the block chain advances, so the block returned by
+ * the 'getECBlock' API request is reused until a new block is reported or until the
+ * cached block reaches the maximum age.  New blocks are reported by the application
+ * calling blockPushed() or processEvents() and are also detected automatically when
+ * Nxt.eventWait() returns a block event.  The EC block is fetched synchronously when
+ * there is no cached block or the cached block is no longer current.
+ */
+public final class EcBlockCache {
+
+    /** Default maximum number of new blocks before the EC block is refreshed */
+    public static final int DEFAULT_MAX_BLOCKS = 1;
+
+    /** Default maximum age of the cached EC block (seconds) */
+    public static final int DEFAULT_MAX_AGE = 60;
+
+    /** Block pushed event */
+    private static final String BLOCK_PUSHED = "Block.BLOCK_PUSHED";
+
+    /** Block popped event */
+    private static final String BLOCK_POPPED = "Block.BLOCK_POPPED";
+
+    /** Cache lock */
+    private static final Object lock = new Object();
+
+    /** Cached EC block (null if the cache is empty) */
+    private static volatile CacheEntry cacheEntry;
+
+    /** Maximum number of new blocks before the EC block is refreshed */
+    private static volatile int maxBlocks = DEFAULT_MAX_BLOCKS;
+
+    /** Maximum age of the cached EC block (milliseconds) */
+    private static volatile long maxAge = DEFAULT_MAX_AGE*1000L;
+
+    /**
+     * EcBlockCache cannot be instantiated
+     */
+    private EcBlockCache() {
+    }
+
+    /**
+     * Set the cache bounds
+     *
+     * @param       blocks                  Number of new blocks before the EC block is refreshed
+     * @param       age                     Maximum age of the cached EC block in seconds (0 disables the cache)
+     */
+    public static void setBounds(int blocks, int age) {
+        if (blocks < 1)
+            throw new IllegalArgumentException("The block bound must be greater than 0");
+        if (age < 0)
+            throw new IllegalArgumentException("The age bound must not be negative");
+        maxBlocks = blocks;
+        maxAge = age*1000L;
+    }
+
+    /**
+     * Return the current EC block
+     *
+     * The cached EC block is returned if it is still current.  Otherwise, a new EC block
+     * is obtained from the node server.
+     *
+     * @return                              EC block
+     * @throws      NxtException            Unable to obtain the EC block
+     */
+    public static EcBlock getEcBlock() throws NxtException {
+        CacheEntry entry = cacheEntry;
+        if (entry != null && entry.isCurrent())
+            return entry.ecBlock;
+        synchronized(lock) {
+            entry = cacheEntry;
+            if (entry == null || !entry.isCurrent()) {
+                entry = new CacheEntry(Nxt.getEcBlock());
+                cacheEntry = entry;
+            }
+        }
+        return entry.ecBlock;
+    }
+
+    /**
+     * Report a new block
+     *
+     * The cached EC block is discarded once the block bound is reached
+     */
+    public static void blockPushed() {
+        synchronized(lock) {
+            CacheEntry entry = cacheEntry;
+            if (entry != null && ++entry.blockCount >= maxBlocks)
+                cacheEntry = null;
+        }
+    }
+
+    /**
+     * Process server events
+     *
+     * The cached EC block is discarded if a block is popped or when the block bound
+     * is reached for pushed blocks
+     *
+     * @param       events                  Event list returned by Nxt.eventWait()
+     */
+    public static void processEvents(List<Event> events) {
+        for (Event event : events) {
+            String name = event.getName();
+            if (name.equals(BLOCK_POPPED)) {
+                invalidate();
+            } else if (name.equals(BLOCK_PUSHED)) {
+                int count = Math.max(event.getIds().size(), 1);
+                for (int i=0; i<count; i++)
+                    blockPushed();
+            }
+        }
+    }
+
+    /**
+     * Discard the cached EC block
+     *
+     * This should be called when the cached block is known to be incorrect, such as
+     * after a block chain reorganization or when the node server is changed
+     */
+    public static void invalidate() {
+        cacheEntry = null;
+    }
+
+    /**
+     * Cached EC block
+     */
+    private static class CacheEntry {
+
+        /** EC block */
+        private final EcBlock ecBlock;
+
+        /** Time when the EC block was fetched */
+        private final long fetchTime;
+
+        /** Number of new blocks since the EC block was fetched */
+        private int blockCount;
+
+        /**
+         * Create a cache entry
+         *
+         * @param       ecBlock             EC block
+         */
+        private CacheEntry(EcBlock ecBlock) {
+            this.ecBlock = ecBlock;
+            this.fetchTime = System.currentTimeMillis();
+        }
+
+        /**
+         * Check if the cached EC block is still current
+         *
+         * @return                          TRUE if the EC block is current
+         */
+        private boolean isCurrent() {
+            return (System.currentTimeMillis() - fetchTime < maxAge);
+        }
+    }
+}
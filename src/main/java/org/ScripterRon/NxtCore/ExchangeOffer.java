@@ -0,0 +1,222 @@
+/*
+ * Copyright 2016 Ronald Hoffman.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.ScripterRon.NxtCore;
+
+import java.nio.ByteBuffer;
+
+/**
+ * Attachment for TransactionType.MonetarySystem.PUBLISH_EXCHANGE_OFFER
+ */
+public class ExchangeOffer extends BinaryAttachment {
+
+    /** Version */
+    private final int version;
+
+    /** Currency identifier */
+    private final long currencyId;
+
+    /** Buy rate (NQT) */
+    private final long buyRate;
+
+    /** Sell rate (NQT) */
+    private final long sellRate;
+
+    /** Total buy limit */
+    private final long totalBuyLimit;
+
+    /** Total sell limit */
+    private final long totalSellLimit;
+
+    /** Initial buy supply */
+    private final long initialBuySupply;
+
+    /** Initial sell supply */
+    private final long initialSellSupply;
+
+    /** Expiration height */
+    private final int expirationHeight;
+
+    /**
+     * Create an Exchange Offer attachment
+     *
+     * @param       currencyId              Currency identifier
+     * @param       buyRate                 Buy rate (NQT)
+     * @param       sellRate                Sell rate (NQT)
+     * @param       totalBuyLimit           Total buy limit
+     * @param       totalSellLimit          Total sell limit
+     * @param       initialBuySupply        Initial buy supply
+     * @param       initialSellSupply       Initial sell supply
+     * @param       expirationHeight        Expiration height
+     */
+    public ExchangeOffer(long currencyId, long buyRate, long sellRate, long totalBuyLimit, long totalSellLimit, long initialBuySupply, long initialSellSupply, int expirationHeight) {
+        this.version = 1;
+        this.currencyId = currencyId;
+        this.buyRate = buyRate;
+        this.sellRate = sellRate;
+        this.totalBuyLimit = totalBuyLimit;
+        this.totalSellLimit = totalSellLimit;
+        this.initialBuySupply = initialBuySupply;
+        this.initialSellSupply = initialSellSupply;
+        this.expirationHeight = expirationHeight;
+    }
+
+    /**
+     * Create an Exchange Offer attachment from the JSON response
+     *
+     * @param       response                JSON response
+     * @throws      IdentifierException     Invalid object identifier
+     */
+    public ExchangeOffer(PeerResponse response) throws IdentifierException {
+        this.version = response.getByte("version.PublishExchangeOffer");
+        this.currencyId = response.getId("currency");
+        this.buyRate = response.getLong("buyRateNQT");
+        this.sellRate = response.getLong("sellRateNQT");
+        this.totalBuyLimit = response.getLong("totalBuyLimit");
+        this.totalSellLimit = response.getLong("totalSellLimit");
+        this.initialBuySupply = response.getLong("initialBuySupply");
+        this.initialSellSupply = response.getLong("initialSellSupply");
+        this.expirationHeight = response.getInt("expirationHeight");
+    }
+
+    /**
+     * Create an Exchange Offer attachment from the transaction bytes
+     *
+     * @param       buffer                  Little-endian buffer positioned at the attachment
+     * @param       txVersion               Transaction version
+     * @throws      NxtException            Invalid attachment
+     */
+    public ExchangeOffer(ByteBuffer buffer, int txVersion) throws NxtException {
+        this.version = (txVersion>0 ? buffer.get() : 0);
+        this.currencyId = buffer.getLong();
+        this.buyRate = buffer.getLong();
+        this.sellRate = buffer.getLong();
+        this.totalBuyLimit = buffer.getLong();
+        this.totalSellLimit = buffer.getLong();
+        this.initialBuySupply = buffer.getLong();
+        this.initialSellSupply = buffer.getLong();
+        this.expirationHeight = buffer.getInt();
+    }
+
+    /**
+     * Return the size of the attachment byte stream
+     *
+     * @return                              Number of bytes
+     */
+    @Override
+    public int getSize() {
+        return (version>0?1:0)+60;
+    }
+
+    /**
+     * Write the attachment byte stream to a little-endian buffer
+     *
+     * @param       buffer                  Output buffer
+     */
+    @Override
+    public void writeTo(ByteBuffer buffer) {
+        if (version > 0)
+            buffer.put((byte)version);
+        buffer.putLong(currencyId);
+        buffer.putLong(buyRate);
+        buffer.putLong(sellRate);
+        buffer.putLong(totalBuyLimit);
+        buffer.putLong(totalSellLimit);
+        buffer.putLong(initialBuySupply);
+        buffer.putLong(initialSellSupply);
+        buffer.putInt(expirationHeight);
+    }
+
+    /**
+     * Return the attachment version
+     *
+     * @return                              Version
+     */
+    public int getVersion() {
+        return version;
+    }
+
+    /**
+     * Return the currency identifier
+     *
+     * @return                              Currency identifier
+     */
+    public long getCurrencyId() {
+        return currencyId;
+    }
+
+    /**
+     * Return the buy rate (NQT)
+     *
+     * @return                              Buy rate (NQT)
+     */
+    public long getBuyRate() {
+        return buyRate;
+    }
+
+    /**
+     * Return the sell rate (NQT)
+     *
+     * @return                              Sell rate (NQT)
+     */
+    public long getSellRate() {
+        return sellRate;
+    }
+
+    /**
+     * Return the total buy limit
+     *
+     * @return                              Total buy limit
+     */
+    public long getTotalBuyLimit() {
+        return totalBuyLimit;
+    }
+
+    /**
+     * Return the total sell limit
+     *
+     * @return                              Total sell limit
+     */
+    public long getTotalSellLimit() {
+        return totalSellLimit;
+    }
+
+    /**
+     * Return the initial buy supply
+     *
+     * @return                              Initial buy supply
+     */
+    public long getInitialBuySupply() {
+        return initialBuySupply;
+    }
+
+    /**
+     * Return the initial sell supply
+     *
+     * @return                              Initial sell supply
+     */
+    public long getInitialSellSupply() {
+        return initialSellSupply;
+    }
+
+    /**
+     * Return the expiration height
+     *
+     * @return                              Expiration height
+     */
+    public int getExpirationHeight() {
+        return expirationHeight;
+    }
+}
@@ -0,0 +1,143 @@
+/*
+ * Copyright 2016 Ronald Hoffman.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.ScripterRon.NxtCore;
+
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Attachment for TransactionType.Messaging.HUB_ANNOUNCEMENT
+ */
+public class HubAnnouncement extends BinaryAttachment {
+
+    /** Version */
+    private final int version;
+
+    /** Minimum fee per byte (NQT) */
+    private final long minFeePerByte;
+
+    /** Hub URIs */
+    private final List<String> uris;
+
+    /**
+     * Create a Hub Announcement attachment
+     *
+     * @param       minFeePerByte           Minimum fee per byte (NQT)
+     * @param       uris                    Hub URIs (maximum of 100 URIs, maximum length 1000)
+     */
+    public HubAnnouncement(long minFeePerByte, List<String> uris) {
+        if (uris == null)
+            throw new IllegalArgumentException("Required parameter not specified");
+        if (uris.size() > 100)
+            throw new IllegalArgumentException("Maximum number of hub URIs is 100");
+        for (String uri : uris) {
+            if (uri.length() > 1000)
+                throw new IllegalArgumentException("Maximum hub URI length is 1000");
+        }
+        this.version = 1;
+        this.minFeePerByte = minFeePerByte;
+        this.uris = Collections.unmodifiableList(new ArrayList<>(uris));
+    }
+
+    /**
+     * Create a Hub Announcement attachment from the JSON response
+     *
+     * @param       response                JSON response
+     */
+    public HubAnnouncement(PeerResponse response) {
+        this.version = response.getByte("version.HubAnnouncement");
+        this.minFeePerByte = response.getLong("minFeePerByteNQT");
+        this.uris = Collections.unmodifiableList(response.getStringList("uris"));
+    }
+
+    /**
+     * Create a Hub Announcement attachment from the transaction bytes
+     *
+     * @param       buffer                  Little-endian buffer positioned at the attachment
+     * @param       txVersion               Transaction version
+     * @throws      NxtException            Invalid attachment
+     */
+    public HubAnnouncement(ByteBuffer buffer, int txVersion) throws NxtException {
+        this.version = (txVersion>0 ? buffer.get() : 0);
+        this.minFeePerByte = buffer.getLong();
+        int count = buffer.get()&0xff;
+        if (count > 100)
+            throw new NxtException("Hub URI count " + count + " is not valid");
+        List<String> uriList = new ArrayList<>(count);
+        for (int i=0; i<count; i++)
+            uriList.add(readString(buffer, buffer.getShort()&0xffff, 1000));
+        this.uris = Collections.unmodifiableList(uriList);
+    }
+
+    /**
+     * Return the size of the attachment byte stream
+     *
+     * @return                              Number of bytes
+     */
+    @Override
+    public int getSize() {
+        int size = (version>0?1:0)+8+1;
+        for (String uri : uris)
+            size += 2+utf8Length(uri);
+        return size;
+    }
+
+    /**
+     * Write the attachment byte stream to a little-endian buffer
+     *
+     * @param       buffer                  Output buffer
+     */
+    @Override
+    public void writeTo(ByteBuffer buffer) {
+        if (version > 0)
+            buffer.put((byte)version);
+        buffer.putLong(minFeePerByte);
+        buffer.put((byte)uris.size());
+        for (String uri : uris) {
+            buffer.putShort((short)utf8Length(uri));
+            putString(buffer, uri);
+        }
+    }
+
+    /**
+     * Return the attachment version
+     *
+     * @return                              Version
+     */
+    public int getVersion() {
+        return version;
+    }
+
+    /**
+     * Return the minimum fee per byte
+     *
+     * @return                              Minimum fee per byte (NQT)
+     */
+    public long getMinFeePerByte() {
+        return minFeePerByte;
+    }
+
+    /**
+     * Return the hub URIs
+     *
+     * @return                              Hub URIs
+     */
+    public List<String> getURIs() {
+        return uris;
+    }
+}
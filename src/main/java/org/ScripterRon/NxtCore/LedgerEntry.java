@@ -28,9 +28,6 @@ public class LedgerEntry {
     /** Account identifier */
     private final long accountId;
 
-    /** Account Reed-Solomon identifier */
-    private final String accountRsId;
-
     /** Event type */
     private final LedgerEvent eventType;
 
@@ -72,7 +69,6 @@ public class LedgerEntry {
         //
         this.ledgerId = response.getId("ledgerId");
         this.accountId = response.getId("account");
-        this.accountRsId = response.getString("accountRS");
         this.change = response.getLongString("change");
         this.balance = response.getLongString("balance");
         this.height = response.getInt("height");
@@ -115,6 +111,36 @@ public class LedgerEntry {
             this.transaction = null;
     }
 
+    /**
+     * Create a ledger entry from stored values
+     *
+     * @param       ledgerId                Ledger identifier
+     * @param       accountId               Account identifier
+     * @param       eventType               Event type or null
+     * @param       eventId                 Event identifier
+     * @param       holdingType             Holding type or null
+     * @param       holdingId               Holding identifier
+     * @param       change                  Holding change
+     * @param       balance                 Holding balance
+     * @param       height                  Block height
+     * @param       timestamp               Entry timestamp
+     */
+    LedgerEntry(long ledgerId, long accountId, LedgerEvent eventType, long eventId,
+                                    LedgerHolding holdingType, long holdingId, long change, long balance,
+                                    int height, int timestamp) {
+        this.ledgerId = ledgerId;
+        this.accountId = accountId;
+        this.eventType = eventType;
+        this.eventId = eventId;
+        this.holdingType = holdingType;
+        this.holdingId = holdingId;
+        this.change = change;
+        this.balance = balance;
+        this.height = height;
+        this.timestamp = timestamp;
+        this.transaction = null;
+    }
+
     /**
      * Return the ledger identifier
      *
@@ -139,7 +165,7 @@ public class LedgerEntry {
      * @return                          Account Reed-Solomon identifier
      */
     public String getAccountRsId() {
-        return accountRsId;
+        return Utils.getAccountRsId(accountId);
     }
 
     /**
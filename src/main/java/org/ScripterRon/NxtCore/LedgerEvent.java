@@ -15,8 +15,7 @@
  */
 package org.ScripterRon.NxtCore;
 
-import java.util.HashMap;
-import java.util.Map;
+import java.util.Arrays;
 
 /**
  * Account ledger events
@@ -83,12 +82,16 @@ public enum LedgerEvent {
     // UNKNOWN
         UNKNOWN(127, false);
 
-    /** Event code mapping */
-    private static final Map<Integer, LedgerEvent> eventMap = new HashMap<>();
+    /** Event code mapping (indexed by code, UNKNOWN for an unassigned code) */
+    private static final LedgerEvent[] eventTable;
     static {
-        for (LedgerEvent event : values()) {
-            eventMap.put(event.code, event);
-        }
+        int maxCode = 0;
+        for (LedgerEvent event : values())
+            maxCode = Math.max(maxCode, event.code);
+        eventTable = new LedgerEvent[maxCode+1];
+        Arrays.fill(eventTable, UNKNOWN);
+        for (LedgerEvent event : values())
+            eventTable[event.code] = event;
     }
 
     /** Event code */
@@ -133,7 +136,6 @@ public enum LedgerEvent {
      * @return                          Event
      */
     public static LedgerEvent fromCode(int code) {
-        LedgerEvent event = eventMap.get(code);
-        return (event != null ? event : LedgerEvent.UNKNOWN);
+        return (code >= 0 && code < eventTable.length ? eventTable[code] : UNKNOWN);
     }
 }
@@ -15,8 +15,7 @@
  */
 package org.ScripterRon.NxtCore;
 
-import java.util.HashMap;
-import java.util.Map;
+import java.util.Arrays;
 
 /**
  * Account ledger holdings
@@ -30,12 +29,16 @@ public enum LedgerHolding {
     CURRENCY_BALANCE(6, false),
     UNKNOWN(127, false);
 
-    /** Holding code mapping */
-    private static final Map<Integer, LedgerHolding> holdingMap = new HashMap<>();
+    /** Holding code mapping (indexed by code, UNKNOWN for an unassigned code) */
+    private static final LedgerHolding[] holdingTable;
     static {
-        for (LedgerHolding holding : values()) {
-            holdingMap.put(holding.code, holding);
-        }
+        int maxCode = 0;
+        for (LedgerHolding holding : values())
+            maxCode = Math.max(maxCode, holding.code);
+        holdingTable = new LedgerHolding[maxCode+1];
+        Arrays.fill(holdingTable, UNKNOWN);
+        for (LedgerHolding holding : values())
+            holdingTable[holding.code] = holding;
     }
 
     /** Holding code */
@@ -80,7 +83,6 @@ public enum LedgerHolding {
      * @return                          Holding
      */
     public static LedgerHolding fromCode(int code) {
-        LedgerHolding holding = holdingMap.get(code);
-        return (holding != null ? holding : LedgerHolding.UNKNOWN);
+        return (code >= 0 && code < holdingTable.length ? holdingTable[code] : UNKNOWN);
     }
 }
\ No newline at end of file
@@ -0,0 +1,295 @@
+/*
+ * Copyright 2016 Ronald Hoffman.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.ScripterRon.NxtCore;
+
+import java.util.ArrayDeque;
+import java.util.Arrays;
+import java.util.List;
+import java.util.PriorityQueue;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+/**
+ * LedgerMerge returns the account ledger entries for a set of accounts as a single
+ * stream in descending ledger identifier order (newest entry first).
+ *
+ * The ledger for each account is requested a page at a time using concurrent requests.
+ * The first entry of each account page is kept in a priority queue and next() returns
+ * the entry with the largest ledger identifier.  The next page for an account is
+ * requested when half of the current page has been returned, so the number of buffered
+ * entries for an account is limited to one and a half pages.  The page size is the
+ * maximum number of buffered entries divided by the number of accounts, so the memory
+ * used by the merge does not grow with the number of accounts until the minimum page
+ * size is reached.
+ *
+ * The merge stops when it reaches the supplied ledger identifier, so the stream can
+ * return just the entries added since an earlier merge.  Entries added while the merge
+ * is in progress shift the older entries to higher indexes and are skipped when they
+ * are returned again.  Entries removed by a block chain rollback shift the older entries
+ * to lower indexes and some entries may be missed, so the merge should be limited to
+ * entries which can no longer be rolled back.
+ *
+ * The merge should be closed when it is no longer needed to cancel the outstanding
+ * requests and release the request threads.  It can be used in a try-with-resources
+ * statement.
+ */
+public class LedgerMerge implements AutoCloseable {
+
+    /** Default maximum number of concurrent requests */
+    public static final int DEFAULT_MAX_REQUESTS = 4;
+
+    /** Default maximum number of buffered entries */
+    public static final int DEFAULT_MAX_BUFFERED = 10000;
+
+    /** Minimum number of entries in a request */
+    private static final int MIN_PAGE_SIZE = 5;
+
+    /** Maximum number of entries in a request */
+    private static final int MAX_PAGE_SIZE = 100;
+
+    /** Account cursors */
+    private final Cursor[] cursors;
+
+    /** Cursors ordered by the ledger identifier of the first buffered entry */
+    private final PriorityQueue<Cursor> queue;
+
+    /** Ledger identifier of the oldest entry already processed */
+    private final long afterLedgerId;
+
+    /** Administrator password */
+    private final String adminPW;
+
+    /** Number of entries in a request */
+    private final int pageSize;
+
+    /** Request executor */
+    private final ExecutorService executor;
+
+    /** Merge started */
+    private boolean started;
+
+    /** Merge closed */
+    private boolean closed;
+
+    /** Number of requests issued */
+    private int requestCount;
+
+    /**
+     * Create a ledger merge using the default limits
+     *
+     * @param       accountIds              Account identifiers
+     * @param       afterLedgerId           Return entries with a larger ledger identifier
+     *                                      or 0 to return all entries
+     * @param       adminPW                 Administrator password or null if no password supplied
+     */
+    public LedgerMerge(long[] accountIds, long afterLedgerId, String adminPW) {
+        this(accountIds, afterLedgerId, adminPW, DEFAULT_MAX_REQUESTS, DEFAULT_MAX_BUFFERED);
+    }
+
+    /**
+     * Create a ledger merge
+     *
+     * @param       accountIds              Account identifiers
+     * @param       afterLedgerId           Return entries with a larger ledger identifier
+     *                                      or 0 to return all entries
+     * @param       adminPW                 Administrator password or null if no password supplied
+     * @param       maxRequests             Maximum number of concurrent requests
+     * @param       maxBuffered             Maximum number of buffered entries
+     */
+    public LedgerMerge(long[] accountIds, long afterLedgerId, String adminPW,
+                                            int maxRequests, int maxBuffered) {
+        this.afterLedgerId = afterLedgerId;
+        this.adminPW = adminPW;
+        long[] sortedIds = Arrays.copyOf(accountIds, accountIds.length);
+        Arrays.sort(sortedIds);
+        int count = 0;
+        for (int i=0; i<sortedIds.length; i++) {
+            if (i == 0 || sortedIds[i] != sortedIds[i-1])
+                sortedIds[count++] = sortedIds[i];
+        }
+        cursors = new Cursor[count];
+        for (int i=0; i<count; i++)
+            cursors[i] = new Cursor(sortedIds[i]);
+        pageSize = Math.max(Math.min(maxBuffered/Math.max(count, 1), MAX_PAGE_SIZE), MIN_PAGE_SIZE);
+        queue = new PriorityQueue<>(Math.max(count, 1),
+                (c1, c2) -> Long.compare(c2.buffer.peekFirst().getLedgerId(), c1.buffer.peekFirst().getLedgerId()));
+        executor = Executors.newFixedThreadPool(Math.max(maxRequests, 1), runnable -> {
+            Thread thread = new Thread(runnable, "NxtCore ledger merge");
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+
+    /**
+     * Return the number of entries in a request
+     *
+     * @return                              Page size
+     */
+    public int getPageSize() {
+        return pageSize;
+    }
+
+    /**
+     * Return the number of requests issued
+     *
+     * @return                              Number of requests
+     */
+    public synchronized int getRequestCount() {
+        return requestCount;
+    }
+
+    /**
+     * Return the next ledger entry.  The merge is closed when all of the entries
+     * have been returned.
+     *
+     * @return                              Ledger entry or null if there are no more entries
+     * @throws      NxtException            Unable to issue Nxt API request
+     */
+    public synchronized LedgerEntry next() throws NxtException {
+        if (closed)
+            return null;
+        try {
+            if (!started) {
+                started = true;
+                for (Cursor cursor : cursors)
+                    requestPage(cursor);
+                for (Cursor cursor : cursors) {
+                    fillBuffer(cursor);
+                    if (!cursor.buffer.isEmpty())
+                        queue.add(cursor);
+                }
+            }
+            Cursor cursor = queue.poll();
+            if (cursor == null) {
+                close();
+                return null;
+            }
+            LedgerEntry entry = cursor.buffer.pollFirst();
+            if (!cursor.exhausted && cursor.pending == null && cursor.buffer.size() <= pageSize/2)
+                requestPage(cursor);
+            fillBuffer(cursor);
+            if (!cursor.buffer.isEmpty())
+                queue.add(cursor);
+            return entry;
+        } catch (NxtException exc) {
+            close();
+            throw exc;
+        }
+    }
+
+    /**
+     * Close the merge and cancel outstanding requests (AutoCloseable interface)
+     */
+    @Override
+    public synchronized void close() {
+        if (!closed) {
+            closed = true;
+            executor.shutdownNow();
+            queue.clear();
+            for (Cursor cursor : cursors) {
+                cursor.buffer.clear();
+                cursor.pending = null;
+            }
+        }
+    }
+
+    /**
+     * Request the next page of entries for an account
+     *
+     * @param       cursor                  Account cursor
+     */
+    private void requestPage(Cursor cursor) {
+        long accountId = cursor.accountId;
+        int index = cursor.nextIndex;
+        cursor.nextIndex += pageSize;
+        cursor.pending = executor.submit(() ->
+                Nxt.getAccountLedger(accountId, index, index+pageSize-1, null, 0, false, adminPW));
+        requestCount++;
+    }
+
+    /**
+     * Wait for account pages until an entry is buffered or there are no more entries
+     * for the account
+     *
+     * @param       cursor                  Account cursor
+     * @throws      NxtException            Unable to issue Nxt API request
+     */
+    private void fillBuffer(Cursor cursor) throws NxtException {
+        while (cursor.buffer.isEmpty() && !cursor.exhausted) {
+            if (cursor.pending == null)
+                requestPage(cursor);
+            List<LedgerEntry> entries;
+            try {
+                entries = cursor.pending.get();
+            } catch (InterruptedException exc) {
+                throw new NxtException("Ledger merge interrupted", exc);
+            } catch (ExecutionException exc) {
+                if (exc.getCause() instanceof NxtException)
+                    throw (NxtException)exc.getCause();
+                throw new NxtException("Invalid ledger data returned for 'getAccountLedger'", exc.getCause());
+            }
+            cursor.pending = null;
+            if (entries.size() < pageSize)
+                cursor.exhausted = true;
+            for (LedgerEntry entry : entries) {
+                long ledgerId = entry.getLedgerId();
+                if (ledgerId <= afterLedgerId) {
+                    cursor.exhausted = true;
+                    break;
+                }
+                if (ledgerId < cursor.lastLedgerId) {
+                    cursor.buffer.addLast(entry);
+                    cursor.lastLedgerId = ledgerId;
+                }
+            }
+        }
+    }
+
+    /**
+     * Ledger position for an account
+     */
+    private static class Cursor {
+
+        /** Account identifier */
+        private final long accountId;
+
+        /** Buffered entries in descending ledger identifier order */
+        private final ArrayDeque<LedgerEntry> buffer = new ArrayDeque<>();
+
+        /** Pending page request */
+        private Future<List<LedgerEntry>> pending;
+
+        /** Index of the next page */
+        private int nextIndex;
+
+        /** Ledger identifier of the last buffered entry */
+        private long lastLedgerId = Long.MAX_VALUE;
+
+        /** No more entries for the account */
+        private boolean exhausted;
+
+        /**
+         * Create an account cursor
+         *
+         * @param       accountId               Account identifier
+         */
+        private Cursor(long accountId) {
+            this.accountId = accountId;
+        }
+    }
+}
@@ -0,0 +1,645 @@
+/*
+ * Copyright 2016 Ronald Hoffman.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.ScripterRon.NxtCore;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.zip.CRC32;
+
+/**
+ * LedgerMirror keeps a local copy of the account ledger for an account or for
+ * all accounts.
+ *
+ * The node server returns the ledger entries starting with the newest entry, so
+ * the ledger identifier of the newest stored entry is used as the cursor.  poll()
+ * first requests a few of the newest entries.  This normally reaches an entry that is
+ * already stored, so the cost of a poll is proportional to the number of new entries.
+ * Otherwise, the index of the oldest new entry is located using single-entry requests
+ * and the new entries are requested a page at a time starting with the oldest page.
+ * Each page is stored and passed to the listeners before the next page is requested,
+ * so the first poll for an empty mirror downloads the complete ledger without keeping
+ * it in memory.  New entries shift the index of the older entries, so entries are
+ * identified by the ledger identifier and not by their index.  Each page overlaps the
+ * stored entries and a page which does not reach a stored entry is requested again at
+ * higher indexes, so entries added while a poll is in progress do not leave a gap.
+ *
+ * The entries are appended to the mirror file in ascending ledger identifier order,
+ * which is also ascending height order.  The associated transactions are not stored.
+ * The server removes the ledger entries for blocks which are popped off the block chain
+ * and rollback() removes the stored entries for those blocks.  The mirror can be
+ * registered as a ChainSync listener to do this automatically.  A rollback while a poll
+ * is in progress shifts the older entries to lower indexes.  The page overlap keeps
+ * this from skipping entries, but the poll can store entries for blocks which are no
+ * longer in the block chain.  These entries stay in the mirror, and have been passed to
+ * the listeners, until rollback() is called for the rolled back height.
+ *
+ * Listeners are notified when entries are added or removed.  The notification for the
+ * last page of a poll includes the block chain height when the poll started, since the
+ * mirror then contains the entries for all of the blocks up to that height.  The height
+ * is -1 for the earlier pages.  getEntries() returns the stored entries following a
+ * ledger identifier for consumers which track their own position in the change feed.
+ *
+ * Mirror file layout:
+ *   - Magic number (4 bytes)
+ *   - Version (4 bytes)
+ *   - Account identifier (8 bytes)
+ *   - Ledger entries
+ *
+ * Ledger entry layout:
+ *   - Ledger identifier (8 bytes)
+ *   - Account identifier (8 bytes)
+ *   - Event code (4 bytes, -1 if there is no event)
+ *   - Event identifier (8 bytes)
+ *   - Holding code (4 bytes, -1 if there is no holding)
+ *   - Holding identifier (8 bytes)
+ *   - Change (8 bytes)
+ *   - Balance (8 bytes)
+ *   - Height (4 bytes)
+ *   - Timestamp (4 bytes)
+ *   - CRC32 of the preceding entry bytes (4 bytes)
+ *
+ * All numeric values are little-endian.
+ */
+public class LedgerMirror implements ChainSync.Listener {
+
+    /** Mirror file magic number */
+    private static final int MAGIC = 0x4e584c4d;
+
+    /** Mirror file version */
+    private static final int VERSION = 1;
+
+    /** Mirror file header length */
+    private static final int HEADER_LENGTH = 16;
+
+    /** Ledger entry length */
+    private static final int ENTRY_LENGTH = 68;
+
+    /** Number of entries in the first request for a poll */
+    private static final int MIN_REQUEST_SIZE = 10;
+
+    /** Maximum number of entries in a request */
+    private static final int MAX_REQUEST_SIZE = 100;
+
+    /** Number of entries in a page which are requested again by the next page */
+    private static final int PAGE_OVERLAP = 25;
+
+    /** Account identifier or 0 for all accounts */
+    private final long accountId;
+
+    /** Mirror file */
+    private final RandomAccessFile mirrorFile;
+
+    /** Mirror file channel */
+    private final FileChannel mirrorChannel;
+
+    /** Mirror listeners */
+    private final List<Listener> listeners = new CopyOnWriteArrayList<>();
+
+    /** Number of stored entries */
+    private int entryCount;
+
+    /** Ledger identifier of the newest stored entry */
+    private long lastLedgerId;
+
+    /** Height of the newest stored entry */
+    private int lastHeight = -1;
+
+    /** Mirror is closed */
+    private boolean closed;
+
+    /**
+     * Open the ledger mirror
+     *
+     * @param       file                    Mirror file
+     * @param       accountId               Account identifier or 0 for all accounts
+     * @throws      IOException             Unable to open the mirror file or the mirror
+     *                                      file is for a different account
+     */
+    public LedgerMirror(File file, long accountId) throws IOException {
+        this.accountId = accountId;
+        mirrorFile = new RandomAccessFile(file, "rw");
+        mirrorChannel = mirrorFile.getChannel();
+        try {
+            ByteBuffer header = ByteBuffer.allocate(HEADER_LENGTH);
+            header.order(ByteOrder.LITTLE_ENDIAN);
+            if (mirrorChannel.size() < HEADER_LENGTH) {
+                header.putInt(MAGIC).putInt(VERSION).putLong(accountId);
+                header.flip();
+                mirrorChannel.write(header, 0);
+                mirrorChannel.truncate(HEADER_LENGTH);
+            } else {
+                readFully(header, 0);
+                header.flip();
+                if (header.getInt() != MAGIC || header.getInt() != VERSION)
+                    throw new IOException("Ledger mirror file is not valid");
+                if (header.getLong() != accountId)
+                    throw new IOException("Ledger mirror file is for a different account");
+                loadEntries();
+            }
+        } catch (IOException exc) {
+            mirrorFile.close();
+            throw exc;
+        }
+    }
+
+    /**
+     * Find the last stored entry and discard an incomplete entry
+     *
+     * @throws      IOException             Unable to read the mirror file
+     */
+    private void loadEntries() throws IOException {
+        int count = (int)((mirrorChannel.size() - HEADER_LENGTH) / ENTRY_LENGTH);
+        while (count > 0) {
+            ByteBuffer buffer = readEntry(count-1);
+            if (buffer != null) {
+                lastLedgerId = buffer.getLong(0);
+                lastHeight = buffer.getInt(56);
+                break;
+            }
+            Nxt.log.warn("Discarding incomplete ledger mirror entry");
+            count--;
+        }
+        entryCount = count;
+        mirrorChannel.truncate(HEADER_LENGTH + (long)count*ENTRY_LENGTH);
+    }
+
+    /**
+     * Add a mirror listener
+     *
+     * @param       listener                Mirror listener
+     */
+    public void addListener(Listener listener) {
+        listeners.add(listener);
+    }
+
+    /**
+     * Remove a mirror listener
+     *
+     * @param       listener                Mirror listener
+     */
+    public void removeListener(Listener listener) {
+        listeners.remove(listener);
+    }
+
+    /**
+     * Return the account identifier
+     *
+     * @return                              Account identifier or 0 for all accounts
+     */
+    public long getAccountId() {
+        return accountId;
+    }
+
+    /**
+     * Return the number of stored entries
+     *
+     * @return                              Number of entries
+     */
+    public synchronized int getEntryCount() {
+        return entryCount;
+    }
+
+    /**
+     * Return the ledger identifier of the newest stored entry
+     *
+     * @return                              Ledger identifier or 0 if there are no entries
+     */
+    public synchronized long getLastLedgerId() {
+        return lastLedgerId;
+    }
+
+    /**
+     * Get the new ledger entries from the node server and store them.  The new entries
+     * are passed to the listeners a page at a time.
+     *
+     * @param       adminPW                 Administrator password or null if no password supplied
+     * @return                              Number of new entries
+     * @throws      IOException             Unable to update the mirror file
+     * @throws      NxtException            Unable to issue Nxt API request
+     */
+    public synchronized int poll(String adminPW) throws IOException, NxtException {
+        checkOpen();
+        //
+        // Get the block chain height before requesting the entries.  The entries for all of
+        // the blocks up to this height have been stored when the poll completes.
+        //
+        int chainHeight = Nxt.getChainState().getBlockCount() - 1;
+        //
+        // Most polls reach a stored entry in the first request
+        //
+        List<LedgerEntry> entries = getLedger(0, MIN_REQUEST_SIZE-1, adminPW);
+        if (isConnected(entries, MIN_REQUEST_SIZE))
+            return storeEntries(entries, chainHeight);
+        //
+        // Locate the newest stored entry and then store the new entries a page at a time,
+        // starting with the oldest page.  Each page overlaps the stored entries so we
+        // know there is no gap between the stored entries and the page.  Entries added
+        // while we are processing shift the older entries to higher indexes, so the page
+        // is requested again at higher indexes if it does not include a stored entry.
+        // The distance is doubled each time so that we catch up with the stored entries
+        // after a large block.
+        //
+        int storedIndex = findOldestEntry(MIN_REQUEST_SIZE-1, adminPW) + 1;
+        int shift = PAGE_OVERLAP;
+        int count = 0;
+        while (true) {
+            int start = Math.max(storedIndex-MAX_REQUEST_SIZE+PAGE_OVERLAP, 0);
+            int stop = storedIndex+PAGE_OVERLAP-1;
+            entries = getLedger(start, stop, adminPW);
+            if (!isConnected(entries, stop-start+1)) {
+                storedIndex += shift;
+                shift *= 2;
+                continue;
+            }
+            if (start == 0)
+                break;
+            count += storeEntries(entries, -1);
+            storedIndex = start;
+            shift = PAGE_OVERLAP;
+        }
+        return count + storeEntries(entries, chainHeight);
+    }
+
+    /**
+     * Locate the oldest new entry.  This is an estimate since entries can be added
+     * while we are searching.
+     *
+     * @param       newIndex                Index of an entry which is known to be new
+     * @param       adminPW                 Administrator password or null if no password supplied
+     * @return                              Index of the oldest new entry
+     * @throws      NxtException            Unable to issue Nxt API request
+     */
+    private int findOldestEntry(int newIndex, String adminPW) throws NxtException {
+        //
+        // Double the distance until we reach an entry that is not new and then
+        // use a binary search between the last new entry and that entry
+        //
+        int low = newIndex;
+        int step = MAX_REQUEST_SIZE;
+        int high = low + step;
+        while (isNewEntry(high, adminPW)) {
+            low = high;
+            step *= 2;
+            high = low + step;
+        }
+        while (high-low > 1) {
+            int mid = (low+high) >>> 1;
+            if (isNewEntry(mid, adminPW))
+                low = mid;
+            else
+                high = mid;
+        }
+        return low;
+    }
+
+    /**
+     * Check if the server entry at an index is newer than the stored entries
+     *
+     * @param       index                   Entry index
+     * @param       adminPW                 Administrator password or null if no password supplied
+     * @return                              TRUE if the entry exists and is not stored
+     * @throws      NxtException            Unable to issue Nxt API request
+     */
+    private boolean isNewEntry(int index, String adminPW) throws NxtException {
+        List<LedgerEntry> entries = getLedger(index, index, adminPW);
+        return (!entries.isEmpty() && entries.get(0).getLedgerId() > lastLedgerId);
+    }
+
+    /**
+     * Check if a page of server entries connects to the stored entries.  This is true if
+     * the page includes a stored entry or the page reaches the end of the server ledger.
+     *
+     * @param       entries                 Server entries
+     * @param       requestSize             Number of entries requested
+     * @return                              TRUE if the page connects to the stored entries
+     */
+    private boolean isConnected(List<LedgerEntry> entries, int requestSize) {
+        if (entries.size() < requestSize)
+            return true;
+        for (LedgerEntry entry : entries) {
+            if (entry.getLedgerId() <= lastLedgerId)
+                return true;
+        }
+        return false;
+    }
+
+    /**
+     * Get server ledger entries
+     *
+     * @param       firstIndex              Index of the first entry
+     * @param       lastIndex               Index of the last entry
+     * @param       adminPW                 Administrator password or null if no password supplied
+     * @return                              Entries in descending ledger identifier order
+     * @throws      NxtException            Unable to issue Nxt API request
+     */
+    private List<LedgerEntry> getLedger(int firstIndex, int lastIndex, String adminPW) throws NxtException {
+        try {
+            return Nxt.getAccountLedger(accountId, firstIndex, lastIndex, null, 0, false, adminPW);
+        } catch (IdentifierException exc) {
+            throw new NxtException("Invalid ledger data returned for 'getAccountLedger'", exc);
+        }
+    }
+
+    /**
+     * Store the server entries which are newer than the stored entries and notify the
+     * listeners.  The listeners are not notified for an intermediate page without any
+     * new entries.
+     *
+     * @param       entries                 Server entries in descending ledger identifier order
+     * @param       chainHeight             Block chain height when the poll started or -1 if
+     *                                      this is not the last page of the poll
+     * @return                              Number of new entries
+     * @throws      IOException             Unable to update the mirror file
+     */
+    private int storeEntries(List<LedgerEntry> entries, int chainHeight) throws IOException {
+        List<LedgerEntry> newEntries = new ArrayList<>(entries.size());
+        for (int i=entries.size()-1; i>=0; i--) {
+            LedgerEntry entry = entries.get(i);
+            if (entry.getLedgerId() > lastLedgerId)
+                newEntries.add(entry);
+        }
+        if (newEntries.isEmpty()) {
+            if (chainHeight >= 0) {
+                for (Listener listener : listeners)
+                    listener.entriesAdded(Collections.emptyList(), chainHeight);
+            }
+            return 0;
+        }
+        ByteBuffer buffer = ByteBuffer.allocate(newEntries.size()*ENTRY_LENGTH);
+        buffer.order(ByteOrder.LITTLE_ENDIAN);
+        CRC32 crc = new CRC32();
+        for (LedgerEntry entry : newEntries) {
+            int start = buffer.position();
+            buffer.putLong(entry.getLedgerId())
+                  .putLong(entry.getAccountId())
+                  .putInt(entry.getLedgerEvent() != null ? entry.getLedgerEvent().getCode() : -1)
+                  .putLong(entry.getLedgerEventId())
+                  .putInt(entry.getLedgerHolding() != null ? entry.getLedgerHolding().getCode() : -1)
+                  .putLong(entry.getLedgerHoldingId())
+                  .putLong(entry.getChange())
+                  .putLong(entry.getBalance())
+                  .putInt(entry.getHeight())
+                  .putInt(entry.getTimestamp());
+            crc.reset();
+            crc.update(buffer.array(), start, ENTRY_LENGTH-4);
+            buffer.putInt((int)crc.getValue());
+        }
+        buffer.flip();
+        long position = HEADER_LENGTH + (long)entryCount*ENTRY_LENGTH;
+        while (buffer.hasRemaining())
+            position += mirrorChannel.write(buffer, position);
+        LedgerEntry lastEntry = newEntries.get(newEntries.size()-1);
+        entryCount += newEntries.size();
+        lastLedgerId = lastEntry.getLedgerId();
+        lastHeight = lastEntry.getHeight();
+        List<LedgerEntry> addedEntries = Collections.unmodifiableList(newEntries);
+        for (Listener listener : listeners)
+            listener.entriesAdded(addedEntries, chainHeight);
+        return newEntries.size();
+    }
+
+    /**
+     * Return stored entries following a ledger identifier
+     *
+     * @param       ledgerId                Ledger identifier or 0 to start with the oldest entry
+     * @param       maxCount                Maximum number of entries to return
+     * @return                              Entries in ascending ledger identifier order
+     * @throws      IOException             Unable to read the mirror file
+     */
+    public synchronized List<LedgerEntry> getEntries(long ledgerId, int maxCount) throws IOException {
+        checkOpen();
+        int start = findEntry(ledgerId+1);
+        int stop = (int)Math.min((long)start+maxCount, entryCount);
+        List<LedgerEntry> entries = new ArrayList<>(Math.max(stop-start, 0));
+        if (start >= stop)
+            return entries;
+        ByteBuffer buffer = ByteBuffer.allocate((stop-start)*ENTRY_LENGTH);
+        buffer.order(ByteOrder.LITTLE_ENDIAN);
+        readFully(buffer, HEADER_LENGTH + (long)start*ENTRY_LENGTH);
+        buffer.flip();
+        while (buffer.hasRemaining()) {
+            long entryLedgerId = buffer.getLong();
+            long entryAccountId = buffer.getLong();
+            int eventCode = buffer.getInt();
+            long eventId = buffer.getLong();
+            int holdingCode = buffer.getInt();
+            long holdingId = buffer.getLong();
+            long change = buffer.getLong();
+            long balance = buffer.getLong();
+            int height = buffer.getInt();
+            int timestamp = buffer.getInt();
+            buffer.getInt();
+            entries.add(new LedgerEntry(entryLedgerId, entryAccountId,
+                    (eventCode >= 0 ? LedgerEvent.fromCode(eventCode) : null), eventId,
+                    (holdingCode >= 0 ? LedgerHolding.fromCode(holdingCode) : null), holdingId,
+                    change, balance, height, timestamp));
+        }
+        return entries;
+    }
+
+    /**
+     * Remove the stored entries for blocks following a block.  The next poll will
+     * get the server entries for the replacement blocks.
+     *
+     * @param       height                  Height of the last block to keep
+     * @throws      IOException             Unable to update the mirror file
+     */
+    public synchronized void rollback(int height) throws IOException {
+        checkOpen();
+        if (lastHeight <= height)
+            return;
+        //
+        // Find the first entry following the block.  The entries are in ascending
+        // height order since the ledger identifiers are assigned as blocks are added.
+        //
+        int low = 0;
+        int high = entryCount;
+        while (low < high) {
+            int mid = (low+high) >>> 1;
+            ByteBuffer buffer = ByteBuffer.allocate(4);
+            buffer.order(ByteOrder.LITTLE_ENDIAN);
+            readFully(buffer, HEADER_LENGTH + (long)mid*ENTRY_LENGTH + 56);
+            if (buffer.getInt(0) <= height)
+                low = mid+1;
+            else
+                high = mid;
+        }
+        mirrorChannel.truncate(HEADER_LENGTH + (long)low*ENTRY_LENGTH);
+        entryCount = low;
+        if (low > 0) {
+            ByteBuffer buffer = readEntry(low-1);
+            if (buffer == null)
+                throw new IOException("Ledger mirror entry is not valid");
+            lastLedgerId = buffer.getLong(0);
+            lastHeight = buffer.getInt(56);
+        } else {
+            lastLedgerId = 0;
+            lastHeight = -1;
+        }
+        Nxt.log.info(String.format("Ledger mirror rolled back to height %d", height));
+        for (Listener listener : listeners)
+            listener.entriesRemoved(height);
+    }
+
+    /**
+     * Block added to the block chain (ChainSync.Listener interface)
+     *
+     * @param       block                   Block
+     */
+    @Override
+    public void blockAdded(Block block) {
+    }
+
+    /**
+     * Blocks removed from the block chain (ChainSync.Listener interface)
+     *
+     * @param       height                  Height of the last block that was kept
+     * @param       blockIds                Identifiers of the removed blocks
+     */
+    @Override
+    public void chainRolledBack(int height, LongList blockIds) {
+        try {
+            rollback(height);
+        } catch (IOException exc) {
+            Nxt.log.error(String.format("Unable to roll back the ledger mirror to height %d", height), exc);
+        }
+    }
+
+    /**
+     * Write the mirror file to storage
+     *
+     * @throws      IOException             Unable to write to storage
+     */
+    public synchronized void flush() throws IOException {
+        checkOpen();
+        mirrorChannel.force(true);
+    }
+
+    /**
+     * Close the ledger mirror
+     *
+     * @throws      IOException             Unable to close the mirror file
+     */
+    public synchronized void close() throws IOException {
+        if (closed)
+            return;
+        try {
+            flush();
+        } finally {
+            closed = true;
+            mirrorFile.close();
+        }
+    }
+
+    /**
+     * Return the index of the first entry with a ledger identifier that is not less than
+     * the target identifier
+     *
+     * @param       ledgerId                Target ledger identifier
+     * @return                              Entry index
+     * @throws      IOException             Unable to read the mirror file
+     */
+    private int findEntry(long ledgerId) throws IOException {
+        int low = 0;
+        int high = entryCount;
+        ByteBuffer buffer = ByteBuffer.allocate(8);
+        buffer.order(ByteOrder.LITTLE_ENDIAN);
+        while (low < high) {
+            int mid = (low+high) >>> 1;
+            buffer.clear();
+            readFully(buffer, HEADER_LENGTH + (long)mid*ENTRY_LENGTH);
+            if (buffer.getLong(0) < ledgerId)
+                low = mid+1;
+            else
+                high = mid;
+        }
+        return low;
+    }
+
+    /**
+     * Read an entry and verify the checksum
+     *
+     * @param       index                   Entry index
+     * @return                              Entry bytes or null if the checksum is not valid
+     * @throws      IOException             Unable to read the mirror file
+     */
+    private ByteBuffer readEntry(int index) throws IOException {
+        ByteBuffer buffer = ByteBuffer.allocate(ENTRY_LENGTH);
+        buffer.order(ByteOrder.LITTLE_ENDIAN);
+        readFully(buffer, HEADER_LENGTH + (long)index*ENTRY_LENGTH);
+        CRC32 crc = new CRC32();
+        crc.update(buffer.array(), 0, ENTRY_LENGTH-4);
+        return ((int)crc.getValue() == buffer.getInt(ENTRY_LENGTH-4) ? buffer : null);
+    }
+
+    /**
+     * Read from the mirror file until the buffer is full
+     *
+     * @param       buffer                  Buffer
+     * @param       position                File position
+     * @throws      IOException             Unable to read the mirror file
+     */
+    private void readFully(ByteBuffer buffer, long position) throws IOException {
+        while (buffer.hasRemaining()) {
+            int count = mirrorChannel.read(buffer, position);
+            if (count < 0)
+                throw new IOException("Ledger mirror file is too short");
+            position += count;
+        }
+    }
+
+    /**
+     * Verify that the mirror is open
+     *
+     * @throws      IOException             Mirror is closed
+     */
+    private void checkOpen() throws IOException {
+        if (closed)
+            throw new IOException("Ledger mirror is closed");
+    }
+
+    /**
+     * The mirror listener is called when the stored entries change
+     */
+    public interface Listener {
+
+        /**
+         * New ledger entries have been stored.  This is called for each page of new
+         * entries and for the last page of each poll.  The entry list is empty if the
+         * poll did not find any new entries.
+         *
+         * @param       entries                 New entries in ascending ledger identifier order
+         * @param       chainHeight             Block chain height when the poll started or -1 if
+         *                                      more entries will be added by the same poll
+         */
+        void entriesAdded(List<LedgerEntry> entries, int chainHeight);
+
+        /**
+         * Ledger entries have been removed because their blocks are no longer in the block chain
+         *
+         * @param       height                  Height of the last block that was kept
+         */
+        void entriesRemoved(int height);
+    }
+}
@@ -0,0 +1,238 @@
+/*
+ * Copyright 2016 Ronald Hoffman.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.ScripterRon.NxtCore;
+
+import java.util.Arrays;
+
+/**
+ * LongHashMap is a hash map with primitive long keys.
+ *
+ * The map uses open addressing with linear probing, so there is no boxing of the
+ * keys and no entry objects.  A key of 0 is used to mark an empty slot, so the value
+ * for the 0 key is kept separately.  The map is not synchronized.
+ *
+ * @param       <V>                     Value type
+ */
+class LongHashMap<V> {
+
+    /** Minimum table capacity */
+    private static final int MIN_CAPACITY = 16;
+
+    /** Table keys (0 indicates an empty slot) */
+    private long[] keys;
+
+    /** Table values */
+    private Object[] values;
+
+    /** Table mask */
+    private int mask;
+
+    /** Number of table entries */
+    private int count;
+
+    /** Value for the 0 key */
+    private V zeroValue;
+
+    /** Map contains the 0 key */
+    private boolean hasZero;
+
+    /**
+     * Create an empty map
+     */
+    LongHashMap() {
+        this(MIN_CAPACITY);
+    }
+
+    /**
+     * Create an empty map
+     *
+     * @param       expectedSize            Expected number of entries
+     */
+    LongHashMap(int expectedSize) {
+        int capacity = MIN_CAPACITY;
+        while (capacity < expectedSize*2)
+            capacity <<= 1;
+        allocate(capacity);
+    }
+
+    /**
+     * Return the number of entries
+     *
+     * @return                              Number of entries
+     */
+    int size() {
+        return count + (hasZero ? 1 : 0);
+    }
+
+    /**
+     * Check if the map is empty
+     *
+     * @return                              TRUE if the map is empty
+     */
+    boolean isEmpty() {
+        return (size() == 0);
+    }
+
+    /**
+     * Check if the map contains a key
+     *
+     * @param       key                     Key
+     * @return                              TRUE if the key is in the map
+     */
+    boolean containsKey(long key) {
+        if (key == 0)
+            return hasZero;
+        return (keys[find(key)] != 0);
+    }
+
+    /**
+     * Return the value for a key
+     *
+     * @param       key                     Key
+     * @return                              Value or null if the key is not in the map
+     */
+    @SuppressWarnings("unchecked")
+    V get(long key) {
+        if (key == 0)
+            return zeroValue;
+        return (V)values[find(key)];
+    }
+
+    /**
+     * Add an entry to the map
+     *
+     * @param       key                     Key
+     * @param       value                   Value
+     * @return                              Previous value or null
+     */
+    @SuppressWarnings("unchecked")
+    V put(long key, V value) {
+        if (key == 0) {
+            V prevValue = zeroValue;
+            zeroValue = value;
+            hasZero = true;
+            return prevValue;
+        }
+        int index = find(key);
+        if (keys[index] != 0) {
+            V prevValue = (V)values[index];
+            values[index] = value;
+            return prevValue;
+        }
+        keys[index] = key;
+        values[index] = value;
+        if (++count*2 > keys.length)
+            allocate(keys.length*2);
+        return null;
+    }
+
+    /**
+     * Remove an entry from the map
+     *
+     * @param       key                     Key
+     * @return                              Removed value or null if the key is not in the map
+     */
+    @SuppressWarnings("unchecked")
+    V remove(long key) {
+        if (key == 0) {
+            V prevValue = zeroValue;
+            zeroValue = null;
+            hasZero = false;
+            return prevValue;
+        }
+        int index = find(key);
+        if (keys[index] == 0)
+            return null;
+        V prevValue = (V)values[index];
+        //
+        // Shift following entries back so that no probe sequence is broken
+        //
+        int gap = index;
+        int next = (gap+1) & mask;
+        while (keys[next] != 0) {
+            int home = hash(keys[next]);
+            if (((next - home) & mask) >= ((next - gap) & mask)) {
+                keys[gap] = keys[next];
+                values[gap] = values[next];
+                gap = next;
+            }
+            next = (next+1) & mask;
+        }
+        keys[gap] = 0;
+        values[gap] = null;
+        count--;
+        return prevValue;
+    }
+
+    /**
+     * Remove all entries from the map
+     */
+    void clear() {
+        Arrays.fill(keys, 0);
+        Arrays.fill(values, null);
+        count = 0;
+        zeroValue = null;
+        hasZero = false;
+    }
+
+    /**
+     * Return the slot for a key.  This is either the slot containing the key or
+     * the empty slot where the key would be stored.
+     *
+     * @param       key                     Key (must not be 0)
+     * @return                              Table index
+     */
+    private int find(long key) {
+        int index = hash(key);
+        while (keys[index] != 0 && keys[index] != key)
+            index = (index+1) & mask;
+        return index;
+    }
+
+    /**
+     * Return the home slot for a key
+     *
+     * @param       key                     Key
+     * @return                              Table index
+     */
+    private int hash(long key) {
+        long h = key * 0x9E3779B97F4A7C15L;
+        return (int)(h ^ (h >>> 32)) & mask;
+    }
+
+    /**
+     * Allocate the table and rehash the current entries
+     *
+     * @param       capacity                Table capacity (power of 2)
+     */
+    private void allocate(int capacity) {
+        long[] oldKeys = keys;
+        Object[] oldValues = values;
+        keys = new long[capacity];
+        values = new Object[capacity];
+        mask = capacity - 1;
+        if (oldKeys != null) {
+            for (int i=0; i<oldKeys.length; i++) {
+                long key = oldKeys[i];
+                if (key != 0) {
+                    int index = find(key);
+                    keys[index] = key;
+                    values[index] = oldValues[i];
+                }
+            }
+        }
+    }
+}
@@ -0,0 +1,275 @@
+/*
+ * Copyright 2016 Ronald Hoffman.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.ScripterRon.NxtCore;
+
+import java.util.AbstractList;
+import java.util.Arrays;
+import java.util.RandomAccess;
+
+/**
+ * LongList is a list of primitive long values.
+ *
+ * The values are stored in a long array, so each value uses 8 bytes instead of
+ * a Long object and a list reference.  The primitive accessors should be used when
+ * possible.  The List methods are provided for compatibility with existing code and
+ * box each value as it is referenced.
+ */
+public class LongList extends AbstractList<Long> implements RandomAccess {
+
+    /** Empty array */
+    private static final long[] EMPTY = new long[0];
+
+    /** List values */
+    private long[] values;
+
+    /** Number of values */
+    private int count;
+
+    /**
+     * Create an empty list
+     */
+    public LongList() {
+        values = EMPTY;
+    }
+
+    /**
+     * Create an empty list
+     *
+     * @param       capacity                Initial capacity
+     */
+    public LongList(int capacity) {
+        if (capacity < 0)
+            throw new IllegalArgumentException("The capacity must not be negative");
+        values = (capacity > 0 ? new long[capacity] : EMPTY);
+    }
+
+    /**
+     * Create a list containing the array values
+     *
+     * @param       values                  List values
+     */
+    public LongList(long[] values) {
+        this.values = values.clone();
+        this.count = values.length;
+    }
+
+    /**
+     * Return the number of values in the list
+     *
+     * @return                              Number of values
+     */
+    @Override
+    public int size() {
+        return count;
+    }
+
+    /**
+     * Return a list value
+     *
+     * @param       index                   List index
+     * @return                              List value
+     * @throws      IndexOutOfBoundsException   Index is not valid
+     */
+    public long getLong(int index) {
+        checkIndex(index);
+        return values[index];
+    }
+
+    /**
+     * Replace a list value
+     *
+     * @param       index                   List index
+     * @param       value                   New value
+     * @return                              Previous value
+     * @throws      IndexOutOfBoundsException   Index is not valid
+     */
+    public long setLong(int index, long value) {
+        checkIndex(index);
+        long prevValue = values[index];
+        values[index] = value;
+        return prevValue;
+    }
+
+    /**
+     * Add a value to the end of the list
+     *
+     * @param       value                   Value to add
+     */
+    public void addLong(long value) {
+        if (count == values.length)
+            values = Arrays.copyOf(values, Math.max(count*2, 8));
+        values[count++] = value;
+        modCount++;
+    }
+
+    /**
+     * Check if the list contains a value
+     *
+     * @param       value                   Value
+     * @return                              TRUE if the value is in the list
+     */
+    public boolean containsLong(long value) {
+        return (indexOfLong(value) >= 0);
+    }
+
+    /**
+     * Return the index of the first occurrence of a value
+     *
+     * @param       value                   Value
+     * @return                              List index or -1 if the value is not in the list
+     */
+    public int indexOfLong(long value) {
+        for (int i=0; i<count; i++) {
+            if (values[i] == value)
+                return i;
+        }
+        return -1;
+    }
+
+    /**
+     * Return the list values as an array
+     *
+     * @return                              Array containing the list values
+     */
+    public long[] toLongArray() {
+        return Arrays.copyOf(values, count);
+    }
+
+    /**
+     * Release unused capacity
+     */
+    public void trimToSize() {
+        if (count < values.length)
+            values = (count > 0 ? Arrays.copyOf(values, count) : EMPTY);
+    }
+
+    /**
+     * Return a list value
+     *
+     * @param       index                   List index
+     * @return                              List value
+     * @throws      IndexOutOfBoundsException   Index is not valid
+     */
+    @Override
+    public Long get(int index) {
+        return getLong(index);
+    }
+
+    /**
+     * Replace a list value
+     *
+     * @param       index                   List index
+     * @param       value                   New value
+     * @return                              Previous value
+     * @throws      IndexOutOfBoundsException   Index is not valid
+     */
+    @Override
+    public Long set(int index, Long value) {
+        return setLong(index, value);
+    }
+
+    /**
+     * Insert a value into the list
+     *
+     * @param       index                   List index
+     * @param       value                   Value to insert
+     * @throws      IndexOutOfBoundsException   Index is not valid
+     */
+    @Override
+    public void add(int index, Long value) {
+        if (index < 0 || index > count)
+            throw new IndexOutOfBoundsException("Index "+index+", Size "+count);
+        long longValue = value;
+        if (count == values.length)
+            values = Arrays.copyOf(values, Math.max(count*2, 8));
+        System.arraycopy(values, index, values, index+1, count-index);
+        values[index] = longValue;
+        count++;
+        modCount++;
+    }
+
+    /**
+     * Remove a value from the list
+     *
+     * @param       index                   List index
+     * @return                              Removed value
+     * @throws      IndexOutOfBoundsException   Index is not valid
+     */
+    @Override
+    public Long remove(int index) {
+        checkIndex(index);
+        long prevValue = values[index];
+        System.arraycopy(values, index+1, values, index, count-index-1);
+        count--;
+        modCount++;
+        return prevValue;
+    }
+
+    /**
+     * Remove all values from the list
+     */
+    @Override
+    public void clear() {
+        count = 0;
+        modCount++;
+    }
+
+    /**
+     * Remove a range of values from the list
+     *
+     * @param       fromIndex               Index of the first value to remove
+     * @param       toIndex                 Index following the last value to remove
+     */
+    @Override
+    protected void removeRange(int fromIndex, int toIndex) {
+        System.arraycopy(values, toIndex, values, fromIndex, count-toIndex);
+        count -= toIndex - fromIndex;
+        modCount++;
+    }
+
+    /**
+     * Check if the list contains a value
+     *
+     * @param       obj                     Value
+     * @return                              TRUE if the value is in the list
+     */
+    @Override
+    public boolean contains(Object obj) {
+        return (obj instanceof Long && indexOfLong((Long)obj) >= 0);
+    }
+
+    /**
+     * Return the index of the first occurrence of a value
+     *
+     * @param       obj                     Value
+     * @return                              List index or -1 if the value is not in the list
+     */
+    @Override
+    public int indexOf(Object obj) {
+        return (obj instanceof Long ? indexOfLong((Long)obj) : -1);
+    }
+
+    /**
+     * Verify a list index
+     *
+     * @param       index                   List index
+     * @throws      IndexOutOfBoundsException   Index is not valid
+     */
+    private void checkIndex(int index) {
+        if (index < 0 || index >= count)
+            throw new IndexOutOfBoundsException("Index "+index+", Size "+count);
+    }
+}
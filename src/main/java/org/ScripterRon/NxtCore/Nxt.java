@@ -31,6 +31,8 @@ import java.net.HttpURLConnection;
 import java.net.MalformedURLException;
 import java.net.URL;
 import java.net.URLEncoder;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
 import java.security.KeyManagementException;
 import java.security.NoSuchAlgorithmException;
 import java.security.SecureRandom;
@@ -123,6 +125,14 @@ public class Nxt {
     /** Accept any certificates */
     private static boolean acceptAny = false;
 
+    /** Request prefix for 'broadcastTransaction' */
+    private static final byte[] broadcastPrefix =
+            "requestType=broadcastTransaction&transactionBytes=".getBytes(StandardCharsets.US_ASCII);
+
+    /** Per-thread buffer used to serialize transactions for 'broadcastTransaction' */
+    private static final ThreadLocal<ByteBuffer> broadcastBuffer =
+            ThreadLocal.withInitial(() -> ByteBuffer.allocate(4096));
+
     /**
      * Initialize the Nxt core library using default timeout values
      *
@@ -183,6 +193,7 @@ public class Nxt {
         nodeReadTimeout = readTimeout;
         if (useHTTPS)
             sslInit();
+        EcBlockCache.invalidate();
         log.info(String.format("API node=%s, API port=%d\n"+
                                "  HTTPS=%s, Allow mismatch=%s, Accept any=%s\n"+
                                "  Connect timeout=%d, Read timeout=%d",
@@ -272,9 +283,28 @@ public class Nxt {
     public static long broadcastTransaction(Transaction tx) throws NxtException {
         long txId;
         try {
-            PeerResponse response = issueRequest("broadcastTransaction",
-                                                 "transactionBytes="+Utils.toHexString(tx.getBytes(false)),
-                                                 nodeReadTimeout);
+            //
+            // Serialize the transaction into the thread buffer and then stream the hex
+            // encoding of the buffer directly to the connection
+            //
+            int txSize = tx.getSize();
+            ByteBuffer buffer = broadcastBuffer.get();
+            if (buffer.capacity() < txSize) {
+                buffer = ByteBuffer.allocate(Math.max(txSize, 2*buffer.capacity()));
+                broadcastBuffer.set(buffer);
+            }
+            buffer.clear();
+            tx.writeTo(buffer, false);
+            buffer.flip();
+            final ByteBuffer txBuffer = buffer;
+            if (log.isDebugEnabled())
+                log.debug(String.format("Issue HTTP request to %s:%d: broadcastTransaction for transaction %s",
+                                        nodeName, nodePort, tx.getTransactionIdString()));
+            PeerResponse response = issueRequest("broadcastTransaction", broadcastPrefix.length+2*txSize,
+                                                 (out) -> {
+                                                     out.write(broadcastPrefix);
+                                                     Utils.toHexString(txBuffer, out);
+                                                 }, nodeReadTimeout);
             txId = response.getId("transaction");
             if (txId != tx.getTransactionId())
                 throw new NxtException("Incorrect transaction identifier returned for 'broadcastTransaction'");
@@ -335,6 +365,7 @@ public class Nxt {
                                             String.format("timeout=%d", timeout), (timeout+5)*1000);
         List<Map<String, Object>> eventList = response.getObjectList("events");
         eventList.stream().forEach(resp -> events.add(new Event(new PeerResponse(resp))));
+        EcBlockCache.processEvents(events);
         return events;
     }
 
@@ -414,11 +445,22 @@ public class Nxt {
      * @throws      NxtException            Unable to issue Nxt API request
      */
     public static List<Long> getAccountBlocks(long accountId) throws NxtException {
-        List<Long> blockList;
+        return getAccountBlockIds(accountId);
+    }
+
+    /**
+     * Get the account block identifiers (blocks forged by the account)
+     *
+     * @param       accountId               Account identifier
+     * @return                              Account block identifiers
+     * @throws      NxtException            Unable to issue Nxt API request
+     */
+    public static LongList getAccountBlockIds(long accountId) throws NxtException {
+        LongList blockList;
         try {
             PeerResponse response = issueRequest("getAccountBlockIds", "account="+Utils.idToString(accountId),
                                             nodeReadTimeout);
-            blockList = response.getIdList("blockIds");
+            blockList = response.getIdValues("blockIds");
         } catch (IdentifierException exc) {
             log.error("Invalid block identifier returned for 'getAccountBlockIds'", exc);
             throw new NxtException("Invalid block identifier returned for 'getAccountBlockIds'", exc);
@@ -730,9 +772,30 @@ public class Nxt {
      */
     public static List<Block> getBlocks(int firstIndex, int lastIndex, boolean includeTransactions, String adminPW)
                                             throws NxtException {
+        return getBlocks(nodeName, nodePort, firstIndex, lastIndex, includeTransactions, adminPW);
+    }
+
+    /**
+     * Get a list of blocks from the specified node server
+     *
+     * The node server uses the security settings and timeouts specified by init()
+     *
+     * @param       hostName                Host name or IP address of the node server
+     * @param       apiPort                 Port for the node server
+     * @param       firstIndex              Start index (chain head is index 0)
+     * @param       lastIndex               Stop index
+     * @param       includeTransactions     TRUE to include the block transactions or
+     *                                      FALSE to include just the transaction identifiers
+     * @param       adminPW                 Administrator password
+     * @return                              Block list
+     * @throws      NxtException            Unable to issue Nxt API request
+     */
+    public static List<Block> getBlocks(String hostName, int apiPort, int firstIndex, int lastIndex,
+                                            boolean includeTransactions, String adminPW)
+                                            throws NxtException {
         List<Block> blocks = new ArrayList<>(Math.max(lastIndex-firstIndex+1, 1));
         try {
-            PeerResponse response = issueRequest("getBlocks",
+            PeerResponse response = issueRequest(hostName, apiPort, "getBlocks",
                     String.format("firstIndex=%d&lastIndex=%d&includeTransactions=%s&adminPassword=%s",
                                   firstIndex, lastIndex, includeTransactions, URLEncoder.encode(adminPW, "UTF-8")),
                     nodeReadTimeout);
@@ -748,6 +811,41 @@ public class Nxt {
         return blocks;
     }
 
+    /**
+     * Get a list of blocks and add them to a block batch
+     *
+     * The blocks are stored in columnar form without creating Block and Transaction objects
+     *
+     * @param       firstIndex              Start index (chain head is index 0)
+     * @param       lastIndex               Stop index
+     * @param       includeTransactions     TRUE to include the block transactions or
+     *                                      FALSE to include just the transaction identifiers
+     * @param       adminPW                 Administrator password
+     * @param       batch                   Block batch
+     * @return                              Number of blocks added to the batch
+     * @throws      NxtException            Unable to issue Nxt API request
+     */
+    public static int getBlocks(int firstIndex, int lastIndex, boolean includeTransactions, String adminPW,
+                                            BlockBatch batch) throws NxtException {
+        int count;
+        try {
+            PeerResponse response = issueRequest("getBlocks",
+                    String.format("firstIndex=%d&lastIndex=%d&includeTransactions=%s&adminPassword=%s",
+                                  firstIndex, lastIndex, includeTransactions, URLEncoder.encode(adminPW, "UTF-8")),
+                    nodeReadTimeout);
+            List<Map<String, Object>> blockResponses = response.getObjectList("blocks");
+            for (Map<String, Object> blockResponse : blockResponses)
+                batch.add(new PeerResponse(blockResponse));
+            count = blockResponses.size();
+        } catch (IdentifierException | NumberFormatException exc) {
+            log.error("Invalid block data returned for 'getBlocks'", exc);
+            throw new NxtException("Invalid block data returned for 'getBlocks'", exc);
+        } catch (UnsupportedEncodingException exc) {
+            throw new NxtException("Unable to encode administrator password", exc);
+        }
+        return count;
+    }
+
     /**
      * Get the current block chain state
      *
@@ -755,9 +853,23 @@ public class Nxt {
      * @throws      NxtException            Unable to issue Nxt API request
      */
     public static ChainState getChainState() throws NxtException {
+        return getChainState(nodeName, nodePort);
+    }
+
+    /**
+     * Get the current block chain state from the specified node server
+     *
+     * The node server uses the security settings and timeouts specified by init()
+     *
+     * @param       hostName                Host name or IP address of the node server
+     * @param       apiPort                 Port for the node server
+     * @return                              Chain state
+     * @throws      NxtException            Unable to issue Nxt API request
+     */
+    public static ChainState getChainState(String hostName, int apiPort) throws NxtException {
         ChainState chainState;
         try {
-            PeerResponse response = issueRequest("getBlockchainStatus", null, nodeReadTimeout);
+            PeerResponse response = issueRequest(hostName, apiPort, "getBlockchainStatus", null, nodeReadTimeout);
             chainState = new ChainState(response);
         } catch (IdentifierException | NumberFormatException exc) {
             log.error("Invalid data returned for 'getBlockchainStatus'", exc);
@@ -854,7 +966,8 @@ public class Nxt {
     }
 
     /**
-     * Get the current Economic Clustering block
+     * Get the current Economic Clustering block from the node server.  Use
+     * EcBlockCache.getEcBlock() to avoid a server request for each new transaction.
      *
      * @return                              EC block
      * @throws      NxtException            Unable to issue Nxt API request
@@ -1170,13 +1283,16 @@ public class Nxt {
         try {
             TransactionType txType = TransactionType.Messaging.ALIAS_ASSIGNMENT;
             AliasAssignment attachment = new AliasAssignment(aliasName, aliasUri);
-            EcBlock ecBlock = getEcBlock();
+            EcBlock ecBlock = EcBlockCache.getEcBlock();
             Transaction tx = new Transaction(txType, GENESIS_ACCOUNT_ID, 0, fee, deadline, null, attachment,
                                             ecBlock, passPhrase);
             txId = Nxt.broadcastTransaction(tx);
         } catch (KeyException exc) {
             log.error("Unable to sign transaction", exc);
             throw new NxtException("Unable to sign transaction", exc);
+        } catch (NxtException exc) {
+            EcBlockCache.invalidate();
+            throw exc;
         }
         return txId;
     }
@@ -1202,13 +1318,16 @@ public class Nxt {
         try {
             TransactionType txType = TransactionType.MonetarySystem.CURRENCY_MINTING;
             CurrencyMinting attachment = new CurrencyMinting(currencyId, units, counter, nonce);
-            EcBlock ecBlock = getEcBlock();
+            EcBlock ecBlock = EcBlockCache.getEcBlock();
             Transaction tx = new Transaction(txType, GENESIS_ACCOUNT_ID, 0, fee, deadline, null, attachment,
                                             ecBlock, passPhrase);
             txId = Nxt.broadcastTransaction(tx);
         } catch (KeyException exc) {
             log.error("Unable to sign transaction", exc);
             throw new NxtException("Unable to sign transaction", exc);
+        } catch (NxtException exc) {
+            EcBlockCache.invalidate();
+            throw exc;
         }
         return txId;
     }
@@ -1251,13 +1370,16 @@ public class Nxt {
         try {
             TransactionType txType = TransactionType.AccountControl.EFFECTIVE_BALANCE_LEASING;
             BalanceLeasing attachment = new BalanceLeasing(period);
-            EcBlock ecBlock = getEcBlock();
+            EcBlock ecBlock = EcBlockCache.getEcBlock();
             Transaction tx = new Transaction(txType, recipientId, 0, fee, deadline, null, attachment,
                                             ecBlock, passPhrase);
             txId = Nxt.broadcastTransaction(tx);
         } catch (KeyException exc) {
             log.error("Unable to sign transaction", exc);
             throw new NxtException("Unable to sign transaction", exc);
+        } catch (NxtException exc) {
+            EcBlockCache.invalidate();
+            throw exc;
         }
         return txId;
     }
@@ -1301,13 +1423,16 @@ public class Nxt {
         try {
             TransactionType txType = TransactionType.Messaging.ARBITRARY_MESSAGE;
             ArbitraryMessage attachment = new ArbitraryMessage(message);
-            EcBlock ecBlock = getEcBlock();
+            EcBlock ecBlock = EcBlockCache.getEcBlock();
             Transaction tx = new Transaction(txType, recipientId, 0, fee, deadline, null, attachment,
                                             ecBlock, passPhrase);
             txId = Nxt.broadcastTransaction(tx);
         } catch (KeyException exc) {
             log.error("Unable to sign transaction", exc);
             throw new NxtException("Unable to sign transaction", exc);
+        } catch (NxtException exc) {
+            EcBlockCache.invalidate();
+            throw exc;
         }
         return txId;
     }
@@ -1351,13 +1476,16 @@ public class Nxt {
         try {
             TransactionType txType = TransactionType.Messaging.ARBITRARY_MESSAGE;
             ArbitraryMessage attachment = new ArbitraryMessage(message);
-            EcBlock ecBlock = getEcBlock();
+            EcBlock ecBlock = EcBlockCache.getEcBlock();
             Transaction tx = new Transaction(txType, recipientId, 0, fee, deadline, null, attachment,
                                             ecBlock, passPhrase);
             txId = Nxt.broadcastTransaction(tx);
         } catch (KeyException exc) {
             log.error("Unable to sign transaction", exc);
             throw new NxtException("Unable to sign transaction", exc);
+        } catch (NxtException exc) {
+            EcBlockCache.invalidate();
+            throw exc;
         }
         return txId;
     }
@@ -1400,13 +1528,16 @@ public class Nxt {
         long txId;
         try {
             TransactionType txType = TransactionType.Payment.ORDINARY;
-            EcBlock ecBlock = getEcBlock();
+            EcBlock ecBlock = EcBlockCache.getEcBlock();
             Transaction tx = new Transaction(txType, recipientId, amount, fee, deadline, null, null,
                                             ecBlock, passPhrase);
             txId = broadcastTransaction(tx);
         } catch (KeyException exc) {
             log.error("Unable to sign transaction", exc);
             throw new NxtException("Unable to sign transaction", exc);
+        } catch (NxtException exc) {
+            EcBlockCache.invalidate();
+            throw exc;
         }
         return txId;
     }
@@ -1429,13 +1560,16 @@ public class Nxt {
         try {
             TransactionType txType = TransactionType.Messaging.ACCOUNT_INFO;
             AccountInfo attachment = new AccountInfo(accountName, accountDescription);
-            EcBlock ecBlock = getEcBlock();
+            EcBlock ecBlock = EcBlockCache.getEcBlock();
             Transaction tx = new Transaction(txType, GENESIS_ACCOUNT_ID, 0, fee, deadline,
                                             referencedTxHash, attachment, ecBlock, passPhrase);
             txId = broadcastTransaction(tx);
         } catch (KeyException exc) {
             log.error("Unable to sign transaction", exc);
             throw new NxtException("Unable to sign transaction", exc);
+        } catch (NxtException exc) {
+            EcBlockCache.invalidate();
+            throw exc;
         }
         return txId;
     }
@@ -1478,21 +1612,78 @@ public class Nxt {
      * @return                              Parsed JSON response
      * @throws      NxtException            Unable to issue Nxt API request
      */
-    @SuppressWarnings("unchecked")
     private static PeerResponse issueRequest(String requestType, String requestParams, int readTimeout)
                                             throws NxtException {
+        return issueRequest(nodeName, nodePort, requestType, requestParams, readTimeout);
+    }
+
+    /**
+     * Issue the Nxt API request to the specified node server and return the parsed JSON response
+     *
+     * @param       hostName                Host name or IP address of the node server
+     * @param       apiPort                 Port for the node server
+     * @param       requestType             Request type
+     * @param       requestParams           Request parameters
+     * @param       readTimeout             Read timeout (milliseconds)
+     * @return                              Parsed JSON response
+     * @throws      NxtException            Unable to issue Nxt API request
+     */
+    private static PeerResponse issueRequest(String hostName, int apiPort, String requestType,
+                                            String requestParams, int readTimeout) throws NxtException {
+        String request;
+        if (requestParams != null)
+            request = String.format("requestType=%s&%s", requestType, requestParams);
+        else
+            request = String.format("requestType=%s", requestType);
+        byte[] requestBytes;
+        try {
+            requestBytes = request.getBytes("UTF-8");
+        } catch (UnsupportedEncodingException exc) {
+            throw new NxtException("Unable to encode request parameters", exc);
+        }
+        log.debug(String.format("Issue HTTP request to %s:%d: %s", hostName, apiPort, request));
+        return issueRequest(hostName, apiPort, requestType, requestBytes.length,
+                            (out) -> out.write(requestBytes), readTimeout);
+    }
+
+    /**
+     * Issue the Nxt API request and return the parsed JSON response.  The request body
+     * is streamed to the connection by the supplied writer.
+     *
+     * @param       requestType             Request type
+     * @param       contentLength           Number of bytes written by the request writer
+     * @param       writer                  Request body writer
+     * @param       readTimeout             Read timeout (milliseconds)
+     * @return                              Parsed JSON response
+     * @throws      NxtException            Unable to issue Nxt API request
+     */
+    private static PeerResponse issueRequest(String requestType, int contentLength, RequestWriter writer,
+                                            int readTimeout) throws NxtException {
+        return issueRequest(nodeName, nodePort, requestType, contentLength, writer, readTimeout);
+    }
+
+    /**
+     * Issue the Nxt API request to the specified node server and return the parsed JSON
+     * response.  The request body is streamed to the connection by the supplied writer.
+     *
+     * @param       hostName                Host name or IP address of the node server
+     * @param       apiPort                 Port for the node server
+     * @param       requestType             Request type
+     * @param       contentLength           Number of bytes written by the request writer
+     * @param       writer                  Request body writer
+     * @param       readTimeout             Read timeout (milliseconds)
+     * @return                              Parsed JSON response
+     * @throws      NxtException            Unable to issue Nxt API request
+     */
+    @SuppressWarnings("unchecked")
+    private static PeerResponse issueRequest(String hostName, int apiPort, String requestType,
+                                            int contentLength, RequestWriter writer, int readTimeout)
+                                            throws NxtException {
         PeerResponse response = null;
-        if (nodeName == null)
+        if (hostName == null)
             throw new NxtException("Nxt library has not been initialized");
         try {
-            URL url = new URL(String.format("%s://%s:%d/nxt", (useHTTPS ? "https" : "http"), nodeName, nodePort));
-            String request;
-            if (requestParams != null)
-                request = String.format("requestType=%s&%s", requestType, requestParams);
-            else
-                request = String.format("requestType=%s", requestType);
-            byte[] requestBytes = request.getBytes("UTF-8");
-            log.debug(String.format("Issue HTTP request to %s:%d: %s", nodeName, nodePort, request));
+            URL url = new URL(String.format("%s://%s:%d/nxt", (useHTTPS ? "https" : "http"), hostName, apiPort));
             //
             // Issue the request
             //
@@ -1500,16 +1691,16 @@ public class Nxt {
             conn.setRequestMethod("POST");
             conn.setRequestProperty("Content-Type", "application/x-www-form-urlencoded");
             conn.setRequestProperty("Cache-Control", "no-cache, no-store");
-            conn.setRequestProperty("Content-Length", Integer.toString(requestBytes.length));
             conn.setRequestProperty("Accept-Encoding", "gzip");
             conn.setDoInput(true);
             conn.setDoOutput(true);
             conn.setUseCaches(false);
+            conn.setFixedLengthStreamingMode(contentLength);
             conn.setConnectTimeout(nodeConnectTimeout);
             conn.setReadTimeout(readTimeout);
             conn.connect();
             try (OutputStream out = conn.getOutputStream()) {
-                out.write(requestBytes);
+                writer.write(out);
                 out.flush();
                 int code = conn.getResponseCode();
                 if (code != HttpURLConnection.HTTP_OK) {
@@ -1560,6 +1751,21 @@ public class Nxt {
         return response;
     }
 
+    /**
+     * Request body writer
+     */
+    @FunctionalInterface
+    private interface RequestWriter {
+
+        /**
+         * Write the request body
+         *
+         * @param       out                 Connection output stream
+         * @throws      IOException         Unable to write the request body
+         */
+        void write(OutputStream out) throws IOException;
+    }
+
     /**
      * Certificate host name verifier
      */
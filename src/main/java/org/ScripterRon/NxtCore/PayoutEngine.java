@@ -0,0 +1,628 @@
+/*
+ * Copyright 2016 Ronald Hoffman.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.ScripterRon.NxtCore;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+/**
+ * A payout engine sends a list of NXT payments or asset transfers from a single
+ * account.
+ *
+ * Each transaction is signed and written to an append-only journal before it is
+ * broadcast, and an acknowledgment record is written once the node server has
+ * accepted the transaction.  If the payout is interrupted, running it again with the
+ * same payout list and journal resumes the payout: each journaled transaction that
+ * was not acknowledged is located using 'getTransaction' and is broadcast again using
+ * the journaled bytes if the node server does not have it.  Since the journaled bytes
+ * are broadcast again, the transaction identifier does not change and a recipient is
+ * never paid twice.  A new transaction is created only if the journaled transaction
+ * has expired without being included in the block chain.  The expiration is checked
+ * using the timestamp of the last block in the node server's block chain and not the
+ * local clock, and the transaction must have expired at least EXPIRY_MARGIN seconds
+ * before the last block so that it cannot be in a block the node server has not
+ * received yet.
+ */
+public class PayoutEngine {
+
+    /** Journal file identifier */
+    private static final int JOURNAL_MAGIC = 0x4e585050;
+
+    /** Journal version */
+    private static final int JOURNAL_VERSION = 1;
+
+    /** Transaction record */
+    private static final byte RECORD_TRANSACTION = 1;
+
+    /** Acknowledgment record */
+    private static final byte RECORD_ACK = 2;
+
+    /** Journal header length */
+    private static final int HEADER_LENGTH = 16;
+
+    /** Time following the transaction expiration before a new transaction is created (10 blocks) */
+    private static final int EXPIRY_MARGIN = 10*60;
+
+    /** Sender public key */
+    private final byte[] senderPublicKey;
+
+    /** Sender identifier */
+    private final long senderId;
+
+    /** Sender private key */
+    private final byte[] privateKey;
+
+    /** Asset identifier (0 for NXT payments) */
+    private final long assetId;
+
+    /** Transaction fee */
+    private final long fee;
+
+    /** Transaction deadline */
+    private final int deadline;
+
+    /** Journal file */
+    private final File journalFile;
+
+    /** Number of transactions signed and journaled together */
+    private int batchSize = 100;
+
+    /** Number of signing and broadcast threads */
+    private int threadCount = 4;
+
+    /** Maximum broadcast rate (transactions per second) */
+    private double maxRate = 10.0;
+
+    /** Journal output stream */
+    private FileOutputStream journalFileStream;
+
+    /** Journal data stream */
+    private DataOutputStream journalOut;
+
+    /**
+     * Create a payout engine
+     *
+     * @param       passPhrase              Sender secret phrase
+     * @param       assetId                 Asset identifier or 0 for NXT payments
+     * @param       fee                     Transaction fee (NQT)
+     * @param       deadline                Transaction deadline (minutes between 1 and 1440)
+     * @param       journalFile             Payout journal file
+     * @throws      KeyException            Unable to derive the sender keys
+     */
+    public PayoutEngine(String passPhrase, long assetId, long fee, int deadline, File journalFile)
+                                    throws KeyException {
+        if (passPhrase == null || journalFile == null)
+            throw new IllegalArgumentException("Required parameter not specified");
+        if (deadline < 1 || deadline > 1440)
+            throw new IllegalArgumentException("Deadline must be between 1 and 1440 minutes");
+        this.senderPublicKey = Crypto.getPublicKey(passPhrase);
+        this.senderId = Utils.getAccountId(senderPublicKey);
+        this.privateKey = Crypto.getPrivateKey(passPhrase);
+        this.assetId = assetId;
+        this.fee = fee;
+        this.deadline = deadline;
+        this.journalFile = journalFile;
+    }
+
+    /**
+     * Set the batch size, thread count and broadcast rate
+     *
+     * @param       batchSize               Number of transactions signed and journaled together
+     * @param       threadCount             Number of signing and broadcast threads
+     * @param       maxRate                 Maximum broadcast rate (transactions per second)
+     */
+    public void setLimits(int batchSize, int threadCount, double maxRate) {
+        if (batchSize < 1 || threadCount < 1 || !(maxRate > 0))
+            throw new IllegalArgumentException("Batch size, thread count and rate must be greater than 0");
+        this.batchSize = batchSize;
+        this.threadCount = threadCount;
+        this.maxRate = maxRate;
+    }
+
+    /**
+     * Run the payout.  The payout list must be the same when a payout is resumed.
+     *
+     * @param       payouts                 Payout list
+     * @return                              Payout result
+     * @throws      NxtException            Unable to complete the payout
+     */
+    public Result run(List<Payout> payouts) throws NxtException {
+        Result result = new Result();
+        ExecutorService executor = Executors.newFixedThreadPool(threadCount);
+        try {
+            //
+            // Read the journal and check the transactions that were not acknowledged
+            //
+            Map<Integer, JournalEntry> journal = readJournal(payouts);
+            openJournal();
+            List<JournalEntry> pending = new ArrayList<>();
+            journal.values().forEach(entry -> {
+                if (entry.acknowledged)
+                    result.completedCount++;
+                else
+                    pending.add(entry);
+            });
+            if (!pending.isEmpty()) {
+                Nxt.log.info(String.format("Checking %d unacknowledged payout transactions", pending.size()));
+                ChainState chainState = Nxt.getChainState();
+                long chainTimestamp = Nxt.getBlock(chainState.getLastBlockId()).getTimestamp();
+                List<Future<Boolean>> futures = new ArrayList<>(pending.size());
+                for (JournalEntry entry : pending)
+                    futures.add(executor.submit(() -> resumeTransaction(entry, chainTimestamp)));
+                for (int i=0; i<pending.size(); i++) {
+                    JournalEntry entry = pending.get(i);
+                    if (getResult(futures.get(i))) {
+                        writeAck(entry.index);
+                        result.resumedCount++;
+                    } else {
+                        journal.remove(entry.index);
+                    }
+                }
+                journalOut.flush();
+            }
+            //
+            // Send the remaining payouts
+            //
+            List<Integer> unpaid = new ArrayList<>(payouts.size()-journal.size());
+            for (int i=0; i<payouts.size(); i++) {
+                if (!journal.containsKey(i))
+                    unpaid.add(i);
+            }
+            long interval = (long)(1000000000.0/maxRate);
+            long nextBroadcast = System.nanoTime();
+            for (int start=0; start<unpaid.size(); start+=batchSize) {
+                List<Integer> batch = unpaid.subList(start, Math.min(start+batchSize, unpaid.size()));
+                //
+                // Sign the batch and write the transactions to the journal before
+                // any of them are broadcast
+                //
+                EcBlock ecBlock = EcBlockCache.getEcBlock();
+                int timestamp = (int)((System.currentTimeMillis()+500)/1000 - Nxt.GENESIS_TIMESTAMP);
+                List<Future<Transaction>> signed = new ArrayList<>(batch.size());
+                for (Integer index : batch) {
+                    Payout payout = payouts.get(index);
+                    signed.add(executor.submit(() -> createTransaction(payout, timestamp, ecBlock)));
+                }
+                List<Transaction> txList = new ArrayList<>(batch.size());
+                for (int i=0; i<batch.size(); i++) {
+                    Transaction tx = getResult(signed.get(i));
+                    writeTransaction(batch.get(i), payouts.get(batch.get(i)), tx);
+                    txList.add(tx);
+                }
+                syncJournal();
+                //
+                // Broadcast the batch at the requested rate
+                //
+                List<Future<NxtException>> broadcasts = new ArrayList<>(batch.size());
+                for (Transaction tx : txList) {
+                    long delay = nextBroadcast - System.nanoTime();
+                    if (delay > 0)
+                        Thread.sleep(delay/1000000, (int)(delay%1000000));
+                    nextBroadcast = Math.max(nextBroadcast, System.nanoTime()-interval) + interval;
+                    broadcasts.add(executor.submit(() -> {
+                        try {
+                            Nxt.broadcastTransaction(tx);
+                            return null;
+                        } catch (NxtException exc) {
+                            return exc;
+                        }
+                    }));
+                }
+                for (int i=0; i<batch.size(); i++) {
+                    NxtException exc = getResult(broadcasts.get(i));
+                    if (exc == null) {
+                        writeAck(batch.get(i));
+                        result.broadcastCount++;
+                    } else {
+                        Nxt.log.error(String.format("Payout %d to %s failed: %s", batch.get(i),
+                                Utils.getAccountRsId(txList.get(i).getRecipientId()), exc.getMessage()));
+                        EcBlockCache.invalidate();
+                        result.failedList.add(batch.get(i));
+                    }
+                }
+                journalOut.flush();
+            }
+        } catch (IOException exc) {
+            Nxt.log.error("Unable to update the payout journal", exc);
+            throw new NxtException("Unable to update the payout journal", exc);
+        } catch (InterruptedException exc) {
+            throw new NxtException("Payout interrupted", exc);
+        } finally {
+            executor.shutdownNow();
+            closeJournal();
+        }
+        return result;
+    }
+
+    /**
+     * Resume a journaled transaction that was not acknowledged
+     *
+     * @param       entry                   Journal entry
+     * @param       chainTimestamp          Timestamp of the last block in the block chain
+     * @return                              TRUE if the transaction has been sent
+     * @throws      NxtException            Unable to determine the transaction status
+     */
+    private boolean resumeTransaction(JournalEntry entry, long chainTimestamp) throws NxtException {
+        if (isKnownTransaction(entry.txId))
+            return true;
+        Transaction tx = Transaction.parse(ByteBuffer.wrap(entry.txBytes));
+        if (tx.getTimestamp() + tx.getDeadline()*60 + EXPIRY_MARGIN > chainTimestamp) {
+            Nxt.broadcastTransaction(tx);
+            return true;
+        }
+        //
+        // The transaction expired before the last block.  Check again in case it was
+        // included in a block after the first check.
+        //
+        return isKnownTransaction(entry.txId);
+    }
+
+    /**
+     * Check if the node server has a transaction
+     *
+     * @param       txId                    Transaction identifier
+     * @return                              TRUE if the transaction is known
+     * @throws      NxtException            Unable to determine the transaction status
+     */
+    private static boolean isKnownTransaction(long txId) throws NxtException {
+        try {
+            Nxt.getTransaction(txId);
+            return true;
+        } catch (NxtException exc) {
+            if (exc.getReasonCode() != Nxt.UNKNOWN_OBJECT)
+                throw exc;
+        }
+        return false;
+    }
+
+    /**
+     * Create a signed transaction for a payout
+     *
+     * @param       payout                  Payout
+     * @param       timestamp               Transaction timestamp (seconds since the genesis block)
+     * @param       ecBlock                 EC block
+     * @return                              Signed transaction
+     * @throws      KeyException            Unable to sign the transaction
+     */
+    private Transaction createTransaction(Payout payout, int timestamp, EcBlock ecBlock) throws KeyException {
+        TransactionType txType;
+        Attachment attachment;
+        long amount;
+        if (assetId != 0) {
+            txType = TransactionType.ColoredCoins.ASSET_TRANSFER;
+            attachment = new AssetTransfer(assetId, payout.getAmount());
+            amount = 0;
+        } else {
+            txType = TransactionType.Payment.ORDINARY;
+            attachment = null;
+            amount = payout.getAmount();
+        }
+        Transaction unsigned = new Transaction(txType, senderPublicKey, senderId, payout.getRecipientId(),
+                                    amount, fee, timestamp, deadline, null, attachment,
+                                    ecBlock.getHeight(), ecBlock.getBlockId(), null, null, new byte[32]);
+        byte[] txBytes = unsigned.getBytes(true);
+        byte[] signature = Crypto.sign(txBytes, privateKey);
+        byte[] signatureHash = Crypto.singleDigest(signature);
+        byte[] txHash = Crypto.singleDigest(txBytes, signatureHash);
+        return new Transaction(txType, senderPublicKey, senderId, payout.getRecipientId(),
+                                    amount, fee, timestamp, deadline, null, attachment,
+                                    ecBlock.getHeight(), ecBlock.getBlockId(), signature, signatureHash, txHash);
+    }
+
+    /**
+     * Return the result of a task
+     *
+     * @param       <T>                     Result type
+     * @param       future                  Task future
+     * @return                              Task result
+     * @throws      InterruptedException    Wait interrupted
+     * @throws      NxtException            Task failed
+     */
+    private static <T> T getResult(Future<T> future) throws InterruptedException, NxtException {
+        try {
+            return future.get();
+        } catch (ExecutionException exc) {
+            Throwable cause = exc.getCause();
+            if (cause instanceof NxtException)
+                throw (NxtException)cause;
+            if (cause instanceof KeyException) {
+                Nxt.log.error("Unable to sign transaction", cause);
+                throw new NxtException("Unable to sign transaction", cause);
+            }
+            throw new NxtException("Payout task failed", cause);
+        }
+    }
+
+    /**
+     * Read the payout journal.  A partial record at the end of the journal is discarded.
+     *
+     * @param       payouts                 Payout list
+     * @return                              Journal entries indexed by payout
+     * @throws      IOException             Unable to read the journal
+     * @throws      NxtException            Journal does not match the payout list
+     */
+    private Map<Integer, JournalEntry> readJournal(List<Payout> payouts) throws IOException, NxtException {
+        Map<Integer, JournalEntry> journal = new HashMap<>();
+        if (!journalFile.exists() || journalFile.length() == 0)
+            return journal;
+        long validLength = HEADER_LENGTH;
+        try (DataInputStream in = new DataInputStream(new BufferedInputStream(
+                                    new FileInputStream(journalFile), 65536))) {
+            if (in.readInt() != JOURNAL_MAGIC || in.readInt() != JOURNAL_VERSION)
+                throw new NxtException("Payout journal format is not valid");
+            if (in.readLong() != senderId)
+                throw new NxtException("Payout journal was created for a different sender");
+            try {
+                while (true) {
+                    byte type = in.readByte();
+                    int index = in.readInt();
+                    if (index < 0 || index >= payouts.size())
+                        throw new NxtException("Payout journal does not match the payout list");
+                    if (type == RECORD_TRANSACTION) {
+                        long txId = in.readLong();
+                        long recipientId = in.readLong();
+                        long amount = in.readLong();
+                        byte[] txBytes = new byte[in.readUnsignedShort()];
+                        in.readFully(txBytes);
+                        Payout payout = payouts.get(index);
+                        if (recipientId != payout.getRecipientId() || amount != payout.getAmount())
+                            throw new NxtException("Payout journal does not match the payout list");
+                        journal.put(index, new JournalEntry(index, txId, txBytes));
+                        validLength += 1+4+8+8+8+2+txBytes.length;
+                    } else if (type == RECORD_ACK) {
+                        JournalEntry entry = journal.get(index);
+                        if (entry == null)
+                            throw new NxtException("Payout journal acknowledgment is not valid");
+                        entry.acknowledged = true;
+                        validLength += 1+4;
+                    } else {
+                        throw new NxtException("Payout journal record type " + type + " is not valid");
+                    }
+                }
+            } catch (EOFException exc) {
+                // End of the journal
+            }
+        } catch (EOFException exc) {
+            throw new NxtException("Payout journal header is not valid");
+        }
+        if (validLength < journalFile.length()) {
+            Nxt.log.warn(String.format("Discarding partial payout journal record at offset %d", validLength));
+            try (RandomAccessFile file = new RandomAccessFile(journalFile, "rw")) {
+                file.setLength(validLength);
+            }
+        }
+        return journal;
+    }
+
+    /**
+     * Open the journal for appending
+     *
+     * @throws      IOException             Unable to open the journal
+     */
+    private void openJournal() throws IOException {
+        boolean newJournal = (!journalFile.exists() || journalFile.length() == 0);
+        journalFileStream = new FileOutputStream(journalFile, true);
+        journalOut = new DataOutputStream(new BufferedOutputStream(journalFileStream, 65536));
+        if (newJournal) {
+            journalOut.writeInt(JOURNAL_MAGIC);
+            journalOut.writeInt(JOURNAL_VERSION);
+            journalOut.writeLong(senderId);
+            syncJournal();
+        }
+    }
+
+    /**
+     * Close the journal
+     */
+    private void closeJournal() {
+        if (journalOut != null) {
+            try {
+                journalOut.close();
+            } catch (IOException exc) {
+                Nxt.log.error("Unable to close the payout journal", exc);
+            }
+            journalOut = null;
+            journalFileStream = null;
+        }
+    }
+
+    /**
+     * Write a transaction record
+     *
+     * @param       index                   Payout index
+     * @param       payout                  Payout
+     * @param       tx                      Signed transaction
+     * @throws      IOException             Unable to write the journal
+     */
+    private void writeTransaction(int index, Payout payout, Transaction tx) throws IOException {
+        byte[] txBytes = tx.getBytes(false);
+        journalOut.writeByte(RECORD_TRANSACTION);
+        journalOut.writeInt(index);
+        journalOut.writeLong(tx.getTransactionId());
+        journalOut.writeLong(payout.getRecipientId());
+        journalOut.writeLong(payout.getAmount());
+        journalOut.writeShort(txBytes.length);
+        journalOut.write(txBytes);
+    }
+
+    /**
+     * Write an acknowledgment record
+     *
+     * @param       index                   Payout index
+     * @throws      IOException             Unable to write the journal
+     */
+    private void writeAck(int index) throws IOException {
+        journalOut.writeByte(RECORD_ACK);
+        journalOut.writeInt(index);
+    }
+
+    /**
+     * Flush the journal and force it to the storage device
+     *
+     * @throws      IOException             Unable to write the journal
+     */
+    private void syncJournal() throws IOException {
+        journalOut.flush();
+        journalFileStream.getChannel().force(false);
+    }
+
+    /**
+     * Payout recipient and amount
+     */
+    public static class Payout {
+
+        /** Recipient identifier */
+        private final long recipientId;
+
+        /** Payout amount (NQT or QNT) */
+        private final long amount;
+
+        /**
+         * Create a payout
+         *
+         * @param       recipientId             Recipient identifier
+         * @param       amount                  Payout amount (NQT for NXT payments, QNT for asset transfers)
+         */
+        public Payout(long recipientId, long amount) {
+            this.recipientId = recipientId;
+            this.amount = amount;
+        }
+
+        /**
+         * Return the recipient identifier
+         *
+         * @return                              Recipient identifier
+         */
+        public long getRecipientId() {
+            return recipientId;
+        }
+
+        /**
+         * Return the payout amount
+         *
+         * @return                              Payout amount (NQT or QNT)
+         */
+        public long getAmount() {
+            return amount;
+        }
+    }
+
+    /**
+     * Payout result
+     */
+    public static class Result {
+
+        /** Number of payouts completed by an earlier run */
+        private int completedCount;
+
+        /** Number of payouts resumed from the journal */
+        private int resumedCount;
+
+        /** Number of payouts broadcast by this run */
+        private int broadcastCount;
+
+        /** Failed payouts */
+        private final List<Integer> failedList = new ArrayList<>();
+
+        /**
+         * Return the number of payouts completed by an earlier run
+         *
+         * @return                              Payout count
+         */
+        public int getCompletedCount() {
+            return completedCount;
+        }
+
+        /**
+         * Return the number of unacknowledged journal transactions which have been
+         * found on the node server or broadcast again
+         *
+         * @return                              Payout count
+         */
+        public int getResumedCount() {
+            return resumedCount;
+        }
+
+        /**
+         * Return the number of new transactions broadcast by this run
+         *
+         * @return                              Payout count
+         */
+        public int getBroadcastCount() {
+            return broadcastCount;
+        }
+
+        /**
+         * Return the payouts whose broadcast failed.  These payouts are journaled and
+         * will be checked when the payout is run again.
+         *
+         * @return                              Indexes into the payout list
+         */
+        public List<Integer> getFailedList() {
+            return Collections.unmodifiableList(failedList);
+        }
+    }
+
+    /**
+     * Journaled transaction
+     */
+    private static class JournalEntry {
+
+        /** Payout index */
+        private final int index;
+
+        /** Transaction identifier */
+        private final long txId;
+
+        /** Transaction bytes */
+        private final byte[] txBytes;
+
+        /** Transaction has been acknowledged */
+        private boolean acknowledged;
+
+        /**
+         * Create a journal entry
+         *
+         * @param       index               Payout index
+         * @param       txId                Transaction identifier
+         * @param       txBytes             Transaction bytes
+         */
+        private JournalEntry(int index, long txId, byte[] txBytes) {
+            this.index = index;
+            this.txId = txId;
+            this.txBytes = txBytes;
+        }
+    }
+}
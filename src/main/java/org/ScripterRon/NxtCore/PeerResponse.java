@@ -15,7 +15,6 @@
  */
 package org.ScripterRon.NxtCore;
 
-import java.util.ArrayList;
 import java.util.Collections;
 import java.util.HashMap;
 import java.util.List;
@@ -157,6 +156,26 @@ public class PeerResponse {
                 (((List)value).get(0) instanceof Long) ? (List<Long>)value : emptyLongList);
     }
 
+    /**
+     * Return a list of long values as primitive values
+     *
+     * @param       key                     JSON key
+     * @return                              List of long values (empty list if key not found)
+     */
+    public LongList getLongValues(String key) {
+        Object value = get(key);
+        if (value == null || !(value instanceof List))
+            return new LongList();
+        List<?> valueList = (List<?>)value;
+        LongList longList = new LongList(valueList.size());
+        for (Object element : valueList) {
+            if (!(element instanceof Long))
+                return new LongList();
+            longList.addLong((Long)element);
+        }
+        return longList;
+    }
+
     /**
      * Return an object identifier
      *
@@ -180,10 +199,24 @@ public class PeerResponse {
         Object value = get(key);
         if (value == null || !(value instanceof List) || ((List)value).isEmpty() || !(((List)value).get(0) instanceof String))
             return emptyLongList;
+        return getIdValues(key);
+    }
+
+    /**
+     * Return a list of object identifiers as primitive values
+     *
+     * @param       key                     JSON key
+     * @return                              Identifier list (empty list if key not found)
+     * @throws      IdentifierException     Invalid object identifier
+     */
+    public LongList getIdValues(String key) throws IdentifierException {
+        Object value = get(key);
+        if (value == null || !(value instanceof List) || ((List)value).isEmpty() || !(((List)value).get(0) instanceof String))
+            return new LongList();
         List<String> stringList = (List<String>)value;
-        List<Long> longList = new ArrayList<>(stringList.size());
+        LongList longList = new LongList(stringList.size());
         for (String longString : stringList)
-            longList.add(Utils.stringToId(longString));
+            longList.addLong(Utils.stringToId(longString));
         return longList;
     }
 
@@ -210,6 +243,18 @@ public class PeerResponse {
         return (value!=null && (value instanceof String) ? Utils.parseHexString(((String)value).trim()) : null);
     }
 
+    /**
+     * Return a hexadecimal string value without decoding it.  This is used
+     * for values that are decoded when they are first referenced.
+     *
+     * @param       key                     JSON key
+     * @return                              Trimmed hexadecimal string (null if key not found)
+     */
+    public String getHexStringValue(String key) {
+        Object value = get(key);
+        return (value!=null && (value instanceof String) ? ((String)value).trim() : null);
+    }
+
     /**
      * Return a string list value
      *
@@ -0,0 +1,152 @@
+/*
+ * Copyright 2016 Ronald Hoffman.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.ScripterRon.NxtCore;
+
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Attachment for TransactionType.Messaging.PHASING_VOTE_CASTING
+ */
+public class PhasingVoteCasting extends BinaryAttachment {
+
+    /** Version */
+    private final int version;
+
+    /** Phased transaction full hashes */
+    private final List<byte[]> transactionHashes;
+
+    /** Revealed secret */
+    private final byte[] revealedSecret;
+
+    /**
+     * Create a Phasing Vote Casting attachment
+     *
+     * @param       transactionHashes       Full hashes of the phased transactions (maximum of 10)
+     * @param       revealedSecret          Revealed secret (may be empty)
+     */
+    public PhasingVoteCasting(List<byte[]> transactionHashes, byte[] revealedSecret) {
+        if (transactionHashes == null || revealedSecret == null)
+            throw new IllegalArgumentException("Required parameter not specified");
+        if (transactionHashes.isEmpty() || transactionHashes.size() > 10)
+            throw new IllegalArgumentException("Between 1 and 10 transaction hashes must be specified");
+        for (byte[] hash : transactionHashes) {
+            if (hash.length != 32)
+                throw new IllegalArgumentException("Transaction hash must be 32 bytes");
+        }
+        this.version = 1;
+        this.transactionHashes = Collections.unmodifiableList(new ArrayList<>(transactionHashes));
+        this.revealedSecret = revealedSecret.clone();
+    }
+
+    /**
+     * Create a Phasing Vote Casting attachment from the JSON response
+     *
+     * @param       response                JSON response
+     * @throws      NumberFormatException   Invalid hex string
+     */
+    public PhasingVoteCasting(PeerResponse response) throws NumberFormatException {
+        this.version = response.getByte("version.PhasingVoteCasting");
+        List<String> hashList = response.getStringList("transactionFullHashes");
+        List<byte[]> hashes = new ArrayList<>(hashList.size());
+        for (String hash : hashList)
+            hashes.add(Utils.parseHexString(hash));
+        this.transactionHashes = Collections.unmodifiableList(hashes);
+        byte[] secret = response.getHexString("revealedSecret");
+        this.revealedSecret = (secret != null ? secret : new byte[0]);
+    }
+
+    /**
+     * Create a Phasing Vote Casting attachment from the transaction bytes
+     *
+     * @param       buffer                  Little-endian buffer positioned at the attachment
+     * @param       txVersion               Transaction version
+     * @throws      NxtException            Invalid attachment
+     */
+    public PhasingVoteCasting(ByteBuffer buffer, int txVersion) throws NxtException {
+        this.version = (txVersion>0 ? buffer.get() : 0);
+        int count = buffer.get()&0xff;
+        if (count > 10)
+            throw new NxtException("Transaction hash count " + count + " is not valid");
+        List<byte[]> hashes = new ArrayList<>(count);
+        for (int i=0; i<count; i++) {
+            byte[] hash = new byte[32];
+            buffer.get(hash);
+            hashes.add(hash);
+        }
+        this.transactionHashes = Collections.unmodifiableList(hashes);
+        int length = buffer.getInt();
+        if (length < 0 || length > buffer.remaining())
+            throw new NxtException("Revealed secret length " + length + " is not valid");
+        this.revealedSecret = new byte[length];
+        buffer.get(revealedSecret);
+    }
+
+    /**
+     * Return the size of the attachment byte stream
+     *
+     * @return                              Number of bytes
+     */
+    @Override
+    public int getSize() {
+        return (version>0?1:0)+1+32*transactionHashes.size()+4+revealedSecret.length;
+    }
+
+    /**
+     * Write the attachment byte stream to a little-endian buffer
+     *
+     * @param       buffer                  Output buffer
+     */
+    @Override
+    public void writeTo(ByteBuffer buffer) {
+        if (version > 0)
+            buffer.put((byte)version);
+        buffer.put((byte)transactionHashes.size());
+        for (byte[] hash : transactionHashes)
+            buffer.put(hash);
+        buffer.putInt(revealedSecret.length);
+        buffer.put(revealedSecret);
+    }
+
+    /**
+     * Return the attachment version
+     *
+     * @return                              Version
+     */
+    public int getVersion() {
+        return version;
+    }
+
+    /**
+     * Return the full hashes of the phased transactions
+     *
+     * @return                              Transaction hashes
+     */
+    public List<byte[]> getTransactionHashes() {
+        return transactionHashes;
+    }
+
+    /**
+     * Return the revealed secret
+     *
+     * @return                              Revealed secret (empty if no secret)
+     */
+    public byte[] getRevealedSecret() {
+        return revealedSecret;
+    }
+}
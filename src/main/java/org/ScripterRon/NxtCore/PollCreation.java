@@ -0,0 +1,323 @@
+/*
+ * Copyright 2016 Ronald Hoffman.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.ScripterRon.NxtCore;
+
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Attachment for TransactionType.Messaging.POLL_CREATION
+ */
+public class PollCreation extends BinaryAttachment {
+
+    /** Version */
+    private final int version;
+
+    /** Poll name */
+    private final String name;
+
+    /** Poll description */
+    private final String description;
+
+    /** Poll options */
+    private final List<String> options;
+
+    /** Poll finish height */
+    private final int finishHeight;
+
+    /** Voting model */
+    private final int votingModel;
+
+    /** Minimum number of options */
+    private final int minNumberOfOptions;
+
+    /** Maximum number of options */
+    private final int maxNumberOfOptions;
+
+    /** Minimum range value */
+    private final int minRangeValue;
+
+    /** Maximum range value */
+    private final int maxRangeValue;
+
+    /** Minimum balance */
+    private final long minBalance;
+
+    /** Minimum balance model */
+    private final int minBalanceModel;
+
+    /** Holding identifier */
+    private final long holdingId;
+
+    /**
+     * Create a Poll Creation attachment
+     *
+     * @param       name                    Poll name (maximum length 100)
+     * @param       description             Poll description (maximum length 1000)
+     * @param       options                 Poll options (maximum of 100 options, maximum length 100)
+     * @param       finishHeight            Poll finish height
+     * @param       votingModel             Voting model
+     * @param       minNumberOfOptions      Minimum number of options
+     * @param       maxNumberOfOptions      Maximum number of options
+     * @param       minRangeValue           Minimum range value
+     * @param       maxRangeValue           Maximum range value
+     * @param       minBalance              Minimum balance
+     * @param       minBalanceModel         Minimum balance model
+     * @param       holdingId               Holding identifier or 0
+     */
+    public PollCreation(String name, String description, List<String> options, int finishHeight,
+                                    int votingModel, int minNumberOfOptions, int maxNumberOfOptions,
+                                    int minRangeValue, int maxRangeValue,
+                                    long minBalance, int minBalanceModel, long holdingId) {
+        if (name == null || description == null || options == null)
+            throw new IllegalArgumentException("Required parameter not specified");
+        if (name.length() > 100)
+            throw new IllegalArgumentException("Maximum poll name length is 100");
+        if (description.length() > 1000)
+            throw new IllegalArgumentException("Maximum poll description length is 1000");
+        if (options.size() > 100)
+            throw new IllegalArgumentException("Maximum number of poll options is 100");
+        for (String option : options) {
+            if (option.length() > 100)
+                throw new IllegalArgumentException("Maximum poll option length is 100");
+        }
+        this.version = 1;
+        this.name = name;
+        this.description = description;
+        this.options = Collections.unmodifiableList(new ArrayList<>(options));
+        this.finishHeight = finishHeight;
+        this.votingModel = votingModel;
+        this.minNumberOfOptions = minNumberOfOptions;
+        this.maxNumberOfOptions = maxNumberOfOptions;
+        this.minRangeValue = minRangeValue;
+        this.maxRangeValue = maxRangeValue;
+        this.minBalance = minBalance;
+        this.minBalanceModel = minBalanceModel;
+        this.holdingId = holdingId;
+    }
+
+    /**
+     * Create a Poll Creation attachment from the JSON response
+     *
+     * @param       response                JSON response
+     * @throws      IdentifierException     Invalid object identifier
+     */
+    public PollCreation(PeerResponse response) throws IdentifierException {
+        this.version = response.getByte("version.PollCreation");
+        this.name = response.getString("name");
+        this.description = response.getString("description");
+        this.options = Collections.unmodifiableList(response.getStringList("options"));
+        this.finishHeight = response.getInt("finishHeight");
+        this.votingModel = response.getByte("votingModel");
+        this.minNumberOfOptions = response.getByte("minNumberOfOptions");
+        this.maxNumberOfOptions = response.getByte("maxNumberOfOptions");
+        this.minRangeValue = response.getByte("minRangeValue");
+        this.maxRangeValue = response.getByte("maxRangeValue");
+        this.minBalance = response.getLong("minBalance");
+        this.minBalanceModel = response.getByte("minBalanceModel");
+        this.holdingId = response.getId("holding");
+    }
+
+    /**
+     * Create a Poll Creation attachment from the transaction bytes
+     *
+     * @param       buffer                  Little-endian buffer positioned at the attachment
+     * @param       txVersion               Transaction version
+     * @throws      NxtException            Invalid attachment
+     */
+    public PollCreation(ByteBuffer buffer, int txVersion) throws NxtException {
+        this.version = (txVersion>0 ? buffer.get() : 0);
+        this.name = readString(buffer, buffer.getShort()&0xffff, 100);
+        this.description = readString(buffer, buffer.getShort()&0xffff, 1000);
+        int count = buffer.get()&0xff;
+        if (count > 100)
+            throw new NxtException("Poll option count " + count + " is not valid");
+        List<String> optionList = new ArrayList<>(count);
+        for (int i=0; i<count; i++)
+            optionList.add(readString(buffer, buffer.getShort()&0xffff, 100));
+        this.options = Collections.unmodifiableList(optionList);
+        this.finishHeight = buffer.getInt();
+        this.votingModel = buffer.get();
+        this.minNumberOfOptions = buffer.get();
+        this.maxNumberOfOptions = buffer.get();
+        this.minRangeValue = buffer.get();
+        this.maxRangeValue = buffer.get();
+        this.minBalance = buffer.getLong();
+        this.minBalanceModel = buffer.get();
+        this.holdingId = buffer.getLong();
+    }
+
+    /**
+     * Return the size of the attachment byte stream
+     *
+     * @return                              Number of bytes
+     */
+    @Override
+    public int getSize() {
+        int size = (version>0?1:0)+2+utf8Length(name)+2+utf8Length(description)+1;
+        for (String option : options)
+            size += 2+utf8Length(option);
+        return size+4+1+4+8+1+8;
+    }
+
+    /**
+     * Write the attachment byte stream to a little-endian buffer
+     *
+     * @param       buffer                  Output buffer
+     */
+    @Override
+    public void writeTo(ByteBuffer buffer) {
+        if (version > 0)
+            buffer.put((byte)version);
+        buffer.putShort((short)utf8Length(name));
+        putString(buffer, name);
+        buffer.putShort((short)utf8Length(description));
+        putString(buffer, description);
+        buffer.put((byte)options.size());
+        for (String option : options) {
+            buffer.putShort((short)utf8Length(option));
+            putString(buffer, option);
+        }
+        buffer.putInt(finishHeight);
+        buffer.put((byte)votingModel);
+        buffer.put((byte)minNumberOfOptions);
+        buffer.put((byte)maxNumberOfOptions);
+        buffer.put((byte)minRangeValue);
+        buffer.put((byte)maxRangeValue);
+        buffer.putLong(minBalance);
+        buffer.put((byte)minBalanceModel);
+        buffer.putLong(holdingId);
+    }
+
+    /**
+     * Return the attachment version
+     *
+     * @return                              Version
+     */
+    public int getVersion() {
+        return version;
+    }
+
+    /**
+     * Return the poll name
+     *
+     * @return                              Poll name
+     */
+    public String getName() {
+        return name;
+    }
+
+    /**
+     * Return the poll description
+     *
+     * @return                              Poll description
+     */
+    public String getDescription() {
+        return description;
+    }
+
+    /**
+     * Return the poll options
+     *
+     * @return                              Poll options
+     */
+    public List<String> getOptions() {
+        return options;
+    }
+
+    /**
+     * Return the poll finish height
+     *
+     * @return                              Poll finish height
+     */
+    public int getFinishHeight() {
+        return finishHeight;
+    }
+
+    /**
+     * Return the voting model
+     *
+     * @return                              Voting model
+     */
+    public int getVotingModel() {
+        return votingModel;
+    }
+
+    /**
+     * Return the minimum number of options
+     *
+     * @return                              Minimum number of options
+     */
+    public int getMinNumberOfOptions() {
+        return minNumberOfOptions;
+    }
+
+    /**
+     * Return the maximum number of options
+     *
+     * @return                              Maximum number of options
+     */
+    public int getMaxNumberOfOptions() {
+        return maxNumberOfOptions;
+    }
+
+    /**
+     * Return the minimum range value
+     *
+     * @return                              Minimum range value
+     */
+    public int getMinRangeValue() {
+        return minRangeValue;
+    }
+
+    /**
+     * Return the maximum range value
+     *
+     * @return                              Maximum range value
+     */
+    public int getMaxRangeValue() {
+        return maxRangeValue;
+    }
+
+    /**
+     * Return the minimum balance
+     *
+     * @return                              Minimum balance
+     */
+    public long getMinBalance() {
+        return minBalance;
+    }
+
+    /**
+     * Return the minimum balance model
+     *
+     * @return                              Minimum balance model
+     */
+    public int getMinBalanceModel() {
+        return minBalanceModel;
+    }
+
+    /**
+     * Return the holding identifier
+     *
+     * @return                              Holding identifier or 0
+     */
+    public long getHoldingId() {
+        return holdingId;
+    }
+}
@@ -0,0 +1,245 @@
+/*
+ * Copyright 2016 Ronald Hoffman.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.ScripterRon.NxtCore;
+
+import java.util.Arrays;
+import java.util.function.LongConsumer;
+
+/**
+ * PostingList is a compressed list of ascending non-negative long values.
+ *
+ * Each value is stored as the difference from the previous value using a variable-length
+ * encoding with 7 bits per byte, so closely spaced values use one or two bytes.  The
+ * value and encoded position of every 64th value are kept in a skip table, so a range
+ * of values is located by a binary search of the skip table followed by decoding at
+ * most 64 values.  Values can be added to the end of the list and removed from the end
+ * of the list.
+ */
+class PostingList {
+
+    /** Number of values between skip table entries */
+    private static final int SKIP_INTERVAL = 64;
+
+    /** Encoded values */
+    private byte[] data = new byte[16];
+
+    /** Length of the encoded values */
+    private int length;
+
+    /** Number of values */
+    private int count;
+
+    /** Last value */
+    private long lastValue;
+
+    /** Skip table values (value of every SKIP_INTERVAL value) */
+    private long[] skipValues = new long[4];
+
+    /** Skip table offsets (encoded position following the skip value) */
+    private int[] skipOffsets = new int[4];
+
+    /**
+     * Return the number of values
+     *
+     * @return                              Number of values
+     */
+    int size() {
+        return count;
+    }
+
+    /**
+     * Check if the list is empty
+     *
+     * @return                              TRUE if the list is empty
+     */
+    boolean isEmpty() {
+        return (count == 0);
+    }
+
+    /**
+     * Return the number of bytes used for the encoded values and the skip table
+     *
+     * @return                              Number of bytes
+     */
+    int getEncodedSize() {
+        return length + getSkipCount()*12;
+    }
+
+    /**
+     * Add a value to the end of the list
+     *
+     * @param       value                   Value greater than the last value
+     * @throws      IllegalArgumentException    Value is negative or not greater than the last value
+     */
+    void add(long value) {
+        if (value < 0 || (count > 0 && value <= lastValue))
+            throw new IllegalArgumentException("Posting values must be ascending and not negative");
+        long delta = (count > 0 ? value - lastValue : value);
+        if (data.length - length < 10)
+            data = Arrays.copyOf(data, data.length*2);
+        while ((delta & ~0x7fL) != 0) {
+            data[length++] = (byte)((delta & 0x7f) | 0x80);
+            delta >>>= 7;
+        }
+        data[length++] = (byte)delta;
+        if (count % SKIP_INTERVAL == 0) {
+            int skip = count / SKIP_INTERVAL;
+            if (skip == skipValues.length) {
+                skipValues = Arrays.copyOf(skipValues, skip*2);
+                skipOffsets = Arrays.copyOf(skipOffsets, skip*2);
+            }
+            skipValues[skip] = value;
+            skipOffsets[skip] = length;
+        }
+        lastValue = value;
+        count++;
+    }
+
+    /**
+     * Return the number of values in a range
+     *
+     * @param       fromValue               First value
+     * @param       toValue                 Last value
+     * @return                              Number of values
+     */
+    int count(long fromValue, long toValue) {
+        if (toValue < fromValue || count == 0)
+            return 0;
+        int stop = (toValue == Long.MAX_VALUE ? count : seek(toValue+1).index);
+        return stop - seek(fromValue).index;
+    }
+
+    /**
+     * Pass the values in a range to a consumer in ascending order
+     *
+     * @param       fromValue               First value
+     * @param       toValue                 Last value
+     * @param       consumer                Value consumer
+     * @return                              Number of values
+     */
+    int forEach(long fromValue, long toValue, LongConsumer consumer) {
+        if (toValue < fromValue || count == 0)
+            return 0;
+        Position position = seek(fromValue);
+        int index = position.index;
+        int offset = position.offset;
+        long value = position.value;
+        int found = 0;
+        while (index < count) {
+            long delta = 0;
+            int shift = 0;
+            byte b;
+            do {
+                b = data[offset++];
+                delta |= (long)(b & 0x7f) << shift;
+                shift += 7;
+            } while (b < 0);
+            value = (index == 0 ? delta : value + delta);
+            if (value > toValue)
+                break;
+            consumer.accept(value);
+            found++;
+            index++;
+        }
+        return found;
+    }
+
+    /**
+     * Remove the values greater than the supplied value
+     *
+     * @param       maxValue                Largest value to keep
+     */
+    void truncate(long maxValue) {
+        if (count == 0 || lastValue <= maxValue)
+            return;
+        Position position = seek(maxValue+1);
+        count = position.index;
+        length = position.offset;
+        lastValue = position.value;
+    }
+
+    /**
+     * Locate the first value that is not less than the target value
+     *
+     * @param       target                  Target value
+     * @return                              Position of the first value
+     */
+    private Position seek(long target) {
+        //
+        // Find the last skip table entry less than the target
+        //
+        int low = 0;
+        int high = getSkipCount();
+        while (low < high) {
+            int mid = (low+high) >>> 1;
+            if (skipValues[mid] < target)
+                low = mid+1;
+            else
+                high = mid;
+        }
+        Position position = new Position();
+        if (low > 0) {
+            position.index = (low-1)*SKIP_INTERVAL + 1;
+            position.offset = skipOffsets[low-1];
+            position.value = skipValues[low-1];
+        }
+        //
+        // Decode values until the target is reached
+        //
+        while (position.index < count) {
+            int offset = position.offset;
+            long delta = 0;
+            int shift = 0;
+            byte b;
+            do {
+                b = data[offset++];
+                delta |= (long)(b & 0x7f) << shift;
+                shift += 7;
+            } while (b < 0);
+            long value = (position.index == 0 ? delta : position.value + delta);
+            if (value >= target)
+                break;
+            position.value = value;
+            position.offset = offset;
+            position.index++;
+        }
+        return position;
+    }
+
+    /**
+     * Return the number of skip table entries
+     *
+     * @return                              Number of entries
+     */
+    private int getSkipCount() {
+        return (count + SKIP_INTERVAL - 1) / SKIP_INTERVAL;
+    }
+
+    /**
+     * Position within the encoded values
+     */
+    private static class Position {
+
+        /** Index of the next value */
+        private int index;
+
+        /** Offset of the next encoded value */
+        private int offset;
+
+        /** Value preceding the next value (0 if the next value is the first value) */
+        private long value;
+    }
+}
@@ -18,22 +18,67 @@
  */
 package org.ScripterRon.NxtCore;
 
-import java.math.BigInteger;
-
 /**
  * Reed-Solomon encoding and decoding for Nxt account identifiers
+ *
+ * The 64-bit identifier is split directly into 13 base-32 digits (least significant digit first)
+ * and 4 parity digits are calculated using GF(32) arithmetic.  The field multiplication is done
+ * using precomputed tables, so no intermediate strings or arrays are created when encoding
+ * an identifier.
  */
 public class ReedSolomon {
 
-    private static final int[] initial_codeword = {1, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0};
     private static final int[] gexp = {1, 2, 4, 8, 16, 5, 10, 20, 13, 26, 17, 7, 14, 28, 29, 31, 27, 19,
                                        3, 6, 12, 24, 21, 15, 30, 25, 23, 11, 22, 9, 18, 1};
     private static final int[] glog = {0, 0, 1, 18, 2, 5, 19, 11, 3, 29, 6, 27, 20, 8, 12, 23, 4, 10, 30,
                                        17, 7, 22, 28, 26, 21, 25, 9, 16, 13, 14, 24, 15};
     private static final int[] codeword_map = {3, 2, 1, 0, 7, 6, 5, 4, 13, 14, 15, 16, 12, 8, 9, 10, 11};
-    private static final String alphabet = "23456789ABCDEFGHJKLMNPQRSTUVWXYZ";
+    private static final char[] alphabet = "23456789ABCDEFGHJKLMNPQRSTUVWXYZ".toCharArray();
     private static final int base_32_length = 13;
-    private static final int base_10_length = 20;
+    private static final int codeword_length = 17;
+
+    /** Encoded string length (17 characters plus 3 separators) */
+    public static final int ENCODED_LENGTH = 20;
+
+    /** GF(32) multiplication table indexed by (a<<5)|b */
+    private static final int[] gmult_table = new int[32*32];
+
+    /** Parity generator multiplication tables */
+    private static final int[] gmult_30 = new int[32];
+    private static final int[] gmult_6 = new int[32];
+    private static final int[] gmult_9 = new int[32];
+    private static final int[] gmult_17 = new int[32];
+
+    /** Syndrome multipliers indexed by (syndrome-1)*17+codeword position */
+    private static final int[] syndrome_table = new int[4*codeword_length];
+
+    /** Alphabet position for each ASCII character (-1 if not in the alphabet) */
+    private static final int[] alphabet_index = new int[128];
+
+    static {
+        for (int a=0; a<32; a++) {
+            for (int b=0; b<32; b++)
+                gmult_table[(a<<5)|b] = (a==0 || b==0 ? 0 : gexp[(glog[a]+glog[b])%31]);
+            gmult_30[a] = gmult_table[(a<<5)|30];
+            gmult_6[a] = gmult_table[(a<<5)|6];
+            gmult_9[a] = gmult_table[(a<<5)|9];
+            gmult_17[a] = gmult_table[(a<<5)|17];
+        }
+        //
+        // The codeword is treated as a shortened code of length 31 with positions
+        // 13 through 26 omitted, so codeword position 13+k corresponds to code position 27+k
+        //
+        for (int i=1; i<5; i++) {
+            for (int pos=0; pos<codeword_length; pos++) {
+                int j = (pos < base_32_length ? pos : pos+14);
+                syndrome_table[(i-1)*codeword_length+pos] = gexp[(i*j)%31];
+            }
+        }
+        for (int i=0; i<alphabet_index.length; i++)
+            alphabet_index[i] = -1;
+        for (int i=0; i<alphabet.length; i++)
+            alphabet_index[alphabet[i]] = i;
+    }
 
     /**
      * Encode a long value as a Reed-Solomon string
@@ -42,54 +87,45 @@ public class ReedSolomon {
      * @return                          Encoded string
      */
     public static String encode(long plain) {
-        String plain_string = Utils.idToString(plain);
-        int length = plain_string.length();
-        int[] plain_string_10 = new int[ReedSolomon.base_10_length];
-        for (int i = 0; i < length; i++)
-            plain_string_10[i] = (int)plain_string.charAt(i) - (int)'0';
-        int codeword_length = 0;
-        int[] codeword = new int[ReedSolomon.initial_codeword.length];
-
-        do {  // base 10 to base 32 conversion
-            int new_length = 0;
-            int digit_32 = 0;
-            for (int i = 0; i < length; i++) {
-                digit_32 = digit_32 * 10 + plain_string_10[i];
-                if (digit_32 >= 32) {
-                    plain_string_10[new_length] = digit_32 >> 5;
-                    digit_32 &= 31;
-                    new_length += 1;
-                } else if (new_length > 0) {
-                    plain_string_10[new_length] = 0;
-                    new_length += 1;
-                }
-            }
-            length = new_length;
-            codeword[codeword_length] = digit_32;
-            codeword_length += 1;
-        } while(length > 0);
-
-        int[] p = {0, 0, 0, 0};
-        for (int i = ReedSolomon.base_32_length - 1; i >= 0; i--) {
-            final int fb = codeword[i] ^ p[3];
-            p[3] = p[2] ^ ReedSolomon.gmult(30, fb);
-            p[2] = p[1] ^ ReedSolomon.gmult(6, fb);
-            p[1] = p[0] ^ ReedSolomon.gmult(9, fb);
-            p[0] =        ReedSolomon.gmult(17, fb);
-        }
+        char[] chars = new char[ENCODED_LENGTH];
+        encode(plain, chars, 0);
+        return new String(chars);
+    }
 
-        System.arraycopy(p, 0, codeword, ReedSolomon.base_32_length,
-                         ReedSolomon.initial_codeword.length - ReedSolomon.base_32_length);
+    /**
+     * Encode a long value and append the Reed-Solomon string to a string builder
+     *
+     * @param       plain               Value to be encoded
+     * @param       builder             String builder
+     * @return                          The string builder
+     */
+    public static StringBuilder encode(long plain, StringBuilder builder) {
+        int parity = parity(plain);
+        for (int i=0; i<codeword_length; i++) {
+            builder.append(alphabet[digit(plain, parity, codeword_map[i])]);
+            if ((i & 3) == 3 && i < 13)
+                builder.append('-');
+        }
+        return builder;
+    }
 
-        StringBuilder cypher_string_builder = new StringBuilder();
-        for (int i = 0; i < 17; i++) {
-            final int codework_index = ReedSolomon.codeword_map[i];
-            final int alphabet_index = codeword[codework_index];
-            cypher_string_builder.append(ReedSolomon.alphabet.charAt(alphabet_index));
+    /**
+     * Encode a long value into a character array
+     *
+     * @param       plain               Value to be encoded
+     * @param       chars               Destination array (ENCODED_LENGTH characters are stored)
+     * @param       offset              Starting offset within the destination array
+     * @return                          Offset following the encoded string
+     */
+    public static int encode(long plain, char[] chars, int offset) {
+        int parity = parity(plain);
+        int pos = offset;
+        for (int i=0; i<codeword_length; i++) {
+            chars[pos++] = alphabet[digit(plain, parity, codeword_map[i])];
             if ((i & 3) == 3 && i < 13)
-                cypher_string_builder.append('-');
+                chars[pos++] = '-';
         }
-        return cypher_string_builder.toString();
+        return pos;
     }
 
     /**
@@ -100,72 +136,88 @@ public class ReedSolomon {
      * @throws      IdentifierException     Invalid encoded string
      */
     public static long decode(String cypher_string) throws IdentifierException {
-        int[] codeword = new int[ReedSolomon.initial_codeword.length];
-        System.arraycopy(ReedSolomon.initial_codeword, 0, codeword, 0, ReedSolomon.initial_codeword.length);
-        int codeword_length = 0;
-        for (int i = 0; i < cypher_string.length(); i++) {
-            int position_in_alphabet = ReedSolomon.alphabet.indexOf(cypher_string.charAt(i));
-            if (position_in_alphabet <= -1 || position_in_alphabet > ReedSolomon.alphabet.length())
+        return decode(cypher_string, 0, cypher_string.length());
+    }
+
+    /**
+     * Decode a Reed-Solomon encoded character sequence and return the long value.
+     * Characters that are not part of the encoding alphabet (such as the separators)
+     * are ignored.
+     *
+     * @param       cypher_string           Character sequence containing the encoded string
+     * @param       start                   Start of the encoded string
+     * @param       end                     End of the encoded string (exclusive)
+     * @return                              Long identifier
+     * @throws      IdentifierException     Invalid encoded string
+     */
+    public static long decode(CharSequence cypher_string, int start, int end) throws IdentifierException {
+        int[] codeword = new int[codeword_length];
+        int length = 0;
+        for (int i=start; i<end; i++) {
+            char c = cypher_string.charAt(i);
+            int position_in_alphabet = (c < 128 ? alphabet_index[c] : -1);
+            if (position_in_alphabet < 0)
                 continue;
-            if (codeword_length > 16)
+            if (length == codeword_length)
                 throw new IdentifierException("Reed-Solomon codeword is too long");
-            int codework_index = ReedSolomon.codeword_map[codeword_length];
-            codeword[codework_index] = position_in_alphabet;
-            codeword_length += 1;
+            codeword[codeword_map[length++]] = position_in_alphabet;
         }
-        if (codeword_length == 17 && !ReedSolomon.is_codeword_valid(codeword) || codeword_length != 17)
+        if (length != codeword_length || !is_codeword_valid(codeword))
             throw new IdentifierException("Reed-Solomon codeword is not valid");
-
-        int length = ReedSolomon.base_32_length;
-        int[] cypher_string_32 = new int[length];
-        for (int i = 0; i < length; i++)
-            cypher_string_32[i] = codeword[length - i - 1];
-
-        StringBuilder plain_string_builder = new StringBuilder();
-        do { // base 32 to base 10 conversion
-            int new_length = 0;
-            int digit_10 = 0;
-            for (int i = 0; i < length; i++) {
-                digit_10 = digit_10 * 32 + cypher_string_32[i];
-                if (digit_10 >= 10) {
-                    cypher_string_32[new_length] = digit_10 / 10;
-                    digit_10 %= 10;
-                    new_length += 1;
-                } else if (new_length > 0) {
-                    cypher_string_32[new_length] = 0;
-                    new_length += 1;
-                }
-            }
-            length = new_length;
-            plain_string_builder.append((char)(digit_10 + (int)'0'));
-        } while (length > 0);
-
-        BigInteger bigInt = new BigInteger(plain_string_builder.reverse().toString());
-        return bigInt.longValue();
+        //
+        // The value is the base-32 number formed by the 13 data digits.  Any bits beyond
+        // 64 are discarded, which matches the previous BigInteger.longValue() conversion.
+        //
+        long plain = 0;
+        for (int i=base_32_length-1; i>=0; i--)
+            plain = (plain<<5) | codeword[i];
+        return plain;
     }
 
-    private static int gmult(int a, int b) {
-        if (a == 0 || b == 0) {
-            return 0;
+    /**
+     * Calculate the parity digits for a value
+     *
+     * @param       plain               Value to be encoded
+     * @return                          Parity digits packed 5 bits per digit
+     */
+    private static int parity(long plain) {
+        int p0 = 0, p1 = 0, p2 = 0, p3 = 0;
+        for (int i=base_32_length-1; i>=0; i--) {
+            final int fb = ((int)(plain>>>(5*i)) & 31) ^ p3;
+            p3 = p2 ^ gmult_30[fb];
+            p2 = p1 ^ gmult_6[fb];
+            p1 = p0 ^ gmult_9[fb];
+            p0 =      gmult_17[fb];
         }
-        int idx = (ReedSolomon.glog[a] + ReedSolomon.glog[b]) % 31;
-        return ReedSolomon.gexp[idx];
+        return p0 | (p1<<5) | (p2<<10) | (p3<<15);
+    }
+
+    /**
+     * Return a codeword digit
+     *
+     * @param       plain               Value being encoded
+     * @param       parity              Packed parity digits
+     * @param       index               Codeword index
+     * @return                          Codeword digit
+     */
+    private static int digit(long plain, int parity, int index) {
+        return (index < base_32_length ? (int)(plain>>>(5*index)) & 31 :
+                                         (parity>>>(5*(index-base_32_length))) & 31);
     }
 
+    /**
+     * Check if a codeword is valid (all of the syndromes are zero)
+     *
+     * @param       codeword            Codeword
+     * @return                          TRUE if the codeword is valid
+     */
     private static boolean is_codeword_valid(int[] codeword) {
         int sum = 0;
-        for (int i = 1; i < 5; i++) {
+        for (int i=0; i<4; i++) {
             int t = 0;
-            for (int j = 0; j < 31; j++) {
-                if (j > 12 && j < 27) {
-                    continue;
-                }
-                int pos = j;
-                if (j > 26) {
-                    pos -= 14;
-                }
-                t ^= ReedSolomon.gmult(codeword[pos], ReedSolomon.gexp[(i * j) % 31]);
-            }
+            int base = i*codeword_length;
+            for (int pos=0; pos<codeword_length; pos++)
+                t ^= gmult_table[(codeword[pos]<<5) | syndrome_table[base+pos]];
             sum |= t;
         }
         return sum == 0;
@@ -0,0 +1,278 @@
+/*
+ * Copyright 2016 Ronald Hoffman.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.ScripterRon.NxtCore;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * Attachment for TransactionType.Data.TAGGED_DATA_UPLOAD
+ *
+ * The tagged data is prunable, so only the data hash is included in the
+ * transaction bytes.  The remaining fields are available only when the attachment
+ * is created from the JSON response and the data has not been pruned.
+ */
+public class TaggedDataUpload extends BinaryAttachment {
+
+    /** Version */
+    private final int version;
+
+    /** Data name */
+    private final String name;
+
+    /** Data description */
+    private final String description;
+
+    /** Data tags */
+    private final String tags;
+
+    /** Data type */
+    private final String type;
+
+    /** Data channel */
+    private final String channel;
+
+    /** Data is text */
+    private final boolean isText;
+
+    /** Data file name */
+    private final String filename;
+
+    /** Data */
+    private final byte[] data;
+
+    /** Data hash */
+    private final byte[] hash;
+
+    /**
+     * Create a Tagged Data Upload attachment
+     *
+     * @param       name                    Data name (maximum length 100)
+     * @param       description             Data description (maximum length 1000)
+     * @param       tags                    Data tags (maximum length 100)
+     * @param       type                    Data type (maximum length 100)
+     * @param       channel                 Data channel (maximum length 100)
+     * @param       isText                  TRUE if the data is text
+     * @param       filename                Data file name (maximum length 100)
+     * @param       data                    Data (maximum length 43008)
+     */
+    public TaggedDataUpload(String name, String description, String tags, String type, String channel,
+                                    boolean isText, String filename, byte[] data) {
+        if (name == null || description == null || tags == null || type == null ||
+                                    channel == null || filename == null || data == null)
+            throw new IllegalArgumentException("Required parameter not specified");
+        if (name.length() > 100 || tags.length() > 100 || type.length() > 100 ||
+                                    channel.length() > 100 || filename.length() > 100)
+            throw new IllegalArgumentException("Maximum name, tags, type, channel and file name length is 100");
+        if (description.length() > 1000)
+            throw new IllegalArgumentException("Maximum description length is 1000");
+        if (data.length > 43008)
+            throw new IllegalArgumentException("Maximum data length is 43008");
+        this.version = 1;
+        this.name = name;
+        this.description = description;
+        this.tags = tags;
+        this.type = type;
+        this.channel = channel;
+        this.isText = isText;
+        this.filename = filename;
+        this.data = data.clone();
+        this.hash = computeHash();
+    }
+
+    /**
+     * Create a Tagged Data Upload attachment from the JSON response
+     *
+     * @param       response                JSON response
+     * @throws      NumberFormatException   Invalid hex string
+     */
+    public TaggedDataUpload(PeerResponse response) throws NumberFormatException {
+        this.version = response.getByte("version.TaggedDataUpload");
+        this.name = response.getString("name");
+        this.description = response.getString("description");
+        this.tags = response.getString("tags");
+        this.type = response.getString("type");
+        this.channel = response.getString("channel");
+        this.isText = response.getBoolean("isText");
+        this.filename = response.getString("filename");
+        if (response.get("data") != null) {
+            this.data = (isText ? response.getString("data").getBytes(StandardCharsets.UTF_8) :
+                                  response.getHexString("data"));
+            this.hash = computeHash();
+        } else {
+            this.data = null;
+            byte[] dataHash = response.getHexString("hash");
+            this.hash = (dataHash != null ? dataHash : new byte[32]);
+        }
+    }
+
+    /**
+     * Create a Tagged Data Upload attachment from the transaction bytes
+     *
+     * @param       buffer                  Little-endian buffer positioned at the attachment
+     * @param       txVersion               Transaction version
+     */
+    public TaggedDataUpload(ByteBuffer buffer, int txVersion) {
+        this.version = (txVersion>0 ? buffer.get() : 0);
+        this.hash = new byte[32];
+        buffer.get(hash);
+        this.name = null;
+        this.description = null;
+        this.tags = null;
+        this.type = null;
+        this.channel = null;
+        this.isText = false;
+        this.filename = null;
+        this.data = null;
+    }
+
+    /**
+     * Compute the data hash
+     *
+     * @return                              Data hash
+     */
+    private byte[] computeHash() {
+        byte[][] parts = new byte[][] {
+            name.getBytes(StandardCharsets.UTF_8),
+            description.getBytes(StandardCharsets.UTF_8),
+            tags.getBytes(StandardCharsets.UTF_8),
+            type.getBytes(StandardCharsets.UTF_8),
+            channel.getBytes(StandardCharsets.UTF_8),
+            new byte[] {(byte)(isText ? 1 : 0)},
+            filename.getBytes(StandardCharsets.UTF_8),
+            data
+        };
+        int length = 0;
+        for (byte[] part : parts)
+            length += part.length;
+        ByteBuffer buffer = ByteBuffer.allocate(length);
+        for (byte[] part : parts)
+            buffer.put(part);
+        return Crypto.singleDigest(buffer.array());
+    }
+
+    /**
+     * Return the size of the attachment byte stream
+     *
+     * @return                              Number of bytes
+     */
+    @Override
+    public int getSize() {
+        return (version>0?1:0)+32;
+    }
+
+    /**
+     * Write the attachment byte stream to a little-endian buffer
+     *
+     * @param       buffer                  Output buffer
+     */
+    @Override
+    public void writeTo(ByteBuffer buffer) {
+        if (version > 0)
+            buffer.put((byte)version);
+        buffer.put(hash);
+    }
+
+    /**
+     * Return the attachment version
+     *
+     * @return                              Version
+     */
+    public int getVersion() {
+        return version;
+    }
+
+    /**
+     * Return the data name
+     *
+     * @return                              Data name or null if not available
+     */
+    public String getName() {
+        return name;
+    }
+
+    /**
+     * Return the data description
+     *
+     * @return                              Data description or null if not available
+     */
+    public String getDescription() {
+        return description;
+    }
+
+    /**
+     * Return the data tags
+     *
+     * @return                              Data tags or null if not available
+     */
+    public String getTags() {
+        return tags;
+    }
+
+    /**
+     * Return the data type
+     *
+     * @return                              Data type or null if not available
+     */
+    public String getType() {
+        return type;
+    }
+
+    /**
+     * Return the data channel
+     *
+     * @return                              Data channel or null if not available
+     */
+    public String getChannel() {
+        return channel;
+    }
+
+    /**
+     * Check if the data is text
+     *
+     * @return                              TRUE if the data is text
+     */
+    public boolean isText() {
+        return isText;
+    }
+
+    /**
+     * Return the data file name
+     *
+     * @return                              Data file name or null if not available
+     */
+    public String getFilename() {
+        return filename;
+    }
+
+    /**
+     * Return the data
+     *
+     * @return                              Data or null if the data has been pruned
+     */
+    public byte[] getData() {
+        return data;
+    }
+
+    /**
+     * Return the data hash
+     *
+     * @return                              Data hash
+     */
+    public byte[] getHash() {
+        return hash;
+    }
+}
@@ -15,8 +15,11 @@
  */
 package org.ScripterRon.NxtCore;
 
+import java.nio.BufferOverflowException;
+import java.nio.BufferUnderflowException;
 import java.nio.ByteBuffer;
 import java.nio.ByteOrder;
+import java.util.Arrays;
 import java.util.Map;
 
 /**
@@ -38,6 +41,12 @@ public class Transaction {
     public static final int TX_PUBLIC_KEY_ANNOUNCE = 4;
     /** Transaction has encrypted message to self */
     public static final int TX_ENCRYPTED_MESSAGE_TO_SELF = 8;
+    /** Transaction is phased */
+    public static final int TX_PHASED = 16;
+    /** Transaction has a prunable message */
+    public static final int TX_PRUNABLE_MESSAGE = 32;
+    /** Transaction has a prunable encrypted message */
+    public static final int TX_PRUNABLE_ENCRYPTED_MESSAGE = 64;
 
     /** Transaction version */
     private final long version;
@@ -66,18 +75,12 @@ public class Transaction {
     /** Sender identifier */
     private final long senderId;
 
-    /** Sender RS identifier */
-    private final String senderRsId;
-
     /** Sender public key */
     private final byte[] senderPublicKey;
 
     /** Recipient identifier */
     private final long recipientId;
 
-    /** Recipient RS identifier */
-    private final String recipientRsId;
-
     /** Amount */
     private final long amount;
 
@@ -94,7 +97,22 @@ public class Transaction {
     private final byte[] referencedTxHash;
 
     /** Attachment */
-    private final Attachment attachment;
+    private volatile Attachment attachment;
+
+    /** Attachment JSON object (null once loaded) */
+    private volatile Map<String, Object> attachmentResponse;
+
+    /** Attachment and appendage bytes for a transaction created from its binary form */
+    private final byte[] attachmentBytes;
+
+    /** Attachment bytes have been decoded */
+    private volatile boolean attachmentDecoded;
+
+    /** Transaction flags (appendage flags for a transaction created from a JSON response) */
+    private final int txFlags;
+
+    /** Transaction bytes include all of the appendages */
+    private final boolean completeBytes;
 
     /** Block identifier */
     private final long blockId;
@@ -117,6 +135,10 @@ public class Transaction {
     /**
      * Create a signed transaction from the JSON response for 'getTransaction'
      *
+     * The hashes, keys and signatures are decoded since the byte arrays are smaller
+     * than the hex strings.  The attachment is not loaded from the JSON object until
+     * it is referenced since most applications never use it.
+     *
      * @param       response                Response for getTransaction request
      * @throws      IdentifierException     Invalid object identifier
      * @throws      NumberFormatException   Invalid hex string
@@ -133,13 +155,11 @@ public class Transaction {
         amount = response.getLongString("amountNQT");
         fee = response.getLongString("feeNQT");
         senderId = response.getId("sender");
-        senderRsId = response.getString("senderRS");
         long recipient = response.getId("recipient");
         if (recipient != 0)
             recipientId = recipient;
         else
             recipientId = Nxt.GENESIS_ACCOUNT_ID;
-        recipientRsId = Utils.getAccountRsId(recipientId);
         timestamp = response.getInt("timestamp");
         deadline = response.getInt("deadline");
         referencedTxHash = response.getHexString("referencedTransactionFullHash");
@@ -167,11 +187,183 @@ public class Transaction {
             ecBlockId = 0;
             ecBlockHeight = 0;
         }
-        Map<String, Object> attachmentResponse = response.getObject("attachment");
-        if (!attachmentResponse.isEmpty())
-            attachment = txType.loadAttachment(new PeerResponse(attachmentResponse));
-        else
-            attachment = null;
+        Map<String, Object> attachmentObject = response.getObject("attachment");
+        if (!attachmentObject.isEmpty())
+            attachmentResponse = attachmentObject;
+        attachmentBytes = null;
+        txFlags = getAppendageFlags(attachmentObject, isPhased);
+        completeBytes = true;
+    }
+
+    /**
+     * Create a signed transaction from a transaction template or transaction pipeline
+     *
+     * @param       txType                  Transaction type
+     * @param       senderPublicKey         Sender public key
+     * @param       senderId                Sender identifier
+     * @param       recipientId             Recipient identifier
+     * @param       amount                  Transaction amount
+     * @param       fee                     Transaction fee
+     * @param       timestamp               Transaction timestamp (seconds since the genesis block)
+     * @param       deadline                Transaction deadline
+     * @param       referencedTxHash        Referenced transaction hash or null
+     * @param       attachment              Transaction attachment or null
+     * @param       ecBlockHeight           EC block height
+     * @param       ecBlockId               EC block identifier
+     * @param       signature               Transaction signature
+     * @param       signatureHash           Signature hash
+     * @param       txHash                  Transaction hash
+     */
+    Transaction(TransactionType txType, byte[] senderPublicKey, long senderId, long recipientId,
+                                    long amount, long fee, int timestamp, int deadline, byte[] referencedTxHash,
+                                    Attachment attachment, int ecBlockHeight, long ecBlockId,
+                                    byte[] signature, byte[] signatureHash, byte[] txHash) {
+        this.version = 1;
+        this.txType = txType;
+        this.senderPublicKey = senderPublicKey;
+        this.senderId = senderId;
+        this.recipientId = recipientId;
+        this.amount = amount;
+        this.fee = fee;
+        this.timestamp = timestamp;
+        this.deadline = deadline;
+        this.referencedTxHash = referencedTxHash;
+        this.attachment = attachment;
+        this.attachmentBytes = null;
+        this.txFlags = 0;
+        this.completeBytes = true;
+        this.ecBlockHeight = ecBlockHeight;
+        this.ecBlockId = ecBlockId;
+        this.isPhased = false;
+        this.txIndex = -1;
+        this.blockId = 0;
+        this.blockTimestamp = 0;
+        this.height = -1;
+        this.confirmations = -1;
+        this.signature = signature;
+        this.signatureHash = signatureHash;
+        this.txHash = txHash;
+        this.txId = Utils.fullHashToId(txHash);
+    }
+
+    /**
+     * Create a transaction from the transaction bytes
+     *
+     * @param       buffer                  Transaction bytes
+     * @throws      NxtException            Transaction bytes are not valid
+     */
+    private Transaction(ByteBuffer buffer) throws NxtException {
+        this(buffer, 0, 0, -1, -1, -1);
+    }
+
+    /**
+     * Create a transaction from the transaction bytes and the block values
+     *
+     * @param       buffer                  Transaction bytes
+     * @param       blockId                 Block identifier or 0 if not in a block
+     * @param       blockTimestamp          Block timestamp (seconds since the genesis block)
+     * @param       height                  Block height or -1 if not in a block
+     * @param       txIndex                 Position within block transactions or -1 if not in a block
+     * @param       confirmations           Confirmation count or -1 if unconfirmed
+     * @throws      NxtException            Transaction bytes are not valid
+     */
+    Transaction(ByteBuffer buffer, long blockId, int blockTimestamp, int height, int txIndex,
+                                    int confirmations) throws NxtException {
+        this(buffer, null, true, blockId, blockTimestamp, height, txIndex, confirmations);
+    }
+
+    /**
+     * Create a transaction from the transaction bytes, the transaction hash and the block values
+     *
+     * The transaction hash is computed from the transaction bytes if it is not supplied.
+     * It must be supplied when the transaction bytes do not include all of the appendages
+     * since the computed hash would not be correct.
+     *
+     * @param       buffer                  Transaction bytes
+     * @param       fullHash                Transaction hash or null to compute the hash
+     * @param       completeBytes           TRUE if the transaction bytes include all of the appendages
+     * @param       blockId                 Block identifier or 0 if not in a block
+     * @param       blockTimestamp          Block timestamp (seconds since the genesis block)
+     * @param       height                  Block height or -1 if not in a block
+     * @param       txIndex                 Position within block transactions or -1 if not in a block
+     * @param       confirmations           Confirmation count or -1 if unconfirmed
+     * @throws      NxtException            Transaction bytes are not valid
+     */
+    Transaction(ByteBuffer buffer, byte[] fullHash, boolean completeBytes, long blockId, int blockTimestamp,
+                                    int height, int txIndex, int confirmations) throws NxtException {
+        byte[] txBytes = new byte[buffer.remaining()];
+        buffer.get(txBytes);
+        ByteBuffer buf = ByteBuffer.wrap(txBytes);
+        buf.order(ByteOrder.LITTLE_ENDIAN);
+        try {
+            byte type = buf.get();
+            byte subtype = buf.get();
+            version = (subtype>>4)&0x0f;
+            txType = TransactionType.findTransactionType(type, (byte)(subtype&0x0f));
+            if (txType == null)
+                throw new NxtException(String.format("Transaction type %d subtype %d is not supported",
+                                                     type, subtype&0x0f));
+            timestamp = buf.getInt();
+            deadline = buf.getShort();
+            senderPublicKey = new byte[32];
+            buf.get(senderPublicKey);
+            senderId = Utils.getAccountId(senderPublicKey);
+            recipientId = buf.getLong();
+            amount = buf.getLong();
+            fee = buf.getLong();
+            byte[] refHash = new byte[32];
+            buf.get(refHash);
+            referencedTxHash = (Arrays.equals(refHash, nullHash) ? null : refHash);
+            signature = new byte[64];
+            buf.get(signature);
+            if (version > 0) {
+                txFlags = buf.getInt();
+                ecBlockHeight = buf.getInt();
+                ecBlockId = buf.getLong();
+            } else {
+                txFlags = 0;
+                ecBlockHeight = 0;
+                ecBlockId = 0;
+            }
+            attachmentBytes = Arrays.copyOfRange(txBytes, buf.position(), txBytes.length);
+        } catch (BufferUnderflowException exc) {
+            throw new NxtException("Transaction bytes are too short");
+        }
+        isPhased = ((txFlags&TX_PHASED) != 0);
+        this.txIndex = txIndex;
+        this.blockId = blockId;
+        this.blockTimestamp = blockTimestamp;
+        this.height = height;
+        this.confirmations = confirmations;
+        this.completeBytes = completeBytes;
+        //
+        // Generate the transaction identifier
+        //
+        signatureHash = Crypto.singleDigest(signature);
+        if (fullHash != null) {
+            if (fullHash.length != 32)
+                throw new NxtException("Transaction hash is not valid");
+            txHash = fullHash;
+        } else {
+            System.arraycopy(nullSignature, 0, txBytes, 96, 64);
+            txHash = Crypto.singleDigest(txBytes, signatureHash);
+        }
+        txId = Utils.fullHashToId(txHash);
+    }
+
+    /**
+     * Create a transaction from the transaction bytes as returned by getBytes() or by
+     * the NRS 'transactionBytes' field.  All of the remaining bytes in the buffer are
+     * consumed.  The attachment bytes are kept so that getBytes() returns the original
+     * bytes even if the attachment includes appendages which are not decoded.  The
+     * attachment is not decoded until it is first referenced.
+     *
+     * @param       buffer                  Transaction bytes
+     * @return                              Transaction
+     * @throws      NxtException            Transaction bytes are not valid
+     */
+    public static Transaction parse(ByteBuffer buffer) throws NxtException {
+        return new Transaction(buffer);
     }
 
     /**
@@ -197,9 +389,7 @@ public class Transaction {
         this.txType = txType;
         this.senderPublicKey = Crypto.getPublicKey(passPhrase);
         this.senderId = Utils.getAccountId(senderPublicKey);
-        this.senderRsId = Utils.getAccountRsId(senderId);
         this.recipientId = recipientId;
-        this.recipientRsId = Utils.getAccountRsId(recipientId);
         this.referencedTxHash = referencedTxHash;
         this.amount = amount;
         this.fee = fee;
@@ -208,6 +398,9 @@ public class Transaction {
         this.attachment = attachment;
         this.ecBlockId = ecBlock.getBlockId();
         this.ecBlockHeight = ecBlock.getHeight();
+        this.attachmentBytes = null;
+        this.txFlags = 0;
+        this.completeBytes = true;
         this.isPhased = false;
         this.txIndex = -1;
         this.blockId = 0;
@@ -238,43 +431,135 @@ public class Transaction {
      * @return                              Transaction bytes or null
      */
     public final byte[] getBytes(boolean zeroSignature) {
-        int baseLength = 160 + (version>0 ? 16 : 0);
-        int txLength;
-        byte[] attachmentBytes;
-        if (attachment != null) {
-            attachmentBytes = attachment.getBytes();
-            txLength = baseLength + attachmentBytes.length;
+        byte[] txBytes = new byte[getSize()];
+        writeTo(ByteBuffer.wrap(txBytes), zeroSignature);
+        return txBytes;
+    }
+
+    /**
+     * Return the size of the transaction bytes
+     *
+     * @return                              Number of bytes
+     */
+    public final int getSize() {
+        int txLength = 160 + (version>0 ? 16 : 0);
+        if (attachmentBytes != null) {
+            txLength += attachmentBytes.length;
         } else {
-            attachmentBytes = null;
-            txLength = baseLength;
+            Attachment txAttachment = getAttachment();
+            if (txAttachment != null)
+                txLength += txAttachment.getSize();
         }
-        byte[] txBytes = new byte[txLength];
-        ByteBuffer txBuffer = ByteBuffer.wrap(txBytes);
-        txBuffer.order(ByteOrder.LITTLE_ENDIAN);
-        txBuffer.put((txType.getType()));
-        txBuffer.put((byte)(txType.getSubtype()|(version<<4)));
-        txBuffer.putInt(timestamp);
-        txBuffer.putShort((short)deadline);
-        txBuffer.put(senderPublicKey);
-        txBuffer.putLong(recipientId);
-        txBuffer.putLong(amount);
-        txBuffer.putLong(fee);
-        if (referencedTxHash != null)
-            txBuffer.put(referencedTxHash);
-        else
-            txBuffer.put(nullHash);
-        if (!zeroSignature)
-            txBuffer.put(signature);
-        else
-            txBuffer.put(nullSignature);
-        if (version > 0) {
-            txBuffer.putInt(attachment!=null ? attachment.getFlags() : 0);
-            txBuffer.putInt(ecBlockHeight);
-            txBuffer.putLong(ecBlockId);
+        return txLength;
+    }
+
+    /**
+     * Write the transaction bytes to a buffer starting at the current buffer position.  The
+     * bytes are written in little-endian order and the buffer byte order is restored
+     * before returning.
+     *
+     * @param       buffer                  Output buffer
+     * @param       zeroSignature           TRUE to zero the signature bytes
+     * @throws      BufferOverflowException Insufficient space in the buffer
+     */
+    public final void writeTo(ByteBuffer buffer, boolean zeroSignature) throws BufferOverflowException {
+        ByteOrder byteOrder = buffer.order();
+        buffer.order(ByteOrder.LITTLE_ENDIAN);
+        try {
+            buffer.put((txType.getType()));
+            buffer.put((byte)(txType.getSubtype()|(version<<4)));
+            buffer.putInt(timestamp);
+            buffer.putShort((short)deadline);
+            buffer.put(getSenderPublicKey());
+            buffer.putLong(recipientId);
+            buffer.putLong(amount);
+            buffer.putLong(fee);
+            byte[] refHash = getReferencedTxHash();
+            if (refHash != null)
+                buffer.put(refHash);
+            else
+                buffer.put(nullHash);
+            if (!zeroSignature)
+                buffer.put(getSignature());
+            else
+                buffer.put(nullSignature);
+            if (version > 0) {
+                buffer.putInt(getFlags());
+                buffer.putInt(ecBlockHeight);
+                buffer.putLong(ecBlockId);
+            }
+            if (attachmentBytes != null) {
+                buffer.put(attachmentBytes);
+            } else {
+                Attachment txAttachment = getAttachment();
+                if (txAttachment != null)
+                    txAttachment.writeTo(buffer);
+            }
+        } finally {
+            buffer.order(byteOrder);
         }
+    }
+
+    /**
+     * Verify the transaction signature
+     *
+     * @return                              TRUE if the signature is valid
+     */
+    public boolean verifySignature() {
+        return Crypto.verify(getSignature(), getBytes(true), getSenderPublicKey());
+    }
+
+    /**
+     * Return the transaction flags
+     *
+     * @return                              Transaction flags
+     */
+    public int getFlags() {
         if (attachmentBytes != null)
-            System.arraycopy(attachmentBytes, 0, txBytes, baseLength, attachmentBytes.length);
-        return txBytes;
+            return txFlags;
+        Attachment txAttachment = getAttachment();
+        return (txAttachment!=null ? txAttachment.getFlags() : 0) | txFlags;
+    }
+
+    /**
+     * Check if the transaction bytes include all of the transaction appendages.  The
+     * bytes for a transaction created from a JSON response include the attachment but
+     * not the appendages (such as a message attached to a payment), so getBytes() does
+     * not return the signed transaction bytes for such a transaction.
+     *
+     * @return                              TRUE if the transaction bytes are complete
+     */
+    public boolean hasCompleteBytes() {
+        if (attachmentBytes != null)
+            return completeBytes;
+        Attachment txAttachment = getAttachment();
+        return ((txFlags & ~(txAttachment!=null ? txAttachment.getFlags() : 0)) == 0);
+    }
+
+    /**
+     * Return the transaction flags for the appendages in a JSON attachment object
+     *
+     * @param       attachmentObject        Attachment JSON object
+     * @param       phased                  TRUE if this is a phased transaction
+     * @return                              Transaction flags
+     */
+    static int getAppendageFlags(Map<String, Object> attachmentObject, boolean phased) {
+        int flags = (phased ? TX_PHASED : 0);
+        if (attachmentObject.containsKey("version.Message"))
+            flags |= TX_MESSAGE;
+        if (attachmentObject.containsKey("version.EncryptedMessage"))
+            flags |= TX_ENCRYPTED_MESSAGE;
+        if (attachmentObject.containsKey("version.PublicKeyAnnouncement"))
+            flags |= TX_PUBLIC_KEY_ANNOUNCE;
+        if (attachmentObject.containsKey("version.EncryptToSelfMessage"))
+            flags |= TX_ENCRYPTED_MESSAGE_TO_SELF;
+        if (attachmentObject.containsKey("version.Phasing"))
+            flags |= TX_PHASED;
+        if (attachmentObject.containsKey("version.PrunablePlainMessage"))
+            flags |= TX_PRUNABLE_MESSAGE;
+        if (attachmentObject.containsKey("version.PrunableEncryptedMessage"))
+            flags |= TX_PRUNABLE_ENCRYPTED_MESSAGE;
+        return flags;
     }
 
     /**
@@ -329,7 +614,7 @@ public class Transaction {
      */
 
     public String getSenderRsId() {
-        return senderRsId;
+        return Utils.getAccountRsId(senderId);
     }
 
     /**
@@ -356,7 +641,7 @@ public class Transaction {
      * @return                              Recipient account identifier
      */
     public String getRecipientRsId() {
-        return recipientRsId;
+        return Utils.getAccountRsId(recipientId);
     }
 
     /**
@@ -426,9 +711,39 @@ public class Transaction {
      * Return the transaction attachment
      *
      * @return                              Transaction attachment or null if no attachment
+     * @throws      IllegalStateException   Attachment is not valid
      */
     public Attachment getAttachment() {
-        return attachment;
+        Attachment result = attachment;
+        if (result == null && attachmentBytes != null) {
+            if (attachmentDecoded)
+                return attachment;
+            ByteBuffer buf = ByteBuffer.wrap(attachmentBytes);
+            buf.order(ByteOrder.LITTLE_ENDIAN);
+            try {
+                result = txType.loadAttachment(buf, (int)version, txFlags);
+            } catch (BufferUnderflowException | NxtException exc) {
+                Nxt.log.error(String.format("Unable to decode attachment for transaction %s",
+                                            Utils.idToString(txId)), exc);
+                throw new IllegalStateException("Transaction attachment is not valid", exc);
+            }
+            attachment = result;
+            attachmentDecoded = true;
+        } else if (result == null) {
+            Map<String, Object> attachmentObject = attachmentResponse;
+            if (attachmentObject == null)
+                return attachment;
+            try {
+                result = txType.loadAttachment(new PeerResponse(attachmentObject));
+            } catch (IdentifierException | NumberFormatException | NxtException exc) {
+                Nxt.log.error(String.format("Unable to load attachment for transaction %s",
+                                            Utils.idToString(txId)), exc);
+                throw new IllegalStateException("Transaction attachment is not valid", exc);
+            }
+            attachment = result;
+            attachmentResponse = null;
+        }
+        return result;
     }
 
     /**
@@ -0,0 +1,643 @@
+/*
+ * Copyright 2016 Ronald Hoffman.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.ScripterRon.NxtCore;
+
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.util.Arrays;
+import java.util.Map;
+
+/**
+ * TransactionBatch stores a set of transactions in columnar form.
+ *
+ * Each transaction field is kept in a primitive array indexed by the batch position
+ * and the transaction bytes (which contain the sender public key, signature and
+ * attachment) are packed into a single byte arena.  This uses a small fraction of the
+ * memory needed for Transaction objects and allows a field to be scanned without
+ * touching the other fields.  A Transaction object is created on demand by
+ * getTransaction().
+ *
+ * The JSON response does not include the transaction bytes and the transaction
+ * appendages (such as a message attached to a payment) are not encoded, so the
+ * transaction hash from the response is kept with the transaction bytes.  The
+ * transaction flags in the bytes are the flags for all of the appendages.
+ *
+ * The batch is not synchronized.
+ */
+public class TransactionBatch {
+
+    /** Offset of the sender public key in the transaction bytes */
+    private static final int PUBLIC_KEY_OFFSET = 8;
+
+    /** Offset of the referenced transaction hash in the transaction bytes */
+    private static final int REFERENCED_HASH_OFFSET = 64;
+
+    /** Offset of the signature in the transaction bytes */
+    private static final int SIGNATURE_OFFSET = 96;
+
+    /** Phased transaction */
+    private static final byte PHASED = 1;
+
+    /** Transaction bytes do not include all of the appendages */
+    private static final byte INCOMPLETE = 2;
+
+    /** Number of transactions */
+    private int count;
+
+    /** Transaction identifiers */
+    private long[] txIds;
+
+    /** Transaction hashes (32 bytes for each transaction) */
+    private byte[] fullHashes;
+
+    /** Sender identifiers */
+    private long[] senderIds;
+
+    /** Recipient identifiers */
+    private long[] recipientIds;
+
+    /** Transaction amounts */
+    private long[] amounts;
+
+    /** Transaction fees */
+    private long[] fees;
+
+    /** Transaction timestamps (seconds since the genesis block) */
+    private int[] timestamps;
+
+    /** Transaction deadlines */
+    private short[] deadlines;
+
+    /** Transaction types */
+    private byte[] types;
+
+    /** Transaction subtypes */
+    private byte[] subtypes;
+
+    /** Transaction status flags */
+    private byte[] status;
+
+    /** Block identifiers */
+    private long[] blockIds;
+
+    /** Block timestamps (seconds since the genesis block) */
+    private int[] blockTimestamps;
+
+    /** Block heights */
+    private int[] heights;
+
+    /** Transaction index within the block */
+    private int[] txIndexes;
+
+    /** Confirmations when the transaction was added */
+    private int[] confirmations;
+
+    /** Start of the transaction bytes in the byte arena */
+    private int[] offsets;
+
+    /** Byte arena */
+    private byte[] arena;
+
+    /** Number of bytes used in the byte arena */
+    private int arenaLength;
+
+    /**
+     * Create an empty transaction batch
+     */
+    public TransactionBatch() {
+        this(64);
+    }
+
+    /**
+     * Create an empty transaction batch
+     *
+     * @param       capacity                Initial number of transactions
+     */
+    public TransactionBatch(int capacity) {
+        if (capacity < 1)
+            throw new IllegalArgumentException("The capacity must be greater than 0");
+        txIds = new long[capacity];
+        fullHashes = new byte[capacity*32];
+        senderIds = new long[capacity];
+        recipientIds = new long[capacity];
+        amounts = new long[capacity];
+        fees = new long[capacity];
+        timestamps = new int[capacity];
+        deadlines = new short[capacity];
+        types = new byte[capacity];
+        subtypes = new byte[capacity];
+        status = new byte[capacity];
+        blockIds = new long[capacity];
+        blockTimestamps = new int[capacity];
+        heights = new int[capacity];
+        txIndexes = new int[capacity];
+        confirmations = new int[capacity];
+        offsets = new int[capacity+1];
+        arena = new byte[capacity*200];
+    }
+
+    /**
+     * Add a transaction from the JSON response for 'getTransaction' or 'getBlock'
+     *
+     * The transaction fields are stored directly in the batch without creating
+     * a Transaction object
+     *
+     * @param       response                Transaction JSON response
+     * @return                              Batch index
+     * @throws      IdentifierException     Invalid object identifier
+     * @throws      NumberFormatException   Invalid hex string
+     * @throws      NxtException            Invalid transaction
+     */
+    public int add(PeerResponse response) throws IdentifierException, NumberFormatException, NxtException {
+        byte type = response.getByte("type");
+        byte subtype = response.getByte("subtype");
+        TransactionType txType = TransactionType.findTransactionType(type, subtype);
+        if (txType == null)
+            throw new NxtException(String.format("Transaction type %d subtype %d is not supported",
+                                                 type, subtype));
+        String signatureHex = response.getHexStringValue("signature");
+        if (signatureHex == null || signatureHex.length() != 128)
+            throw new NxtException("Transaction signature is not valid");
+        String publicKeyHex = response.getHexStringValue("senderPublicKey");
+        if (publicKeyHex == null || publicKeyHex.length() != 64)
+            throw new NxtException("Transaction sender public key is not valid");
+        String refHashHex = response.getHexStringValue("referencedTransactionFullHash");
+        if (refHashHex != null && refHashHex.length() != 64)
+            throw new NxtException("Referenced transaction hash is not valid");
+        String fullHashHex = response.getHexStringValue("fullHash");
+        if (fullHashHex == null || fullHashHex.length() != 64)
+            throw new NxtException("Transaction hash is not valid");
+        Attachment attachment = null;
+        Map<String, Object> attachmentObject = response.getObject("attachment");
+        if (!attachmentObject.isEmpty())
+            attachment = txType.loadAttachment(new PeerResponse(attachmentObject));
+        int attachmentFlags = (attachment!=null ? attachment.getFlags() : 0);
+        int flags = Transaction.getAppendageFlags(attachmentObject, response.getBoolean("phased")) | attachmentFlags;
+        int version = response.getByte("version");
+        long recipientId = response.getId("recipient");
+        if (recipientId == 0)
+            recipientId = Nxt.GENESIS_ACCOUNT_ID;
+        //
+        // Build the transaction bytes in the byte arena
+        //
+        int length = 160 + (version>0 ? 16 : 0) + (attachment!=null ? attachment.getSize() : 0);
+        ensureCapacity(count+1, arenaLength+length);
+        ByteBuffer buffer = ByteBuffer.wrap(arena, arenaLength, length);
+        buffer.order(ByteOrder.LITTLE_ENDIAN);
+        buffer.put(type);
+        buffer.put((byte)(subtype|(version<<4)));
+        buffer.putInt(response.getInt("timestamp"));
+        buffer.putShort(response.getShort("deadline"));
+        Utils.parseHexString(publicKeyHex, buffer);
+        buffer.putLong(recipientId);
+        buffer.putLong(response.getLongString("amountNQT"));
+        buffer.putLong(response.getLongString("feeNQT"));
+        if (refHashHex != null)
+            Utils.parseHexString(refHashHex, buffer);
+        else
+            buffer.put(new byte[32]);
+        Utils.parseHexString(signatureHex, buffer);
+        if (version > 0) {
+            buffer.putInt(flags);
+            buffer.putInt(response.getInt("ecBlockHeight"));
+            buffer.putLong(response.getId("ecBlockId"));
+        }
+        if (attachment != null)
+            attachment.writeTo(buffer);
+        //
+        // Store the transaction fields
+        //
+        int index = count;
+        txIds[index] = response.getId("transaction");
+        Utils.parseHexString(fullHashHex, fullHashes, index*32);
+        senderIds[index] = response.getId("sender");
+        recipientIds[index] = recipientId;
+        amounts[index] = response.getLongString("amountNQT");
+        fees[index] = response.getLongString("feeNQT");
+        timestamps[index] = response.getInt("timestamp");
+        deadlines[index] = response.getShort("deadline");
+        types[index] = type;
+        subtypes[index] = subtype;
+        status[index] = (byte)(((flags&Transaction.TX_PHASED) != 0 ? PHASED : 0) |
+                               ((flags&~attachmentFlags) != 0 ? INCOMPLETE : 0));
+        blockIds[index] = response.getId("block");
+        if (blockIds[index] != 0) {
+            blockTimestamps[index] = response.getInt("blockTimestamp");
+            heights[index] = response.getInt("height");
+            txIndexes[index] = response.getInt("transactionIndex");
+            confirmations[index] = response.getInt("confirmations");
+        } else {
+            blockTimestamps[index] = 0;
+            heights[index] = -1;
+            txIndexes[index] = -1;
+            confirmations[index] = -1;
+        }
+        offsets[index] = arenaLength;
+        arenaLength += length;
+        offsets[index+1] = arenaLength;
+        count++;
+        return index;
+    }
+
+    /**
+     * Make sure there is room for the requested number of transactions and bytes
+     *
+     * @param       txCount                 Number of transactions
+     * @param       byteCount               Number of arena bytes
+     */
+    private void ensureCapacity(int txCount, int byteCount) {
+        if (txCount > txIds.length) {
+            int capacity = Math.max(txIds.length*2, txCount);
+            txIds = Arrays.copyOf(txIds, capacity);
+            fullHashes = Arrays.copyOf(fullHashes, capacity*32);
+            senderIds = Arrays.copyOf(senderIds, capacity);
+            recipientIds = Arrays.copyOf(recipientIds, capacity);
+            amounts = Arrays.copyOf(amounts, capacity);
+            fees = Arrays.copyOf(fees, capacity);
+            timestamps = Arrays.copyOf(timestamps, capacity);
+            deadlines = Arrays.copyOf(deadlines, capacity);
+            types = Arrays.copyOf(types, capacity);
+            subtypes = Arrays.copyOf(subtypes, capacity);
+            status = Arrays.copyOf(status, capacity);
+            blockIds = Arrays.copyOf(blockIds, capacity);
+            blockTimestamps = Arrays.copyOf(blockTimestamps, capacity);
+            heights = Arrays.copyOf(heights, capacity);
+            txIndexes = Arrays.copyOf(txIndexes, capacity);
+            confirmations = Arrays.copyOf(confirmations, capacity);
+            offsets = Arrays.copyOf(offsets, capacity+1);
+        }
+        if (byteCount > arena.length)
+            arena = Arrays.copyOf(arena, Math.max(arena.length*2, byteCount));
+    }
+
+    /**
+     * Remove transactions from the end of the batch
+     *
+     * @param       size                    New batch size
+     */
+    void truncate(int size) {
+        if (size < 0 || size > count)
+            throw new IndexOutOfBoundsException("Size "+size+", Count "+count);
+        count = size;
+        arenaLength = offsets[size];
+    }
+
+    /**
+     * Release unused capacity
+     */
+    public void trimToSize() {
+        if (count > 0 && count < txIds.length) {
+            txIds = Arrays.copyOf(txIds, count);
+            fullHashes = Arrays.copyOf(fullHashes, count*32);
+            senderIds = Arrays.copyOf(senderIds, count);
+            recipientIds = Arrays.copyOf(recipientIds, count);
+            amounts = Arrays.copyOf(amounts, count);
+            fees = Arrays.copyOf(fees, count);
+            timestamps = Arrays.copyOf(timestamps, count);
+            deadlines = Arrays.copyOf(deadlines, count);
+            types = Arrays.copyOf(types, count);
+            subtypes = Arrays.copyOf(subtypes, count);
+            status = Arrays.copyOf(status, count);
+            blockIds = Arrays.copyOf(blockIds, count);
+            blockTimestamps = Arrays.copyOf(blockTimestamps, count);
+            heights = Arrays.copyOf(heights, count);
+            txIndexes = Arrays.copyOf(txIndexes, count);
+            confirmations = Arrays.copyOf(confirmations, count);
+            offsets = Arrays.copyOf(offsets, count+1);
+        }
+        if (arenaLength > 0 && arenaLength < arena.length)
+            arena = Arrays.copyOf(arena, arenaLength);
+    }
+
+    /**
+     * Return the number of transactions in the batch
+     *
+     * @return                              Number of transactions
+     */
+    public int size() {
+        return count;
+    }
+
+    /**
+     * Return a Transaction object for a batch entry
+     *
+     * @param       index                   Batch index
+     * @return                              Transaction
+     * @throws      NxtException            Transaction bytes are not valid
+     */
+    public Transaction getTransaction(int index) throws NxtException {
+        checkIndex(index);
+        ByteBuffer buffer = ByteBuffer.wrap(arena, offsets[index], offsets[index+1]-offsets[index]);
+        return new Transaction(buffer, getTransactionHash(index), (status[index]&INCOMPLETE) == 0,
+                               blockIds[index], blockTimestamps[index], heights[index],
+                               txIndexes[index], confirmations[index]);
+    }
+
+    /**
+     * Return the transaction bytes.  The bytes do not include the transaction appendages
+     * if hasCompleteBytes() returns FALSE.
+     *
+     * @param       index                   Batch index
+     * @return                              Transaction bytes
+     */
+    public byte[] getBytes(int index) {
+        checkIndex(index);
+        return Arrays.copyOfRange(arena, offsets[index], offsets[index+1]);
+    }
+
+    /**
+     * Check if the transaction bytes include all of the transaction appendages
+     *
+     * @param       index                   Batch index
+     * @return                              TRUE if the transaction bytes are complete
+     */
+    public boolean hasCompleteBytes(int index) {
+        checkIndex(index);
+        return ((status[index]&INCOMPLETE) == 0);
+    }
+
+    /**
+     * Return the transaction identifier
+     *
+     * @param       index                   Batch index
+     * @return                              Transaction identifier
+     */
+    public long getTransactionId(int index) {
+        checkIndex(index);
+        return txIds[index];
+    }
+
+    /**
+     * Return the transaction hash
+     *
+     * @param       index                   Batch index
+     * @return                              Transaction hash
+     */
+    public byte[] getTransactionHash(int index) {
+        checkIndex(index);
+        return Arrays.copyOfRange(fullHashes, index*32, index*32+32);
+    }
+
+    /**
+     * Return the transaction type
+     *
+     * @param       index                   Batch index
+     * @return                              Transaction type
+     */
+    public TransactionType getType(int index) {
+        checkIndex(index);
+        return TransactionType.findTransactionType(types[index], subtypes[index]);
+    }
+
+    /**
+     * Return the sender identifier
+     *
+     * @param       index                   Batch index
+     * @return                              Sender identifier
+     */
+    public long getSenderId(int index) {
+        checkIndex(index);
+        return senderIds[index];
+    }
+
+    /**
+     * Return the sender public key
+     *
+     * @param       index                   Batch index
+     * @return                              Sender public key
+     */
+    public byte[] getSenderPublicKey(int index) {
+        checkIndex(index);
+        int offset = offsets[index] + PUBLIC_KEY_OFFSET;
+        return Arrays.copyOfRange(arena, offset, offset+32);
+    }
+
+    /**
+     * Return the recipient identifier
+     *
+     * @param       index                   Batch index
+     * @return                              Recipient identifier
+     */
+    public long getRecipientId(int index) {
+        checkIndex(index);
+        return recipientIds[index];
+    }
+
+    /**
+     * Return the transaction amount
+     *
+     * @param       index                   Batch index
+     * @return                              Transaction amount
+     */
+    public long getAmount(int index) {
+        checkIndex(index);
+        return amounts[index];
+    }
+
+    /**
+     * Return the transaction fee
+     *
+     * @param       index                   Batch index
+     * @return                              Transaction fee
+     */
+    public long getFee(int index) {
+        checkIndex(index);
+        return fees[index];
+    }
+
+    /**
+     * Return the transaction timestamp in seconds since the epoch (January 1, 1970)
+     *
+     * @param       index                   Batch index
+     * @return                              Transaction timestamp
+     */
+    public long getTimestamp(int index) {
+        checkIndex(index);
+        return timestamps[index] + Nxt.GENESIS_TIMESTAMP;
+    }
+
+    /**
+     * Return the transaction deadline
+     *
+     * @param       index                   Batch index
+     * @return                              Transaction deadline in minutes
+     */
+    public int getDeadline(int index) {
+        checkIndex(index);
+        return deadlines[index];
+    }
+
+    /**
+     * Return the referenced transaction hash
+     *
+     * @param       index                   Batch index
+     * @return                              Referenced transaction hash or null
+     */
+    public byte[] getReferencedTxHash(int index) {
+        checkIndex(index);
+        int offset = offsets[index] + REFERENCED_HASH_OFFSET;
+        for (int i=offset; i<offset+32; i++) {
+            if (arena[i] != 0)
+                return Arrays.copyOfRange(arena, offset, offset+32);
+        }
+        return null;
+    }
+
+    /**
+     * Return the transaction signature
+     *
+     * @param       index                   Batch index
+     * @return                              Transaction signature
+     */
+    public byte[] getSignature(int index) {
+        checkIndex(index);
+        int offset = offsets[index] + SIGNATURE_OFFSET;
+        return Arrays.copyOfRange(arena, offset, offset+64);
+    }
+
+    /**
+     * Check if this is a phased transaction
+     *
+     * @param       index                   Batch index
+     * @return                              TRUE if this is a phased transaction
+     */
+    public boolean isPhased(int index) {
+        checkIndex(index);
+        return ((status[index]&PHASED) != 0);
+    }
+
+    /**
+     * Return the block identifier
+     *
+     * @param       index                   Batch index
+     * @return                              Block identifier or 0 if not in a block
+     */
+    public long getBlockId(int index) {
+        checkIndex(index);
+        return blockIds[index];
+    }
+
+    /**
+     * Return the block height
+     *
+     * @param       index                   Batch index
+     * @return                              Block height or -1 if not in a block
+     */
+    public int getHeight(int index) {
+        checkIndex(index);
+        return heights[index];
+    }
+
+    /**
+     * Return the transaction index within the block
+     *
+     * @param       index                   Batch index
+     * @return                              Position within block transactions or -1 if not in a block
+     */
+    public int getTransactionIndex(int index) {
+        checkIndex(index);
+        return txIndexes[index];
+    }
+
+    /**
+     * Return the total amount for the batch
+     *
+     * @return                              Total amount
+     */
+    public long getTotalAmount() {
+        long total = 0;
+        for (int i=0; i<count; i++)
+            total += amounts[i];
+        return total;
+    }
+
+    /**
+     * Return the total fee for the batch
+     *
+     * @return                              Total fee
+     */
+    public long getTotalFee() {
+        long total = 0;
+        for (int i=0; i<count; i++)
+            total += fees[i];
+        return total;
+    }
+
+    /**
+     * Return the number of transactions of the specified type
+     *
+     * @param       txType                  Transaction type
+     * @return                              Number of transactions
+     */
+    public int count(TransactionType txType) {
+        byte type = txType.getType();
+        byte subtype = txType.getSubtype();
+        int matches = 0;
+        for (int i=0; i<count; i++) {
+            if (types[i] == type && subtypes[i] == subtype)
+                matches++;
+        }
+        return matches;
+    }
+
+    /**
+     * Return the transactions sent or received by an account
+     *
+     * @param       accountId               Account identifier
+     * @return                              Batch indexes in ascending order
+     */
+    public int[] findAccount(long accountId) {
+        int[] result = new int[16];
+        int matches = 0;
+        for (int i=0; i<count; i++) {
+            if (senderIds[i] == accountId || recipientIds[i] == accountId) {
+                if (matches == result.length)
+                    result = Arrays.copyOf(result, matches*2);
+                result[matches++] = i;
+            }
+        }
+        return Arrays.copyOf(result, matches);
+    }
+
+    /**
+     * Return the net balance change for an account.  This is the amount received
+     * less the amount and fee sent.
+     *
+     * @param       accountId               Account identifier
+     * @return                              Net balance change
+     */
+    public long getBalanceChange(long accountId) {
+        long change = 0;
+        for (int i=0; i<count; i++) {
+            if (recipientIds[i] == accountId)
+                change += amounts[i];
+            if (senderIds[i] == accountId)
+                change -= amounts[i] + fees[i];
+        }
+        return change;
+    }
+
+    /**
+     * Verify a batch index
+     *
+     * @param       index                   Batch index
+     * @throws      IndexOutOfBoundsException   Index is not valid
+     */
+    private void checkIndex(int index) {
+        if (index < 0 || index >= count)
+            throw new IndexOutOfBoundsException("Index "+index+", Size "+count);
+    }
+}
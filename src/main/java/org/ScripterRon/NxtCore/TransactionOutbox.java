@@ -0,0 +1,516 @@
+/*
+ * Copyright 2016 Ronald Hoffman.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.ScripterRon.NxtCore;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * A transaction outbox keeps signed transactions in a local file and broadcasts them
+ * again until they have the required number of confirmations or until they expire.
+ *
+ * The outbox file is an append-only log of transaction and state records.  Confirmed
+ * and expired transactions are removed from the outbox, and the file is rewritten
+ * with just the active transactions once the number of removed transactions exceeds
+ * the number of active transactions.  This keeps the file size and the time needed
+ * to open the outbox proportional to the number of active transactions.
+ */
+public class TransactionOutbox {
+
+    /** Outbox file identifier */
+    private static final int OUTBOX_MAGIC = 0x4e58544f;
+
+    /** Outbox file version */
+    private static final int OUTBOX_VERSION = 1;
+
+    /** Outbox file header length */
+    private static final int HEADER_LENGTH = 8;
+
+    /** Transaction record */
+    private static final byte RECORD_TRANSACTION = 1;
+
+    /** State record */
+    private static final byte RECORD_STATE = 2;
+
+    /** Minimum number of removed transactions before the outbox file is compacted */
+    private static final int MIN_COMPACT_COUNT = 64;
+
+    /**
+     * Outbox transaction states
+     */
+    public enum State {
+        /** Transaction has not been accepted by the node server */
+        PENDING,
+        /** Transaction has been accepted but does not have the required confirmations */
+        UNCONFIRMED,
+        /** Transaction has the required confirmations */
+        CONFIRMED,
+        /** Transaction expired before it was included in a block */
+        EXPIRED
+    }
+
+    /** Outbox file */
+    private final File outboxFile;
+
+    /** Required number of confirmations */
+    private final int requiredConfirmations;
+
+    /** Minimum time between broadcasts of the same transaction (milliseconds) */
+    private final long broadcastInterval;
+
+    /** Active transactions */
+    private final Map<Long, Entry> entries = new LinkedHashMap<>();
+
+    /** State listener */
+    private volatile Listener listener;
+
+    /** Number of removed transactions in the outbox file */
+    private int removedCount;
+
+    /** Outbox file stream */
+    private FileOutputStream fileStream;
+
+    /** Outbox data stream */
+    private DataOutputStream out;
+
+    /** Outbox timer */
+    private ScheduledExecutorService timer;
+
+    /**
+     * Open a transaction outbox.  The outbox file is created if it does not exist.
+     *
+     * @param       outboxFile              Outbox file
+     * @param       requiredConfirmations   Number of confirmations required to remove a transaction
+     * @param       broadcastInterval       Minimum time between broadcasts of the same transaction (seconds)
+     * @throws      NxtException            Unable to open the outbox file
+     */
+    public TransactionOutbox(File outboxFile, int requiredConfirmations, int broadcastInterval)
+                                    throws NxtException {
+        if (outboxFile == null)
+            throw new IllegalArgumentException("Required parameter not specified");
+        if (requiredConfirmations < 0 || broadcastInterval < 0)
+            throw new IllegalArgumentException("Confirmations and broadcast interval must not be negative");
+        this.outboxFile = outboxFile;
+        this.requiredConfirmations = requiredConfirmations;
+        this.broadcastInterval = broadcastInterval*1000L;
+        try {
+            load();
+            if (removedCount >= MIN_COMPACT_COUNT && removedCount >= entries.size())
+                compact();
+            else
+                openFile();
+        } catch (IOException exc) {
+            Nxt.log.error("Unable to open the transaction outbox", exc);
+            throw new NxtException("Unable to open the transaction outbox", exc);
+        }
+    }
+
+    /**
+     * Set the state listener
+     *
+     * @param       listener                State listener or null
+     */
+    public void setListener(Listener listener) {
+        this.listener = listener;
+    }
+
+    /**
+     * Add a signed transaction to the outbox and broadcast it.  The transaction is
+     * written to the outbox file before it is broadcast.
+     *
+     * @param       tx                      Signed transaction
+     * @return                              Transaction state
+     * @throws      NxtException            Unable to update the outbox file
+     */
+    public State add(Transaction tx) throws NxtException {
+        Entry entry = new Entry(tx.getTransactionId(), tx.getBytes(false),
+                                tx.getTimestamp()+tx.getDeadline()*60L);
+        synchronized(this) {
+            if (entries.containsKey(entry.txId))
+                return entries.get(entry.txId).state;
+            try {
+                writeTransaction(entry);
+                out.flush();
+                fileStream.getChannel().force(false);
+            } catch (IOException exc) {
+                Nxt.log.error("Unable to update the transaction outbox", exc);
+                throw new NxtException("Unable to update the transaction outbox", exc);
+            }
+            entries.put(entry.txId, entry);
+        }
+        broadcast(entry, tx);
+        return entry.state;
+    }
+
+    /**
+     * Return the state of a transaction in the outbox
+     *
+     * @param       txId                    Transaction identifier
+     * @return                              Transaction state or null if the transaction is not in the outbox
+     */
+    public synchronized State getState(long txId) {
+        Entry entry = entries.get(txId);
+        return (entry != null ? entry.state : null);
+    }
+
+    /**
+     * Return the number of transactions in the outbox
+     *
+     * @return                              Number of pending and unconfirmed transactions
+     */
+    public synchronized int getCount() {
+        return entries.size();
+    }
+
+    /**
+     * Check each transaction in the outbox.  Transactions which are not known to the
+     * node server are broadcast again, transactions with the required number of
+     * confirmations are removed and transactions which have expired are removed.
+     *
+     * @throws      NxtException            Unable to update the outbox file
+     */
+    public void process() throws NxtException {
+        List<Entry> active;
+        synchronized(this) {
+            active = new ArrayList<>(entries.values());
+        }
+        long now = System.currentTimeMillis();
+        for (Entry entry : active) {
+            Transaction tx = null;
+            try {
+                tx = Nxt.getTransaction(entry.txId);
+            } catch (NxtException exc) {
+                if (exc.getReasonCode() != Nxt.UNKNOWN_OBJECT) {
+                    Nxt.log.warn(String.format("Unable to check transaction %s: %s",
+                                               Utils.idToString(entry.txId), exc.getMessage()));
+                    continue;
+                }
+            }
+            if (tx != null) {
+                if (tx.getBlockId() != 0 && tx.getConfirmations() >= requiredConfirmations)
+                    setState(entry, State.CONFIRMED);
+                else
+                    setState(entry, State.UNCONFIRMED);
+            } else if (now/1000 >= entry.expiration) {
+                setState(entry, State.EXPIRED);
+            } else if (now - entry.lastBroadcast >= broadcastInterval) {
+                try {
+                    broadcast(entry, Transaction.parse(ByteBuffer.wrap(entry.txBytes)));
+                } catch (NxtException exc) {
+                    Nxt.log.error(String.format("Outbox transaction %s is not valid",
+                                                Utils.idToString(entry.txId)), exc);
+                    setState(entry, State.EXPIRED);
+                }
+            }
+        }
+    }
+
+    /**
+     * Start processing the outbox at a fixed interval
+     *
+     * @param       interval                Processing interval (seconds)
+     */
+    public synchronized void start(int interval) {
+        if (timer != null)
+            return;
+        timer = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "NxtCore transaction outbox");
+            thread.setDaemon(true);
+            return thread;
+        });
+        timer.scheduleWithFixedDelay(() -> {
+            try {
+                process();
+            } catch (NxtException exc) {
+                Nxt.log.error("Unable to process the transaction outbox", exc);
+            } catch (RuntimeException exc) {
+                Nxt.log.error("Exception while processing the transaction outbox", exc);
+            }
+        }, 0, interval, TimeUnit.SECONDS);
+    }
+
+    /**
+     * Stop processing the outbox and close the outbox file
+     */
+    public void close() {
+        ScheduledExecutorService executor;
+        synchronized(this) {
+            executor = timer;
+            timer = null;
+        }
+        if (executor != null) {
+            executor.shutdown();
+            try {
+                executor.awaitTermination(60, TimeUnit.SECONDS);
+            } catch (InterruptedException exc) {
+                Thread.currentThread().interrupt();
+            }
+        }
+        synchronized(this) {
+            if (out != null) {
+                try {
+                    out.close();
+                } catch (IOException exc) {
+                    Nxt.log.error("Unable to close the transaction outbox", exc);
+                }
+                out = null;
+                fileStream = null;
+            }
+        }
+    }
+
+    /**
+     * Broadcast a transaction
+     *
+     * @param       entry                   Outbox entry
+     * @param       tx                      Transaction
+     * @throws      NxtException            Unable to update the outbox file
+     */
+    private void broadcast(Entry entry, Transaction tx) throws NxtException {
+        entry.lastBroadcast = System.currentTimeMillis();
+        try {
+            Nxt.broadcastTransaction(tx);
+        } catch (NxtException exc) {
+            Nxt.log.warn(String.format("Unable to broadcast transaction %s: %s",
+                                       Utils.idToString(entry.txId), exc.getMessage()));
+            return;
+        }
+        setState(entry, State.UNCONFIRMED);
+    }
+
+    /**
+     * Set the state of a transaction
+     *
+     * @param       entry                   Outbox entry
+     * @param       state                   New state
+     * @throws      NxtException            Unable to update the outbox file
+     */
+    private void setState(Entry entry, State state) throws NxtException {
+        synchronized(this) {
+            if (entry.state == state || entries.get(entry.txId) != entry)
+                return;
+            entry.state = state;
+            try {
+                out.writeByte(RECORD_STATE);
+                out.writeLong(entry.txId);
+                out.writeByte(state.ordinal());
+                out.flush();
+                if (state == State.CONFIRMED || state == State.EXPIRED) {
+                    entries.remove(entry.txId);
+                    removedCount++;
+                    if (removedCount >= MIN_COMPACT_COUNT && removedCount >= entries.size())
+                        compact();
+                }
+            } catch (IOException exc) {
+                Nxt.log.error("Unable to update the transaction outbox", exc);
+                throw new NxtException("Unable to update the transaction outbox", exc);
+            }
+        }
+        Listener currentListener = listener;
+        if (currentListener != null) {
+            try {
+                currentListener.stateChanged(entry.txId, state);
+            } catch (RuntimeException exc) {
+                Nxt.log.error("Exception while processing outbox state change", exc);
+            }
+        }
+    }
+
+    /**
+     * Load the outbox file.  A partial record at the end of the file is discarded.
+     *
+     * @throws      IOException             Unable to read the outbox file
+     * @throws      NxtException            Outbox file is not valid
+     */
+    private void load() throws IOException, NxtException {
+        if (!outboxFile.exists() || outboxFile.length() == 0)
+            return;
+        long validLength = HEADER_LENGTH;
+        State[] states = State.values();
+        try (DataInputStream in = new DataInputStream(new BufferedInputStream(
+                                    new FileInputStream(outboxFile), 65536))) {
+            if (in.readInt() != OUTBOX_MAGIC || in.readInt() != OUTBOX_VERSION)
+                throw new NxtException("Transaction outbox format is not valid");
+            try {
+                while (true) {
+                    byte type = in.readByte();
+                    long txId = in.readLong();
+                    if (type == RECORD_TRANSACTION) {
+                        long expiration = in.readLong();
+                        byte[] txBytes = new byte[in.readUnsignedShort()];
+                        in.readFully(txBytes);
+                        entries.put(txId, new Entry(txId, txBytes, expiration));
+                        validLength += 1+8+8+2+txBytes.length;
+                    } else if (type == RECORD_STATE) {
+                        int ordinal = in.readUnsignedByte();
+                        if (ordinal >= states.length)
+                            throw new NxtException("Transaction outbox state " + ordinal + " is not valid");
+                        State state = states[ordinal];
+                        Entry entry = entries.get(txId);
+                        if (entry != null) {
+                            entry.state = state;
+                            if (state == State.CONFIRMED || state == State.EXPIRED) {
+                                entries.remove(txId);
+                                removedCount++;
+                            }
+                        }
+                        validLength += 1+8+1;
+                    } else {
+                        throw new NxtException("Transaction outbox record type " + type + " is not valid");
+                    }
+                }
+            } catch (EOFException exc) {
+                // End of the outbox file
+            }
+        } catch (EOFException exc) {
+            throw new NxtException("Transaction outbox header is not valid");
+        }
+        if (validLength < outboxFile.length()) {
+            Nxt.log.warn(String.format("Discarding partial outbox record at offset %d", validLength));
+            try (RandomAccessFile file = new RandomAccessFile(outboxFile, "rw")) {
+                file.setLength(validLength);
+            }
+        }
+    }
+
+    /**
+     * Open the outbox file for appending
+     *
+     * @throws      IOException             Unable to open the outbox file
+     */
+    private void openFile() throws IOException {
+        boolean newFile = (!outboxFile.exists() || outboxFile.length() == 0);
+        fileStream = new FileOutputStream(outboxFile, true);
+        out = new DataOutputStream(new BufferedOutputStream(fileStream, 8192));
+        if (newFile) {
+            out.writeInt(OUTBOX_MAGIC);
+            out.writeInt(OUTBOX_VERSION);
+            out.flush();
+        }
+    }
+
+    /**
+     * Rewrite the outbox file with just the active transactions.  The new file is
+     * written to a temporary file which then replaces the outbox file.
+     *
+     * @throws      IOException             Unable to rewrite the outbox file
+     */
+    private void compact() throws IOException {
+        if (out != null)
+            out.close();
+        File tempFile = new File(outboxFile.getPath()+".tmp");
+        try (FileOutputStream tempStream = new FileOutputStream(tempFile);
+                DataOutputStream tempOut = new DataOutputStream(new BufferedOutputStream(tempStream, 65536))) {
+            out = tempOut;
+            out.writeInt(OUTBOX_MAGIC);
+            out.writeInt(OUTBOX_VERSION);
+            for (Entry entry : entries.values()) {
+                writeTransaction(entry);
+                if (entry.state != State.PENDING) {
+                    out.writeByte(RECORD_STATE);
+                    out.writeLong(entry.txId);
+                    out.writeByte(entry.state.ordinal());
+                }
+            }
+            out.flush();
+            tempStream.getChannel().force(false);
+        }
+        Files.move(tempFile.toPath(), outboxFile.toPath(), StandardCopyOption.REPLACE_EXISTING,
+                   StandardCopyOption.ATOMIC_MOVE);
+        removedCount = 0;
+        openFile();
+    }
+
+    /**
+     * Write a transaction record
+     *
+     * @param       entry                   Outbox entry
+     * @throws      IOException             Unable to write the outbox file
+     */
+    private void writeTransaction(Entry entry) throws IOException {
+        out.writeByte(RECORD_TRANSACTION);
+        out.writeLong(entry.txId);
+        out.writeLong(entry.expiration);
+        out.writeShort(entry.txBytes.length);
+        out.write(entry.txBytes);
+    }
+
+    /**
+     * The outbox listener is called when the state of a transaction changes
+     */
+    public interface Listener {
+
+        /**
+         * Transaction state has changed
+         *
+         * @param       txId                    Transaction identifier
+         * @param       state                   New transaction state
+         */
+        void stateChanged(long txId, State state);
+    }
+
+    /**
+     * Outbox entry
+     */
+    private static class Entry {
+
+        /** Transaction identifier */
+        private final long txId;
+
+        /** Transaction bytes */
+        private final byte[] txBytes;
+
+        /** Transaction expiration (seconds since the epoch) */
+        private final long expiration;
+
+        /** Transaction state */
+        private volatile State state = State.PENDING;
+
+        /** Time of the last broadcast */
+        private volatile long lastBroadcast;
+
+        /**
+         * Create an outbox entry
+         *
+         * @param       txId                Transaction identifier
+         * @param       txBytes             Transaction bytes
+         * @param       expiration          Transaction expiration (seconds since the epoch)
+         */
+        private Entry(long txId, byte[] txBytes, long expiration) {
+            this.txId = txId;
+            this.txBytes = txBytes;
+            this.expiration = expiration;
+        }
+    }
+}
@@ -0,0 +1,497 @@
+/*
+ * Copyright 2016 Ronald Hoffman.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.ScripterRon.NxtCore;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * A transaction pipeline creates, signs and broadcasts transactions for a single
+ * sender account using three stages:
+ * <ul>
+ * <li>The build stage obtains the EC block from EcBlockCache and serializes the
+ * unsigned transaction</li>
+ * <li>The sign stage signs the transaction</li>
+ * <li>The broadcast stage sends the transaction to the node server</li>
+ * </ul>
+ *
+ * Each stage has its own worker threads and the stages are connected by bounded
+ * queues.  submit() blocks when the build queue is full, so a producer cannot get
+ * ahead of the slowest stage by more than the queue capacities.  The listener is
+ * called on a worker thread when a transaction has been broadcast or has failed.
+ */
+public class TransactionPipeline {
+
+    /** Transaction request which marks the end of the requests for a stage */
+    private static final Job END_OF_STAGE = new Job(null);
+
+    /** Pipeline sequence number */
+    private static final AtomicInteger pipelineCount = new AtomicInteger();
+
+    /** Sender public key */
+    private final byte[] senderPublicKey;
+
+    /** Sender identifier */
+    private final long senderId;
+
+    /** Sender private key */
+    private final byte[] privateKey;
+
+    /** Pipeline listener */
+    private final Listener listener;
+
+    /** Build queue */
+    private final BlockingQueue<Job> buildQueue;
+
+    /** Available build queue slots for submitted requests */
+    private final Semaphore buildPermits;
+
+    /** Sign queue */
+    private final BlockingQueue<Job> signQueue;
+
+    /** Broadcast queue */
+    private final BlockingQueue<Job> broadcastQueue;
+
+    /** Active build threads */
+    private final AtomicInteger buildActive;
+
+    /** Active sign threads */
+    private final AtomicInteger signActive;
+
+    /** Number of sign threads */
+    private final int signThreads;
+
+    /** Number of broadcast threads */
+    private final int broadcastThreads;
+
+    /** Broadcast stage completion */
+    private final CountDownLatch completed;
+
+    /** Worker threads */
+    private final List<Thread> threads = new ArrayList<>();
+
+    /** Pipeline has been shut down */
+    private volatile boolean shutdown;
+
+    /**
+     * Create and start a transaction pipeline
+     *
+     * @param       passPhrase              Sender secret phrase
+     * @param       buildThreads            Number of build threads
+     * @param       signThreads             Number of sign threads
+     * @param       broadcastThreads        Number of broadcast threads
+     * @param       queueSize               Capacity of each stage queue
+     * @param       listener                Pipeline listener
+     * @throws      KeyException            Unable to derive the sender keys
+     */
+    public TransactionPipeline(String passPhrase, int buildThreads, int signThreads, int broadcastThreads,
+                                    int queueSize, Listener listener) throws KeyException {
+        if (passPhrase == null || listener == null)
+            throw new IllegalArgumentException("Required parameter not specified");
+        if (buildThreads < 1 || signThreads < 1 || broadcastThreads < 1 || queueSize < 1)
+            throw new IllegalArgumentException("Thread counts and queue size must be greater than 0");
+        this.senderPublicKey = Crypto.getPublicKey(passPhrase);
+        this.senderId = Utils.getAccountId(senderPublicKey);
+        this.privateKey = Crypto.getPrivateKey(passPhrase);
+        this.listener = listener;
+        this.signThreads = signThreads;
+        this.broadcastThreads = broadcastThreads;
+        //
+        // The build queue has room for the end-of-stage markers in addition to the
+        // submitted requests, so shutdown() never waits for queue space
+        //
+        this.buildQueue = new ArrayBlockingQueue<>(queueSize+buildThreads);
+        this.buildPermits = new Semaphore(queueSize);
+        this.signQueue = new ArrayBlockingQueue<>(queueSize);
+        this.broadcastQueue = new ArrayBlockingQueue<>(queueSize);
+        this.buildActive = new AtomicInteger(buildThreads);
+        this.signActive = new AtomicInteger(signThreads);
+        this.completed = new CountDownLatch(broadcastThreads);
+        //
+        // Start the worker threads
+        //
+        int pipelineId = pipelineCount.incrementAndGet();
+        for (int i=0; i<buildThreads; i++)
+            threads.add(new Thread(this::buildStage, String.format("NxtCore pipeline %d build %d", pipelineId, i+1)));
+        for (int i=0; i<signThreads; i++)
+            threads.add(new Thread(this::signStage, String.format("NxtCore pipeline %d sign %d", pipelineId, i+1)));
+        for (int i=0; i<broadcastThreads; i++)
+            threads.add(new Thread(this::broadcastStage, String.format("NxtCore pipeline %d broadcast %d", pipelineId, i+1)));
+        threads.forEach(thread -> {
+            thread.setDaemon(true);
+            thread.start();
+        });
+    }
+
+    /**
+     * Submit a transaction request.  This method blocks if the build queue is full.
+     * The wait for queue space is done without holding the pipeline lock, so
+     * shutdown() is not blocked by a waiting producer.
+     *
+     * @param       request                 Transaction request
+     * @throws      InterruptedException    Thread interrupted while waiting for queue space
+     * @throws      IllegalStateException   Pipeline has been shut down
+     */
+    public void submit(Request request) throws InterruptedException {
+        if (request == null)
+            throw new IllegalArgumentException("Required parameter not specified");
+        if (shutdown)
+            throw new IllegalStateException("Transaction pipeline has been shut down");
+        buildPermits.acquire();
+        synchronized(buildQueue) {
+            if (shutdown) {
+                buildPermits.release();
+                throw new IllegalStateException("Transaction pipeline has been shut down");
+            }
+            buildQueue.add(new Job(request));
+        }
+    }
+
+    /**
+     * Shut down the pipeline.  Requests that have already been submitted will be
+     * processed but no new requests will be accepted.
+     */
+    public void shutdown() {
+        synchronized(buildQueue) {
+            if (shutdown)
+                return;
+            shutdown = true;
+            int count = buildActive.get();
+            for (int i=0; i<count; i++)
+                buildQueue.add(END_OF_STAGE);
+        }
+    }
+
+    /**
+     * Wait for the pipeline to finish processing after a shutdown
+     *
+     * @param       timeout                 Maximum wait time
+     * @param       unit                    Time unit
+     * @return                              TRUE if all requests have been processed
+     * @throws      InterruptedException    Thread interrupted while waiting
+     */
+    public boolean awaitTermination(long timeout, TimeUnit unit) throws InterruptedException {
+        return completed.await(timeout, unit);
+    }
+
+    /**
+     * Return the sender account identifier
+     *
+     * @return                              Sender account identifier
+     */
+    public long getSenderId() {
+        return senderId;
+    }
+
+    /**
+     * Build stage
+     */
+    private void buildStage() {
+        try {
+            while (true) {
+                Job job = buildQueue.take();
+                if (job == END_OF_STAGE)
+                    break;
+                buildPermits.release();
+                Request request = job.request;
+                try {
+                    job.ecBlock = EcBlockCache.getEcBlock();
+                    job.timestamp = (int)((System.currentTimeMillis()+500)/1000 - Nxt.GENESIS_TIMESTAMP);
+                    Transaction tx = new Transaction(request.txType, senderPublicKey, senderId,
+                                        request.recipientId, request.amount, request.fee, job.timestamp,
+                                        request.deadline, request.referencedTxHash, request.attachment,
+                                        job.ecBlock.getHeight(), job.ecBlock.getBlockId(),
+                                        null, null, new byte[32]);
+                    job.txBytes = tx.getBytes(true);
+                } catch (NxtException exc) {
+                    failed(request, exc);
+                    continue;
+                } catch (RuntimeException exc) {
+                    Nxt.log.error("Unable to build transaction", exc);
+                    failed(request, new NxtException("Unable to build transaction", exc));
+                    continue;
+                }
+                signQueue.put(job);
+            }
+        } catch (InterruptedException exc) {
+            Nxt.log.warn("Transaction pipeline build thread interrupted");
+        } finally {
+            if (buildActive.decrementAndGet() == 0)
+                endStage(signQueue, signThreads);
+        }
+    }
+
+    /**
+     * Sign stage
+     */
+    private void signStage() {
+        try {
+            while (true) {
+                Job job = signQueue.take();
+                if (job == END_OF_STAGE)
+                    break;
+                Request request = job.request;
+                try {
+                    byte[] signature = Crypto.sign(job.txBytes, privateKey);
+                    byte[] signatureHash = Crypto.singleDigest(signature);
+                    byte[] txHash = Crypto.singleDigest(job.txBytes, signatureHash);
+                    job.transaction = new Transaction(request.txType, senderPublicKey, senderId,
+                                        request.recipientId, request.amount, request.fee, job.timestamp,
+                                        request.deadline, request.referencedTxHash, request.attachment,
+                                        job.ecBlock.getHeight(), job.ecBlock.getBlockId(),
+                                        signature, signatureHash, txHash);
+                    job.txBytes = null;
+                } catch (KeyException | RuntimeException exc) {
+                    Nxt.log.error("Unable to sign transaction", exc);
+                    failed(request, new NxtException("Unable to sign transaction", exc));
+                    continue;
+                }
+                broadcastQueue.put(job);
+            }
+        } catch (InterruptedException exc) {
+            Nxt.log.warn("Transaction pipeline sign thread interrupted");
+        } finally {
+            if (signActive.decrementAndGet() == 0)
+                endStage(broadcastQueue, broadcastThreads);
+        }
+    }
+
+    /**
+     * Broadcast stage
+     */
+    private void broadcastStage() {
+        try {
+            while (true) {
+                Job job = broadcastQueue.take();
+                if (job == END_OF_STAGE)
+                    break;
+                try {
+                    long txId = Nxt.broadcastTransaction(job.transaction);
+                    try {
+                        listener.transactionBroadcast(job.request, job.transaction, txId);
+                    } catch (RuntimeException exc) {
+                        Nxt.log.error("Exception while processing broadcast transaction", exc);
+                    }
+                } catch (NxtException exc) {
+                    EcBlockCache.invalidate();
+                    failed(job.request, exc);
+                } catch (RuntimeException exc) {
+                    Nxt.log.error("Unable to broadcast transaction", exc);
+                    failed(job.request, new NxtException("Unable to broadcast transaction", exc));
+                }
+            }
+        } catch (InterruptedException exc) {
+            Nxt.log.warn("Transaction pipeline broadcast thread interrupted");
+        } finally {
+            completed.countDown();
+        }
+    }
+
+    /**
+     * Pass the end-of-stage marker to each thread in the next stage.  This is
+     * called by the last active thread in a stage, including a thread which is
+     * ending because it was interrupted, so the next stage always terminates.
+     *
+     * @param       queue                   Queue for the next stage
+     * @param       count                   Number of threads in the next stage
+     */
+    private static void endStage(BlockingQueue<Job> queue, int count) {
+        try {
+            for (int i=0; i<count; i++)
+                queue.put(END_OF_STAGE);
+        } catch (InterruptedException exc) {
+            Nxt.log.warn("Transaction pipeline interrupted while ending a stage");
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    /**
+     * Report a failed request
+     *
+     * @param       request                 Transaction request
+     * @param       exc                     Failure reason
+     */
+    private void failed(Request request, NxtException exc) {
+        try {
+            listener.transactionFailed(request, exc);
+        } catch (RuntimeException lexc) {
+            Nxt.log.error("Exception while processing failed transaction", lexc);
+        }
+    }
+
+    /**
+     * The pipeline listener is called when a transaction request has completed
+     */
+    public interface Listener {
+
+        /**
+         * Transaction has been broadcast
+         *
+         * @param       request                 Transaction request
+         * @param       tx                      Signed transaction
+         * @param       txId                    Transaction identifier returned by the node server
+         */
+        void transactionBroadcast(Request request, Transaction tx, long txId);
+
+        /**
+         * Transaction request has failed.  NxtException.getReasonCode() returns the
+         * Nxt error code if the node server rejected the transaction.
+         *
+         * @param       request                 Transaction request
+         * @param       exc                     Failure reason
+         */
+        void transactionFailed(Request request, NxtException exc);
+    }
+
+    /**
+     * Transaction request
+     */
+    public static class Request {
+
+        /** Transaction type */
+        private final TransactionType txType;
+
+        /** Recipient identifier */
+        private final long recipientId;
+
+        /** Transaction amount */
+        private final long amount;
+
+        /** Transaction fee */
+        private final long fee;
+
+        /** Transaction deadline */
+        private final int deadline;
+
+        /** Referenced transaction hash */
+        private final byte[] referencedTxHash;
+
+        /** Transaction attachment */
+        private final Attachment attachment;
+
+        /** Application data */
+        private final Object userData;
+
+        /**
+         * Create a transaction request
+         *
+         * @param       txType                  Transaction type
+         * @param       recipientId             Transaction recipient
+         * @param       amount                  Transaction amount
+         * @param       fee                     Transaction fee
+         * @param       deadline                Transaction deadline (max 1440 minutes)
+         * @param       referencedTxHash        Referenced transaction hash or null
+         * @param       attachment              Transaction attachment or null
+         * @param       userData                Application data returned to the listener or null
+         */
+        public Request(TransactionType txType, long recipientId, long amount, long fee, int deadline,
+                                    byte[] referencedTxHash, Attachment attachment, Object userData) {
+            if (txType == null)
+                throw new IllegalArgumentException("Required parameter not specified");
+            if (deadline > 1440)
+                throw new IllegalArgumentException("Maximum deadline is 1440 minutes");
+            this.txType = txType;
+            this.recipientId = recipientId;
+            this.amount = amount;
+            this.fee = fee;
+            this.deadline = deadline;
+            this.referencedTxHash = referencedTxHash;
+            this.attachment = attachment;
+            this.userData = userData;
+        }
+
+        /**
+         * Return the transaction type
+         *
+         * @return                              Transaction type
+         */
+        public TransactionType getType() {
+            return txType;
+        }
+
+        /**
+         * Return the recipient identifier
+         *
+         * @return                              Recipient identifier
+         */
+        public long getRecipientId() {
+            return recipientId;
+        }
+
+        /**
+         * Return the transaction amount
+         *
+         * @return                              Transaction amount
+         */
+        public long getAmount() {
+            return amount;
+        }
+
+        /**
+         * Return the transaction fee
+         *
+         * @return                              Transaction fee
+         */
+        public long getFee() {
+            return fee;
+        }
+
+        /**
+         * Return the application data
+         *
+         * @return                              Application data or null
+         */
+        public Object getUserData() {
+            return userData;
+        }
+    }
+
+    /**
+     * Transaction request as it moves through the pipeline
+     */
+    private static class Job {
+
+        /** Transaction request */
+        private final Request request;
+
+        /** EC block */
+        private EcBlock ecBlock;
+
+        /** Transaction timestamp */
+        private int timestamp;
+
+        /** Unsigned transaction bytes */
+        private byte[] txBytes;
+
+        /** Signed transaction */
+        private Transaction transaction;
+
+        /**
+         * Create a pipeline job
+         *
+         * @param       request             Transaction request
+         */
+        private Job(Request request) {
+            this.request = request;
+        }
+    }
+}
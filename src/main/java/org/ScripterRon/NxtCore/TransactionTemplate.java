@@ -0,0 +1,181 @@
+/*
+ * Copyright 2016 Ronald Hoffman.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.ScripterRon.NxtCore;
+
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+
+/**
+ * A transaction template is used to create a series of transactions which differ only
+ * in the recipient, amount and timestamp.  The fixed part of the transaction is serialized
+ * once when the template is created and the private key is derived once from the
+ * secret phrase.  Each transaction then requires just a copy of the template bytes,
+ * three field updates and the signature.
+ *
+ * A template can be used by multiple threads.  The EC block should be updated
+ * periodically since a transaction will be rejected if its EC block is too old.
+ */
+public class TransactionTemplate {
+
+    /** Timestamp offset */
+    private static final int TIMESTAMP_OFFSET = 2;
+
+    /** Recipient offset */
+    private static final int RECIPIENT_OFFSET = 40;
+
+    /** Amount offset */
+    private static final int AMOUNT_OFFSET = 48;
+
+    /** EC block height offset */
+    private static final int EC_BLOCK_HEIGHT_OFFSET = 164;
+
+    /** EC block identifier offset */
+    private static final int EC_BLOCK_ID_OFFSET = 168;
+
+    /** Transaction type */
+    private final TransactionType txType;
+
+    /** Transaction fee */
+    private final long fee;
+
+    /** Transaction deadline */
+    private final int deadline;
+
+    /** Transaction attachment */
+    private final Attachment attachment;
+
+    /** Sender public key */
+    private final byte[] senderPublicKey;
+
+    /** Sender identifier */
+    private final long senderId;
+
+    /** Sender private key */
+    private final byte[] privateKey;
+
+    /** Unsigned transaction bytes (replaced when the EC block is updated) */
+    private volatile byte[] templateBytes;
+
+    /**
+     * Create a transaction template
+     *
+     * @param       txType                  Transaction type
+     * @param       fee                     Transaction fee
+     * @param       deadline                Transaction deadline (max 1440 minutes)
+     * @param       attachment              Transaction attachment or null
+     * @param       ecBlock                 Economic clustering block
+     * @param       passPhrase              Sender secret phrase
+     * @throws      KeyException            Unable to perform cryptographic operation
+     */
+    public TransactionTemplate(TransactionType txType, long fee, int deadline, Attachment attachment,
+                                    EcBlock ecBlock, String passPhrase) throws KeyException {
+        if (deadline > 1440)
+            throw new IllegalArgumentException("Maximum deadline is 1440 minutes");
+        this.txType = txType;
+        this.fee = fee;
+        this.deadline = deadline;
+        this.attachment = attachment;
+        this.senderPublicKey = Crypto.getPublicKey(passPhrase);
+        this.senderId = Utils.getAccountId(senderPublicKey);
+        this.privateKey = Crypto.getPrivateKey(passPhrase);
+        //
+        // Serialize the fixed part of the transaction.  The timestamp, recipient and
+        // amount are set when a transaction is created.
+        //
+        Transaction tx = new Transaction(txType, senderPublicKey, senderId, 0, 0, fee, 0, deadline,
+                                         null, attachment, ecBlock.getHeight(), ecBlock.getBlockId(),
+                                         null, null, new byte[32]);
+        this.templateBytes = tx.getBytes(true);
+    }
+
+    /**
+     * Update the EC block used for new transactions
+     *
+     * @param       ecBlock                 Economic clustering block
+     */
+    public void setEcBlock(EcBlock ecBlock) {
+        byte[] bytes = templateBytes.clone();
+        ByteBuffer buf = ByteBuffer.wrap(bytes);
+        buf.order(ByteOrder.LITTLE_ENDIAN);
+        buf.putInt(EC_BLOCK_HEIGHT_OFFSET, ecBlock.getHeight());
+        buf.putLong(EC_BLOCK_ID_OFFSET, ecBlock.getBlockId());
+        templateBytes = bytes;
+    }
+
+    /**
+     * Create a signed transaction using the current time as the transaction timestamp
+     *
+     * @param       recipientId             Transaction recipient
+     * @param       amount                  Transaction amount
+     * @return                              Signed transaction
+     * @throws      KeyException            Unable to sign the transaction
+     */
+    public Transaction createTransaction(long recipientId, long amount) throws KeyException {
+        return createTransaction(recipientId, amount,
+                                 (int)((System.currentTimeMillis()+500)/1000 - Nxt.GENESIS_TIMESTAMP));
+    }
+
+    /**
+     * Create a signed transaction
+     *
+     * @param       recipientId             Transaction recipient
+     * @param       amount                  Transaction amount
+     * @param       timestamp               Transaction timestamp (seconds since the genesis block)
+     * @return                              Signed transaction
+     * @throws      KeyException            Unable to sign the transaction
+     */
+    public Transaction createTransaction(long recipientId, long amount, int timestamp) throws KeyException {
+        byte[] txBytes = templateBytes.clone();
+        ByteBuffer buf = ByteBuffer.wrap(txBytes);
+        buf.order(ByteOrder.LITTLE_ENDIAN);
+        buf.putInt(TIMESTAMP_OFFSET, timestamp);
+        buf.putLong(RECIPIENT_OFFSET, recipientId);
+        buf.putLong(AMOUNT_OFFSET, amount);
+        byte[] signature = Crypto.sign(txBytes, privateKey);
+        byte[] signatureHash = Crypto.singleDigest(signature);
+        byte[] txHash = Crypto.singleDigest(txBytes, signatureHash);
+        return new Transaction(txType, senderPublicKey, senderId, recipientId, amount, fee, timestamp,
+                               deadline, null, attachment, buf.getInt(EC_BLOCK_HEIGHT_OFFSET),
+                               buf.getLong(EC_BLOCK_ID_OFFSET), signature, signatureHash, txHash);
+    }
+
+    /**
+     * Return the transaction type
+     *
+     * @return                              Transaction type
+     */
+    public TransactionType getType() {
+        return txType;
+    }
+
+    /**
+     * Return the sender account identifier
+     *
+     * @return                              Sender account identifier
+     */
+    public long getSenderId() {
+        return senderId;
+    }
+
+    /**
+     * Return the transaction fee
+     *
+     * @return                              Transaction fee
+     */
+    public long getFee() {
+        return fee;
+    }
+}
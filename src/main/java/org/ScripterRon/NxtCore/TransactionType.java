@@ -15,8 +15,13 @@
  */
 package org.ScripterRon.NxtCore;
 
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+
 /**
  * Transaction types
+ *
+ * Each transaction type is a single instance, so transaction types are compared by identity.
  */
 public abstract class TransactionType {
 
@@ -125,150 +130,86 @@ public abstract class TransactionType {
      * @return                              TransactionType or null if invalid type/subtype
      */
     public static final TransactionType findTransactionType(byte type, byte subtype) {
-        TransactionType txType = null;
-        switch (type) {
-            case TYPE_PAYMENT:
-                switch (subtype) {
-                    case SUBTYPE_PAYMENT_ORDINARY_PAYMENT:
-                        txType = Payment.ORDINARY;
-                        break;
-                }
-                break;
-            case TYPE_MESSAGING:
-                switch (subtype) {
-                    case SUBTYPE_MESSAGING_ARBITRARY_MESSAGE:
-                        txType = Messaging.ARBITRARY_MESSAGE;
-                        break;
-                    case SUBTYPE_MESSAGING_ALIAS_ASSIGNMENT:
-                        txType = Messaging.ALIAS_ASSIGNMENT;
-                        break;
-                    case SUBTYPE_MESSAGING_POLL_CREATION:
-                        txType = Messaging.POLL_CREATION;
-                        break;
-                    case SUBTYPE_MESSAGING_VOTE_CASTING:
-                        txType = Messaging.VOTE_CASTING;
-                        break;
-                    case SUBTYPE_MESSAGING_HUB_ANNOUNCEMENT:
-                        txType = Messaging.HUB_ANNOUNCEMENT;
-                        break;
-                    case SUBTYPE_MESSAGING_ACCOUNT_INFO:
-                        txType = Messaging.ACCOUNT_INFO;
-                        break;
-                    case SUBTYPE_MESSAGING_ALIAS_SELL:
-                        txType = Messaging.ALIAS_SELL;
-                        break;
-                    case SUBTYPE_MESSAGING_ALIAS_BUY:
-                        txType = Messaging.ALIAS_BUY;
-                        break;
-                    case SUBTYPE_MESSAGING_ALIAS_DELETE:
-                        txType = Messaging.ALIAS_DELETE;
-                        break;
-                    case SUBTYPE_MESSAGING_PHASING_VOTE_CASTING:
-                        txType = Messaging.PHASING_VOTE_CASTING;
-                        break;
-                }
-                break;
-            case TYPE_COLORED_COINS:
-                switch (subtype) {
-                    case SUBTYPE_COLORED_COINS_ASSET_ISSUANCE:
-                        txType = ColoredCoins.ASSET_ISSUANCE;
-                        break;
-                    case SUBTYPE_COLORED_COINS_ASSET_TRANSFER:
-                        txType = ColoredCoins.ASSET_TRANSFER;
-                        break;
-                    case SUBTYPE_COLORED_COINS_ASK_ORDER_PLACEMENT:
-                        txType = ColoredCoins.ASK_ORDER_PLACEMENT;
-                        break;
-                    case SUBTYPE_COLORED_COINS_BID_ORDER_PLACEMENT:
-                        txType = ColoredCoins.BID_ORDER_PLACEMENT;
-                        break;
-                    case SUBTYPE_COLORED_COINS_ASK_ORDER_CANCELLATION:
-                        txType = ColoredCoins.ASK_ORDER_CANCELLATION;
-                        break;
-                    case SUBTYPE_COLORED_COINS_BID_ORDER_CANCELLATION:
-                        txType = ColoredCoins.BID_ORDER_CANCELLATION;
-                        break;
-                    case SUBTYPE_COLORED_COINS_DIVIDEND_PAYMENT:
-                        txType = ColoredCoins.DIVIDEND_PAYMENT;
-                        break;
-                }
-                break;
-            case TYPE_DIGITAL_GOODS:
-                switch (subtype) {
-                    case SUBTYPE_DIGITAL_GOODS_LISTING:
-                        txType = DigitalGoods.LISTING;
-                        break;
-                    case SUBTYPE_DIGITAL_GOODS_DELISTING:
-                        txType = DigitalGoods.DELISTING;
-                        break;
-                    case SUBTYPE_DIGITAL_GOODS_PRICE_CHANGE:
-                        txType = DigitalGoods.PRICE_CHANGE;
-                        break;
-                    case SUBTYPE_DIGITAL_GOODS_QUANTITY_CHANGE:
-                        txType = DigitalGoods.QUANTITY_CHANGE;
-                        break;
-                    case SUBTYPE_DIGITAL_GOODS_PURCHASE:
-                        txType = DigitalGoods.PURCHASE;
-                        break;
-                    case SUBTYPE_DIGITAL_GOODS_DELIVERY:
-                        txType = DigitalGoods.DELIVERY;
-                        break;
-                    case SUBTYPE_DIGITAL_GOODS_REFUND:
-                        txType = DigitalGoods.REFUND;
-                        break;
-                    case SUBTYPE_DIGITAL_GOODS_FEEDBACK:
-                        txType = DigitalGoods.FEEDBACK;
-                        break;
-                }
-                break;
-            case TYPE_ACCOUNT_CONTROL:
-                switch (subtype) {
-                    case SUBTYPE_ACCOUNT_CONTROL_EFFECTIVE_BALANCE_LEASING:
-                        txType = AccountControl.EFFECTIVE_BALANCE_LEASING;
-                        break;
-                }
-                break;
-            case TYPE_MONETARY_SYSTEM:
-                switch (subtype) {
-                    case SUBTYPE_MONETARY_SYSTEM_CURRENCY_ISSUANCE:
-                        txType = MonetarySystem.CURRENCY_ISSUANCE;
-                        break;
-                    case SUBTYPE_MONETARY_SYSTEM_RESERVE_INCREASE:
-                        txType = MonetarySystem.RESERVE_INCREASE;
-                        break;
-                    case SUBTYPE_MONETARY_SYSTEM_RESERVE_CLAIM:
-                        txType = MonetarySystem.RESERVE_CLAIM;
-                        break;
-                    case SUBTYPE_MONETARY_SYSTEM_CURRENCY_TRANSFER:
-                        txType = MonetarySystem.CURRENCY_TRANSFER;
-                        break;
-                    case SUBTYPE_MONETARY_SYSTEM_PUBLISH_EXCHANGE_OFFER:
-                        txType = MonetarySystem.PUBLISH_EXCHANGE_OFFER;
-                        break;
-                    case SUBTYPE_MONETARY_SYSTEM_EXCHANGE_BUY:
-                        txType = MonetarySystem.EXCHANGE_BUY;
-                        break;
-                    case SUBTYPE_MONETARY_SYSTEM_EXCHANGE_SELL:
-                        txType = MonetarySystem.EXCHANGE_SELL;
-                        break;
-                    case SUBTYPE_MONETARY_SYSTEM_CURRENCY_MINTING:
-                        txType = MonetarySystem.CURRENCY_MINTING;
-                        break;
-                    case SUBTYPE_MONETARY_SYSTEM_CURRENCY_DELETION:
-                        txType = MonetarySystem.CURRENCY_DELETION;
-                        break;
-                }
-            case TYPE_DATA:
-                switch (subtype) {
-                    case SUBTYPE_DATA_TAGGED_DATA_UPLOAD:
-                        txType = Data.TAGGED_DATA_UPLOAD;
-                        break;
-                    case SUBTYPE_DATA_TAGGED_DATA_EXTEND:
-                        txType = Data.TAGGED_DATA_EXTEND;
-                        break;
-                }
+        TransactionType[][] types = Registry.types;
+        if (type < 0 || type >= types.length)
+            return null;
+        TransactionType[] subtypes = types[type];
+        if (subtypes == null || subtype < 0 || subtype >= subtypes.length)
+            return null;
+        return subtypes[subtype];
+    }
+
+    /**
+     * Register an additional transaction type.  The transaction type will then be
+     * returned by findTransactionType() and used when decoding transactions.
+     *
+     * @param       txType                  Transaction type
+     * @throws      IllegalArgumentException Type or subtype is negative or is already registered
+     */
+    public static void registerTransactionType(TransactionType txType) throws IllegalArgumentException {
+        Registry.register(txType);
+    }
+
+    /**
+     * Transaction type registry indexed by type and subtype.  The registry is built the
+     * first time it is referenced since the transaction types are not available until
+     * TransactionType and its subclasses have been initialized.
+     */
+    private static final class Registry {
+
+        /** Transaction types indexed by [type][subtype] (replaced when a type is registered) */
+        private static volatile TransactionType[][] types = new TransactionType[0][];
+        static {
+            TransactionType[] builtins = {
+                Payment.ORDINARY,
+                Messaging.ARBITRARY_MESSAGE, Messaging.ALIAS_ASSIGNMENT, Messaging.ALIAS_BUY,
+                Messaging.ALIAS_SELL, Messaging.ALIAS_DELETE, Messaging.POLL_CREATION, Messaging.VOTE_CASTING,
+                Messaging.PHASING_VOTE_CASTING, Messaging.HUB_ANNOUNCEMENT, Messaging.ACCOUNT_INFO,
+                ColoredCoins.ASSET_ISSUANCE, ColoredCoins.ASSET_TRANSFER, ColoredCoins.ASK_ORDER_PLACEMENT,
+                ColoredCoins.BID_ORDER_PLACEMENT, ColoredCoins.ASK_ORDER_CANCELLATION,
+                ColoredCoins.BID_ORDER_CANCELLATION, ColoredCoins.DIVIDEND_PAYMENT,
+                DigitalGoods.LISTING, DigitalGoods.DELISTING, DigitalGoods.PRICE_CHANGE,
+                DigitalGoods.QUANTITY_CHANGE, DigitalGoods.PURCHASE, DigitalGoods.DELIVERY,
+                DigitalGoods.FEEDBACK, DigitalGoods.REFUND,
+                AccountControl.EFFECTIVE_BALANCE_LEASING,
+                MonetarySystem.CURRENCY_ISSUANCE, MonetarySystem.RESERVE_INCREASE,
+                MonetarySystem.RESERVE_CLAIM, MonetarySystem.CURRENCY_TRANSFER,
+                MonetarySystem.PUBLISH_EXCHANGE_OFFER, MonetarySystem.EXCHANGE_BUY,
+                MonetarySystem.EXCHANGE_SELL, MonetarySystem.CURRENCY_MINTING,
+                MonetarySystem.CURRENCY_DELETION,
+                Data.TAGGED_DATA_UPLOAD, Data.TAGGED_DATA_EXTEND
+            };
+            for (TransactionType txType : builtins)
+                register(txType);
+        }
+
+        /**
+         * Add a transaction type to the registry
+         *
+         * @param       txType                  Transaction type
+         * @throws      IllegalArgumentException Type or subtype is negative or is already registered
+         */
+        private static synchronized void register(TransactionType txType) throws IllegalArgumentException {
+            int type = txType.getType();
+            int subtype = txType.getSubtype();
+            if (type < 0 || subtype < 0)
+                throw new IllegalArgumentException(String.format("Transaction type %d subtype %d is not valid",
+                                                                 type, subtype));
+            TransactionType[][] newTypes = Arrays.copyOf(types, Math.max(types.length, type+1));
+            TransactionType[] subtypes = newTypes[type];
+            if (subtypes == null)
+                subtypes = new TransactionType[subtype+1];
+            else if (subtypes.length <= subtype)
+                subtypes = Arrays.copyOf(subtypes, subtype+1);
+            else if (subtypes[subtype] != null)
+                throw new IllegalArgumentException(String.format("Transaction type %d subtype %d is already registered",
+                                                                 type, subtype));
+            else
+                subtypes = subtypes.clone();
+            subtypes[subtype] = txType;
+            newTypes[type] = subtypes;
+            types = newTypes;
         }
-        return txType;
     }
 
     /**
@@ -306,24 +247,18 @@ public abstract class TransactionType {
     }
 
     /**
-     * Return the transaction type hash code
+     * Create an attachment from the transaction bytes.  The buffer is positioned at the
+     * start of the attachment and the position is advanced past the bytes that are
+     * decoded.  Appendages that are not part of the attachment are not decoded.
      *
-     * @return                              Hash code
-     */
-    @Override
-    public int hashCode() {
-        return (getType()<<8) | getSubtype();
-    }
-
-    /**
-     * Check if two transaction types are equals
-     *
-     * @param       obj                     Transaction type to check
-     * @return                              TRUE if the transaction types are equal
+     * @param       buffer                  Little-endian buffer positioned at the attachment
+     * @param       txVersion               Transaction version
+     * @param       flags                   Transaction flags
+     * @return                              Attachment or null if the transaction type does not have an attachment
+     * @throws      NxtException            Invalid attachment
      */
-    @Override
-    public boolean equals(Object obj) {
-        return (obj!=null && (obj instanceof TransactionType) && hashCode()==((TransactionType)obj).hashCode());
+    public Attachment loadAttachment(ByteBuffer buffer, int txVersion, int flags) throws NxtException {
+        return null;
     }
 
     /**
@@ -421,6 +356,20 @@ public abstract class TransactionType {
             public Attachment loadAttachment(PeerResponse response) throws IdentifierException, NumberFormatException, NxtException {
                 return new ArbitraryMessage(response);
             }
+
+            /**
+             * Create an attachment from the transaction bytes
+             *
+             * @param       buffer                  Little-endian buffer positioned at the attachment
+             * @param       txVersion               Transaction version
+             * @param       flags                   Transaction flags
+             * @return                              Attachment
+             * @throws      NxtException            Invalid attachment
+             */
+            @Override
+            public Attachment loadAttachment(ByteBuffer buffer, int txVersion, int flags) throws NxtException {
+                return ((flags&Transaction.TX_MESSAGE)!=0 ? new ArbitraryMessage(buffer, txVersion) : null);
+            }
         };
 
         /**
@@ -460,6 +409,20 @@ public abstract class TransactionType {
             public Attachment loadAttachment(PeerResponse response) throws IdentifierException, NumberFormatException, NxtException {
                 return new AliasAssignment(response);
             }
+
+            /**
+             * Create an attachment from the transaction bytes
+             *
+             * @param       buffer                  Little-endian buffer positioned at the attachment
+             * @param       txVersion               Transaction version
+             * @param       flags                   Transaction flags
+             * @return                              Attachment
+             * @throws      NxtException            Invalid attachment
+             */
+            @Override
+            public Attachment loadAttachment(ByteBuffer buffer, int txVersion, int flags) throws NxtException {
+                return new AliasAssignment(buffer, txVersion);
+            }
         };
 
         /**
@@ -500,6 +463,20 @@ public abstract class TransactionType {
             public Attachment loadAttachment(PeerResponse response) throws IdentifierException, NumberFormatException, NxtException {
                 return new AliasBuy(response);
             }
+
+            /**
+             * Create an attachment from the transaction bytes
+             *
+             * @param       buffer                  Little-endian buffer positioned at the attachment
+             * @param       txVersion               Transaction version
+             * @param       flags                   Transaction flags
+             * @return                              Attachment
+             * @throws      NxtException            Invalid attachment
+             */
+            @Override
+            public Attachment loadAttachment(ByteBuffer buffer, int txVersion, int flags) throws NxtException {
+                return new AliasBuy(buffer, txVersion);
+            }
         };
 
         /**
@@ -540,6 +517,20 @@ public abstract class TransactionType {
             public Attachment loadAttachment(PeerResponse response) throws IdentifierException, NumberFormatException, NxtException {
                 return new AliasSell(response);
             }
+
+            /**
+             * Create an attachment from the transaction bytes
+             *
+             * @param       buffer                  Little-endian buffer positioned at the attachment
+             * @param       txVersion               Transaction version
+             * @param       flags                   Transaction flags
+             * @return                              Attachment
+             * @throws      NxtException            Invalid attachment
+             */
+            @Override
+            public Attachment loadAttachment(ByteBuffer buffer, int txVersion, int flags) throws NxtException {
+                return new AliasSell(buffer, txVersion);
+            }
         };
 
         /**
@@ -566,6 +557,34 @@ public abstract class TransactionType {
             public String getDescription() {
                 return "Delete alias";
             }
+
+            /**
+             * Create an attachment from the JSON response
+             *
+             * @param       response                JSON response
+             * @return                              Attachment
+             * @throws      IdentifierException     Invalid object identifier
+             * @throws      NumberFormatException   Invalid numeric string
+             * @throws      NxtException            Invalid peer response
+             */
+            @Override
+            public Attachment loadAttachment(PeerResponse response) throws IdentifierException, NumberFormatException, NxtException {
+                return new AliasDelete(response);
+            }
+
+            /**
+             * Create an attachment from the transaction bytes
+             *
+             * @param       buffer                  Little-endian buffer positioned at the attachment
+             * @param       txVersion               Transaction version
+             * @param       flags                   Transaction flags
+             * @return                              Attachment
+             * @throws      NxtException            Invalid attachment
+             */
+            @Override
+            public Attachment loadAttachment(ByteBuffer buffer, int txVersion, int flags) throws NxtException {
+                return new AliasDelete(buffer, txVersion);
+            }
         };
 
         /**
@@ -592,6 +611,34 @@ public abstract class TransactionType {
             public String getDescription() {
                 return "Poll creation";
             }
+
+            /**
+             * Create an attachment from the JSON response
+             *
+             * @param       response                JSON response
+             * @return                              Attachment
+             * @throws      IdentifierException     Invalid object identifier
+             * @throws      NumberFormatException   Invalid numeric string
+             * @throws      NxtException            Invalid peer response
+             */
+            @Override
+            public Attachment loadAttachment(PeerResponse response) throws IdentifierException, NumberFormatException, NxtException {
+                return new PollCreation(response);
+            }
+
+            /**
+             * Create an attachment from the transaction bytes
+             *
+             * @param       buffer                  Little-endian buffer positioned at the attachment
+             * @param       txVersion               Transaction version
+             * @param       flags                   Transaction flags
+             * @return                              Attachment
+             * @throws      NxtException            Invalid attachment
+             */
+            @Override
+            public Attachment loadAttachment(ByteBuffer buffer, int txVersion, int flags) throws NxtException {
+                return new PollCreation(buffer, txVersion);
+            }
         };
 
         /**
@@ -618,6 +665,34 @@ public abstract class TransactionType {
             public String getDescription() {
                 return "Vote casting";
             }
+
+            /**
+             * Create an attachment from the JSON response
+             *
+             * @param       response                JSON response
+             * @return                              Attachment
+             * @throws      IdentifierException     Invalid object identifier
+             * @throws      NumberFormatException   Invalid numeric string
+             * @throws      NxtException            Invalid peer response
+             */
+            @Override
+            public Attachment loadAttachment(PeerResponse response) throws IdentifierException, NumberFormatException, NxtException {
+                return new VoteCasting(response);
+            }
+
+            /**
+             * Create an attachment from the transaction bytes
+             *
+             * @param       buffer                  Little-endian buffer positioned at the attachment
+             * @param       txVersion               Transaction version
+             * @param       flags                   Transaction flags
+             * @return                              Attachment
+             * @throws      NxtException            Invalid attachment
+             */
+            @Override
+            public Attachment loadAttachment(ByteBuffer buffer, int txVersion, int flags) throws NxtException {
+                return new VoteCasting(buffer, txVersion);
+            }
         };
 
         /**
@@ -644,6 +719,34 @@ public abstract class TransactionType {
             public String getDescription() {
                 return "Phasing vote casting";
             }
+
+            /**
+             * Create an attachment from the JSON response
+             *
+             * @param       response                JSON response
+             * @return                              Attachment
+             * @throws      IdentifierException     Invalid object identifier
+             * @throws      NumberFormatException   Invalid numeric string
+             * @throws      NxtException            Invalid peer response
+             */
+            @Override
+            public Attachment loadAttachment(PeerResponse response) throws IdentifierException, NumberFormatException, NxtException {
+                return new PhasingVoteCasting(response);
+            }
+
+            /**
+             * Create an attachment from the transaction bytes
+             *
+             * @param       buffer                  Little-endian buffer positioned at the attachment
+             * @param       txVersion               Transaction version
+             * @param       flags                   Transaction flags
+             * @return                              Attachment
+             * @throws      NxtException            Invalid attachment
+             */
+            @Override
+            public Attachment loadAttachment(ByteBuffer buffer, int txVersion, int flags) throws NxtException {
+                return new PhasingVoteCasting(buffer, txVersion);
+            }
         };
 
         /**
@@ -670,6 +773,34 @@ public abstract class TransactionType {
             public String getDescription() {
                 return "Hub terminal announcement";
             }
+
+            /**
+             * Create an attachment from the JSON response
+             *
+             * @param       response                JSON response
+             * @return                              Attachment
+             * @throws      IdentifierException     Invalid object identifier
+             * @throws      NumberFormatException   Invalid numeric string
+             * @throws      NxtException            Invalid peer response
+             */
+            @Override
+            public Attachment loadAttachment(PeerResponse response) throws IdentifierException, NumberFormatException, NxtException {
+                return new HubAnnouncement(response);
+            }
+
+            /**
+             * Create an attachment from the transaction bytes
+             *
+             * @param       buffer                  Little-endian buffer positioned at the attachment
+             * @param       txVersion               Transaction version
+             * @param       flags                   Transaction flags
+             * @return                              Attachment
+             * @throws      NxtException            Invalid attachment
+             */
+            @Override
+            public Attachment loadAttachment(ByteBuffer buffer, int txVersion, int flags) throws NxtException {
+                return new HubAnnouncement(buffer, txVersion);
+            }
         };
 
         /**
@@ -710,6 +841,20 @@ public abstract class TransactionType {
             public Attachment loadAttachment(PeerResponse response) throws IdentifierException, NumberFormatException, NxtException {
                 return new AccountInfo(response);
             }
+
+            /**
+             * Create an attachment from the transaction bytes
+             *
+             * @param       buffer                  Little-endian buffer positioned at the attachment
+             * @param       txVersion               Transaction version
+             * @param       flags                   Transaction flags
+             * @return                              Attachment
+             * @throws      NxtException            Invalid attachment
+             */
+            @Override
+            public Attachment loadAttachment(ByteBuffer buffer, int txVersion, int flags) throws NxtException {
+                return new AccountInfo(buffer, txVersion);
+            }
         };
     }
 
@@ -752,6 +897,34 @@ public abstract class TransactionType {
             public String getDescription() {
                 return "Asset issuance";
             }
+
+            /**
+             * Create an attachment from the JSON response
+             *
+             * @param       response                JSON response
+             * @return                              Attachment
+             * @throws      IdentifierException     Invalid object identifier
+             * @throws      NumberFormatException   Invalid numeric string
+             * @throws      NxtException            Invalid peer response
+             */
+            @Override
+            public Attachment loadAttachment(PeerResponse response) throws IdentifierException, NumberFormatException, NxtException {
+                return new AssetIssuance(response);
+            }
+
+            /**
+             * Create an attachment from the transaction bytes
+             *
+             * @param       buffer                  Little-endian buffer positioned at the attachment
+             * @param       txVersion               Transaction version
+             * @param       flags                   Transaction flags
+             * @return                              Attachment
+             * @throws      NxtException            Invalid attachment
+             */
+            @Override
+            public Attachment loadAttachment(ByteBuffer buffer, int txVersion, int flags) throws NxtException {
+                return new AssetIssuance(buffer, txVersion);
+            }
         };
 
         /**
@@ -778,6 +951,34 @@ public abstract class TransactionType {
             public String getDescription() {
                 return "Asset transfer";
             }
+
+            /**
+             * Create an attachment from the JSON response
+             *
+             * @param       response                JSON response
+             * @return                              Attachment
+             * @throws      IdentifierException     Invalid object identifier
+             * @throws      NumberFormatException   Invalid numeric string
+             * @throws      NxtException            Invalid peer response
+             */
+            @Override
+            public Attachment loadAttachment(PeerResponse response) throws IdentifierException, NumberFormatException, NxtException {
+                return new AssetTransfer(response);
+            }
+
+            /**
+             * Create an attachment from the transaction bytes
+             *
+             * @param       buffer                  Little-endian buffer positioned at the attachment
+             * @param       txVersion               Transaction version
+             * @param       flags                   Transaction flags
+             * @return                              Attachment
+             * @throws      NxtException            Invalid attachment
+             */
+            @Override
+            public Attachment loadAttachment(ByteBuffer buffer, int txVersion, int flags) throws NxtException {
+                return new AssetTransfer(buffer, txVersion);
+            }
         };
 
         /**
@@ -804,38 +1005,40 @@ public abstract class TransactionType {
             public String getDescription() {
                 return "Ask order placement";
             }
-        };
-
-        /**
-         * Bid order placement
-         */
-        public static final TransactionType BID_ORDER_PLACEMENT = new ColoredCoins() {
 
             /**
-             * Return the transaction subtype
+             * Create an attachment from the JSON response
              *
-             * @return                  Transaction subtype
+             * @param       response                JSON response
+             * @return                              Attachment
+             * @throws      IdentifierException     Invalid object identifier
+             * @throws      NumberFormatException   Invalid numeric string
+             * @throws      NxtException            Invalid peer response
              */
             @Override
-            public byte getSubtype() {
-                return SUBTYPE_COLORED_COINS_BID_ORDER_PLACEMENT;
+            public Attachment loadAttachment(PeerResponse response) throws IdentifierException, NumberFormatException, NxtException {
+                return new AskOrderPlacement(response);
             }
 
             /**
-             * Return the transaction description
+             * Create an attachment from the transaction bytes
              *
-             * @return                  Transaction description
+             * @param       buffer                  Little-endian buffer positioned at the attachment
+             * @param       txVersion               Transaction version
+             * @param       flags                   Transaction flags
+             * @return                              Attachment
+             * @throws      NxtException            Invalid attachment
              */
             @Override
-            public String getDescription() {
-                return "Bid order placement";
+            public Attachment loadAttachment(ByteBuffer buffer, int txVersion, int flags) throws NxtException {
+                return new AskOrderPlacement(buffer, txVersion);
             }
         };
 
         /**
-         * Ask order cancellation
+         * Bid order placement
          */
-        public static final TransactionType ASK_ORDER_CANCELLATION = new ColoredCoins() {
+        public static final TransactionType BID_ORDER_PLACEMENT = new ColoredCoins() {
 
             /**
              * Return the transaction subtype
@@ -844,7 +1047,7 @@ public abstract class TransactionType {
              */
             @Override
             public byte getSubtype() {
-                return SUBTYPE_COLORED_COINS_ASK_ORDER_CANCELLATION;
+                return SUBTYPE_COLORED_COINS_BID_ORDER_PLACEMENT;
             }
 
             /**
@@ -854,40 +1057,42 @@ public abstract class TransactionType {
              */
             @Override
             public String getDescription() {
-                return "Ask order cancellation";
+                return "Bid order placement";
             }
-        };
-
-        /**
-         * Bid order cancellation
-         */
-        public static final TransactionType BID_ORDER_CANCELLATION = new ColoredCoins() {
 
             /**
-             * Return the transaction subtype
+             * Create an attachment from the JSON response
              *
-             * @return                  Transaction subtype
+             * @param       response                JSON response
+             * @return                              Attachment
+             * @throws      IdentifierException     Invalid object identifier
+             * @throws      NumberFormatException   Invalid numeric string
+             * @throws      NxtException            Invalid peer response
              */
             @Override
-            public byte getSubtype() {
-                return SUBTYPE_COLORED_COINS_BID_ORDER_CANCELLATION;
+            public Attachment loadAttachment(PeerResponse response) throws IdentifierException, NumberFormatException, NxtException {
+                return new BidOrderPlacement(response);
             }
 
             /**
-             * Return the transaction description
+             * Create an attachment from the transaction bytes
              *
-             * @return                  Transaction description
+             * @param       buffer                  Little-endian buffer positioned at the attachment
+             * @param       txVersion               Transaction version
+             * @param       flags                   Transaction flags
+             * @return                              Attachment
+             * @throws      NxtException            Invalid attachment
              */
             @Override
-            public String getDescription() {
-                return "Bid order cancellation";
+            public Attachment loadAttachment(ByteBuffer buffer, int txVersion, int flags) throws NxtException {
+                return new BidOrderPlacement(buffer, txVersion);
             }
         };
 
         /**
-         * Dividend payment
+         * Ask order cancellation
          */
-        public static final TransactionType DIVIDEND_PAYMENT = new ColoredCoins() {
+        public static final TransactionType ASK_ORDER_CANCELLATION = new ColoredCoins() {
 
             /**
              * Return the transaction subtype
@@ -896,7 +1101,115 @@ public abstract class TransactionType {
              */
             @Override
             public byte getSubtype() {
-                return SUBTYPE_COLORED_COINS_DIVIDEND_PAYMENT;
+                return SUBTYPE_COLORED_COINS_ASK_ORDER_CANCELLATION;
+            }
+
+            /**
+             * Return the transaction description
+             *
+             * @return                  Transaction description
+             */
+            @Override
+            public String getDescription() {
+                return "Ask order cancellation";
+            }
+
+            /**
+             * Create an attachment from the JSON response
+             *
+             * @param       response                JSON response
+             * @return                              Attachment
+             * @throws      IdentifierException     Invalid object identifier
+             * @throws      NumberFormatException   Invalid numeric string
+             * @throws      NxtException            Invalid peer response
+             */
+            @Override
+            public Attachment loadAttachment(PeerResponse response) throws IdentifierException, NumberFormatException, NxtException {
+                return new AskOrderCancellation(response);
+            }
+
+            /**
+             * Create an attachment from the transaction bytes
+             *
+             * @param       buffer                  Little-endian buffer positioned at the attachment
+             * @param       txVersion               Transaction version
+             * @param       flags                   Transaction flags
+             * @return                              Attachment
+             * @throws      NxtException            Invalid attachment
+             */
+            @Override
+            public Attachment loadAttachment(ByteBuffer buffer, int txVersion, int flags) throws NxtException {
+                return new AskOrderCancellation(buffer, txVersion);
+            }
+        };
+
+        /**
+         * Bid order cancellation
+         */
+        public static final TransactionType BID_ORDER_CANCELLATION = new ColoredCoins() {
+
+            /**
+             * Return the transaction subtype
+             *
+             * @return                  Transaction subtype
+             */
+            @Override
+            public byte getSubtype() {
+                return SUBTYPE_COLORED_COINS_BID_ORDER_CANCELLATION;
+            }
+
+            /**
+             * Return the transaction description
+             *
+             * @return                  Transaction description
+             */
+            @Override
+            public String getDescription() {
+                return "Bid order cancellation";
+            }
+
+            /**
+             * Create an attachment from the JSON response
+             *
+             * @param       response                JSON response
+             * @return                              Attachment
+             * @throws      IdentifierException     Invalid object identifier
+             * @throws      NumberFormatException   Invalid numeric string
+             * @throws      NxtException            Invalid peer response
+             */
+            @Override
+            public Attachment loadAttachment(PeerResponse response) throws IdentifierException, NumberFormatException, NxtException {
+                return new BidOrderCancellation(response);
+            }
+
+            /**
+             * Create an attachment from the transaction bytes
+             *
+             * @param       buffer                  Little-endian buffer positioned at the attachment
+             * @param       txVersion               Transaction version
+             * @param       flags                   Transaction flags
+             * @return                              Attachment
+             * @throws      NxtException            Invalid attachment
+             */
+            @Override
+            public Attachment loadAttachment(ByteBuffer buffer, int txVersion, int flags) throws NxtException {
+                return new BidOrderCancellation(buffer, txVersion);
+            }
+        };
+
+        /**
+         * Dividend payment
+         */
+        public static final TransactionType DIVIDEND_PAYMENT = new ColoredCoins() {
+
+            /**
+             * Return the transaction subtype
+             *
+             * @return                  Transaction subtype
+             */
+            @Override
+            public byte getSubtype() {
+                return SUBTYPE_COLORED_COINS_DIVIDEND_PAYMENT;
             }
 
             /**
@@ -908,6 +1221,34 @@ public abstract class TransactionType {
             public String getDescription() {
                 return "Dividend payment";
             }
+
+            /**
+             * Create an attachment from the JSON response
+             *
+             * @param       response                JSON response
+             * @return                              Attachment
+             * @throws      IdentifierException     Invalid object identifier
+             * @throws      NumberFormatException   Invalid numeric string
+             * @throws      NxtException            Invalid peer response
+             */
+            @Override
+            public Attachment loadAttachment(PeerResponse response) throws IdentifierException, NumberFormatException, NxtException {
+                return new DividendPayment(response);
+            }
+
+            /**
+             * Create an attachment from the transaction bytes
+             *
+             * @param       buffer                  Little-endian buffer positioned at the attachment
+             * @param       txVersion               Transaction version
+             * @param       flags                   Transaction flags
+             * @return                              Attachment
+             * @throws      NxtException            Invalid attachment
+             */
+            @Override
+            public Attachment loadAttachment(ByteBuffer buffer, int txVersion, int flags) throws NxtException {
+                return new DividendPayment(buffer, txVersion);
+            }
         };
     }
 
@@ -950,6 +1291,34 @@ public abstract class TransactionType {
             public String getDescription() {
                 return "Digital goods listing";
             }
+
+            /**
+             * Create an attachment from the JSON response
+             *
+             * @param       response                JSON response
+             * @return                              Attachment
+             * @throws      IdentifierException     Invalid object identifier
+             * @throws      NumberFormatException   Invalid numeric string
+             * @throws      NxtException            Invalid peer response
+             */
+            @Override
+            public Attachment loadAttachment(PeerResponse response) throws IdentifierException, NumberFormatException, NxtException {
+                return new DigitalGoodsListing(response);
+            }
+
+            /**
+             * Create an attachment from the transaction bytes
+             *
+             * @param       buffer                  Little-endian buffer positioned at the attachment
+             * @param       txVersion               Transaction version
+             * @param       flags                   Transaction flags
+             * @return                              Attachment
+             * @throws      NxtException            Invalid attachment
+             */
+            @Override
+            public Attachment loadAttachment(ByteBuffer buffer, int txVersion, int flags) throws NxtException {
+                return new DigitalGoodsListing(buffer, txVersion);
+            }
         };
 
         /**
@@ -976,6 +1345,34 @@ public abstract class TransactionType {
             public String getDescription() {
                 return "Digital goods delisting";
             }
+
+            /**
+             * Create an attachment from the JSON response
+             *
+             * @param       response                JSON response
+             * @return                              Attachment
+             * @throws      IdentifierException     Invalid object identifier
+             * @throws      NumberFormatException   Invalid numeric string
+             * @throws      NxtException            Invalid peer response
+             */
+            @Override
+            public Attachment loadAttachment(PeerResponse response) throws IdentifierException, NumberFormatException, NxtException {
+                return new DigitalGoodsDelisting(response);
+            }
+
+            /**
+             * Create an attachment from the transaction bytes
+             *
+             * @param       buffer                  Little-endian buffer positioned at the attachment
+             * @param       txVersion               Transaction version
+             * @param       flags                   Transaction flags
+             * @return                              Attachment
+             * @throws      NxtException            Invalid attachment
+             */
+            @Override
+            public Attachment loadAttachment(ByteBuffer buffer, int txVersion, int flags) throws NxtException {
+                return new DigitalGoodsDelisting(buffer, txVersion);
+            }
         };
 
         /**
@@ -1002,6 +1399,34 @@ public abstract class TransactionType {
             public String getDescription() {
                 return "Digital goods price change";
             }
+
+            /**
+             * Create an attachment from the JSON response
+             *
+             * @param       response                JSON response
+             * @return                              Attachment
+             * @throws      IdentifierException     Invalid object identifier
+             * @throws      NumberFormatException   Invalid numeric string
+             * @throws      NxtException            Invalid peer response
+             */
+            @Override
+            public Attachment loadAttachment(PeerResponse response) throws IdentifierException, NumberFormatException, NxtException {
+                return new DigitalGoodsPriceChange(response);
+            }
+
+            /**
+             * Create an attachment from the transaction bytes
+             *
+             * @param       buffer                  Little-endian buffer positioned at the attachment
+             * @param       txVersion               Transaction version
+             * @param       flags                   Transaction flags
+             * @return                              Attachment
+             * @throws      NxtException            Invalid attachment
+             */
+            @Override
+            public Attachment loadAttachment(ByteBuffer buffer, int txVersion, int flags) throws NxtException {
+                return new DigitalGoodsPriceChange(buffer, txVersion);
+            }
         };
 
         /**
@@ -1028,6 +1453,34 @@ public abstract class TransactionType {
             public String getDescription() {
                 return "Digital goods quantity change";
             }
+
+            /**
+             * Create an attachment from the JSON response
+             *
+             * @param       response                JSON response
+             * @return                              Attachment
+             * @throws      IdentifierException     Invalid object identifier
+             * @throws      NumberFormatException   Invalid numeric string
+             * @throws      NxtException            Invalid peer response
+             */
+            @Override
+            public Attachment loadAttachment(PeerResponse response) throws IdentifierException, NumberFormatException, NxtException {
+                return new DigitalGoodsQuantityChange(response);
+            }
+
+            /**
+             * Create an attachment from the transaction bytes
+             *
+             * @param       buffer                  Little-endian buffer positioned at the attachment
+             * @param       txVersion               Transaction version
+             * @param       flags                   Transaction flags
+             * @return                              Attachment
+             * @throws      NxtException            Invalid attachment
+             */
+            @Override
+            public Attachment loadAttachment(ByteBuffer buffer, int txVersion, int flags) throws NxtException {
+                return new DigitalGoodsQuantityChange(buffer, txVersion);
+            }
         };
 
         /**
@@ -1054,6 +1507,34 @@ public abstract class TransactionType {
             public String getDescription() {
                 return "Digital goods purchase";
             }
+
+            /**
+             * Create an attachment from the JSON response
+             *
+             * @param       response                JSON response
+             * @return                              Attachment
+             * @throws      IdentifierException     Invalid object identifier
+             * @throws      NumberFormatException   Invalid numeric string
+             * @throws      NxtException            Invalid peer response
+             */
+            @Override
+            public Attachment loadAttachment(PeerResponse response) throws IdentifierException, NumberFormatException, NxtException {
+                return new DigitalGoodsPurchase(response);
+            }
+
+            /**
+             * Create an attachment from the transaction bytes
+             *
+             * @param       buffer                  Little-endian buffer positioned at the attachment
+             * @param       txVersion               Transaction version
+             * @param       flags                   Transaction flags
+             * @return                              Attachment
+             * @throws      NxtException            Invalid attachment
+             */
+            @Override
+            public Attachment loadAttachment(ByteBuffer buffer, int txVersion, int flags) throws NxtException {
+                return new DigitalGoodsPurchase(buffer, txVersion);
+            }
         };
 
         /**
@@ -1080,6 +1561,34 @@ public abstract class TransactionType {
             public String getDescription() {
                 return "Digital goods delivery";
             }
+
+            /**
+             * Create an attachment from the JSON response
+             *
+             * @param       response                JSON response
+             * @return                              Attachment
+             * @throws      IdentifierException     Invalid object identifier
+             * @throws      NumberFormatException   Invalid numeric string
+             * @throws      NxtException            Invalid peer response
+             */
+            @Override
+            public Attachment loadAttachment(PeerResponse response) throws IdentifierException, NumberFormatException, NxtException {
+                return new DigitalGoodsDelivery(response);
+            }
+
+            /**
+             * Create an attachment from the transaction bytes
+             *
+             * @param       buffer                  Little-endian buffer positioned at the attachment
+             * @param       txVersion               Transaction version
+             * @param       flags                   Transaction flags
+             * @return                              Attachment
+             * @throws      NxtException            Invalid attachment
+             */
+            @Override
+            public Attachment loadAttachment(ByteBuffer buffer, int txVersion, int flags) throws NxtException {
+                return new DigitalGoodsDelivery(buffer, txVersion);
+            }
         };
 
         /**
@@ -1106,6 +1615,34 @@ public abstract class TransactionType {
             public String getDescription() {
                 return "Digital goods feedback";
             }
+
+            /**
+             * Create an attachment from the JSON response
+             *
+             * @param       response                JSON response
+             * @return                              Attachment
+             * @throws      IdentifierException     Invalid object identifier
+             * @throws      NumberFormatException   Invalid numeric string
+             * @throws      NxtException            Invalid peer response
+             */
+            @Override
+            public Attachment loadAttachment(PeerResponse response) throws IdentifierException, NumberFormatException, NxtException {
+                return new DigitalGoodsFeedback(response);
+            }
+
+            /**
+             * Create an attachment from the transaction bytes
+             *
+             * @param       buffer                  Little-endian buffer positioned at the attachment
+             * @param       txVersion               Transaction version
+             * @param       flags                   Transaction flags
+             * @return                              Attachment
+             * @throws      NxtException            Invalid attachment
+             */
+            @Override
+            public Attachment loadAttachment(ByteBuffer buffer, int txVersion, int flags) throws NxtException {
+                return new DigitalGoodsFeedback(buffer, txVersion);
+            }
         };
 
         /**
@@ -1132,6 +1669,34 @@ public abstract class TransactionType {
             public String getDescription() {
                 return "Digital goods refund";
             }
+
+            /**
+             * Create an attachment from the JSON response
+             *
+             * @param       response                JSON response
+             * @return                              Attachment
+             * @throws      IdentifierException     Invalid object identifier
+             * @throws      NumberFormatException   Invalid numeric string
+             * @throws      NxtException            Invalid peer response
+             */
+            @Override
+            public Attachment loadAttachment(PeerResponse response) throws IdentifierException, NumberFormatException, NxtException {
+                return new DigitalGoodsRefund(response);
+            }
+
+            /**
+             * Create an attachment from the transaction bytes
+             *
+             * @param       buffer                  Little-endian buffer positioned at the attachment
+             * @param       txVersion               Transaction version
+             * @param       flags                   Transaction flags
+             * @return                              Attachment
+             * @throws      NxtException            Invalid attachment
+             */
+            @Override
+            public Attachment loadAttachment(ByteBuffer buffer, int txVersion, int flags) throws NxtException {
+                return new DigitalGoodsRefund(buffer, txVersion);
+            }
         };
     }
 
@@ -1188,6 +1753,20 @@ public abstract class TransactionType {
             public Attachment loadAttachment(PeerResponse response) throws IdentifierException, NumberFormatException, NxtException {
                 return new BalanceLeasing(response);
             }
+
+            /**
+             * Create an attachment from the transaction bytes
+             *
+             * @param       buffer                  Little-endian buffer positioned at the attachment
+             * @param       txVersion               Transaction version
+             * @param       flags                   Transaction flags
+             * @return                              Attachment
+             * @throws      NxtException            Invalid attachment
+             */
+            @Override
+            public Attachment loadAttachment(ByteBuffer buffer, int txVersion, int flags) throws NxtException {
+                return new BalanceLeasing(buffer, txVersion);
+            }
         };
     }
 
@@ -1230,6 +1809,34 @@ public abstract class TransactionType {
             public String getDescription() {
                 return "Issue currency";
             }
+
+            /**
+             * Create an attachment from the JSON response
+             *
+             * @param       response                JSON response
+             * @return                              Attachment
+             * @throws      IdentifierException     Invalid object identifier
+             * @throws      NumberFormatException   Invalid numeric string
+             * @throws      NxtException            Invalid peer response
+             */
+            @Override
+            public Attachment loadAttachment(PeerResponse response) throws IdentifierException, NumberFormatException, NxtException {
+                return new CurrencyIssuance(response);
+            }
+
+            /**
+             * Create an attachment from the transaction bytes
+             *
+             * @param       buffer                  Little-endian buffer positioned at the attachment
+             * @param       txVersion               Transaction version
+             * @param       flags                   Transaction flags
+             * @return                              Attachment
+             * @throws      NxtException            Invalid attachment
+             */
+            @Override
+            public Attachment loadAttachment(ByteBuffer buffer, int txVersion, int flags) throws NxtException {
+                return new CurrencyIssuance(buffer, txVersion);
+            }
         };
 
         /**
@@ -1256,6 +1863,34 @@ public abstract class TransactionType {
             public String getDescription() {
                 return "Increase currency reserve";
             }
+
+            /**
+             * Create an attachment from the JSON response
+             *
+             * @param       response                JSON response
+             * @return                              Attachment
+             * @throws      IdentifierException     Invalid object identifier
+             * @throws      NumberFormatException   Invalid numeric string
+             * @throws      NxtException            Invalid peer response
+             */
+            @Override
+            public Attachment loadAttachment(PeerResponse response) throws IdentifierException, NumberFormatException, NxtException {
+                return new ReserveIncrease(response);
+            }
+
+            /**
+             * Create an attachment from the transaction bytes
+             *
+             * @param       buffer                  Little-endian buffer positioned at the attachment
+             * @param       txVersion               Transaction version
+             * @param       flags                   Transaction flags
+             * @return                              Attachment
+             * @throws      NxtException            Invalid attachment
+             */
+            @Override
+            public Attachment loadAttachment(ByteBuffer buffer, int txVersion, int flags) throws NxtException {
+                return new ReserveIncrease(buffer, txVersion);
+            }
         };
 
         /**
@@ -1282,6 +1917,34 @@ public abstract class TransactionType {
             public String getDescription() {
                 return "Claim currency reserve";
             }
+
+            /**
+             * Create an attachment from the JSON response
+             *
+             * @param       response                JSON response
+             * @return                              Attachment
+             * @throws      IdentifierException     Invalid object identifier
+             * @throws      NumberFormatException   Invalid numeric string
+             * @throws      NxtException            Invalid peer response
+             */
+            @Override
+            public Attachment loadAttachment(PeerResponse response) throws IdentifierException, NumberFormatException, NxtException {
+                return new ReserveClaim(response);
+            }
+
+            /**
+             * Create an attachment from the transaction bytes
+             *
+             * @param       buffer                  Little-endian buffer positioned at the attachment
+             * @param       txVersion               Transaction version
+             * @param       flags                   Transaction flags
+             * @return                              Attachment
+             * @throws      NxtException            Invalid attachment
+             */
+            @Override
+            public Attachment loadAttachment(ByteBuffer buffer, int txVersion, int flags) throws NxtException {
+                return new ReserveClaim(buffer, txVersion);
+            }
         };
 
         /**
@@ -1308,6 +1971,34 @@ public abstract class TransactionType {
             public String getDescription() {
                 return "Transfer currency";
             }
+
+            /**
+             * Create an attachment from the JSON response
+             *
+             * @param       response                JSON response
+             * @return                              Attachment
+             * @throws      IdentifierException     Invalid object identifier
+             * @throws      NumberFormatException   Invalid numeric string
+             * @throws      NxtException            Invalid peer response
+             */
+            @Override
+            public Attachment loadAttachment(PeerResponse response) throws IdentifierException, NumberFormatException, NxtException {
+                return new CurrencyTransfer(response);
+            }
+
+            /**
+             * Create an attachment from the transaction bytes
+             *
+             * @param       buffer                  Little-endian buffer positioned at the attachment
+             * @param       txVersion               Transaction version
+             * @param       flags                   Transaction flags
+             * @return                              Attachment
+             * @throws      NxtException            Invalid attachment
+             */
+            @Override
+            public Attachment loadAttachment(ByteBuffer buffer, int txVersion, int flags) throws NxtException {
+                return new CurrencyTransfer(buffer, txVersion);
+            }
         };
 
         /**
@@ -1334,6 +2025,34 @@ public abstract class TransactionType {
             public String getDescription() {
                 return "Publish exchange offer";
             }
+
+            /**
+             * Create an attachment from the JSON response
+             *
+             * @param       response                JSON response
+             * @return                              Attachment
+             * @throws      IdentifierException     Invalid object identifier
+             * @throws      NumberFormatException   Invalid numeric string
+             * @throws      NxtException            Invalid peer response
+             */
+            @Override
+            public Attachment loadAttachment(PeerResponse response) throws IdentifierException, NumberFormatException, NxtException {
+                return new ExchangeOffer(response);
+            }
+
+            /**
+             * Create an attachment from the transaction bytes
+             *
+             * @param       buffer                  Little-endian buffer positioned at the attachment
+             * @param       txVersion               Transaction version
+             * @param       flags                   Transaction flags
+             * @return                              Attachment
+             * @throws      NxtException            Invalid attachment
+             */
+            @Override
+            public Attachment loadAttachment(ByteBuffer buffer, int txVersion, int flags) throws NxtException {
+                return new ExchangeOffer(buffer, txVersion);
+            }
         };
 
         /**
@@ -1360,6 +2079,34 @@ public abstract class TransactionType {
             public String getDescription() {
                 return "Buy currency";
             }
+
+            /**
+             * Create an attachment from the JSON response
+             *
+             * @param       response                JSON response
+             * @return                              Attachment
+             * @throws      IdentifierException     Invalid object identifier
+             * @throws      NumberFormatException   Invalid numeric string
+             * @throws      NxtException            Invalid peer response
+             */
+            @Override
+            public Attachment loadAttachment(PeerResponse response) throws IdentifierException, NumberFormatException, NxtException {
+                return new ExchangeBuy(response);
+            }
+
+            /**
+             * Create an attachment from the transaction bytes
+             *
+             * @param       buffer                  Little-endian buffer positioned at the attachment
+             * @param       txVersion               Transaction version
+             * @param       flags                   Transaction flags
+             * @return                              Attachment
+             * @throws      NxtException            Invalid attachment
+             */
+            @Override
+            public Attachment loadAttachment(ByteBuffer buffer, int txVersion, int flags) throws NxtException {
+                return new ExchangeBuy(buffer, txVersion);
+            }
         };
 
         /**
@@ -1386,6 +2133,34 @@ public abstract class TransactionType {
             public String getDescription() {
                 return "Sell currency";
             }
+
+            /**
+             * Create an attachment from the JSON response
+             *
+             * @param       response                JSON response
+             * @return                              Attachment
+             * @throws      IdentifierException     Invalid object identifier
+             * @throws      NumberFormatException   Invalid numeric string
+             * @throws      NxtException            Invalid peer response
+             */
+            @Override
+            public Attachment loadAttachment(PeerResponse response) throws IdentifierException, NumberFormatException, NxtException {
+                return new ExchangeSell(response);
+            }
+
+            /**
+             * Create an attachment from the transaction bytes
+             *
+             * @param       buffer                  Little-endian buffer positioned at the attachment
+             * @param       txVersion               Transaction version
+             * @param       flags                   Transaction flags
+             * @return                              Attachment
+             * @throws      NxtException            Invalid attachment
+             */
+            @Override
+            public Attachment loadAttachment(ByteBuffer buffer, int txVersion, int flags) throws NxtException {
+                return new ExchangeSell(buffer, txVersion);
+            }
         };
 
         /**
@@ -1426,6 +2201,20 @@ public abstract class TransactionType {
             public Attachment loadAttachment(PeerResponse response) throws IdentifierException, NumberFormatException, NxtException {
                 return new CurrencyMinting(response);
             }
+
+            /**
+             * Create an attachment from the transaction bytes
+             *
+             * @param       buffer                  Little-endian buffer positioned at the attachment
+             * @param       txVersion               Transaction version
+             * @param       flags                   Transaction flags
+             * @return                              Attachment
+             * @throws      NxtException            Invalid attachment
+             */
+            @Override
+            public Attachment loadAttachment(ByteBuffer buffer, int txVersion, int flags) throws NxtException {
+                return new CurrencyMinting(buffer, txVersion);
+            }
         };
 
         /**
@@ -1452,6 +2241,34 @@ public abstract class TransactionType {
             public String getDescription() {
                 return "Delete currency";
             }
+
+            /**
+             * Create an attachment from the JSON response
+             *
+             * @param       response                JSON response
+             * @return                              Attachment
+             * @throws      IdentifierException     Invalid object identifier
+             * @throws      NumberFormatException   Invalid numeric string
+             * @throws      NxtException            Invalid peer response
+             */
+            @Override
+            public Attachment loadAttachment(PeerResponse response) throws IdentifierException, NumberFormatException, NxtException {
+                return new CurrencyDeletion(response);
+            }
+
+            /**
+             * Create an attachment from the transaction bytes
+             *
+             * @param       buffer                  Little-endian buffer positioned at the attachment
+             * @param       txVersion               Transaction version
+             * @param       flags                   Transaction flags
+             * @return                              Attachment
+             * @throws      NxtException            Invalid attachment
+             */
+            @Override
+            public Attachment loadAttachment(ByteBuffer buffer, int txVersion, int flags) throws NxtException {
+                return new CurrencyDeletion(buffer, txVersion);
+            }
         };
     }
 
@@ -1494,6 +2311,34 @@ public abstract class TransactionType {
             public String getDescription() {
                 return "Tagged data upload";
             }
+
+            /**
+             * Create an attachment from the JSON response
+             *
+             * @param       response                JSON response
+             * @return                              Attachment
+             * @throws      IdentifierException     Invalid object identifier
+             * @throws      NumberFormatException   Invalid numeric string
+             * @throws      NxtException            Invalid peer response
+             */
+            @Override
+            public Attachment loadAttachment(PeerResponse response) throws IdentifierException, NumberFormatException, NxtException {
+                return new TaggedDataUpload(response);
+            }
+
+            /**
+             * Create an attachment from the transaction bytes
+             *
+             * @param       buffer                  Little-endian buffer positioned at the attachment
+             * @param       txVersion               Transaction version
+             * @param       flags                   Transaction flags
+             * @return                              Attachment
+             * @throws      NxtException            Invalid attachment
+             */
+            @Override
+            public Attachment loadAttachment(ByteBuffer buffer, int txVersion, int flags) throws NxtException {
+                return new TaggedDataUpload(buffer, txVersion);
+            }
         };
 
         /**
@@ -1520,6 +2365,34 @@ public abstract class TransactionType {
             public String getDescription() {
                 return "Tagged data extend";
             }
+
+            /**
+             * Create an attachment from the JSON response
+             *
+             * @param       response                JSON response
+             * @return                              Attachment
+             * @throws      IdentifierException     Invalid object identifier
+             * @throws      NumberFormatException   Invalid numeric string
+             * @throws      NxtException            Invalid peer response
+             */
+            @Override
+            public Attachment loadAttachment(PeerResponse response) throws IdentifierException, NumberFormatException, NxtException {
+                return new TaggedDataExtend(response);
+            }
+
+            /**
+             * Create an attachment from the transaction bytes
+             *
+             * @param       buffer                  Little-endian buffer positioned at the attachment
+             * @param       txVersion               Transaction version
+             * @param       flags                   Transaction flags
+             * @return                              Attachment
+             * @throws      NxtException            Invalid attachment
+             */
+            @Override
+            public Attachment loadAttachment(ByteBuffer buffer, int txVersion, int flags) throws NxtException {
+                return new TaggedDataExtend(buffer, txVersion);
+            }
         };
     }
 }
@@ -0,0 +1,352 @@
+/*
+ * Copyright 2016 Ronald Hoffman.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.ScripterRon.NxtCore;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.List;
+
+/**
+ * TransactionTypeIndex maps a transaction type and a block time range to the
+ * transactions in a block store.
+ *
+ * Each transaction type has a posting list containing the location of each
+ * transaction of that type (the block height in the high-order 32 bits and the
+ * transaction offset in the block bytes in the low-order 32 bits).  The posting lists
+ * are delta-encoded and are in ascending location order.  The block timestamps are
+ * kept by height, so a time range is converted to a height range which is the same as
+ * a location range.  A query intersects the type postings with the location range using
+ * the posting list skip table.  The transactions are then read from the block store.
+ *
+ * The index is kept in memory and is built from the block store when it is created.
+ * The transaction types are read from the stored block bytes without creating block
+ * and transaction objects.  The index is updated as blocks are added to or removed from
+ * the block store when it is registered as a ChainSync listener.  update() adds the
+ * stored blocks which are not in the index and removes the indexed blocks which are no
+ * longer in the store.  It should be called if a listener error is logged.
+ */
+public class TransactionTypeIndex implements ChainSync.Listener {
+
+    /** Block store */
+    private final BlockStore store;
+
+    /** Posting lists indexed by transaction type and subtype (type*16+subtype) */
+    private final PostingList[] postings = new PostingList[256*16];
+
+    /** Block timestamp for each indexed block (seconds since the genesis block) */
+    private int[] timestamps = new int[1024];
+
+    /** Identifier for each indexed block */
+    private final LongList blockIds = new LongList();
+
+    /** Height of the first indexed block */
+    private int firstHeight;
+
+    /** Number of indexed transactions */
+    private long txCount;
+
+    /**
+     * Create the index for the stored blocks
+     *
+     * @param       store                   Block store
+     * @throws      IOException             Unable to read the block store
+     * @throws      NxtException            Stored block is not valid
+     */
+    public TransactionTypeIndex(BlockStore store) throws IOException, NxtException {
+        this.store = store;
+        update();
+    }
+
+    /**
+     * Update the index to match the block store
+     *
+     * @return                              Number of blocks added to the index
+     * @throws      IOException             Unable to read the block store
+     * @throws      NxtException            Stored block is not valid
+     */
+    public synchronized int update() throws IOException, NxtException {
+        //
+        // Remove indexed blocks which are no longer in the store
+        //
+        int height = getLastHeight();
+        while (height >= 0 && store.getBlockId(height) != blockIds.getLong(height-firstHeight))
+            height = (height > firstHeight ? height-1 : -1);
+        rollbackBlocks(height);
+        //
+        // Add stored blocks which are not in the index
+        //
+        int added = 0;
+        int nextHeight = (blockIds.isEmpty() ? store.getFirstHeight() : getLastHeight()+1);
+        if (nextHeight >= 0) {
+            for (int h=nextHeight; h<=store.getLastHeight(); h++) {
+                addBlock(h, store.getBlockBytes(h));
+                added++;
+            }
+        }
+        return added;
+    }
+
+    /**
+     * Add a block to the index (ChainSync.Listener interface)
+     *
+     * The block is ignored if it is not the successor of the last indexed block
+     *
+     * @param       block                   Block
+     */
+    @Override
+    public synchronized void blockAdded(Block block) {
+        int height = block.getHeight();
+        if (!blockIds.isEmpty() && height != getLastHeight()+1)
+            return;
+        try {
+            ByteBuffer buffer = store.getBlockBytes(height);
+            if (buffer != null && buffer.getLong(4) == block.getBlockId())
+                addBlock(height, buffer);
+        } catch (IOException | NxtException exc) {
+            Nxt.log.error(String.format("Unable to add block at height %d to the transaction type index",
+                                        height), exc);
+        }
+    }
+
+    /**
+     * Remove blocks from the index (ChainSync.Listener interface)
+     *
+     * @param       height                  Height of the last block that was kept
+     * @param       removedIds              Identifiers of the removed blocks
+     */
+    @Override
+    public synchronized void chainRolledBack(int height, LongList removedIds) {
+        rollbackBlocks(height);
+    }
+
+    /**
+     * Return the height of the last indexed block
+     *
+     * @return                              Block height or -1 if the index is empty
+     */
+    public synchronized int getLastHeight() {
+        return (blockIds.isEmpty() ? -1 : firstHeight+blockIds.size()-1);
+    }
+
+    /**
+     * Return the number of indexed transactions
+     *
+     * @return                              Number of transactions
+     */
+    public synchronized long getTransactionCount() {
+        return txCount;
+    }
+
+    /**
+     * Return the number of bytes used by the posting lists
+     *
+     * @return                              Number of bytes
+     */
+    public synchronized long getPostingSize() {
+        long size = 0;
+        for (PostingList posting : postings) {
+            if (posting != null)
+                size += posting.getEncodedSize();
+        }
+        return size;
+    }
+
+    /**
+     * Return the number of transactions of a type in a time range
+     *
+     * @param       txType                  Transaction type
+     * @param       fromTime                Start time in seconds since the epoch (January 1, 1970)
+     * @param       toTime                  End time in seconds since the epoch (January 1, 1970)
+     * @return                              Number of transactions
+     */
+    public synchronized int getTransactionCount(TransactionType txType, long fromTime, long toTime) {
+        PostingList posting = postings[getTypeIndex(txType)];
+        long[] range = getLocationRange(fromTime, toTime);
+        return (posting != null && range != null ? posting.count(range[0], range[1]) : 0);
+    }
+
+    /**
+     * Return the transactions of a type in a time range.  The transactions are read
+     * from the block store and are returned in ascending height order.
+     *
+     * @param       txType                  Transaction type
+     * @param       fromTime                Start time in seconds since the epoch (January 1, 1970)
+     * @param       toTime                  End time in seconds since the epoch (January 1, 1970)
+     * @return                              Transaction list
+     * @throws      IOException             Unable to read the block store
+     * @throws      NxtException            Stored block is not valid
+     */
+    public List<Transaction> getTransactions(TransactionType txType, long fromTime, long toTime)
+                                            throws IOException, NxtException {
+        return getTransactions(Arrays.asList(txType), fromTime, toTime);
+    }
+
+    /**
+     * Return the transactions of any of the supplied types in a time range.  The
+     * transactions are read from the block store and are returned in ascending
+     * height order.
+     *
+     * @param       txTypes                 Transaction types
+     * @param       fromTime                Start time in seconds since the epoch (January 1, 1970)
+     * @param       toTime                  End time in seconds since the epoch (January 1, 1970)
+     * @return                              Transaction list
+     * @throws      IOException             Unable to read the block store
+     * @throws      NxtException            Stored block is not valid
+     */
+    public synchronized List<Transaction> getTransactions(Collection<TransactionType> txTypes,
+                                            long fromTime, long toTime) throws IOException, NxtException {
+        long[] range = getLocationRange(fromTime, toTime);
+        if (range == null)
+            return new ArrayList<>(0);
+        //
+        // Intersect the posting list for each type with the location range
+        //
+        LongList locations = new LongList();
+        boolean[] seen = new boolean[postings.length];
+        for (TransactionType txType : txTypes) {
+            int typeIndex = getTypeIndex(txType);
+            if (!seen[typeIndex] && postings[typeIndex] != null)
+                postings[typeIndex].forEach(range[0], range[1], locations::addLong);
+            seen[typeIndex] = true;
+        }
+        long[] sorted = locations.toLongArray();
+        Arrays.sort(sorted);
+        //
+        // Read the transactions from the block store
+        //
+        List<Transaction> txList = new ArrayList<>(sorted.length);
+        ByteBuffer blockBytes = null;
+        int blockHeight = -1;
+        for (long location : sorted) {
+            int height = (int)(location>>>32);
+            if (height != blockHeight) {
+                blockBytes = store.getBlockBytes(height);
+                if (blockBytes == null)
+                    throw new NxtException(String.format("Block at height %d is not in the block store", height));
+                blockHeight = height;
+            }
+            txList.add(Block.parseTransaction(blockBytes, (int)location));
+        }
+        return txList;
+    }
+
+    /**
+     * Convert a time range to a location range
+     *
+     * @param       fromTime                Start time in seconds since the epoch
+     * @param       toTime                  End time in seconds since the epoch
+     * @return                              First and last location or null if there are no
+     *                                      blocks in the time range
+     */
+    private long[] getLocationRange(long fromTime, long toTime) {
+        int count = blockIds.size();
+        long from = Math.max(Math.min(fromTime - Nxt.GENESIS_TIMESTAMP, Integer.MAX_VALUE), Integer.MIN_VALUE);
+        long to = Math.max(Math.min(toTime - Nxt.GENESIS_TIMESTAMP, Integer.MAX_VALUE), Integer.MIN_VALUE);
+        int start = firstIndex(count, from);
+        int stop = (to == Integer.MAX_VALUE ? count : firstIndex(count, to+1));
+        if (start >= stop)
+            return null;
+        return new long[] {(long)(firstHeight+start)<<32, ((long)(firstHeight+stop)<<32) - 1};
+    }
+
+    /**
+     * Return the index of the first block with a timestamp that is not less than the
+     * target timestamp
+     *
+     * @param       count                   Number of blocks
+     * @param       timestamp               Target timestamp
+     * @return                              Block index
+     */
+    private int firstIndex(int count, long timestamp) {
+        int low = 0;
+        int high = count;
+        while (low < high) {
+            int mid = (low+high) >>> 1;
+            if (timestamps[mid] < timestamp)
+                low = mid+1;
+            else
+                high = mid;
+        }
+        return low;
+    }
+
+    /**
+     * Add a block to the index
+     *
+     * @param       height                  Block height
+     * @param       buffer                  Block bytes
+     * @throws      NxtException            Block bytes are not valid
+     */
+    private void addBlock(int height, ByteBuffer buffer) throws NxtException {
+        int[] offsets = Block.getTransactionOffsets(buffer);
+        if (blockIds.isEmpty())
+            firstHeight = height;
+        int index = blockIds.size();
+        if (index == timestamps.length)
+            timestamps = Arrays.copyOf(timestamps, index*2);
+        timestamps[index] = Block.getTimestamp(buffer);
+        blockIds.addLong(buffer.getLong(4));
+        for (int offset : offsets) {
+            //
+            // The transaction bytes start with the type and the version/subtype
+            //
+            int typeIndex = (buffer.get(offset+8)&0xff)*16 + (buffer.get(offset+9)&0x0f);
+            PostingList posting = postings[typeIndex];
+            if (posting == null) {
+                posting = new PostingList();
+                postings[typeIndex] = posting;
+            }
+            posting.add(((long)height<<32) | (offset&0xffffffffL));
+            txCount++;
+        }
+    }
+
+    /**
+     * Remove the indexed blocks following a block
+     *
+     * @param       height                  Height of the last block to keep
+     */
+    private void rollbackBlocks(int height) {
+        if (height >= getLastHeight())
+            return;
+        long maxLocation = ((long)(height+1)<<32) - 1;
+        for (int i=0; i<postings.length; i++) {
+            PostingList posting = postings[i];
+            if (posting != null) {
+                int count = posting.size();
+                posting.truncate(maxLocation);
+                txCount -= count - posting.size();
+                if (posting.isEmpty())
+                    postings[i] = null;
+            }
+        }
+        int keepCount = Math.max(height-firstHeight+1, 0);
+        blockIds.subList(keepCount, blockIds.size()).clear();
+    }
+
+    /**
+     * Return the posting list index for a transaction type
+     *
+     * @param       txType                  Transaction type
+     * @return                              Posting list index
+     */
+    private static int getTypeIndex(TransactionType txType) {
+        return (txType.getType()&0xff)*16 + (txType.getSubtype()&0x0f);
+    }
+}
@@ -20,7 +20,9 @@ import org.ScripterRon.JSON.JSONAware;
 import java.io.EOFException;
 import java.io.IOException;
 import java.io.InputStream;
-import java.math.BigInteger;
+import java.io.OutputStream;
+import java.nio.BufferOverflowException;
+import java.nio.ByteBuffer;
 import java.util.Arrays;
 import java.util.Iterator;
 import java.util.List;
@@ -34,6 +36,32 @@ public class Utils {
     /** Hex conversion alphabet */
     private static final char[] hexChars = { '0','1','2','3','4','5','6','7','8','9','a','b','c','d','e','f' };
 
+    /** Hex encoding table (two characters for each byte value) */
+    private static final char[] hexPairs = new char[256*2];
+
+    /** Hex decoding table (HEX_INVALID for characters that are not hex digits) */
+    private static final int[] hexValues = new int[128];
+
+    /** Hex decoding table entry for an invalid character */
+    private static final int HEX_INVALID = 0x100;
+    static {
+        for (int i=0; i<256; i++) {
+            hexPairs[i*2] = hexChars[i>>4];
+            hexPairs[i*2+1] = hexChars[i&0x0f];
+        }
+        Arrays.fill(hexValues, HEX_INVALID);
+        for (int i=0; i<16; i++) {
+            hexValues[hexChars[i]] = i;
+            hexValues[Character.toUpperCase(hexChars[i])] = i;
+        }
+    }
+
+    /** Reed-Solomon account identifier prefix */
+    private static final String RS_PREFIX = "NXT-";
+
+    /** Reed-Solomon account identifier cache (null if the cache is disabled) */
+    private static volatile RsIdEntry[] rsIdCache;
+
     /**
      * Get the account identifier associated with a public key
      *
@@ -52,7 +80,60 @@ public class Utils {
      * @return                              Reed-Solomon account identifier string
      */
     public static String getAccountRsId(long accountId) {
-        return "NXT-" + ReedSolomon.encode(accountId);
+        RsIdEntry[] cache = rsIdCache;
+        if (cache == null)
+            return encodeAccountRsId(accountId);
+        int index = (int)((accountId * 0x9E3779B97F4A7C15L) >>> 32) & (cache.length - 1);
+        RsIdEntry entry = cache[index];
+        if (entry != null && entry.accountId == accountId)
+            return entry.rsId;
+        String rsId = encodeAccountRsId(accountId);
+        cache[index] = new RsIdEntry(accountId, rsId);
+        return rsId;
+    }
+
+    /**
+     * Append the Reed-Solomon string for an account identifier to a string builder
+     *
+     * @param       accountId               Account identifier
+     * @param       builder                 String builder
+     * @return                              The string builder
+     */
+    public static StringBuilder getAccountRsId(long accountId, StringBuilder builder) {
+        return ReedSolomon.encode(accountId, builder.append(RS_PREFIX));
+    }
+
+    /**
+     * Set the size of the Reed-Solomon account identifier cache
+     *
+     * The cache is a fixed-size table indexed by the account identifier, so an entry
+     * is replaced when a different account hashes to the same slot.  This keeps the
+     * strings for frequently-used accounts available without any locking.  The cache
+     * is disabled by default.
+     *
+     * @param       size                    Number of cache entries (rounded up to a power of 2)
+     *                                      or 0 to disable the cache
+     */
+    public static void setAccountRsIdCacheSize(int size) {
+        if (size < 0 || size > (1<<24))
+            throw new IllegalArgumentException("Cache size must be between 0 and 16777216");
+        if (size == 0)
+            rsIdCache = null;
+        else
+            rsIdCache = new RsIdEntry[Integer.highestOneBit(size) << (Integer.bitCount(size) > 1 ? 1 : 0)];
+    }
+
+    /**
+     * Encode the Reed-Solomon account identifier string
+     *
+     * @param       accountId               Account identifier
+     * @return                              Reed-Solomon account identifier string
+     */
+    private static String encodeAccountRsId(long accountId) {
+        char[] chars = new char[RS_PREFIX.length()+ReedSolomon.ENCODED_LENGTH];
+        RS_PREFIX.getChars(0, RS_PREFIX.length(), chars, 0);
+        ReedSolomon.encode(accountId, chars, RS_PREFIX.length());
+        return new String(chars);
     }
 
     /**
@@ -63,9 +144,9 @@ public class Utils {
      * @throws      IdentifierException     Invalid account identifier string
      */
     public static long parseAccountRsId(String accountRsId) throws IdentifierException {
-        if (!accountRsId.startsWith("NXT-"))
+        if (!accountRsId.startsWith(RS_PREFIX))
             throw new IdentifierException("Invalid Reed-Solomon Nxt account identifier");
-        return ReedSolomon.decode(accountRsId.substring(4));
+        return ReedSolomon.decode(accountRsId, RS_PREFIX.length(), accountRsId.length());
     }
 
     /**
@@ -77,10 +158,9 @@ public class Utils {
     public static long fullHashToId(byte[] hash) {
         if (hash == null || hash.length < 8)
             throw new IllegalArgumentException("Invalid hash: " + Arrays.toString(hash));
-        BigInteger bigInteger = new BigInteger(1, new byte[] {hash[7], hash[6], hash[5],
-                                                              hash[4], hash[3], hash[2],
-                                                              hash[1], hash[0]});
-        return bigInteger.longValue();
+        return ((long)hash[0]&0xff) | (((long)hash[1]&0xff)<<8) | (((long)hash[2]&0xff)<<16) |
+                (((long)hash[3]&0xff)<<24) | (((long)hash[4]&0xff)<<32) | (((long)hash[5]&0xff)<<40) |
+                (((long)hash[6]&0xff)<<48) | (((long)hash[7]&0xff)<<56);
     }
 
     /**
@@ -118,24 +198,83 @@ public class Utils {
      * @throws      NumberFormatException   String contains an invalid hex character
      */
     public static byte[] parseHexString(String hex) throws NumberFormatException {
-        try {
-            if ((hex.length()&0x01) == 1)
+        if ((hex.length()&0x01) == 1)
+            throw new NumberFormatException("Hex string length is not a multiple of 2");
+        byte[] bytes = new byte[hex.length()/2];
+        parseHexString(hex, bytes, 0);
+        return bytes;
+    }
+
+    /**
+     * Parse a hex string and store the decoded bytes in the supplied array.  The contents of
+     * the array are undefined if the string is not valid.
+     *
+     * @param       hex                     String to parse
+     * @param       bytes                   Output array
+     * @param       offset                  Starting array offset
+     * @return                              Number of bytes decoded
+     * @throws      NumberFormatException   String contains an invalid hex character
+     */
+    public static int parseHexString(CharSequence hex, byte[] bytes, int offset) throws NumberFormatException {
+        int length = hex.length();
+        if ((length&0x01) == 1)
+            throw new NumberFormatException("Hex string length is not a multiple of 2");
+        int count = length/2;
+        if (offset < 0 || count > bytes.length-offset)
+            throw new IndexOutOfBoundsException("Output array is too small");
+        //
+        // Invalid characters are accumulated in 'check' so there is just one test
+        // at the end instead of a test for each character
+        //
+        int check = 0;
+        for (int i=0, j=offset; i<length; i+=2, j++) {
+            int c1 = hex.charAt(i);
+            int c2 = hex.charAt(i+1);
+            int v1 = hexValues[c1&0x7f];
+            int v2 = hexValues[c2&0x7f];
+            check |= ((c1|c2)&0xff80) | v1 | v2;
+            bytes[j] = (byte)((v1<<4) | v2);
+        }
+        if ((check&~0x0f) != 0)
+            throw new NumberFormatException("Invalid hex string");
+        return count;
+    }
+
+    /**
+     * Parse a hex string and put the decoded bytes into the supplied buffer.  The buffer
+     * position is advanced by the number of bytes decoded.
+     *
+     * @param       hex                     String to parse
+     * @param       buffer                  Output buffer
+     * @return                              Number of bytes decoded
+     * @throws      NumberFormatException   String contains an invalid hex character
+     */
+    public static int parseHexString(CharSequence hex, ByteBuffer buffer) throws NumberFormatException {
+        int count;
+        if (buffer.hasArray()) {
+            int position = buffer.position();
+            if (hex.length()/2 > buffer.remaining())
+                throw new BufferOverflowException();
+            count = parseHexString(hex, buffer.array(), buffer.arrayOffset()+position);
+            buffer.position(position+count);
+        } else {
+            int length = hex.length();
+            if ((length&0x01) == 1)
                 throw new NumberFormatException("Hex string length is not a multiple of 2");
-            byte[] bytes = new byte[hex.length() / 2];
-            for (int i = 0; i < bytes.length; i++) {
-                int char1 = hex.charAt(i * 2);
-                char1 = char1 > 0x60 ? char1 - 0x57 : char1 - 0x30;
-                int char2 = hex.charAt(i * 2 + 1);
-                char2 = char2 > 0x60 ? char2 - 0x57 : char2 - 0x30;
-                if (char1 < 0 || char2 < 0 || char1 > 15 || char2 > 15)
-                    throw new NumberFormatException("Invalid hex number: " + hex);
-                bytes[i] = (byte)((char1 << 4) + char2);
+            count = length/2;
+            int check = 0;
+            for (int i=0; i<length; i+=2) {
+                int c1 = hex.charAt(i);
+                int c2 = hex.charAt(i+1);
+                int v1 = hexValues[c1&0x7f];
+                int v2 = hexValues[c2&0x7f];
+                check |= ((c1|c2)&0xff80) | v1 | v2;
+                buffer.put((byte)((v1<<4) | v2));
             }
-            return bytes;
-        } catch (Exception exc) {
-            Nxt.log.debug("Invalid hex string: '" + hex + "'");
-            throw exc;
+            if ((check&~0x0f) != 0)
+                throw new NumberFormatException("Invalid hex string");
         }
+        return count;
     }
 
     /**
@@ -145,12 +284,97 @@ public class Utils {
      * @return                              Hex string
      */
     public static String toHexString(byte[] bytes) {
-        char[] chars = new char[bytes.length * 2];
-        for (int i = 0; i < bytes.length; i++) {
-            chars[i * 2] = hexChars[((bytes[i] >> 4) & 0xF)];
-            chars[i * 2 + 1] = hexChars[(bytes[i] & 0xF)];
+        return toHexString(bytes, 0, bytes.length);
+    }
+
+    /**
+     * Convert part of a byte array to a hex string
+     *
+     * @param       bytes                   Bytes to encode
+     * @param       offset                  Starting array offset
+     * @param       length                  Number of bytes to encode
+     * @return                              Hex string
+     */
+    public static String toHexString(byte[] bytes, int offset, int length) {
+        char[] chars = new char[length*2];
+        for (int i=0, j=offset; i<chars.length; i+=2, j++) {
+            int index = (bytes[j]&0xff)<<1;
+            chars[i] = hexPairs[index];
+            chars[i+1] = hexPairs[index+1];
+        }
+        return new String(chars);
+    }
+
+    /**
+     * Convert the remaining bytes in a buffer to a hex string.  The buffer position
+     * is advanced to the buffer limit.
+     *
+     * @param       buffer                  Buffer to encode
+     * @return                              Hex string
+     */
+    public static String toHexString(ByteBuffer buffer) {
+        int length = buffer.remaining();
+        String hex;
+        if (buffer.hasArray()) {
+            hex = toHexString(buffer.array(), buffer.arrayOffset()+buffer.position(), length);
+            buffer.position(buffer.limit());
+        } else {
+            char[] chars = new char[length*2];
+            for (int i=0; i<chars.length; i+=2) {
+                int index = (buffer.get()&0xff)<<1;
+                chars[i] = hexPairs[index];
+                chars[i+1] = hexPairs[index+1];
+            }
+            hex = new String(chars);
+        }
+        return hex;
+    }
+
+    /**
+     * Write the hex encoding of the remaining bytes in a buffer to an output stream as
+     * ASCII characters.  The buffer position is advanced to the buffer limit.
+     *
+     * @param       buffer                  Buffer to encode
+     * @param       out                     Output stream
+     * @throws      IOException             Unable to write to the output stream
+     */
+    public static void toHexString(ByteBuffer buffer, OutputStream out) throws IOException {
+        byte[] chunk = new byte[Math.min(buffer.remaining(), 1024)*2];
+        while (buffer.hasRemaining()) {
+            int count = Math.min(buffer.remaining(), chunk.length/2)*2;
+            for (int i=0; i<count; i+=2) {
+                int index = (buffer.get()&0xff)<<1;
+                chunk[i] = (byte)hexPairs[index];
+                chunk[i+1] = (byte)hexPairs[index+1];
+            }
+            out.write(chunk, 0, count);
+        }
+    }
+
+    /**
+     * Append the hex encoding of part of a byte array.  No intermediate string is
+     * created.
+     *
+     * @param       bytes                   Bytes to encode
+     * @param       offset                  Starting array offset
+     * @param       length                  Number of bytes to encode
+     * @param       out                     Output destination
+     * @throws      IOException             Unable to append to the output destination
+     */
+    public static void toHexString(byte[] bytes, int offset, int length, Appendable out) throws IOException {
+        if (out instanceof StringBuilder) {
+            StringBuilder sb = (StringBuilder)out;
+            sb.ensureCapacity(sb.length()+length*2);
+            for (int i=offset; i<offset+length; i++) {
+                int index = (bytes[i]&0xff)<<1;
+                sb.append(hexPairs[index]).append(hexPairs[index+1]);
+            }
+        } else {
+            for (int i=offset; i<offset+length; i++) {
+                int index = (bytes[i]&0xff)<<1;
+                out.append(hexPairs[index]).append(hexPairs[index+1]);
+            }
         }
-        return String.valueOf(chars);
     }
 
     /**
@@ -341,4 +565,27 @@ public class Utils {
             builder.append(indent).append("}\n");
         }
     }
+
+    /**
+     * Reed-Solomon account identifier cache entry
+     */
+    private static final class RsIdEntry {
+
+        /** Account identifier */
+        private final long accountId;
+
+        /** Reed-Solomon identifier string */
+        private final String rsId;
+
+        /**
+         * Create a cache entry
+         *
+         * @param       accountId           Account identifier
+         * @param       rsId                Reed-Solomon identifier string
+         */
+        private RsIdEntry(long accountId, String rsId) {
+            this.accountId = accountId;
+            this.rsId = rsId;
+        }
+    }
 }
@@ -0,0 +1,133 @@
+/*
+ * Copyright 2016 Ronald Hoffman.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.ScripterRon.NxtCore;
+
+import java.nio.ByteBuffer;
+import java.util.List;
+
+/**
+ * Attachment for TransactionType.Messaging.VOTE_CASTING
+ */
+public class VoteCasting extends BinaryAttachment {
+
+    /** Version */
+    private final int version;
+
+    /** Poll identifier */
+    private final long pollId;
+
+    /** Poll votes (-128 indicates no vote for an option) */
+    private final byte[] votes;
+
+    /**
+     * Create a Vote Casting attachment
+     *
+     * @param       pollId                  Poll identifier
+     * @param       votes                   Vote for each poll option (-128 for no vote)
+     */
+    public VoteCasting(long pollId, byte[] votes) {
+        if (votes == null)
+            throw new IllegalArgumentException("Required parameter not specified");
+        if (votes.length > 100)
+            throw new IllegalArgumentException("Maximum number of votes is 100");
+        this.version = 1;
+        this.pollId = pollId;
+        this.votes = votes.clone();
+    }
+
+    /**
+     * Create a Vote Casting attachment from the JSON response
+     *
+     * @param       response                JSON response
+     * @throws      IdentifierException     Invalid object identifier
+     */
+    public VoteCasting(PeerResponse response) throws IdentifierException {
+        this.version = response.getByte("version.VoteCasting");
+        this.pollId = response.getId("poll");
+        List<Long> voteList = response.getLongList("vote");
+        this.votes = new byte[voteList.size()];
+        for (int i=0; i<votes.length; i++)
+            votes[i] = voteList.get(i).byteValue();
+    }
+
+    /**
+     * Create a Vote Casting attachment from the transaction bytes
+     *
+     * @param       buffer                  Little-endian buffer positioned at the attachment
+     * @param       txVersion               Transaction version
+     * @throws      NxtException            Invalid attachment
+     */
+    public VoteCasting(ByteBuffer buffer, int txVersion) throws NxtException {
+        this.version = (txVersion>0 ? buffer.get() : 0);
+        this.pollId = buffer.getLong();
+        int count = buffer.get()&0xff;
+        if (count > 100)
+            throw new NxtException("Vote count " + count + " is not valid");
+        this.votes = new byte[count];
+        buffer.get(votes);
+    }
+
+    /**
+     * Return the size of the attachment byte stream
+     *
+     * @return                              Number of bytes
+     */
+    @Override
+    public int getSize() {
+        return (version>0?1:0)+8+1+votes.length;
+    }
+
+    /**
+     * Write the attachment byte stream to a little-endian buffer
+     *
+     * @param       buffer                  Output buffer
+     */
+    @Override
+    public void writeTo(ByteBuffer buffer) {
+        if (version > 0)
+            buffer.put((byte)version);
+        buffer.putLong(pollId);
+        buffer.put((byte)votes.length);
+        buffer.put(votes);
+    }
+
+    /**
+     * Return the attachment version
+     *
+     * @return                              Version
+     */
+    public int getVersion() {
+        return version;
+    }
+
+    /**
+     * Return the poll identifier
+     *
+     * @return                              Poll identifier
+     */
+    public long getPollId() {
+        return pollId;
+    }
+
+    /**
+     * Return the poll votes
+     *
+     * @return                              Vote for each poll option (-128 for no vote)
+     */
+    public byte[] getVotes() {
+        return votes;
+    }
+}
@@ -0,0 +1,330 @@
+/*
+ * Copyright 2016 Ronald Hoffman.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.ScripterRon.NxtCore;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Watchlist is a set of watched accounts used to find the transactions which
+ * pay one of the accounts.
+ *
+ * The account identifiers are kept in an open-addressing hash table of primitive
+ * long values.  A blocked Bloom filter is checked before the hash table.  All of the
+ * filter bits for an account are in the same 64-bit word, so an account which is not
+ * watched is usually rejected with a single memory access to a table which is much
+ * smaller than the hash table.
+ *
+ * Accounts can be added while other threads are matching transactions.  Adding an
+ * account locks out other threads adding accounts, but the match methods do not use a
+ * lock.  The tables are replaced with larger tables as accounts are added and a match
+ * in progress continues to use the previous tables.  Accounts cannot be removed from
+ * the watchlist.
+ */
+public class Watchlist {
+
+    /** Minimum hash table capacity */
+    private static final int MIN_CAPACITY = 1024;
+
+    /** Number of filter bits for each hash table slot */
+    private static final int FILTER_BITS_PER_SLOT = 4;
+
+    /** Current tables */
+    private volatile Tables tables;
+
+    /** Number of watched accounts */
+    private volatile int count;
+
+    /**
+     * Create an empty watchlist
+     */
+    public Watchlist() {
+        this(0);
+    }
+
+    /**
+     * Create an empty watchlist
+     *
+     * @param       expectedSize            Expected number of watched accounts
+     */
+    public Watchlist(int expectedSize) {
+        tables = new Tables(getCapacity(expectedSize));
+    }
+
+    /**
+     * Return the number of watched accounts
+     *
+     * @return                              Number of accounts
+     */
+    public int size() {
+        return count;
+    }
+
+    /**
+     * Add an account to the watchlist
+     *
+     * @param       accountId               Account identifier
+     * @return                              TRUE if the account was added or FALSE if the
+     *                                      account is already in the watchlist
+     * @throws      IllegalArgumentException    Account identifier is 0
+     */
+    public synchronized boolean add(long accountId) {
+        if (accountId == 0)
+            throw new IllegalArgumentException("Account identifier must not be 0");
+        if (tables.contains(accountId))
+            return false;
+        if ((count+1)*2 > tables.capacity)
+            tables = new Tables(tables, getCapacity(count+1));
+        tables.add(accountId);
+        count++;
+        return true;
+    }
+
+    /**
+     * Add accounts to the watchlist
+     *
+     * @param       accountIds              Account identifiers
+     * @return                              Number of accounts added
+     * @throws      IllegalArgumentException    Account identifier is 0
+     */
+    public synchronized int addAll(long[] accountIds) {
+        if ((count+accountIds.length)*2L > tables.capacity)
+            tables = new Tables(tables, getCapacity(count+accountIds.length));
+        int added = 0;
+        for (long accountId : accountIds) {
+            if (add(accountId))
+                added++;
+        }
+        return added;
+    }
+
+    /**
+     * Check if an account is watched
+     *
+     * @param       accountId               Account identifier
+     * @return                              TRUE if the account is watched
+     */
+    public boolean contains(long accountId) {
+        Tables t = tables;
+        return (t.mayContain(accountId) && t.contains(accountId));
+    }
+
+    /**
+     * Return the block transactions which pay a watched account
+     *
+     * @param       block                   Block
+     * @return                              Matching transactions
+     */
+    public List<Transaction> match(Block block) {
+        return match(block.getTransactions());
+    }
+
+    /**
+     * Return the transactions which pay a watched account.  This can be used for
+     * block transactions and for unconfirmed transactions.
+     *
+     * @param       txList                  Transactions
+     * @return                              Matching transactions
+     */
+    public List<Transaction> match(List<Transaction> txList) {
+        Tables t = tables;
+        List<Transaction> matches = new ArrayList<>();
+        for (Transaction tx : txList) {
+            long recipientId = tx.getRecipientId();
+            if (recipientId != 0 && t.mayContain(recipientId) && t.contains(recipientId))
+                matches.add(tx);
+        }
+        return matches;
+    }
+
+    /**
+     * Return the batch transactions which pay a watched account.  The recipient
+     * column is checked and Transaction objects are created just for the matching
+     * transactions.
+     *
+     * @param       batch                   Transaction batch
+     * @return                              Matching transactions
+     * @throws      NxtException            Transaction bytes are not valid
+     */
+    public List<Transaction> match(TransactionBatch batch) throws NxtException {
+        Tables t = tables;
+        List<Transaction> matches = new ArrayList<>();
+        for (int i=0; i<batch.size(); i++) {
+            long recipientId = batch.getRecipientId(i);
+            if (recipientId != 0 && t.mayContain(recipientId) && t.contains(recipientId))
+                matches.add(batch.getTransaction(i));
+        }
+        return matches;
+    }
+
+    /**
+     * Return the transactions in a block batch which pay a watched account
+     *
+     * @param       batch                   Block batch
+     * @return                              Matching transactions
+     * @throws      NxtException            Transaction bytes are not valid
+     */
+    public List<Transaction> match(BlockBatch batch) throws NxtException {
+        return match(batch.getTransactions());
+    }
+
+    /**
+     * Return the hash table capacity for a number of accounts
+     *
+     * @param       size                    Number of accounts
+     * @return                              Table capacity (power of 2)
+     */
+    private static int getCapacity(int size) {
+        int capacity = MIN_CAPACITY;
+        while (capacity < size*2L)
+            capacity <<= 1;
+        return capacity;
+    }
+
+    /**
+     * The hash table and the Bloom filter.  The table arrays are accessed using
+     * volatile reads and writes, so an account added by one thread is seen by
+     * other threads without locking.
+     */
+    private static class Tables {
+
+        /** Hash table capacity */
+        private final int capacity;
+
+        /** Hash table mask */
+        private final int mask;
+
+        /** Hash table slots (0 indicates an empty slot) */
+        private final AtomicLongArray keys;
+
+        /** Bloom filter words */
+        private final AtomicLongArray filter;
+
+        /** Bloom filter word mask */
+        private final int filterMask;
+
+        /**
+         * Create empty tables
+         *
+         * @param       capacity                Hash table capacity (power of 2)
+         */
+        private Tables(int capacity) {
+            this.capacity = capacity;
+            mask = capacity - 1;
+            keys = new AtomicLongArray(capacity);
+            int filterWords = capacity*FILTER_BITS_PER_SLOT/64;
+            filter = new AtomicLongArray(filterWords);
+            filterMask = filterWords - 1;
+        }
+
+        /**
+         * Create larger tables containing the accounts in the current tables
+         *
+         * @param       tables                  Current tables
+         * @param       capacity                Hash table capacity (power of 2)
+         */
+        private Tables(Tables tables, int capacity) {
+            this(Math.max(capacity, tables.capacity));
+            for (int i=0; i<tables.capacity; i++) {
+                long key = tables.keys.get(i);
+                if (key != 0)
+                    add(key);
+            }
+        }
+
+        /**
+         * Add an account.  The caller must hold the watchlist lock.
+         *
+         * @param       key                     Account identifier
+         */
+        private void add(long key) {
+            int index = hash(key);
+            while (keys.get(index) != 0)
+                index = (index+1) & mask;
+            keys.set(index, key);
+            long h = mix(key);
+            int word = (int)(h >>> 32) & filterMask;
+            filter.set(word, filter.get(word) | filterBits(h));
+        }
+
+        /**
+         * Check the Bloom filter for an account
+         *
+         * @param       key                     Account identifier
+         * @return                              FALSE if the account is not in the table
+         */
+        private boolean mayContain(long key) {
+            long h = mix(key);
+            long bits = filterBits(h);
+            return ((filter.get((int)(h >>> 32) & filterMask) & bits) == bits);
+        }
+
+        /**
+         * Check the hash table for an account
+         *
+         * @param       key                     Account identifier
+         * @return                              TRUE if the account is in the table
+         */
+        private boolean contains(long key) {
+            int index = hash(key);
+            while (true) {
+                long slot = keys.get(index);
+                if (slot == key)
+                    return true;
+                if (slot == 0)
+                    return false;
+                index = (index+1) & mask;
+            }
+        }
+
+        /**
+         * Return the home slot for an account
+         *
+         * @param       key                     Account identifier
+         * @return                              Table index
+         */
+        private int hash(long key) {
+            long h = key * 0x9E3779B97F4A7C15L;
+            return (int)(h ^ (h >>> 32)) & mask;
+        }
+
+        /**
+         * Return the filter bits for an account (3 bits selected by the low-order 18 bits
+         * of the hash)
+         *
+         * @param       h                       Account hash
+         * @return                              Filter bits
+         */
+        private static long filterBits(long h) {
+            return (1L << (h & 63)) | (1L << ((h >>> 6) & 63)) | (1L << ((h >>> 12) & 63));
+        }
+
+        /**
+         * Return the filter hash for an account
+         *
+         * @param       key                     Account identifier
+         * @return                              Hash
+         */
+        private static long mix(long key) {
+            long h = key ^ (key >>> 33);
+            h *= 0xFF51AFD7ED558CCDL;
+            h ^= h >>> 33;
+            h *= 0xC4CEB9FE1A85EC53L;
+            return h ^ (h >>> 33);
+        }
+    }
+}
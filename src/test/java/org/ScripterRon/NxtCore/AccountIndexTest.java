@@ -0,0 +1,281 @@
+/*
+ * Copyright 2016 Ronald Hoffman.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.ScripterRon.NxtCore;
+
+import java.io.File;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import static org.junit.Assert.*;
+
+/**
+ * Check that the account index is rebuilt from the block store when index records
+ * are incomplete or damaged
+ */
+public class AccountIndexTest {
+
+    /** Height of the first stored block */
+    private static final int FIRST_HEIGHT = 1000;
+
+    /** Number of stored blocks */
+    private static final int BLOCK_COUNT = 20;
+
+    /** Number of accounts */
+    private static final int ACCOUNT_COUNT = 6;
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    /** Random number generator with a fixed seed so failures can be repeated */
+    private final Random random = new Random(20161019L);
+
+    /** Account public keys */
+    private final byte[][] publicKeys = new byte[ACCOUNT_COUNT][];
+
+    /** Account identifiers */
+    private final long[] accountIds = new long[ACCOUNT_COUNT];
+
+    /** Stored blocks */
+    private final List<Block> blocks = new ArrayList<>();
+
+    /** Block store */
+    private BlockStore store;
+
+    /** Index directory */
+    private File indexDirectory;
+
+    @Before
+    public void setup() throws Exception {
+        for (int i=0; i<ACCOUNT_COUNT; i++) {
+            publicKeys[i] = randomBytes(32);
+            accountIds[i] = Utils.getAccountId(publicKeys[i]);
+        }
+        store = new BlockStore(folder.newFolder("blocks"), 1024*1024);
+        long previousBlockId = random.nextLong();
+        for (int i=0; i<BLOCK_COUNT; i++) {
+            Block block = createBlock(FIRST_HEIGHT+i, previousBlockId);
+            store.append(block);
+            blocks.add(block);
+            previousBlockId = block.getBlockId();
+        }
+        indexDirectory = folder.newFolder("index");
+    }
+
+    @After
+    public void cleanup() throws Exception {
+        store.close();
+    }
+
+    @Test
+    public void indexIsReloaded() throws Exception {
+        AccountIndex index = new AccountIndex(indexDirectory, store);
+        checkIndex(index);
+        index.close();
+        byte[] indexBytes = readIndex();
+        index = new AccountIndex(indexDirectory, store);
+        try {
+            checkIndex(index);
+        } finally {
+            index.close();
+        }
+        assertArrayEquals(indexBytes, readIndex());
+    }
+
+    @Test
+    public void truncatedRecordIsRebuilt() throws Exception {
+        new AccountIndex(indexDirectory, store).close();
+        byte[] indexBytes = readIndex();
+        //
+        // Cut the index file inside the last record, inside the CRC of the last record,
+        // inside the header of a record and at the end of the file header
+        //
+        for (int length : new int[] {indexBytes.length-20, indexBytes.length-1, indexBytes.length/2, 8}) {
+            byte[] truncated = new byte[length];
+            System.arraycopy(indexBytes, 0, truncated, 0, length);
+            writeIndex(truncated);
+            AccountIndex index = new AccountIndex(indexDirectory, store);
+            try {
+                checkIndex(index);
+            } finally {
+                index.close();
+            }
+            assertArrayEquals(indexBytes, readIndex());
+        }
+    }
+
+    @Test
+    public void corruptedRecordIsRebuilt() throws Exception {
+        new AccountIndex(indexDirectory, store).close();
+        byte[] indexBytes = readIndex();
+        for (int position : new int[] {indexBytes.length-3, indexBytes.length/2, 8+4}) {
+            byte[] corrupted = indexBytes.clone();
+            corrupted[position] ^= 0x10;
+            writeIndex(corrupted);
+            AccountIndex index = new AccountIndex(indexDirectory, store);
+            try {
+                checkIndex(index);
+            } finally {
+                index.close();
+            }
+            assertArrayEquals(indexBytes, readIndex());
+        }
+    }
+
+    /**
+     * Compare the indexed transactions for each account with the stored blocks
+     *
+     * @param       index                   Account index
+     * @throws      Exception               Unable to read the index
+     */
+    private void checkIndex(AccountIndex index) throws Exception {
+        assertEquals(FIRST_HEIGHT+BLOCK_COUNT-1, index.getLastHeight());
+        long entryCount = 0;
+        for (long accountId : accountIds) {
+            List<Long> expected = new ArrayList<>();
+            for (Block block : blocks) {
+                for (Transaction tx : block.getTransactions()) {
+                    if (tx.getSenderId() == accountId || tx.getRecipientId() == accountId)
+                        expected.add(tx.getTransactionId());
+                }
+            }
+            List<Long> found = new ArrayList<>();
+            for (Transaction tx : index.getTransactions(accountId, FIRST_HEIGHT, FIRST_HEIGHT+BLOCK_COUNT-1))
+                found.add(tx.getTransactionId());
+            assertEquals(expected, found);
+            assertEquals(expected.size(), index.getTransactionCount(accountId, 0, Integer.MAX_VALUE));
+            entryCount += expected.size();
+        }
+        assertEquals(entryCount, index.getEntryCount());
+    }
+
+    /**
+     * Return the index file contents
+     *
+     * @return                              Index file bytes
+     * @throws      Exception               Unable to read the index file
+     */
+    private byte[] readIndex() throws Exception {
+        return Files.readAllBytes(getIndexPath());
+    }
+
+    /**
+     * Replace the index file contents
+     *
+     * @param       bytes                   Index file bytes
+     * @throws      Exception               Unable to write the index file
+     */
+    private void writeIndex(byte[] bytes) throws Exception {
+        Files.write(getIndexPath(), bytes);
+    }
+
+    /**
+     * Return the index file path
+     *
+     * @return                              Index file path
+     */
+    private Path getIndexPath() {
+        return new File(indexDirectory, "accounts.idx").toPath();
+    }
+
+    /**
+     * Create a block with payments between the test accounts
+     *
+     * @param       height                  Block height
+     * @param       previousBlockId         Previous block identifier
+     * @return                              Block
+     * @throws      Exception               Unable to create the block
+     */
+    private Block createBlock(int height, long previousBlockId) throws Exception {
+        List<Map<String, Object>> txList = new ArrayList<>();
+        int count = random.nextInt(4);
+        for (int i=0; i<count; i++) {
+            Map<String, Object> tx = createTransaction(random.nextInt(ACCOUNT_COUNT),
+                                                       random.nextInt(ACCOUNT_COUNT));
+            tx.put("transactionIndex", (long)i);
+            txList.add(tx);
+        }
+        Map<String, Object> map = new HashMap<>();
+        map.put("version", 3L);
+        map.put("block", Utils.idToString(random.nextLong()));
+        map.put("previousBlock", Utils.idToString(previousBlockId));
+        map.put("totalAmountNQT", "0");
+        map.put("totalFeeNQT", "0");
+        map.put("timestamp", 90000000L+height*60L);
+        map.put("generator", Utils.idToString(random.nextLong()));
+        map.put("generatorPublicKey", Utils.toHexString(randomBytes(32)));
+        map.put("generationSignature", Utils.toHexString(randomBytes(32)));
+        map.put("blockSignature", Utils.toHexString(randomBytes(64)));
+        map.put("payloadLength", 0L);
+        map.put("payloadHash", Utils.toHexString(randomBytes(32)));
+        map.put("height", (long)height);
+        map.put("baseTarget", "153722867");
+        map.put("numberOfTransactions", (long)count);
+        map.put("transactions", txList);
+        return new Block(new PeerResponse(map));
+    }
+
+    /**
+     * Create a version 1 payment transaction
+     *
+     * @param       sender                  Sender account index
+     * @param       recipient               Recipient account index
+     * @return                              Transaction JSON object
+     */
+    private Map<String, Object> createTransaction(int sender, int recipient) {
+        byte[] fullHash = randomBytes(32);
+        Map<String, Object> map = new HashMap<>();
+        map.put("type", 0L);
+        map.put("subtype", 0L);
+        map.put("version", 1L);
+        map.put("transaction", Utils.idToString(Utils.fullHashToId(fullHash)));
+        map.put("fullHash", Utils.toHexString(fullHash));
+        map.put("senderPublicKey", Utils.toHexString(publicKeys[sender]));
+        map.put("sender", Utils.idToString(accountIds[sender]));
+        map.put("recipient", Utils.idToString(accountIds[recipient]));
+        map.put("amountNQT", "100000000");
+        map.put("feeNQT", "100000000");
+        map.put("timestamp", 90000000L);
+        map.put("deadline", 1440L);
+        map.put("signature", Utils.toHexString(randomBytes(64)));
+        map.put("ecBlockHeight", 1000000L);
+        map.put("ecBlockId", Utils.idToString(random.nextLong()));
+        map.put("attachment", new HashMap<String, Object>());
+        return map;
+    }
+
+    /**
+     * Return random bytes
+     *
+     * @param       length                  Number of bytes
+     * @return                              Random bytes
+     */
+    private byte[] randomBytes(int length) {
+        byte[] bytes = new byte[length];
+        random.nextBytes(bytes);
+        return bytes;
+    }
+}
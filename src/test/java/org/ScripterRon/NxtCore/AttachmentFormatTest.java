@@ -0,0 +1,180 @@
+/*
+ * Copyright 2014 Ronald Hoffman.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.ScripterRon.NxtCore;
+
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.util.Arrays;
+
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+/**
+ * Check the binary form of the transaction attachments.  Each attachment is written,
+ * parsed by its transaction type and written again, and the attachment size is compared
+ * with the size of the NRS byte layout.
+ */
+public class AttachmentFormatTest {
+
+    @Test
+    public void currencyIssuanceMatchesNrsLayout() throws Exception {
+        CurrencyIssuance issuance = new CurrencyIssuance("Coin", "COINS", "Test currency", 5,
+                1000000L, 2000000L, 3000000L, 1234567, 100L, 1, 20, 2, 3, 4);
+        //
+        // Name, code and description are followed by a one-byte type, the supply values,
+        // the issuance height, the reserve and five one-byte values
+        //
+        ByteBuffer expected = ByteBuffer.allocate(1+1+4+1+5+2+13+42).order(ByteOrder.LITTLE_ENDIAN);
+        expected.put((byte)1);
+        expected.put((byte)4).put("Coin".getBytes("UTF-8"));
+        expected.put((byte)5).put("COINS".getBytes("UTF-8"));
+        expected.putShort((short)13).put("Test currency".getBytes("UTF-8"));
+        expected.put((byte)5);
+        expected.putLong(1000000L).putLong(2000000L).putLong(3000000L);
+        expected.putInt(1234567);
+        expected.putLong(100L);
+        expected.put((byte)1).put((byte)20).put((byte)2).put((byte)3).put((byte)4);
+        assertFalse(expected.hasRemaining());
+        assertArrayEquals(expected.array(), issuance.getBytes());
+        CurrencyIssuance parsed = (CurrencyIssuance)roundTrip(TransactionType.MonetarySystem.CURRENCY_ISSUANCE,
+                                                              issuance, expected.capacity());
+        assertEquals("Coin", parsed.getName());
+        assertEquals("COINS", parsed.getCode());
+        assertEquals("Test currency", parsed.getDescription());
+        assertEquals(5, parsed.getType());
+        assertEquals(1000000L, parsed.getInitialSupply());
+        assertEquals(2000000L, parsed.getReserveSupply());
+        assertEquals(3000000L, parsed.getMaxSupply());
+        assertEquals(1234567, parsed.getIssuanceHeight());
+        assertEquals(100L, parsed.getMinReservePerUnit());
+        assertEquals(1, parsed.getMinDifficulty());
+        assertEquals(20, parsed.getMaxDifficulty());
+        assertEquals(2, parsed.getRuleset());
+        assertEquals(3, parsed.getAlgorithm());
+        assertEquals(4, parsed.getDecimals());
+    }
+
+    @Test
+    public void messagingAttachments() throws Exception {
+        roundTrip(TransactionType.Messaging.ALIAS_DELETE, new AliasDelete("alias"), 1+1+5);
+        PollCreation poll = (PollCreation)roundTrip(TransactionType.Messaging.POLL_CREATION,
+                new PollCreation("Poll", "Which one", Arrays.asList("a", "bb", "ccc"), 1300000,
+                                 1, 1, 2, 0, 1, 1000L, 1, 0x1234L),
+                1+2+4+2+9+1+(2+1)+(2+2)+(2+3)+4+1+1+1+1+1+8+1+8);
+        assertEquals(Arrays.asList("a", "bb", "ccc"), poll.getOptions());
+        assertEquals(1300000, poll.getFinishHeight());
+        assertEquals(0x1234L, poll.getHoldingId());
+        roundTrip(TransactionType.Messaging.VOTE_CASTING, new VoteCasting(77L, new byte[] {1, 0, 1}), 1+8+1+3);
+        PhasingVoteCasting phasingVote = (PhasingVoteCasting)roundTrip(TransactionType.Messaging.PHASING_VOTE_CASTING,
+                new PhasingVoteCasting(Arrays.asList(filledBytes(32, 1), filledBytes(32, 2)), new byte[] {9, 8}),
+                1+1+64+4+2);
+        assertArrayEquals(filledBytes(32, 2), phasingVote.getTransactionHashes().get(1));
+        assertArrayEquals(new byte[] {9, 8}, phasingVote.getRevealedSecret());
+        HubAnnouncement hub = (HubAnnouncement)roundTrip(TransactionType.Messaging.HUB_ANNOUNCEMENT,
+                new HubAnnouncement(500L, Arrays.asList("http://a", "http://bb")),
+                1+8+1+(2+8)+(2+9));
+        assertEquals(Arrays.asList("http://a", "http://bb"), hub.getURIs());
+    }
+
+    @Test
+    public void coloredCoinsAttachments() throws Exception {
+        roundTrip(TransactionType.ColoredCoins.ASSET_ISSUANCE,
+                  new AssetIssuance("Asset", "An asset", 1000000L, 2), 1+1+5+2+8+8+1);
+        roundTrip(TransactionType.ColoredCoins.ASSET_TRANSFER, new AssetTransfer(11L, 22L), 1+16);
+        roundTrip(TransactionType.ColoredCoins.ASK_ORDER_PLACEMENT, new AskOrderPlacement(11L, 22L, 33L), 1+24);
+        roundTrip(TransactionType.ColoredCoins.BID_ORDER_PLACEMENT, new BidOrderPlacement(11L, 22L, 33L), 1+24);
+        roundTrip(TransactionType.ColoredCoins.ASK_ORDER_CANCELLATION, new AskOrderCancellation(11L), 1+8);
+        roundTrip(TransactionType.ColoredCoins.BID_ORDER_CANCELLATION, new BidOrderCancellation(11L), 1+8);
+        roundTrip(TransactionType.ColoredCoins.DIVIDEND_PAYMENT, new DividendPayment(11L, 1200000, 33L), 1+8+4+8);
+    }
+
+    @Test
+    public void digitalGoodsAttachments() throws Exception {
+        roundTrip(TransactionType.DigitalGoods.LISTING,
+                  new DigitalGoodsListing("Goods", "Some goods", "tag", 5, 1000L), 1+2+5+2+10+2+3+4+8);
+        roundTrip(TransactionType.DigitalGoods.DELISTING, new DigitalGoodsDelisting(11L), 1+8);
+        roundTrip(TransactionType.DigitalGoods.PRICE_CHANGE, new DigitalGoodsPriceChange(11L, 22L), 1+16);
+        roundTrip(TransactionType.DigitalGoods.QUANTITY_CHANGE, new DigitalGoodsQuantityChange(11L, -3), 1+12);
+        roundTrip(TransactionType.DigitalGoods.PURCHASE, new DigitalGoodsPurchase(11L, 2, 33L, 90000000), 1+24);
+        DigitalGoodsDelivery delivery = (DigitalGoodsDelivery)roundTrip(TransactionType.DigitalGoods.DELIVERY,
+                new DigitalGoodsDelivery(11L, filledBytes(48, 3), filledBytes(32, 4), true, 5L),
+                1+8+4+48+32+8);
+        assertArrayEquals(filledBytes(48, 3), delivery.getGoodsData());
+        assertArrayEquals(filledBytes(32, 4), delivery.getGoodsNonce());
+        assertEquals(5L, delivery.getDiscount());
+        roundTrip(TransactionType.DigitalGoods.FEEDBACK, new DigitalGoodsFeedback(11L), 1+8);
+        roundTrip(TransactionType.DigitalGoods.REFUND, new DigitalGoodsRefund(11L, 22L), 1+16);
+    }
+
+    @Test
+    public void monetarySystemAttachments() throws Exception {
+        roundTrip(TransactionType.MonetarySystem.RESERVE_INCREASE, new ReserveIncrease(11L, 22L), 1+16);
+        roundTrip(TransactionType.MonetarySystem.RESERVE_CLAIM, new ReserveClaim(11L, 22L), 1+16);
+        roundTrip(TransactionType.MonetarySystem.CURRENCY_TRANSFER, new CurrencyTransfer(11L, 22L), 1+16);
+        roundTrip(TransactionType.MonetarySystem.PUBLISH_EXCHANGE_OFFER,
+                  new ExchangeOffer(11L, 1L, 2L, 3L, 4L, 5L, 6L, 1300000), 1+7*8+4);
+        roundTrip(TransactionType.MonetarySystem.EXCHANGE_BUY, new ExchangeBuy(11L, 22L, 33L), 1+24);
+        roundTrip(TransactionType.MonetarySystem.EXCHANGE_SELL, new ExchangeSell(11L, 22L, 33L), 1+24);
+        roundTrip(TransactionType.MonetarySystem.CURRENCY_DELETION, new CurrencyDeletion(11L), 1+8);
+    }
+
+    @Test
+    public void dataAttachments() throws Exception {
+        TaggedDataUpload upload = new TaggedDataUpload("file", "A file", "tag", "text/plain", "channel",
+                                                       true, "file.txt", "contents".getBytes("UTF-8"));
+        TaggedDataUpload parsed = (TaggedDataUpload)roundTrip(TransactionType.Data.TAGGED_DATA_UPLOAD,
+                                                              upload, 1+32);
+        assertArrayEquals(upload.getHash(), parsed.getHash());
+        roundTrip(TransactionType.Data.TAGGED_DATA_EXTEND, new TaggedDataExtend(11L), 1+8);
+    }
+
+    /**
+     * Write an attachment, parse it and compare the bytes
+     *
+     * @param       txType                  Transaction type
+     * @param       attachment              Attachment
+     * @param       expectedSize            Size of the NRS byte layout
+     * @return                              Parsed attachment
+     * @throws      NxtException            Attachment bytes are not valid
+     */
+    private static Attachment roundTrip(TransactionType txType, Attachment attachment, int expectedSize)
+                                        throws NxtException {
+        assertEquals(expectedSize, attachment.getSize());
+        ByteBuffer buffer = ByteBuffer.allocate(expectedSize+8).order(ByteOrder.LITTLE_ENDIAN);
+        attachment.writeTo(buffer);
+        assertEquals(expectedSize, buffer.position());
+        buffer.flip();
+        Attachment parsed = txType.loadAttachment(buffer, 1, 0);
+        assertFalse(buffer.hasRemaining());
+        assertSame(attachment.getClass(), parsed.getClass());
+        assertArrayEquals(attachment.getBytes(), parsed.getBytes());
+        return parsed;
+    }
+
+    /**
+     * Return a byte array filled with a value
+     *
+     * @param       length                  Array length
+     * @param       value                   Byte value
+     * @return                              Byte array
+     */
+    private static byte[] filledBytes(int length, int value) {
+        byte[] bytes = new byte[length];
+        Arrays.fill(bytes, (byte)value);
+        return bytes;
+    }
+}
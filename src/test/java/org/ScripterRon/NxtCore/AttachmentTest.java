@@ -0,0 +1,61 @@
+/*
+ * Copyright 2014 Ronald Hoffman.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.ScripterRon.NxtCore;
+
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+/**
+ * Check the attachment serialization methods
+ */
+public class AttachmentTest {
+
+    @Test
+    public void externalAttachmentUsesGetBytes() {
+        AbstractAttachment attachment = new AbstractAttachment() {
+            @Override
+            public byte[] getBytes() {
+                return new byte[] {1, 2, 3};
+            }
+        };
+        assertEquals(3, attachment.getSize());
+        ByteBuffer buffer = ByteBuffer.allocate(8);
+        attachment.writeTo(buffer);
+        assertEquals(3, buffer.position());
+        assertEquals(ByteBuffer.wrap(new byte[] {1, 2, 3}), ByteBuffer.wrap(buffer.array(), 0, 3));
+    }
+
+    @Test
+    public void emptyAttachment() {
+        AbstractAttachment attachment = new AbstractAttachment();
+        assertEquals(0, attachment.getBytes().length);
+        assertEquals(0, attachment.getSize());
+    }
+
+    @Test
+    public void libraryAttachmentGetBytesMatchesWriteTo() {
+        Attachment attachment = new ArbitraryMessage("Payment for invoice 12345 \u00e9\u4e2d");
+        ByteBuffer buffer = ByteBuffer.allocate(attachment.getSize());
+        buffer.order(ByteOrder.LITTLE_ENDIAN);
+        attachment.writeTo(buffer);
+        assertFalse(buffer.hasRemaining());
+        assertArrayEquals(buffer.array(), attachment.getBytes());
+    }
+}
@@ -0,0 +1,174 @@
+/*
+ * Copyright 2014 Ronald Hoffman.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.ScripterRon.NxtCore;
+
+import java.io.File;
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import static org.junit.Assert.*;
+
+/**
+ * Check that the block bytes return the transactions unchanged
+ */
+public class BlockTest {
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    /** Random number generator with a fixed seed so failures can be repeated */
+    private final Random random = new Random(20161019L);
+
+    @Test
+    public void parsedBlockKeepsTransactionIdentity() throws Exception {
+        Block block = createBlock(Arrays.asList(createTransaction(true), createTransaction(false)));
+        assertFalse(block.getTransactions().get(0).hasCompleteBytes());
+        assertTrue(block.getTransactions().get(1).hasCompleteBytes());
+        byte[] bytes = block.getBytes();
+        Block parsedBlock = Block.parse(ByteBuffer.wrap(bytes));
+        int[] offsets = Block.getTransactionOffsets(ByteBuffer.wrap(bytes));
+        assertArrayEquals(block.getTransactionOffsets(), offsets);
+        for (int i=0; i<2; i++) {
+            Transaction tx = block.getTransactions().get(i);
+            Transaction parsedTx = parsedBlock.getTransactions().get(i);
+            assertEquals(tx.getTransactionId(), parsedTx.getTransactionId());
+            assertArrayEquals(tx.getTransactionHash(), parsedTx.getTransactionHash());
+            assertEquals(tx.getFlags(), parsedTx.getFlags());
+            assertEquals(tx.getTransactionId(),
+                         Block.parseTransaction(ByteBuffer.wrap(bytes), offsets[i]).getTransactionId());
+        }
+    }
+
+    @Test
+    public void storeKeepsIncompleteTransactions() throws Exception {
+        File directory = folder.newFolder("blocks");
+        Block block = createBlock(Arrays.asList(createTransaction(true), createTransaction(false)));
+        BlockStore store = new BlockStore(directory, 1024*1024);
+        try {
+            store.append(block);
+        } finally {
+            store.close();
+        }
+        store = new BlockStore(directory, 1024*1024);
+        try {
+            assertEquals(1, store.getBlockCount());
+            Block storedBlock = store.getBlock(block.getHeight());
+            ByteBuffer blockBytes = store.getBlockBytes(block.getHeight());
+            int[] offsets = Block.getTransactionOffsets(blockBytes);
+            for (int i=0; i<2; i++) {
+                Transaction tx = block.getTransactions().get(i);
+                Transaction storedTx = storedBlock.getTransactions().get(i);
+                assertEquals(tx.getTransactionId(), storedTx.getTransactionId());
+                assertArrayEquals(tx.getTransactionHash(), storedTx.getTransactionHash());
+                assertEquals(tx.getFlags(), storedTx.getFlags());
+                assertEquals(tx.hasCompleteBytes(), storedTx.hasCompleteBytes());
+                assertArrayEquals(tx.getBytes(false), storedTx.getBytes(false));
+                Transaction parsedTx = Block.parseTransaction(blockBytes, offsets[i]);
+                assertEquals(tx.getTransactionId(), parsedTx.getTransactionId());
+                assertEquals(tx.hasCompleteBytes(), parsedTx.hasCompleteBytes());
+            }
+            assertFalse(storedBlock.getTransactions().get(0).hasCompleteBytes());
+            assertEquals(Transaction.TX_MESSAGE, storedBlock.getTransactions().get(0).getFlags());
+        } finally {
+            store.close();
+        }
+    }
+
+    /**
+     * Create a block containing transactions
+     *
+     * @param       txList                  Transaction JSON objects
+     * @return                              Block
+     * @throws      Exception               Unable to create the block
+     */
+    private Block createBlock(List<Map<String, Object>> txList) throws Exception {
+        Map<String, Object> map = new HashMap<>();
+        map.put("version", 3L);
+        map.put("block", Utils.idToString(random.nextLong()));
+        map.put("previousBlock", Utils.idToString(random.nextLong()));
+        map.put("totalAmountNQT", "0");
+        map.put("totalFeeNQT", "0");
+        map.put("timestamp", 90000000L);
+        map.put("generator", Utils.idToString(random.nextLong()));
+        map.put("generatorPublicKey", Utils.toHexString(randomBytes(32)));
+        map.put("generationSignature", Utils.toHexString(randomBytes(32)));
+        map.put("blockSignature", Utils.toHexString(randomBytes(64)));
+        map.put("payloadLength", 0L);
+        map.put("payloadHash", Utils.toHexString(randomBytes(32)));
+        map.put("height", 1000000L);
+        map.put("baseTarget", "153722867");
+        map.put("numberOfTransactions", (long)txList.size());
+        for (int i=0; i<txList.size(); i++)
+            txList.get(i).put("transactionIndex", (long)i);
+        map.put("transactions", txList);
+        return new Block(new PeerResponse(map));
+    }
+
+    /**
+     * Create a version 1 payment transaction
+     *
+     * @param       withMessage             TRUE to attach a message
+     * @return                              Transaction JSON object
+     */
+    private Map<String, Object> createTransaction(boolean withMessage) {
+        Map<String, Object> attachment = new HashMap<>();
+        if (withMessage) {
+            attachment.put("version.Message", 1L);
+            attachment.put("message", "Payment for invoice 12345");
+            attachment.put("messageIsText", true);
+        }
+        byte[] publicKey = randomBytes(32);
+        byte[] fullHash = randomBytes(32);
+        Map<String, Object> map = new HashMap<>();
+        map.put("type", 0L);
+        map.put("subtype", 0L);
+        map.put("version", 1L);
+        map.put("transaction", Utils.idToString(Utils.fullHashToId(fullHash)));
+        map.put("fullHash", Utils.toHexString(fullHash));
+        map.put("senderPublicKey", Utils.toHexString(publicKey));
+        map.put("sender", Utils.idToString(Utils.getAccountId(publicKey)));
+        map.put("recipient", Utils.idToString(random.nextLong()));
+        map.put("amountNQT", "100000000");
+        map.put("feeNQT", "100000000");
+        map.put("timestamp", 90000000L);
+        map.put("deadline", 1440L);
+        map.put("signature", Utils.toHexString(randomBytes(64)));
+        map.put("ecBlockHeight", 1000000L);
+        map.put("ecBlockId", Utils.idToString(random.nextLong()));
+        map.put("attachment", attachment);
+        return map;
+    }
+
+    /**
+     * Return random bytes
+     *
+     * @param       length                  Number of bytes
+     * @return                              Random bytes
+     */
+    private byte[] randomBytes(int length) {
+        byte[] bytes = new byte[length];
+        random.nextBytes(bytes);
+        return bytes;
+    }
+}
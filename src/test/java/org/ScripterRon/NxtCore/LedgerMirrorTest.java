@@ -0,0 +1,251 @@
+/*
+ * Copyright 2016 Ronald Hoffman.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.ScripterRon.NxtCore;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+import java.util.zip.CRC32;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import static org.junit.Assert.*;
+
+/**
+ * Check that the ledger mirror is reloaded and that incomplete or damaged entries
+ * at the end of the mirror file are discarded.  The mirror files are written directly
+ * so that no node server is needed.
+ */
+public class LedgerMirrorTest {
+
+    /** Mirror file magic number */
+    private static final int MAGIC = 0x4e584c4d;
+
+    /** Mirror file header length */
+    private static final int HEADER_LENGTH = 16;
+
+    /** Ledger entry length */
+    private static final int ENTRY_LENGTH = 68;
+
+    /** Number of entries in the test mirror */
+    private static final int ENTRY_COUNT = 50;
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    /** Random number generator with a fixed seed so failures can be repeated */
+    private final Random random = new Random(20161019L);
+
+    /** Account identifier */
+    private final long accountId = random.nextLong();
+
+    /** Ledger entries */
+    private final List<LedgerEntry> entries = createEntries();
+
+    @Test
+    public void entriesAreReloaded() throws Exception {
+        File mirrorFile = writeMirror(getMirrorBytes(entries));
+        for (int i=0; i<2; i++) {
+            LedgerMirror mirror = new LedgerMirror(mirrorFile, accountId);
+            try {
+                checkMirror(mirror, ENTRY_COUNT);
+                List<LedgerEntry> found = mirror.getEntries(entries.get(19).getLedgerId(), 5);
+                assertEquals(5, found.size());
+                for (int j=0; j<5; j++)
+                    checkEntry(entries.get(20+j), found.get(j));
+                assertTrue(mirror.getEntries(entries.get(ENTRY_COUNT-1).getLedgerId(), 5).isEmpty());
+            } finally {
+                mirror.close();
+            }
+            assertEquals(HEADER_LENGTH+ENTRY_COUNT*ENTRY_LENGTH, mirrorFile.length());
+        }
+    }
+
+    @Test
+    public void partialEntryIsDiscarded() throws Exception {
+        byte[] bytes = getMirrorBytes(entries);
+        for (int length : new int[] {1, 8, ENTRY_LENGTH-1}) {
+            File mirrorFile = writeMirror(Arrays.copyOf(bytes, bytes.length+length));
+            for (int i=0; i<2; i++) {
+                LedgerMirror mirror = new LedgerMirror(mirrorFile, accountId);
+                try {
+                    checkMirror(mirror, ENTRY_COUNT);
+                } finally {
+                    mirror.close();
+                }
+                assertEquals(bytes.length, mirrorFile.length());
+            }
+        }
+    }
+
+    @Test
+    public void corruptedEntriesAreDiscarded() throws Exception {
+        byte[] bytes = getMirrorBytes(entries);
+        //
+        // Damage the last two entries.  This can happen when the file length was updated
+        // before the entry data was written to storage.
+        //
+        bytes[bytes.length-ENTRY_LENGTH+10] ^= 0x01;
+        Arrays.fill(bytes, bytes.length-2*ENTRY_LENGTH+40, bytes.length-2*ENTRY_LENGTH+ENTRY_LENGTH, (byte)0);
+        File mirrorFile = writeMirror(bytes);
+        for (int i=0; i<2; i++) {
+            LedgerMirror mirror = new LedgerMirror(mirrorFile, accountId);
+            try {
+                checkMirror(mirror, ENTRY_COUNT-2);
+            } finally {
+                mirror.close();
+            }
+            assertEquals(HEADER_LENGTH+(ENTRY_COUNT-2)*ENTRY_LENGTH, mirrorFile.length());
+        }
+    }
+
+    @Test
+    public void rollbackIsReloaded() throws Exception {
+        File mirrorFile = writeMirror(getMirrorBytes(entries));
+        int height = entries.get(29).getHeight();
+        int count = 30;
+        while (entries.get(count).getHeight() == height)
+            count++;
+        LedgerMirror mirror = new LedgerMirror(mirrorFile, accountId);
+        try {
+            mirror.rollback(height);
+            checkMirror(mirror, count);
+        } finally {
+            mirror.close();
+        }
+        mirror = new LedgerMirror(mirrorFile, accountId);
+        try {
+            checkMirror(mirror, count);
+        } finally {
+            mirror.close();
+        }
+    }
+
+    @Test(expected=IOException.class)
+    public void differentAccountIsRejected() throws Exception {
+        new LedgerMirror(writeMirror(getMirrorBytes(entries)), accountId+1).close();
+    }
+
+    /**
+     * Check that the mirror contains the first test entries
+     *
+     * @param       mirror                  Ledger mirror
+     * @param       count                   Expected number of entries
+     * @throws      IOException             Unable to read the mirror
+     */
+    private void checkMirror(LedgerMirror mirror, int count) throws IOException {
+        assertEquals(count, mirror.getEntryCount());
+        assertEquals(entries.get(count-1).getLedgerId(), mirror.getLastLedgerId());
+        List<LedgerEntry> found = mirror.getEntries(0, ENTRY_COUNT+1);
+        assertEquals(count, found.size());
+        for (int i=0; i<count; i++)
+            checkEntry(entries.get(i), found.get(i));
+    }
+
+    /**
+     * Compare two ledger entries
+     *
+     * @param       expected                Expected entry
+     * @param       entry                   Entry read from the mirror
+     */
+    private static void checkEntry(LedgerEntry expected, LedgerEntry entry) {
+        assertEquals(expected.getLedgerId(), entry.getLedgerId());
+        assertEquals(expected.getAccountId(), entry.getAccountId());
+        assertEquals(expected.getLedgerEvent(), entry.getLedgerEvent());
+        assertEquals(expected.getLedgerEventId(), entry.getLedgerEventId());
+        assertEquals(expected.getLedgerHolding(), entry.getLedgerHolding());
+        assertEquals(expected.getLedgerHoldingId(), entry.getLedgerHoldingId());
+        assertEquals(expected.getChange(), entry.getChange());
+        assertEquals(expected.getBalance(), entry.getBalance());
+        assertEquals(expected.getHeight(), entry.getHeight());
+        assertEquals(expected.getTimestamp(), entry.getTimestamp());
+    }
+
+    /**
+     * Create ledger entries in ascending ledger identifier and height order
+     *
+     * @return                              Ledger entries
+     */
+    private List<LedgerEntry> createEntries() {
+        List<LedgerEntry> entryList = new ArrayList<>(ENTRY_COUNT);
+        long ledgerId = 0;
+        int height = 1000;
+        long balance = 0;
+        for (int i=0; i<ENTRY_COUNT; i++) {
+            ledgerId += 1 + random.nextInt(5);
+            height += random.nextInt(3);
+            long change = random.nextInt(1000000) - 500000;
+            balance += change;
+            boolean event = (i%5 != 0);
+            entryList.add(new LedgerEntry(ledgerId, accountId,
+                    (event ? LedgerEvent.ORDINARY_PAYMENT : null), (event ? random.nextLong() : 0),
+                    (event ? LedgerHolding.NXT_BALANCE : null), 0,
+                    change, balance, height, 90000000+height*60));
+        }
+        return entryList;
+    }
+
+    /**
+     * Return the mirror file bytes for a list of entries
+     *
+     * @param       entryList               Ledger entries
+     * @return                              Mirror file bytes
+     */
+    private byte[] getMirrorBytes(List<LedgerEntry> entryList) {
+        ByteBuffer buffer = ByteBuffer.allocate(HEADER_LENGTH+entryList.size()*ENTRY_LENGTH);
+        buffer.order(ByteOrder.LITTLE_ENDIAN);
+        buffer.putInt(MAGIC).putInt(1).putLong(accountId);
+        CRC32 crc = new CRC32();
+        for (LedgerEntry entry : entryList) {
+            int start = buffer.position();
+            buffer.putLong(entry.getLedgerId())
+                  .putLong(entry.getAccountId())
+                  .putInt(entry.getLedgerEvent() != null ? entry.getLedgerEvent().getCode() : -1)
+                  .putLong(entry.getLedgerEventId())
+                  .putInt(entry.getLedgerHolding() != null ? entry.getLedgerHolding().getCode() : -1)
+                  .putLong(entry.getLedgerHoldingId())
+                  .putLong(entry.getChange())
+                  .putLong(entry.getBalance())
+                  .putInt(entry.getHeight())
+                  .putInt(entry.getTimestamp());
+            crc.reset();
+            crc.update(buffer.array(), start, ENTRY_LENGTH-4);
+            buffer.putInt((int)crc.getValue());
+        }
+        return buffer.array();
+    }
+
+    /**
+     * Write a mirror file
+     *
+     * @param       bytes                   File contents
+     * @return                              Mirror file
+     * @throws      IOException             Unable to write the file
+     */
+    private File writeMirror(byte[] bytes) throws IOException {
+        File mirrorFile = new File(folder.newFolder(), "ledger.dat");
+        Files.write(mirrorFile.toPath(), bytes);
+        return mirrorFile;
+    }
+}
@@ -0,0 +1,119 @@
+/*
+ * Copyright 2016 Ronald Hoffman.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.ScripterRon.NxtCore;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Random;
+
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+/**
+ * Compare LongHashMap with HashMap while entries are added and removed
+ */
+public class LongHashMapTest {
+
+    /** Number of random operations */
+    private static final int ITERATIONS = 200000;
+
+    /** Random number generator with a fixed seed so failures can be repeated */
+    private final Random random = new Random(20161019L);
+
+    @Test
+    public void randomOperationsMatchHashMap() {
+        LongHashMap<Long> map = new LongHashMap<>();
+        Map<Long, Long> expected = new HashMap<>();
+        //
+        // Use a small key range so that removals hit existing keys and the
+        // probe sequences overlap
+        //
+        for (int i=0; i<ITERATIONS; i++) {
+            long key = random.nextInt(2000) - 1000;
+            if (random.nextInt(3) == 0) {
+                assertEquals(expected.remove(key), map.remove(key));
+            } else {
+                long value = random.nextLong();
+                assertEquals(expected.put(key, value), map.put(key, value));
+            }
+            assertEquals(expected.size(), map.size());
+        }
+        checkContents(expected, map, -1000, 1000);
+    }
+
+    @Test
+    public void removeKeepsClusteredKeys() {
+        LongHashMap<Long> map = new LongHashMap<>(10000);
+        Map<Long, Long> expected = new HashMap<>();
+        for (long key=1; key<=10000; key++) {
+            map.put(key, key);
+            expected.put(key, key);
+        }
+        //
+        // Remove every other key and then the rest, checking that each remaining
+        // key can still be found after the entries behind it are shifted back
+        //
+        for (long key=2; key<=10000; key+=2) {
+            assertEquals(Long.valueOf(key), map.remove(key));
+            expected.remove(key);
+            assertNull(map.remove(key));
+        }
+        checkContents(expected, map, 0, 10001);
+        for (long key=1; key<=10000; key+=2) {
+            assertEquals(Long.valueOf(key), map.remove(key));
+            expected.remove(key);
+        }
+        assertTrue(map.isEmpty());
+        checkContents(expected, map, 0, 10001);
+    }
+
+    @Test
+    public void zeroKey() {
+        LongHashMap<String> map = new LongHashMap<>();
+        assertFalse(map.containsKey(0));
+        assertNull(map.put(0, "zero"));
+        assertNull(map.put(16, "sixteen"));
+        assertTrue(map.containsKey(0));
+        assertEquals("zero", map.get(0));
+        assertEquals(2, map.size());
+        assertEquals("zero", map.remove(0));
+        assertFalse(map.containsKey(0));
+        assertNull(map.get(0));
+        assertEquals("sixteen", map.get(16));
+        assertEquals(1, map.size());
+        map.clear();
+        assertTrue(map.isEmpty());
+        assertNull(map.get(16));
+    }
+
+    /**
+     * Check that the map contains the expected entries for a key range
+     *
+     * @param       expected                Expected entries
+     * @param       map                     Map being checked
+     * @param       fromKey                 First key (inclusive)
+     * @param       toKey                   Last key (exclusive)
+     */
+    private static void checkContents(Map<Long, Long> expected, LongHashMap<Long> map,
+                                        long fromKey, long toKey) {
+        assertEquals(expected.size(), map.size());
+        for (long key=fromKey; key<toKey; key++) {
+            assertEquals(expected.containsKey(key), map.containsKey(key));
+            assertEquals(expected.get(key), map.get(key));
+        }
+    }
+}
@@ -0,0 +1,218 @@
+/*
+ * Copyright 2016 Ronald Hoffman.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.ScripterRon.NxtCore;
+
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import static org.junit.Assert.*;
+
+/**
+ * Check that the payout journal is replayed when a payout is resumed.  The journals
+ * are written directly so that no node server is needed.
+ */
+public class PayoutEngineTest {
+
+    /** Journal file identifier */
+    private static final int JOURNAL_MAGIC = 0x4e585050;
+
+    /** Sender secret phrase */
+    private static final String PASS_PHRASE = "payout engine test secret phrase";
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    /** Random number generator with a fixed seed so failures can be repeated */
+    private final Random random = new Random(20161019L);
+
+    /** Sender identifier */
+    private long senderId;
+
+    /** Payout list */
+    private final List<PayoutEngine.Payout> payouts = new ArrayList<>();
+
+    @Before
+    public void setup() throws KeyException {
+        senderId = Utils.getAccountId(Crypto.getPublicKey(PASS_PHRASE));
+        for (int i=0; i<5; i++)
+            payouts.add(new PayoutEngine.Payout(random.nextLong(), 100000000L*(i+1)));
+    }
+
+    @Test
+    public void completedPayoutIsNotSentAgain() throws Exception {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        DataOutputStream out = new DataOutputStream(bytes);
+        writeHeader(out, senderId);
+        for (int i=0; i<payouts.size(); i++) {
+            writeTransaction(out, i, payouts.get(i));
+            writeAck(out, i);
+        }
+        File journalFile = writeJournal(bytes.toByteArray());
+        PayoutEngine.Result result = createEngine(journalFile).run(payouts);
+        assertEquals(payouts.size(), result.getCompletedCount());
+        assertEquals(0, result.getResumedCount());
+        assertEquals(0, result.getBroadcastCount());
+        assertTrue(result.getFailedList().isEmpty());
+        assertEquals(bytes.size(), journalFile.length());
+    }
+
+    @Test
+    public void partialRecordIsDiscarded() throws Exception {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        DataOutputStream out = new DataOutputStream(bytes);
+        writeHeader(out, senderId);
+        for (int i=0; i<payouts.size(); i++) {
+            writeTransaction(out, i, payouts.get(i));
+            writeAck(out, i);
+        }
+        int validLength = bytes.size();
+        //
+        // A transaction record interrupted after the record type, in the payout index,
+        // in the recipient identifier and in the transaction bytes
+        //
+        for (int length : new int[] {1, 3, 20, 40}) {
+            ByteArrayOutputStream partial = new ByteArrayOutputStream();
+            writeTransaction(new DataOutputStream(partial), 0, payouts.get(0));
+            byte[] record = partial.toByteArray();
+            byte[] journal = new byte[validLength+length];
+            System.arraycopy(bytes.toByteArray(), 0, journal, 0, validLength);
+            System.arraycopy(record, 0, journal, validLength, length);
+            File journalFile = writeJournal(journal);
+            PayoutEngine.Result result = createEngine(journalFile).run(payouts);
+            assertEquals(payouts.size(), result.getCompletedCount());
+            assertEquals(validLength, journalFile.length());
+            result = createEngine(journalFile).run(payouts);
+            assertEquals(payouts.size(), result.getCompletedCount());
+            assertEquals(validLength, journalFile.length());
+        }
+    }
+
+    @Test(expected=NxtException.class)
+    public void journalForDifferentPayoutsIsRejected() throws Exception {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        DataOutputStream out = new DataOutputStream(bytes);
+        writeHeader(out, senderId);
+        writeTransaction(out, 0, new PayoutEngine.Payout(payouts.get(0).getRecipientId(), 1L));
+        writeAck(out, 0);
+        createEngine(writeJournal(bytes.toByteArray())).run(payouts);
+    }
+
+    @Test(expected=NxtException.class)
+    public void journalForDifferentSenderIsRejected() throws Exception {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        writeHeader(new DataOutputStream(bytes), senderId+1);
+        createEngine(writeJournal(bytes.toByteArray())).run(payouts);
+    }
+
+    @Test(expected=NxtException.class)
+    public void acknowledgmentWithoutTransactionIsRejected() throws Exception {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        DataOutputStream out = new DataOutputStream(bytes);
+        writeHeader(out, senderId);
+        writeAck(out, 2);
+        createEngine(writeJournal(bytes.toByteArray())).run(payouts);
+    }
+
+    @Test(expected=NxtException.class)
+    public void truncatedHeaderIsRejected() throws Exception {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        new DataOutputStream(bytes).writeInt(JOURNAL_MAGIC);
+        createEngine(writeJournal(bytes.toByteArray())).run(payouts);
+    }
+
+    /**
+     * Create a payout engine
+     *
+     * @param       journalFile             Journal file
+     * @return                              Payout engine
+     * @throws      KeyException            Unable to derive the sender keys
+     */
+    private PayoutEngine createEngine(File journalFile) throws KeyException {
+        return new PayoutEngine(PASS_PHRASE, 0, 100000000L, 1440, journalFile);
+    }
+
+    /**
+     * Write a journal file
+     *
+     * @param       bytes                   Journal contents
+     * @return                              Journal file
+     * @throws      IOException             Unable to write the journal
+     */
+    private File writeJournal(byte[] bytes) throws IOException {
+        File journalFile = folder.newFile();
+        try (FileOutputStream out = new FileOutputStream(journalFile)) {
+            out.write(bytes);
+        }
+        return journalFile;
+    }
+
+    /**
+     * Write the journal header
+     *
+     * @param       out                     Output stream
+     * @param       accountId               Sender identifier
+     * @throws      IOException             Unable to write the header
+     */
+    private static void writeHeader(DataOutputStream out, long accountId) throws IOException {
+        out.writeInt(JOURNAL_MAGIC);
+        out.writeInt(1);
+        out.writeLong(accountId);
+    }
+
+    /**
+     * Write a transaction record
+     *
+     * @param       out                     Output stream
+     * @param       index                   Payout index
+     * @param       payout                  Payout
+     * @throws      IOException             Unable to write the record
+     */
+    private void writeTransaction(DataOutputStream out, int index, PayoutEngine.Payout payout)
+                                    throws IOException {
+        byte[] txBytes = new byte[176];
+        random.nextBytes(txBytes);
+        out.writeByte(1);
+        out.writeInt(index);
+        out.writeLong(random.nextLong());
+        out.writeLong(payout.getRecipientId());
+        out.writeLong(payout.getAmount());
+        out.writeShort(txBytes.length);
+        out.write(txBytes);
+    }
+
+    /**
+     * Write an acknowledgment record
+     *
+     * @param       out                     Output stream
+     * @param       index                   Payout index
+     * @throws      IOException             Unable to write the record
+     */
+    private static void writeAck(DataOutputStream out, int index) throws IOException {
+        out.writeByte(2);
+        out.writeInt(index);
+    }
+}
@@ -0,0 +1,160 @@
+/*
+ * Copyright 2016 Ronald Hoffman.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.ScripterRon.NxtCore;
+
+import java.util.Arrays;
+import java.util.Random;
+
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+/**
+ * Compare PostingList range queries with a sorted array
+ */
+public class PostingListTest {
+
+    /** Random number generator with a fixed seed so failures can be repeated */
+    private final Random random = new Random(20161019L);
+
+    @Test
+    public void encodedSize() {
+        PostingList list = new PostingList();
+        for (long value=0; value<1000; value++)
+            list.add(value);
+        assertEquals(1000, list.size());
+        assertEquals(1000 + 16*12, list.getEncodedSize());
+        list = new PostingList();
+        list.add(127);
+        list.add(254);
+        assertEquals(2 + 12, list.getEncodedSize());
+        list.add(382);
+        assertEquals(4 + 12, list.getEncodedSize());
+        list.add(Long.MAX_VALUE);
+        assertEquals(13 + 12, list.getEncodedSize());
+    }
+
+    @Test
+    public void rangesMatchArray() {
+        long[] values = randomValues(5000);
+        PostingList list = new PostingList();
+        for (long value : values)
+            list.add(value);
+        checkRanges(values, list);
+    }
+
+    @Test
+    public void truncateAndExtend() {
+        long[] values = randomValues(3000);
+        PostingList list = new PostingList();
+        for (long value : values)
+            list.add(value);
+        //
+        // Truncate at, between and below the stored values, checking the list after
+        // each step and after adding the removed values back
+        //
+        int[] keep = {2999, 2000, 1024, 1023, 640, 65, 64, 63, 1, 0};
+        for (int count : keep) {
+            long maxValue = (count == 0 ? -1 : (count%2 == 0 ? values[count-1] : values[count]-1));
+            list.truncate(maxValue);
+            long[] expected = Arrays.copyOf(values, count);
+            assertEquals(count, list.size());
+            checkRanges(expected, list);
+            for (int i=count; i<values.length; i++)
+                list.add(values[i]);
+            checkRanges(values, list);
+            list.truncate(maxValue);
+        }
+        assertTrue(list.isEmpty());
+        list.add(values[0]);
+        assertEquals(1, list.count(0, Long.MAX_VALUE));
+    }
+
+    @Test(expected=IllegalArgumentException.class)
+    public void valueMustAscend() {
+        PostingList list = new PostingList();
+        list.add(10);
+        list.add(10);
+    }
+
+    @Test(expected=IllegalArgumentException.class)
+    public void valueMustNotBeNegative() {
+        new PostingList().add(-1);
+    }
+
+    /**
+     * Return ascending values with gaps that need from one to nine bytes
+     *
+     * @param       count                   Number of values
+     * @return                              Values
+     */
+    private long[] randomValues(int count) {
+        long[] values = new long[count];
+        long value = random.nextInt(3);
+        for (int i=0; i<count; i++) {
+            values[i] = value;
+            int bits = 1 + random.nextInt(i%97 == 0 ? 55 : 20);
+            value += 1 + (random.nextLong() >>> (64-bits));
+        }
+        return values;
+    }
+
+    /**
+     * Check counts and values for ranges starting and ending at, between and beyond
+     * the stored values
+     *
+     * @param       values                  Expected values
+     * @param       list                    Posting list
+     */
+    private void checkRanges(long[] values, PostingList list) {
+        assertEquals(values.length, list.size());
+        assertEquals(values.length, list.count(0, Long.MAX_VALUE));
+        for (int i=0; i<200; i++) {
+            long fromValue, toValue;
+            if (values.length == 0) {
+                fromValue = random.nextInt(1000);
+                toValue = fromValue + random.nextInt(1000);
+            } else {
+                int from = random.nextInt(values.length);
+                int to = from + random.nextInt(values.length - from);
+                fromValue = values[from] - random.nextInt(2);
+                toValue = (i%10 == 0 ? Long.MAX_VALUE : values[to] + random.nextInt(2));
+            }
+            int start = lowerBound(values, fromValue);
+            int stop = (toValue == Long.MAX_VALUE ? values.length : lowerBound(values, toValue+1));
+            assertEquals(stop-start, list.count(fromValue, toValue));
+            long[] found = new long[stop-start];
+            int[] index = new int[1];
+            assertEquals(stop-start, list.forEach(fromValue, toValue, value -> found[index[0]++] = value));
+            assertArrayEquals(Arrays.copyOfRange(values, start, stop), found);
+        }
+        if (values.length > 0)
+            assertEquals(0, list.count(values[values.length-1]+1, Long.MAX_VALUE));
+        assertEquals(0, list.count(10, 9));
+    }
+
+    /**
+     * Return the index of the first value that is not less than the target
+     *
+     * @param       values                  Sorted values
+     * @param       target                  Target value
+     * @return                              Index
+     */
+    private static int lowerBound(long[] values, long target) {
+        int index = Arrays.binarySearch(values, target);
+        return (index >= 0 ? index : -index-1);
+    }
+}
@@ -0,0 +1,106 @@
+/*
+ * Copyright 2014 Ronald Hoffman.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.ScripterRon.NxtCore;
+
+import java.util.Random;
+
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+/**
+ * Check the Reed-Solomon codec against strings produced by the previous implementation
+ */
+public class ReedSolomonTest {
+
+    /** Number of random inputs for each check */
+    private static final int ITERATIONS = 100000;
+
+    /** Values encoded by the previous implementation */
+    private static final long[] knownValues = {
+        0L, 1L, -1L, Long.MIN_VALUE, Long.MAX_VALUE, 1739068987193023818L, -3705166164416431597L
+    };
+
+    /** Encoded strings for the known values */
+    private static final String[] knownStrings = {
+        "2222-2222-2222-22222", "2223-2222-KB8Y-22222", "ZZZZ-ZZZZ-QY2K-HZZZZ",
+        "2222-2222-YVYK-A2222", "ZZZZ-ZZZZ-A7Y2-9ZZZZ", "MRCC-2YLS-8M54-3CMAJ",
+        "LYJM-26E4-EPKC-EV67T"
+    };
+
+    /** Random number generator with a fixed seed so failures can be repeated */
+    private final Random random = new Random(20161019L);
+
+    @Test
+    public void knownValues() throws IdentifierException {
+        for (int i=0; i<knownValues.length; i++) {
+            assertEquals(knownStrings[i], ReedSolomon.encode(knownValues[i]));
+            assertEquals(knownValues[i], ReedSolomon.decode(knownStrings[i]));
+            assertEquals(knownValues[i], ReedSolomon.decode(knownStrings[i].replace("-", "")));
+        }
+        assertEquals("NXT-MRCC-2YLS-8M54-3CMAJ", Utils.getAccountRsId(1739068987193023818L));
+        assertEquals(1739068987193023818L, Utils.parseAccountRsId("NXT-MRCC-2YLS-8M54-3CMAJ"));
+    }
+
+    @Test
+    public void encodeFormsAgree() throws IdentifierException {
+        char[] chars = new char[ReedSolomon.ENCODED_LENGTH+4];
+        StringBuilder builder = new StringBuilder(32);
+        for (int i=0; i<ITERATIONS; i++) {
+            long value = random.nextLong();
+            String encoded = ReedSolomon.encode(value);
+            assertEquals(ReedSolomon.ENCODED_LENGTH, encoded.length());
+            builder.setLength(0);
+            assertEquals(encoded, ReedSolomon.encode(value, builder.append("NXT-")).substring(4));
+            assertEquals(2+ReedSolomon.ENCODED_LENGTH, ReedSolomon.encode(value, chars, 2));
+            assertEquals(encoded, new String(chars, 2, ReedSolomon.ENCODED_LENGTH));
+            assertEquals(value, ReedSolomon.decode(encoded));
+            assertEquals(value, ReedSolomon.decode(builder, 4, builder.length()));
+        }
+    }
+
+    @Test
+    public void substitutionIsDetected() {
+        char[] alphabet = "23456789ABCDEFGHJKLMNPQRSTUVWXYZ".toCharArray();
+        for (int i=0; i<ITERATIONS/10; i++) {
+            char[] chars = ReedSolomon.encode(random.nextLong()).toCharArray();
+            int pos;
+            do {
+                pos = random.nextInt(chars.length);
+            } while (chars[pos] == '-');
+            char c = chars[pos];
+            do {
+                chars[pos] = alphabet[random.nextInt(alphabet.length)];
+            } while (chars[pos] == c);
+            try {
+                ReedSolomon.decode(new String(chars));
+                fail("Corrupted string decoded: " + new String(chars));
+            } catch (IdentifierException exc) {
+                // Expected
+            }
+        }
+    }
+
+    @Test(expected=IdentifierException.class)
+    public void shortStringIsRejected() throws IdentifierException {
+        ReedSolomon.decode("MRCC-2YLS-8M54-3CMA");
+    }
+
+    @Test(expected=IdentifierException.class)
+    public void longStringIsRejected() throws IdentifierException {
+        ReedSolomon.decode("MRCC-2YLS-8M54-3CMAJ2");
+    }
+}
@@ -0,0 +1,148 @@
+/*
+ * Copyright 2014 Ronald Hoffman.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.ScripterRon.NxtCore;
+
+import java.nio.ByteBuffer;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Random;
+
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+/**
+ * Check that the transactions returned by a TransactionBatch match the JSON response
+ */
+public class TransactionBatchTest {
+
+    /** Random number generator with a fixed seed so failures can be repeated */
+    private final Random random = new Random(20161019L);
+
+    @Test
+    public void paymentWithMessageKeepsIdentity() throws Exception {
+        Map<String, Object> attachment = new HashMap<>();
+        attachment.put("version.Message", 1L);
+        attachment.put("message", "Payment for invoice 12345");
+        attachment.put("messageIsText", true);
+        byte[] fullHash = randomBytes(32);
+        PeerResponse response = createResponse(0, 0, attachment, fullHash);
+        TransactionBatch batch = new TransactionBatch();
+        batch.add(response);
+        Transaction jsonTx = new Transaction(response);
+        Transaction batchTx = batch.getTransaction(0);
+        assertEquals(Utils.fullHashToId(fullHash), batch.getTransactionId(0));
+        assertEquals(batch.getTransactionId(0), batchTx.getTransactionId());
+        assertEquals(jsonTx.getTransactionId(), batchTx.getTransactionId());
+        assertArrayEquals(fullHash, batch.getTransactionHash(0));
+        assertArrayEquals(fullHash, batchTx.getTransactionHash());
+        assertEquals(Transaction.TX_MESSAGE, batchTx.getFlags());
+        assertEquals(jsonTx.getFlags(), batchTx.getFlags());
+        assertEquals(jsonTx.getSenderId(), batchTx.getSenderId());
+        assertFalse(batch.hasCompleteBytes(0));
+        assertFalse(batchTx.hasCompleteBytes());
+        assertFalse(jsonTx.hasCompleteBytes());
+    }
+
+    @Test
+    public void phasedFlagMatchesTransaction() throws Exception {
+        Map<String, Object> attachment = new HashMap<>();
+        attachment.put("version.Phasing", 1L);
+        PeerResponse response = createResponse(0, 0, attachment, randomBytes(32));
+        response.getObjectMap().put("phased", true);
+        TransactionBatch batch = new TransactionBatch();
+        batch.add(response);
+        Transaction batchTx = batch.getTransaction(0);
+        assertTrue(batch.isPhased(0));
+        assertTrue(batchTx.isPhased());
+        assertTrue(new Transaction(response).isPhased());
+        assertEquals(batch.getTransactionId(0), batchTx.getTransactionId());
+        assertFalse(batch.hasCompleteBytes(0));
+    }
+
+    @Test
+    public void arbitraryMessageRoundTrip() throws Exception {
+        Map<String, Object> attachment = new HashMap<>();
+        attachment.put("version.Message", 1L);
+        attachment.put("message", "0102030405");
+        attachment.put("messageIsText", false);
+        //
+        // Compute the transaction hash from the encoded bytes and then add the
+        // transaction again with the correct hash
+        //
+        PeerResponse response = createResponse(1, 0, attachment, new byte[32]);
+        TransactionBatch batch = new TransactionBatch();
+        batch.add(response);
+        byte[] fullHash = Transaction.parse(ByteBuffer.wrap(batch.getBytes(0))).getTransactionHash();
+        response.getObjectMap().put("fullHash", Utils.toHexString(fullHash));
+        response.getObjectMap().put("transaction", Utils.idToString(Utils.fullHashToId(fullHash)));
+        batch = new TransactionBatch();
+        batch.add(response);
+        assertTrue(batch.hasCompleteBytes(0));
+        Transaction batchTx = batch.getTransaction(0);
+        assertTrue(batchTx.hasCompleteBytes());
+        assertEquals(Transaction.TX_MESSAGE, batchTx.getFlags());
+        assertArrayEquals(batch.getBytes(0), batchTx.getBytes(false));
+        Transaction parsedTx = Transaction.parse(ByteBuffer.wrap(batchTx.getBytes(false)));
+        assertEquals(batch.getTransactionId(0), parsedTx.getTransactionId());
+        Attachment parsedAttachment = parsedTx.getAttachment();
+        assertTrue(parsedAttachment instanceof ArbitraryMessage);
+        assertArrayEquals(new byte[] {1, 2, 3, 4, 5}, ((ArbitraryMessage)parsedAttachment).getMessage());
+    }
+
+    /**
+     * Create a version 1 transaction response
+     *
+     * @param       type                    Transaction type
+     * @param       subtype                 Transaction subtype
+     * @param       attachment              Attachment JSON object
+     * @param       fullHash                Transaction hash
+     * @return                              Transaction response
+     */
+    private PeerResponse createResponse(int type, int subtype, Map<String, Object> attachment, byte[] fullHash) {
+        byte[] publicKey = randomBytes(32);
+        Map<String, Object> map = new HashMap<>();
+        map.put("type", (long)type);
+        map.put("subtype", (long)subtype);
+        map.put("version", 1L);
+        map.put("transaction", Utils.idToString(Utils.fullHashToId(fullHash)));
+        map.put("fullHash", Utils.toHexString(fullHash));
+        map.put("senderPublicKey", Utils.toHexString(publicKey));
+        map.put("sender", Utils.idToString(Utils.getAccountId(publicKey)));
+        map.put("recipient", Utils.idToString(random.nextLong()));
+        map.put("amountNQT", (type == 0 ? "100000000" : "0"));
+        map.put("feeNQT", "100000000");
+        map.put("timestamp", 90000000L);
+        map.put("deadline", 1440L);
+        map.put("signature", Utils.toHexString(randomBytes(64)));
+        map.put("ecBlockHeight", 1000000L);
+        map.put("ecBlockId", Utils.idToString(random.nextLong()));
+        map.put("attachment", attachment);
+        return new PeerResponse(map);
+    }
+
+    /**
+     * Return random bytes
+     *
+     * @param       length                  Number of bytes
+     * @return                              Random bytes
+     */
+    private byte[] randomBytes(int length) {
+        byte[] bytes = new byte[length];
+        random.nextBytes(bytes);
+        return bytes;
+    }
+}
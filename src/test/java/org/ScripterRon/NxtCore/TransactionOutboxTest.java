@@ -0,0 +1,255 @@
+/*
+ * Copyright 2016 Ronald Hoffman.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.ScripterRon.NxtCore;
+
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.Random;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import static org.junit.Assert.*;
+
+/**
+ * Check that the outbox file is replayed and compacted when the outbox is opened.
+ * The outbox files are written directly so that no node server is needed.
+ */
+public class TransactionOutboxTest {
+
+    /** Outbox file identifier */
+    private static final int OUTBOX_MAGIC = 0x4e58544f;
+
+    /** Length of the test transaction bytes */
+    private static final int TX_LENGTH = 176;
+
+    /** Length of a transaction record */
+    private static final int TX_RECORD_LENGTH = 1+8+8+2+TX_LENGTH;
+
+    /** Length of a state record */
+    private static final int STATE_RECORD_LENGTH = 1+8+1;
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    /** Random number generator with a fixed seed so failures can be repeated */
+    private final Random random = new Random(20161019L);
+
+    @Test
+    public void statesAreReplayed() throws Exception {
+        long[] txIds = randomIds(10);
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        DataOutputStream out = new DataOutputStream(bytes);
+        writeHeader(out);
+        for (long txId : txIds)
+            writeTransaction(out, txId);
+        writeState(out, txIds[1], TransactionOutbox.State.UNCONFIRMED);
+        writeState(out, txIds[2], TransactionOutbox.State.UNCONFIRMED);
+        writeState(out, txIds[2], TransactionOutbox.State.CONFIRMED);
+        writeState(out, txIds[3], TransactionOutbox.State.EXPIRED);
+        writeState(out, random.nextLong(), TransactionOutbox.State.CONFIRMED);
+        File outboxFile = writeOutbox(bytes.toByteArray());
+        for (int i=0; i<2; i++) {
+            TransactionOutbox outbox = new TransactionOutbox(outboxFile, 1, 60);
+            try {
+                assertEquals(8, outbox.getCount());
+                assertEquals(TransactionOutbox.State.PENDING, outbox.getState(txIds[0]));
+                assertEquals(TransactionOutbox.State.UNCONFIRMED, outbox.getState(txIds[1]));
+                assertNull(outbox.getState(txIds[2]));
+                assertNull(outbox.getState(txIds[3]));
+                for (int j=4; j<txIds.length; j++)
+                    assertEquals(TransactionOutbox.State.PENDING, outbox.getState(txIds[j]));
+            } finally {
+                outbox.close();
+            }
+            assertEquals(bytes.size(), outboxFile.length());
+        }
+    }
+
+    @Test
+    public void partialRecordIsDiscarded() throws Exception {
+        long[] txIds = randomIds(3);
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        DataOutputStream out = new DataOutputStream(bytes);
+        writeHeader(out);
+        for (long txId : txIds)
+            writeTransaction(out, txId);
+        writeState(out, txIds[0], TransactionOutbox.State.UNCONFIRMED);
+        int validLength = bytes.size();
+        writeTransaction(out, random.nextLong());
+        writeState(out, txIds[1], TransactionOutbox.State.CONFIRMED);
+        byte[] complete = bytes.toByteArray();
+        //
+        // Cut the file inside the last transaction record and inside the following
+        // state record
+        //
+        for (int length : new int[] {validLength+1, validLength+12, validLength+TX_RECORD_LENGTH-1,
+                                     complete.length-STATE_RECORD_LENGTH+1, complete.length-1}) {
+            int expectedLength = (length < validLength+TX_RECORD_LENGTH ? validLength : validLength+TX_RECORD_LENGTH);
+            File outboxFile = writeOutbox(Arrays.copyOf(complete, length));
+            for (int i=0; i<2; i++) {
+                TransactionOutbox outbox = new TransactionOutbox(outboxFile, 1, 60);
+                try {
+                    assertEquals(expectedLength == validLength ? 3 : 4, outbox.getCount());
+                    assertEquals(TransactionOutbox.State.UNCONFIRMED, outbox.getState(txIds[0]));
+                    assertEquals(TransactionOutbox.State.PENDING, outbox.getState(txIds[1]));
+                } finally {
+                    outbox.close();
+                }
+                assertEquals(expectedLength, outboxFile.length());
+            }
+        }
+    }
+
+    @Test
+    public void removedTransactionsAreCompacted() throws Exception {
+        long[] txIds = randomIds(100);
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        DataOutputStream out = new DataOutputStream(bytes);
+        writeHeader(out);
+        for (long txId : txIds)
+            writeTransaction(out, txId);
+        for (int i=0; i<70; i++)
+            writeState(out, txIds[i], (i%2 == 0 ? TransactionOutbox.State.CONFIRMED :
+                                                   TransactionOutbox.State.EXPIRED));
+        for (int i=70; i<80; i++)
+            writeState(out, txIds[i], TransactionOutbox.State.UNCONFIRMED);
+        File outboxFile = writeOutbox(bytes.toByteArray());
+        long compactedLength = 8 + 30*TX_RECORD_LENGTH + 10*STATE_RECORD_LENGTH;
+        for (int i=0; i<2; i++) {
+            TransactionOutbox outbox = new TransactionOutbox(outboxFile, 1, 60);
+            try {
+                assertEquals(compactedLength, outboxFile.length());
+                assertEquals(30, outbox.getCount());
+                for (int j=0; j<70; j++)
+                    assertNull(outbox.getState(txIds[j]));
+                for (int j=70; j<80; j++)
+                    assertEquals(TransactionOutbox.State.UNCONFIRMED, outbox.getState(txIds[j]));
+                for (int j=80; j<100; j++)
+                    assertEquals(TransactionOutbox.State.PENDING, outbox.getState(txIds[j]));
+            } finally {
+                outbox.close();
+            }
+        }
+        assertFalse(new File(outboxFile.getPath()+".tmp").exists());
+    }
+
+    @Test
+    public void fewRemovedTransactionsAreNotCompacted() throws Exception {
+        long[] txIds = randomIds(100);
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        DataOutputStream out = new DataOutputStream(bytes);
+        writeHeader(out);
+        for (long txId : txIds)
+            writeTransaction(out, txId);
+        for (int i=0; i<63; i++)
+            writeState(out, txIds[i], TransactionOutbox.State.CONFIRMED);
+        File outboxFile = writeOutbox(bytes.toByteArray());
+        TransactionOutbox outbox = new TransactionOutbox(outboxFile, 1, 60);
+        try {
+            assertEquals(37, outbox.getCount());
+        } finally {
+            outbox.close();
+        }
+        assertEquals(bytes.size(), outboxFile.length());
+    }
+
+    @Test(expected=NxtException.class)
+    public void invalidStateIsRejected() throws Exception {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        DataOutputStream out = new DataOutputStream(bytes);
+        writeHeader(out);
+        long txId = random.nextLong();
+        writeTransaction(out, txId);
+        out.writeByte(2);
+        out.writeLong(txId);
+        out.writeByte(TransactionOutbox.State.values().length);
+        new TransactionOutbox(writeOutbox(bytes.toByteArray()), 1, 60).close();
+    }
+
+    /**
+     * Return distinct random transaction identifiers
+     *
+     * @param       count                   Number of identifiers
+     * @return                              Transaction identifiers
+     */
+    private long[] randomIds(int count) {
+        return random.longs().distinct().limit(count).toArray();
+    }
+
+    /**
+     * Write an outbox file
+     *
+     * @param       bytes                   File contents
+     * @return                              Outbox file
+     * @throws      IOException             Unable to write the file
+     */
+    private File writeOutbox(byte[] bytes) throws IOException {
+        File outboxFile = new File(folder.newFolder(), "outbox.dat");
+        try (FileOutputStream out = new FileOutputStream(outboxFile)) {
+            out.write(bytes);
+        }
+        return outboxFile;
+    }
+
+    /**
+     * Write the outbox file header
+     *
+     * @param       out                     Output stream
+     * @throws      IOException             Unable to write the header
+     */
+    private static void writeHeader(DataOutputStream out) throws IOException {
+        out.writeInt(OUTBOX_MAGIC);
+        out.writeInt(1);
+    }
+
+    /**
+     * Write a transaction record
+     *
+     * @param       out                     Output stream
+     * @param       txId                    Transaction identifier
+     * @throws      IOException             Unable to write the record
+     */
+    private void writeTransaction(DataOutputStream out, long txId) throws IOException {
+        byte[] txBytes = new byte[TX_LENGTH];
+        random.nextBytes(txBytes);
+        out.writeByte(1);
+        out.writeLong(txId);
+        out.writeLong(System.currentTimeMillis()/1000 + 86400);
+        out.writeShort(txBytes.length);
+        out.write(txBytes);
+    }
+
+    /**
+     * Write a state record
+     *
+     * @param       out                     Output stream
+     * @param       txId                    Transaction identifier
+     * @param       state                   Transaction state
+     * @throws      IOException             Unable to write the record
+     */
+    private static void writeState(DataOutputStream out, long txId, TransactionOutbox.State state)
+                                    throws IOException {
+        out.writeByte(2);
+        out.writeLong(txId);
+        out.writeByte(state.ordinal());
+    }
+}
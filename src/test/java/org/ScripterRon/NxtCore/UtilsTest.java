@@ -0,0 +1,296 @@
+/*
+ * Copyright 2016 Ronald Hoffman.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.ScripterRon.NxtCore;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.math.BigInteger;
+import java.nio.BufferOverflowException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.Random;
+
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+/**
+ * Compare the hex and identifier conversions in Utils with the implementations
+ * they replaced
+ */
+public class UtilsTest {
+
+    /** Number of random inputs for each comparison */
+    private static final int ITERATIONS = 100000;
+
+    /** Hex characters used by the previous implementation */
+    private static final char[] hexChars = { '0','1','2','3','4','5','6','7','8','9','a','b','c','d','e','f' };
+
+    /** Random number generator with a fixed seed so failures can be repeated */
+    private final Random random = new Random(20161019L);
+
+    @Test
+    public void fullHashToIdMatchesBigInteger() {
+        byte[] hash = new byte[32];
+        for (int i=0; i<ITERATIONS; i++) {
+            random.nextBytes(hash);
+            assertEquals(legacyFullHashToId(hash), Utils.fullHashToId(hash));
+        }
+    }
+
+    @Test
+    public void fullHashToIdHandlesNegativeIds() {
+        byte[] hash = new byte[32];
+        for (int i=0; i<ITERATIONS; i++) {
+            random.nextBytes(hash);
+            hash[7] |= 0x80;
+            long id = Utils.fullHashToId(hash);
+            assertTrue(id < 0);
+            assertEquals(legacyFullHashToId(hash), id);
+        }
+        byte[] ones = new byte[8];
+        Arrays.fill(ones, (byte)0xff);
+        assertEquals(-1L, Utils.fullHashToId(ones));
+        byte[] minValue = new byte[8];
+        minValue[7] = (byte)0x80;
+        assertEquals(Long.MIN_VALUE, Utils.fullHashToId(minValue));
+    }
+
+    @Test(expected=IllegalArgumentException.class)
+    public void fullHashToIdRejectsShortHash() {
+        Utils.fullHashToId(new byte[7]);
+    }
+
+    @Test
+    public void idStringRoundTrip() throws IdentifierException {
+        for (int i=0; i<ITERATIONS; i++) {
+            long id = random.nextLong();
+            String idString = Utils.idToString(id);
+            assertEquals(new BigInteger(1, longToBytes(id)).toString(), idString);
+            assertEquals(id, Utils.stringToId(idString));
+        }
+    }
+
+    @Test
+    public void parseHexStringMatchesPrevious() {
+        for (int i=0; i<ITERATIONS; i++) {
+            byte[] bytes = new byte[random.nextInt(80)];
+            random.nextBytes(bytes);
+            String hex = legacyToHexString(bytes);
+            assertArrayEquals(legacyParseHexString(hex), Utils.parseHexString(hex));
+            assertArrayEquals(bytes, Utils.parseHexString(hex));
+        }
+    }
+
+    @Test
+    public void parseHexStringMatchesIntegerParse() {
+        for (int i=0; i<ITERATIONS; i++) {
+            String hex = randomHex(random.nextInt(40)*2, true);
+            byte[] expected = new byte[hex.length()/2];
+            for (int j=0; j<expected.length; j++)
+                expected[j] = (byte)Integer.parseInt(hex.substring(j*2, j*2+2), 16);
+            assertArrayEquals(expected, Utils.parseHexString(hex));
+        }
+    }
+
+    @Test
+    public void parseHexStringRejectsOddLength() {
+        for (int length=1; length<100; length+=2) {
+            String hex = randomHex(length, false);
+            assertTrue(legacyFails(hex));
+            try {
+                Utils.parseHexString(hex);
+                fail("Odd length string accepted: " + hex);
+            } catch (NumberFormatException exc) {
+                // Expected
+            }
+        }
+    }
+
+    @Test
+    public void parseHexStringRejectsInvalidCharacters() {
+        for (int i=0; i<ITERATIONS; i++) {
+            char[] chars = randomHex(2+random.nextInt(40)*2, false).toCharArray();
+            char invalid;
+            do {
+                invalid = (char)random.nextInt(i%2 == 0 ? 128 : 0x10000);
+            } while (Character.digit(invalid, 16) >= 0 && invalid < 128);
+            chars[random.nextInt(chars.length)] = invalid;
+            String hex = new String(chars);
+            //
+            // The previous implementation decoded ':' through '?' as 10 through 15 and
+            // rejected uppercase digits, so it is only used as a reference for other characters
+            //
+            if (invalid < ':' || invalid > '?')
+                assertTrue(legacyFails(hex));
+            try {
+                Utils.parseHexString(hex);
+                fail("Invalid hex string accepted: " + hex);
+            } catch (NumberFormatException exc) {
+                // Expected
+            }
+        }
+    }
+
+    @Test
+    public void parseHexStringIntoArrayAndBuffer() {
+        for (int i=0; i<ITERATIONS/10; i++) {
+            byte[] bytes = new byte[random.nextInt(64)];
+            random.nextBytes(bytes);
+            String hex = legacyToHexString(bytes);
+            int offset = random.nextInt(8);
+            byte[] output = new byte[offset+bytes.length+random.nextInt(8)];
+            assertEquals(bytes.length, Utils.parseHexString(hex, output, offset));
+            assertArrayEquals(bytes, Arrays.copyOfRange(output, offset, offset+bytes.length));
+            ByteBuffer heapBuffer = ByteBuffer.allocate(offset+bytes.length);
+            heapBuffer.position(offset);
+            assertEquals(bytes.length, Utils.parseHexString(hex, heapBuffer));
+            assertEquals(offset+bytes.length, heapBuffer.position());
+            ByteBuffer directBuffer = ByteBuffer.allocateDirect(bytes.length);
+            assertEquals(bytes.length, Utils.parseHexString(hex, directBuffer));
+            directBuffer.flip();
+            assertEquals(ByteBuffer.wrap(bytes), directBuffer);
+        }
+    }
+
+    @Test(expected=IndexOutOfBoundsException.class)
+    public void parseHexStringRejectsSmallArray() {
+        Utils.parseHexString("00112233", new byte[4], 1);
+    }
+
+    @Test(expected=BufferOverflowException.class)
+    public void parseHexStringRejectsSmallBuffer() {
+        Utils.parseHexString("00112233", ByteBuffer.allocate(3));
+    }
+
+    @Test
+    public void toHexStringMatchesPrevious() throws IOException {
+        for (int i=0; i<ITERATIONS; i++) {
+            byte[] bytes = new byte[random.nextInt(80)];
+            random.nextBytes(bytes);
+            String expected = legacyToHexString(bytes);
+            assertEquals(expected, Utils.toHexString(bytes));
+            int offset = (bytes.length > 0 ? random.nextInt(bytes.length) : 0);
+            int length = bytes.length - offset;
+            String part = expected.substring(offset*2);
+            assertEquals(part, Utils.toHexString(bytes, offset, length));
+            assertEquals(expected, Utils.toHexString(ByteBuffer.wrap(bytes)));
+            ByteBuffer directBuffer = ByteBuffer.allocateDirect(bytes.length);
+            directBuffer.put(bytes);
+            directBuffer.flip();
+            assertEquals(expected, Utils.toHexString(directBuffer));
+            assertFalse(directBuffer.hasRemaining());
+            StringBuilder sb = new StringBuilder("x");
+            Utils.toHexString(bytes, offset, length, sb);
+            assertEquals("x" + part, sb.toString());
+            ByteArrayOutputStream out = new ByteArrayOutputStream();
+            Utils.toHexString(ByteBuffer.wrap(bytes), out);
+            assertEquals(expected, new String(out.toByteArray(), StandardCharsets.US_ASCII));
+        }
+    }
+
+    /**
+     * Return a random hex string
+     *
+     * @param       length                  String length
+     * @param       mixedCase               TRUE to include uppercase digits
+     * @return                              Hex string
+     */
+    private String randomHex(int length, boolean mixedCase) {
+        String digits = (mixedCase ? "0123456789abcdefABCDEF" : "0123456789abcdef");
+        StringBuilder sb = new StringBuilder(length);
+        for (int i=0; i<length; i++)
+            sb.append(digits.charAt(random.nextInt(digits.length())));
+        return sb.toString();
+    }
+
+    /**
+     * Convert a long to big-endian bytes
+     *
+     * @param       value                   Value
+     * @return                              Bytes
+     */
+    private static byte[] longToBytes(long value) {
+        return ByteBuffer.allocate(8).putLong(value).array();
+    }
+
+    /**
+     * Check if the previous hex parser rejects a string
+     *
+     * @param       hex                     Hex string
+     * @return                              TRUE if the string is rejected
+     */
+    private static boolean legacyFails(String hex) {
+        try {
+            legacyParseHexString(hex);
+            return false;
+        } catch (NumberFormatException exc) {
+            return true;
+        }
+    }
+
+    /**
+     * Previous fullHashToId() implementation
+     *
+     * @param       hash                    Full hash
+     * @return                              Object identifier
+     */
+    private static long legacyFullHashToId(byte[] hash) {
+        BigInteger bigInteger = new BigInteger(1, new byte[] {hash[7], hash[6], hash[5],
+                                                              hash[4], hash[3], hash[2],
+                                                              hash[1], hash[0]});
+        return bigInteger.longValue();
+    }
+
+    /**
+     * Previous parseHexString() implementation
+     *
+     * @param       hex                     String to parse
+     * @return                              Decoded bytes
+     * @throws      NumberFormatException   String contains an invalid hex character
+     */
+    private static byte[] legacyParseHexString(String hex) throws NumberFormatException {
+        if ((hex.length()&0x01) == 1)
+            throw new NumberFormatException("Hex string length is not a multiple of 2");
+        byte[] bytes = new byte[hex.length() / 2];
+        for (int i = 0; i < bytes.length; i++) {
+            int char1 = hex.charAt(i * 2);
+            char1 = char1 > 0x60 ? char1 - 0x57 : char1 - 0x30;
+            int char2 = hex.charAt(i * 2 + 1);
+            char2 = char2 > 0x60 ? char2 - 0x57 : char2 - 0x30;
+            if (char1 < 0 || char2 < 0 || char1 > 15 || char2 > 15)
+                throw new NumberFormatException("Invalid hex number: " + hex);
+            bytes[i] = (byte)((char1 << 4) + char2);
+        }
+        return bytes;
+    }
+
+    /**
+     * Previous toHexString() implementation
+     *
+     * @param       bytes                   Bytes to encode
+     * @return                              Hex string
+     */
+    private static String legacyToHexString(byte[] bytes) {
+        char[] chars = new char[bytes.length * 2];
+        for (int i = 0; i < bytes.length; i++) {
+            chars[i * 2] = hexChars[((bytes[i] >> 4) & 0xF)];
+            chars[i * 2 + 1] = hexChars[(bytes[i] & 0xF)];
+        }
+        return String.valueOf(chars);
+    }
+}